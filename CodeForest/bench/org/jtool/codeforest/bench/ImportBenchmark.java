@@ -0,0 +1,372 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.bench;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.metrics.java.ForestDataImporter;
+import org.jtool.codeforest.metrics.java.MetricsManager;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.util.NumberParser;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.Attributes;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures a full import of a snapshot file by the current importer against the importer it replaced.
+ * Usage: <code>ImportBenchmark [snapshot.xml] [iterations] [classes]</code>.
+ * When no snapshot is given, a synthetic one in the format of the exporter is generated into a temporary file.
+ * @author Katsuhisa Maruyama
+ */
+public class ImportBenchmark {
+    
+    /**
+     * The number of imports that are run before measuring.
+     */
+    private static final int WARMUPS = 2;
+    
+    /**
+     * The number of classes in each package of a generated snapshot.
+     */
+    private static final int CLASSES_PER_PACKAGE = 50;
+    
+    /**
+     * The number of methods in each class of a generated snapshot.
+     */
+    private static final int METHODS_PER_CLASS = 12;
+    
+    /**
+     * The number of fields in each class of a generated snapshot.
+     */
+    private static final int FIELDS_PER_CLASS = 4;
+    
+    /**
+     * Runs the benchmark.
+     * @param args the path of a snapshot file, the number of measured imports, and the number of generated classes
+     * @throws Exception if the snapshot cannot be generated or parsed
+     */
+    public static void main(String[] args) throws Exception {
+        File file = null;
+        int iterations = 5;
+        int classes = 20000;
+        
+        if (args.length > 0 && !args[0].equals("-")) {
+            file = new File(args[0]).getAbsoluteFile();
+        }
+        if (args.length > 1) {
+            iterations = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            classes = Integer.parseInt(args[2]);
+        }
+        
+        boolean generated = false;
+        if (file == null) {
+            file = File.createTempFile("codeforest-bench", ".xml").getAbsoluteFile();
+            System.out.println("Generating " + classes + " classes into " + file.getPath());
+            generate(file, classes, new Random(2014));
+            generated = true;
+        }
+        
+        try {
+            double mb = file.length() / (1024.0 * 1024.0);
+            System.out.println("Snapshot: " + file.getPath() + String.format(" (%.1f MB)", mb));
+            
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            for (int i = 0; i < WARMUPS; i++) {
+                importLegacy(factory, file);
+                importCurrent(factory, file);
+            }
+            
+            long[] legacyTimes = new long[iterations];
+            long[] currentTimes = new long[iterations];
+            int legacyClasses = 0;
+            int currentClasses = 0;
+            for (int i = 0; i < iterations; i++) {
+                System.gc();
+                long start = System.nanoTime();
+                ProjectMetrics legacy = importLegacy(factory, file);
+                legacyTimes[i] = System.nanoTime() - start;
+                legacyClasses = legacy.getClassMetrics().size();
+                legacy = null;
+                
+                System.gc();
+                start = System.nanoTime();
+                ProjectMetrics current = importCurrent(factory, file);
+                currentTimes[i] = System.nanoTime() - start;
+                currentClasses = current.getClassMetrics().size();
+                current = null;
+            }
+            
+            report("legacy ", legacyTimes, mb);
+            report("current", currentTimes, mb);
+            System.out.println(String.format("Speedup (median): %.2fx", (double)median(legacyTimes) / median(currentTimes)));
+            if (legacyClasses != currentClasses) {
+                System.err.println("Class counts differ: legacy " + legacyClasses + ", current " + currentClasses);
+            }
+            
+            benchmarkNumberParser(factory, file, iterations);
+            
+        } finally {
+            if (generated) {
+                file.delete();
+            }
+        }
+    }
+    
+    /**
+     * Imports a snapshot file by the importer before its hot path was rebuilt.
+     * @param factory the factory of SAX parsers
+     * @param file the snapshot file
+     * @return the imported project metrics
+     * @throws Exception if the file cannot be parsed
+     */
+    private static ProjectMetrics importLegacy(SAXParserFactory factory, File file) throws Exception {
+        SAXParser parser = factory.newSAXParser();
+        LegacyForestDataImporter handler = new LegacyForestDataImporter(file.getPath());
+        parser.parse(file, handler);
+        return handler.getProjectMetrics();
+    }
+    
+    /**
+     * Imports a snapshot file by the current importer.
+     * @param factory the factory of SAX parsers
+     * @param file the snapshot file
+     * @return the imported project metrics
+     * @throws Exception if the file cannot be parsed
+     */
+    private static ProjectMetrics importCurrent(SAXParserFactory factory, File file) throws Exception {
+        SAXParser parser = factory.newSAXParser();
+        ForestDataImporter handler = new ForestDataImporter(file.getPath());
+        parser.parse(file, handler);
+        return handler.getProjectMetrics();
+    }
+    
+    /**
+     * Compares the number parser with the standard one over all metric values in a snapshot file.
+     * @param factory the factory of SAX parsers
+     * @param file the snapshot file
+     * @param iterations the number of measured rounds
+     * @throws Exception if the file cannot be parsed
+     */
+    private static void benchmarkNumberParser(SAXParserFactory factory, File file, int iterations) throws Exception {
+        final List<String> values = new ArrayList<String>();
+        SAXParser parser = factory.newSAXParser();
+        parser.parse(file, new DefaultHandler() {
+            
+            /**
+             * Collects the metric values of an element.
+             * @param uri the namespace's URI
+             * @param name the local name without prefix
+             * @param qname the qualified name with prefix
+             * @param attrs the attributes attached to the element
+             */
+            public void startElement(String uri, String name, String qname, Attributes attrs) {
+                if (qname.equals(MetricsManager.MetricsElem)) {
+                    for (int i = 0; i < attrs.getLength(); i++) {
+                        values.add(attrs.getValue(i));
+                    }
+                }
+            }
+        });
+        
+        int mismatches = 0;
+        for (String value : values) {
+            if (Double.doubleToLongBits(NumberParser.parseDouble(value)) != Double.doubleToLongBits(Double.parseDouble(value))) {
+                mismatches++;
+            }
+        }
+        
+        long[] standardTimes = new long[iterations];
+        long[] parserTimes = new long[iterations];
+        double sink = 0;
+        for (int i = 0; i < WARMUPS + iterations; i++) {
+            long start = System.nanoTime();
+            for (String value : values) {
+                sink += Double.parseDouble(value);
+            }
+            long standard = System.nanoTime() - start;
+            
+            start = System.nanoTime();
+            for (String value : values) {
+                sink += NumberParser.parseDouble(value);
+            }
+            long current = System.nanoTime() - start;
+            
+            if (i >= WARMUPS) {
+                standardTimes[i - WARMUPS] = standard;
+                parserTimes[i - WARMUPS] = current;
+            }
+        }
+        
+        System.out.println("Metric values: " + values.size() + ", mismatches: " + mismatches);
+        System.out.println(String.format("Double.parseDouble:       median %.1f ms", median(standardTimes) / 1e6));
+        System.out.println(String.format("NumberParser.parseDouble: median %.1f ms", median(parserTimes) / 1e6));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+    
+    /**
+     * Prints the measured times of an importer.
+     * @param label the label of the importer
+     * @param times the measured times in nanoseconds
+     * @param mb the size of the snapshot file in megabytes
+     */
+    private static void report(String label, long[] times, double mb) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        double median = median(times) / 1e6;
+        double min = sorted[0] / 1e6;
+        System.out.println(String.format("%s: median %.1f ms, min %.1f ms, %.1f MB/s", label, median, min, mb * 1000 / median));
+    }
+    
+    /**
+     * Returns the median of measured times.
+     * @param times the measured times
+     * @return the median time
+     */
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+    
+    /**
+     * Generates a synthetic snapshot file in the format written by the exporter.
+     * @param file the file to be generated
+     * @param classes the number of classes
+     * @param random the source of metric values
+     * @throws IOException if the file cannot be written
+     */
+    private static void generate(File file, int classes, Random random) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<" + MetricsManager.TopElem + ">\n");
+            out.write("<" + MetricsManager.ProjectElem + " " + attr(MetricsManager.NameAttr, "bench") + attr(MetricsManager.TimeAttr, "1400000000000") + ">\n");
+            writeMetrics(out, MetricSort.PACKAGE_METRICS, random);
+            
+            int packages = (classes + CLASSES_PER_PACKAGE - 1) / CLASSES_PER_PACKAGE;
+            int index = 0;
+            for (int p = 0; p < packages; p++) {
+                String pname = "org.bench.p" + p;
+                out.write("<" + MetricsManager.PackageElem + " " + attr(MetricsManager.NameAttr, pname) + ">\n");
+                if (p > 0) {
+                    out.write("<" + MetricsManager.AfferentElem + " " + attr(MetricsManager.FqnAttr, "org.bench.p" + (p - 1)) + "/>\n");
+                }
+                if (p < packages - 1) {
+                    out.write("<" + MetricsManager.EfferentElem + " " + attr(MetricsManager.FqnAttr, "org.bench.p" + (p + 1)) + "/>\n");
+                }
+                writeMetrics(out, MetricSort.PACKAGE_METRICS, random);
+                
+                for (int c = 0; c < CLASSES_PER_PACKAGE && index < classes; c++, index++) {
+                    writeClass(out, pname, "C" + c, random);
+                }
+                out.write("</" + MetricsManager.PackageElem + ">\n");
+            }
+            
+            out.write("</" + MetricsManager.ProjectElem + ">\n");
+            out.write("</" + MetricsManager.TopElem + ">\n");
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Writes a class element with its methods and fields.
+     * @param out the writer of the snapshot
+     * @param pname the name of the package containing the class
+     * @param name the name of the class
+     * @param random the source of metric values
+     * @throws IOException if the element cannot be written
+     */
+    private static void writeClass(Writer out, String pname, String name, Random random) throws IOException {
+        String fqn = pname + "." + name;
+        out.write("<" + MetricsManager.ClassElem + " " + attr(MetricsManager.NameAttr, name) + attr(MetricsManager.FqnAttr, fqn)
+                + attr(MetricsManager.ModifiersAttr, "1") + attr(MetricsManager.isInterfaceAttr, MetricsManager.No)
+                + attr(MetricsManager.isEnumAttr, MetricsManager.No) + attr(MetricsManager.PathAttr, "/bench/src/" + fqn.replace('.', '/') + ".java") + ">\n");
+        writeCode(out, random);
+        out.write("<" + MetricsManager.SuperClassElem + " " + attr(MetricsManager.FqnAttr, "java.lang.Object") + "/>\n");
+        out.write("<" + MetricsManager.AfferentElem + " " + attr(MetricsManager.FqnAttr, pname + ".C" + random.nextInt(CLASSES_PER_PACKAGE)) + "/>\n");
+        out.write("<" + MetricsManager.EfferentElem + " " + attr(MetricsManager.FqnAttr, pname + ".C" + random.nextInt(CLASSES_PER_PACKAGE)) + "/>\n");
+        writeMetrics(out, MetricSort.CLASS_METRICS, random);
+        
+        for (int m = 0; m < METHODS_PER_CLASS; m++) {
+            out.write("<" + MetricsManager.MethodElem + " " + attr(MetricsManager.NameAttr, "m" + m) + attr(MetricsManager.SignatureAttr, "m" + m + "( int )")
+                    + attr(MetricsManager.TypeAttr, "int") + attr(MetricsManager.ModifiersAttr, "1")
+                    + attr(MetricsManager.isConstructorAttr, MetricsManager.No) + attr(MetricsManager.isInitializerAttr, MetricsManager.No) + ">\n");
+            writeCode(out, random);
+            writeMetrics(out, MetricSort.METHOD_METRICS, random);
+            out.write("</" + MetricsManager.MethodElem + ">\n");
+        }
+        
+        for (int f = 0; f < FIELDS_PER_CLASS; f++) {
+            out.write("<" + MetricsManager.FieldElem + " " + attr(MetricsManager.NameAttr, "f" + f) + attr(MetricsManager.TypeAttr, "int")
+                    + attr(MetricsManager.ModifiersAttr, "2") + attr(MetricsManager.isEnumConstantAttr, MetricsManager.No) + ">\n");
+            writeCode(out, random);
+            writeMetrics(out, MetricSort.FIELD_METRICS, random);
+            out.write("</" + MetricsManager.FieldElem + ">\n");
+        }
+        
+        out.write("</" + MetricsManager.ClassElem + ">\n");
+    }
+    
+    /**
+     * Writes a code element.
+     * @param out the writer of the snapshot
+     * @param random the source of positions
+     * @throws IOException if the element cannot be written
+     */
+    private static void writeCode(Writer out, Random random) throws IOException {
+        int upper = random.nextInt(2000) + 1;
+        out.write("<" + MetricsManager.CodeElem + " " + attr(MetricsManager.StartPositionAttr, String.valueOf(random.nextInt(100000)))
+                + attr(MetricsManager.CodeLengthAttr, String.valueOf(random.nextInt(5000))) + attr(MetricsManager.UpperLineNumberAttr, String.valueOf(upper))
+                + attr(MetricsManager.BottomLineNumberAttr, String.valueOf(upper + random.nextInt(200))) + "/>\n");
+    }
+    
+    /**
+     * Writes a metrics element, whose values are formatted as the exporter does.
+     * @param out the writer of the snapshot
+     * @param sorts the sorts of metrics
+     * @param random the source of metric values
+     * @throws IOException if the element cannot be written
+     */
+    private static void writeMetrics(Writer out, String[] sorts, Random random) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("<" + MetricsManager.MetricsElem);
+        for (String sort : sorts) {
+            double value;
+            if (random.nextInt(4) == 0) {
+                value = random.nextDouble() * 10;
+            } else {
+                value = random.nextInt(500);
+            }
+            buf.append(" " + sort + "=\"" + String.valueOf(value) + "\"");
+        }
+        buf.append("/>\n");
+        out.write(buf.toString());
+    }
+    
+    /**
+     * Returns the text of an attribute followed by a space.
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     * @return the text of the attribute
+     */
+    private static String attr(String name, String value) {
+        return name + "=\"" + value + "\" ";
+    }
+}
@@ -14,6 +14,7 @@ import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.swt.graphics.Image;
+import org.jtool.codeforest.metrics.java.ShardCoordinator;
 import org.jtool.codeforest.ui.view.control.WorkingSetStore;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -21,6 +22,9 @@ import org.osgi.framework.BundleContext;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.net.MalformedURLException;
 
 /**
@@ -49,6 +53,36 @@ public class Activator extends AbstractUIPlugin {
      */
     private static final String WORKING_SETS = "WorkingSetPreference";
     
+    /**
+     * A preference name for storing whether snapshots are written as a directory of part files.
+     */
+    private static final String SHARDED_SNAPSHOT = "ShardedSnapshotPreference";
+    
+    /**
+     * A preference name for storing the maximum number of full snapshots kept in a project.
+     */
+    private static final String SNAPSHOT_RETENTION_COUNT = "SnapshotRetentionCountPreference";
+    
+    /**
+     * A preference name for storing the maximum age of full snapshots kept in a project in days.
+     */
+    private static final String SNAPSHOT_RETENTION_DAYS = "SnapshotRetentionDaysPreference";
+    
+    /**
+     * A preference name for storing the number of worker processes that analyze a project.
+     */
+    private static final String ANALYSIS_WORKERS = "AnalysisWorkersPreference";
+    
+    /**
+     * A preference name for storing the command that launches a worker process.
+     */
+    private static final String ANALYSIS_LAUNCH_COMMAND = "AnalysisLaunchCommandPreference";
+    
+    /**
+     * A preference name for storing the hosts on which worker processes are launched.
+     */
+    private static final String ANALYSIS_HOSTS = "AnalysisHostsPreference";
+    
     /**
      * Creates a plug-in runtime object.
      */
@@ -227,4 +261,80 @@ public class Activator extends AbstractUIPlugin {
         String store = WorkingSetStore.getPreference();
         Activator.getDefault().getPreferenceStore().setValue(WORKING_SETS, store);
     }
+    
+    /**
+     * Tests if snapshots of metric values are written as a directory of part files.
+     * @return <code>true</code> if the sharded layout is used, otherwise <code>false</code>
+     */
+    public static boolean isShardedSnapshot() {
+        if (getDefault() != null) {
+            return getDefault().getPreferenceStore().getBoolean(SHARDED_SNAPSHOT);
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the maximum number of full snapshots kept in a project.
+     * @return the maximum number of snapshots, or zero for no limit
+     */
+    public static int getSnapshotRetentionCount() {
+        if (getDefault() != null) {
+            return getDefault().getPreferenceStore().getInt(SNAPSHOT_RETENTION_COUNT);
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the maximum age of full snapshots kept in a project.
+     * @return the maximum age in days, or zero for no limit
+     */
+    public static int getSnapshotRetentionDays() {
+        if (getDefault() != null) {
+            return getDefault().getPreferenceStore().getInt(SNAPSHOT_RETENTION_DAYS);
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the number of worker processes that analyze a project.
+     * @return the number of the worker processes, or zero if a project is analyzed within this process
+     */
+    public static int getAnalysisWorkers() {
+        if (getDefault() != null) {
+            return getDefault().getPreferenceStore().getInt(ANALYSIS_WORKERS);
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the tokens of the command that launches a worker process.
+     * The command of the running Eclipse is used if no command is specified.
+     * @return the tokens of the command
+     */
+    public static List<String> getAnalysisLaunchCommand() {
+        String command = "";
+        if (getDefault() != null) {
+            command = getDefault().getPreferenceStore().getString(ANALYSIS_LAUNCH_COMMAND).trim();
+        }
+        if (command.length() == 0) {
+            return ShardCoordinator.getLocalCommand(System.getProperty("eclipse.launcher", "eclipse"));
+        }
+        return Arrays.asList(command.split("\\s+"));
+    }
+    
+    /**
+     * Returns the hosts on which worker processes are launched.
+     * @return the names of the hosts, which are separated by commas in the preference
+     */
+    public static List<String> getAnalysisHosts() {
+        List<String> hosts = new ArrayList<String>();
+        if (getDefault() != null) {
+            for (String host : getDefault().getPreferenceStore().getString(ANALYSIS_HOSTS).split(",")) {
+                if (host.trim().length() > 0) {
+                    hosts.add(host.trim());
+                }
+            }
+        }
+        return hosts;
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest;
+
+import org.jtool.codeforest.metrics.java.CFFileInfoCollector;
+import org.jtool.codeforest.metrics.java.MetricsManager;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.ShardCoordinator;
+import org.jtool.eclipse.model.java.JavaModelFactory;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.JavaCore;
+import java.io.File;
+import java.util.List;
+
+/**
+ * A headless application that analyzes a shard of a project in a worker process.
+ * The worker imports the project into its own workspace and writes metric values of the packages of the shard
+ * into a partial snapshot, which is merged by a coordinator.
+ * <pre>
+ * eclipse -nosplash -application CodeForest.analyzer -data &lt;workspace&gt;
+ *         -project &lt;dir&gt; -packages &lt;file&gt; -out &lt;file&gt;
+ * </pre>
+ * @author Katsuhisa Maruyama
+ */
+public class AnalyzerApplication implements IApplication {
+    
+    /**
+     * The exit code returned when the analysis fails.
+     */
+    private static final Integer EXIT_FAILURE = new Integer(1);
+    
+    /**
+     * Creates a new, empty object.
+     */
+    public AnalyzerApplication() {
+    }
+    
+    /**
+     * Starts this application.
+     * @param context the application context
+     * @return the exit code
+     * @throws Exception if the analysis fails unexpectedly
+     */
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        String projectDir = getArgument(args, "-project");
+        String packagesFile = getArgument(args, "-packages");
+        String outFile = getArgument(args, "-out");
+        if (projectDir == null || packagesFile == null || outFile == null) {
+            System.err.println("Usage: -project <dir> -packages <file> -out <file>");
+            return EXIT_FAILURE;
+        }
+        
+        IProject project = importProject(new File(projectDir));
+        if (project == null) {
+            return EXIT_FAILURE;
+        }
+        
+        JavaModelFactory factory = new JavaModelFactory(JavaCore.create(project));
+        factory.setJavaASTVisitor(new CFFileInfoCollector());
+        JavaProject jproject = factory.create();
+        
+        List<String> packageNames = ShardCoordinator.readLines(new File(packagesFile));
+        MetricsManager manager = new MetricsManager();
+        ProjectMetrics mshard = manager.create(jproject, packageNames);
+        if (mshard == null || !manager.exportXML(new File(outFile), mshard)) {
+            return EXIT_FAILURE;
+        }
+        
+        System.out.println("- Analyze " + mshard.getPackageMetrics().size() + " packages into " + outFile);
+        return IApplication.EXIT_OK;
+    }
+    
+    /**
+     * Stops this application.
+     */
+    public void stop() {
+    }
+    
+    /**
+     * Obtains the value of an option from the arguments.
+     * @param args the arguments
+     * @param option the name of the option
+     * @return the value of the option, or <code>null</code> if it is not given
+     */
+    private String getArgument(String[] args, String option) {
+        if (args == null) {
+            return null;
+        }
+        
+        for (int i = 0; i < args.length - 1; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Imports a project stored in a directory into the workspace of this worker, and opens it.
+     * @param dir the directory of the project
+     * @return the imported project, or <code>null</code> if it cannot be imported
+     */
+    private IProject importProject(File dir) {
+        try {
+            IWorkspace workspace = ResourcesPlugin.getWorkspace();
+            IProjectDescription description = workspace.loadProjectDescription(new Path(new File(dir, ".project").getAbsolutePath()));
+            IProject project = workspace.getRoot().getProject(description.getName());
+            if (!project.exists()) {
+                description.setLocation(new Path(dir.getAbsolutePath()));
+                project.create(description, null);
+            }
+            project.open(null);
+            return project;
+            
+        } catch (CoreException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.handlers;
+
+import org.jtool.codeforest.metrics.java.MetricsManager;
+import org.jtool.codeforest.metrics.java.MetricsPublisher;
+import org.jtool.codeforest.ui.CodeForestFrame;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jface.dialogs.MessageDialog;
+import java.util.List;
+
+/**
+ * Performs an action that mines the git history of a project.
+ * @author Katsuhisa Maruyama
+ */
+public class HistoryAction extends NewAction {
+    
+    /**
+     * Creates a new, empty object.
+     */
+    public HistoryAction() {
+    }
+    
+    /**
+     * Creates a forest that grows along the commits of the first project stored in a local git repository.
+     * @param projects the projects
+     */
+    protected void create(List<IJavaProject> projects) {
+        if (projects.isEmpty()) {
+            return;
+        }
+        
+        IJavaProject project = projects.get(0);
+        boolean releasesOnly = MessageDialog.openQuestion(window.getShell(), "CodeForest History", "Mine only commits pointed to by release tags of " + project.getElementName() + "?\nAll the first-parent commits are mined otherwise.");
+        
+        MetricsManager manager = new MetricsManager();
+        MetricsPublisher publisher = manager.createFromGit(project, releasesOnly);
+        
+        CodeForestFrame frame = new CodeForestFrame(window.getShell(), publisher);
+        frame.dispose();
+        
+        System.out.println("Code Forest fin.");
+    }
+}
@@ -4,11 +4,11 @@
  
 package org.jtool.codeforest.handlers;
 
-import org.jtool.eclipse.model.java.JavaModelFactory;
-import org.jtool.eclipse.model.java.JavaProject;
-import org.jtool.codeforest.metrics.java.CFFileInfoCollector;
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.metrics.java.GitHistoryMiner;
 import org.jtool.codeforest.metrics.java.MetricsManager;
-import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.MetricsPublisher;
+import org.jtool.codeforest.metrics.java.ShardCoordinator;
 import org.jtool.codeforest.ui.CodeForestFrame;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -16,13 +16,22 @@ import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipse.jdt.core.IJavaModel;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.IWorkbenchSite;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.handlers.HandlerUtil;
+import java.util.List;
+import java.util.ArrayList;
 
 /**
  * Performs an action for a project.
@@ -45,11 +54,6 @@ public class NewAction extends AbstractHandler {
      */
     protected ISelection selection;
     
-    /**
-     * The a factory object that creates models of Java programs.
-     */
-    private JavaModelFactory factory;
-    
     /**
      * Creates a new, empty object.
      */
@@ -68,33 +72,116 @@ public class NewAction extends AbstractHandler {
         
         selection = HandlerUtil.getActiveMenuSelection(event);
         
+        List<IJavaProject> projects = new ArrayList<IJavaProject>();
         if (selection instanceof IStructuredSelection) {
             IStructuredSelection structured = (IStructuredSelection)selection;
             
-            IJavaProject project = null;
-            Object elem = structured.getFirstElement();
-            if (elem instanceof IJavaProject) {
-                project = (IJavaProject)elem;
-            } else if (elem instanceof IProject) {
-                project = (IJavaProject)JavaCore.create((IProject)elem);
+            for (Object elem : structured.toList()) {
+                if (elem instanceof IJavaProject) {
+                    addJavaProject(projects, (IJavaProject)elem);
+                } else if (elem instanceof IProject) {
+                    addJavaProject(projects, JavaCore.create((IProject)elem));
+                } else if (elem instanceof IWorkspaceRoot) {
+                    for (IJavaProject project : getJavaProjects()) {
+                        addJavaProject(projects, project);
+                    }
+                }
             }
+        }
+        
+        create(projects);
+        return null;
+    }
+    
+    /**
+     * Creates a forest of projects. A forest of a workspace is created if two or more projects are given.
+     * @param projects the projects
+     */
+    protected void create(List<IJavaProject> projects) {
+        if (projects.isEmpty()) {
+            return;
+        }
+        
+        MetricsManager manager = new MetricsManager();
+        manager.setSharded(Activator.isShardedSnapshot());
+        manager.setRetention(Activator.getSnapshotRetentionCount(), Activator.getSnapshotRetentionDays());
+        
+        MetricsPublisher publisher;
+        if (projects.size() == 1 && Activator.getAnalysisWorkers() > 1) {
+            IJavaProject project = projects.get(0);
+            String topdir = project.getProject().getLocation().toOSString();
+            ShardCoordinator coordinator = new ShardCoordinator(project.getElementName(), topdir, getSourceRoots(project), Activator.getAnalysisWorkers(), Activator.getAnalysisLaunchCommand());
+            coordinator.setHosts(Activator.getAnalysisHosts());
+            publisher = manager.createInShards(coordinator, project.getProject());
+            
+        } else if (projects.size() == 1) {
+            IJavaProject project = projects.get(0);
+            publisher = manager.createInBackground(project, project.getProject());
             
-            if (project != null) {
-                factory = new JavaModelFactory(project);
-                factory.setJavaASTVisitor(new CFFileInfoCollector());
-                JavaProject jproject = factory.create();
-                
-                MetricsManager manager = new MetricsManager();
-                ProjectMetrics mproject = manager.create(jproject);
-                manager.writeXML(mproject);
-                
-                CodeForestFrame frame = new CodeForestFrame(window.getShell(), mproject);
-                frame.dispose();
-                
-                System.out.println("Code Forest fin.");
+        } else {
+            ISchedulingRule[] rules = new ISchedulingRule[projects.size()];
+            for (int i = 0; i < projects.size(); i++) {
+                rules[i] = projects.get(i).getProject();
             }
+            
+            IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+            String name = "Workspace (" + projects.size() + " projects)";
+            publisher = manager.createInBackground(projects, name, root.getLocation().toOSString(), MultiRule.combine(rules));
         }
-        return null;
+        
+        CodeForestFrame frame = new CodeForestFrame(window.getShell(), publisher);
+        frame.dispose();
+        
+        System.out.println("Code Forest fin.");
+    }
+    
+    /**
+     * Obtains the paths of the source roots of a project.
+     * @param project the project
+     * @return the collection of the paths
+     */
+    private List<String> getSourceRoots(IJavaProject project) {
+        List<String> roots = new ArrayList<String>();
+        try {
+            for (IPackageFragmentRoot root : project.getPackageFragmentRoots()) {
+                if (root.getKind() == IPackageFragmentRoot.K_SOURCE && root.getResource() != null && root.getResource().getLocation() != null) {
+                    roots.add(root.getResource().getLocation().toOSString());
+                }
+            }
+        } catch (JavaModelException e) {
+            e.printStackTrace();
+        }
+        return roots;
+    }
+    
+    /**
+     * Adds a Java project into a collection unless it has been already added.
+     * @param projects the collection of the projects
+     * @param project the project to be added, which may be <code>null</code>
+     */
+    private void addJavaProject(List<IJavaProject> projects, IJavaProject project) {
+        if (project != null && project.exists() && !projects.contains(project)) {
+            projects.add(project);
+        }
+    }
+    
+    /**
+     * Obtains all the open Java projects in the workspace, except for the projects mirroring the worktrees of git history mining.
+     * @return the collection of the projects
+     */
+    protected List<IJavaProject> getJavaProjects() {
+        List<IJavaProject> projects = new ArrayList<IJavaProject>();
+        try {
+            IJavaModel model = JavaCore.create(ResourcesPlugin.getWorkspace().getRoot());
+            for (IJavaProject project : model.getJavaProjects()) {
+                if (project.getProject().isOpen() && !GitHistoryMiner.isMirror(project.getProject())) {
+                    projects.add(project);
+                }
+            }
+        } catch (JavaModelException e) {
+            e.printStackTrace();
+        }
+        return projects;
     }
     
     /**
@@ -7,10 +7,17 @@ package org.jtool.codeforest.handlers;
 import org.jtool.codeforest.Activator;
 import org.jtool.codeforest.metrics.java.MetricsManager;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.SnapshotCatalog;
 import org.jtool.codeforest.ui.CodeForestFrame;
+import org.jtool.codeforest.ui.SnapshotDialog;
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.window.Window;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.handlers.HandlerUtil;
@@ -55,10 +62,38 @@ public class OpenAction extends AbstractHandler {
         // String path = "/Users/maru/Desktop/eclipse-4.3.1-CodeForest/runtime-EclipseApplication/org.jtool.eclipse/codeforest.xml";
         String path = "/Users/maru/Desktop/eclipse-4.3.1-CodeForest/runtime-EclipseApplication/sample/codeforest.xml";
         // path.replace('/', File.separatorChar);
-        path = open();
         
         MetricsManager manager = new MetricsManager();
-        ProjectMetrics mproject = manager.readXML(path);
+        manager.setRetention(Activator.getSnapshotRetentionCount(), Activator.getSnapshotRetentionDays());
+        ProjectMetrics mproject = null;
+        
+        String topdir = getTopDir(HandlerUtil.getActiveMenuSelection(event));
+        if (topdir != null) {
+            SnapshotDialog dialog = new SnapshotDialog(window.getShell(), manager, topdir);
+            if (dialog.open() != Window.OK) {
+                return null;
+            }
+            
+            SnapshotCatalog.Entry entry = dialog.getSelectedEntry();
+            if (entry != null) {
+                path = entry.getFile().getPath();
+                if (entry.isHistory()) {
+                    mproject = manager.readHistory(topdir, entry.getTime());
+                } else {
+                    mproject = manager.readXML(path);
+                }
+            } else {
+                path = dialog.getBrowsedPath();
+                mproject = manager.readXML(path);
+            }
+            
+        } else {
+            path = open();
+            if (path == null) {
+                return null;
+            }
+            mproject = manager.readXML(path);
+        }
         
         if (mproject == null) {
             System.out.println("Cannot read: " + path);
@@ -73,6 +108,28 @@ public class OpenAction extends AbstractHandler {
         return null;
     }
     
+    /**
+     * Obtains the top directory of a project selected in the workbench.
+     * @param selection the current selection
+     * @return the path of the top directory, or <code>null</code> if no project is selected
+     */
+    private String getTopDir(ISelection selection) {
+        if (selection instanceof IStructuredSelection) {
+            Object elem = ((IStructuredSelection)selection).getFirstElement();
+            if (elem instanceof IJavaProject) {
+                elem = ((IJavaProject)elem).getProject();
+            }
+            if (elem instanceof IProject && ((IProject)elem).getLocation() != null) {
+                return ((IProject)elem).getLocation().toOSString();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Opens a file dialog to choose a file storing metric values.
+     * @return the path of the chosen file, or <code>null</code> if the dialog is canceled
+     */
     public String open() {
         FileDialog dialog = new FileDialog(window.getShell(), SWT.NULL);
         String path = dialog.open();
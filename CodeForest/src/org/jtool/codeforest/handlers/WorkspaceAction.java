@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.handlers;
+
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.ui.handlers.HandlerUtil;
+
+/**
+ * Performs an action for all the Java projects in the workspace.
+ * @author Katsuhisa Maruyama
+ */
+public class WorkspaceAction extends NewAction {
+    
+    /**
+     * Creates a new, empty object.
+     */
+    public WorkspaceAction() {
+    }
+    
+    /**
+     * Executes a command with information obtained from the application context.
+     * @param event an event containing all the information about the current state of the application
+     * @return the result of the execution.
+     * @throws ExecutionException if an exception occurred during execution
+     */
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        part = HandlerUtil.getActivePart(event);
+        window = HandlerUtil.getActiveWorkbenchWindowChecked(event);
+        
+        create(getJavaProjects());
+        return null;
+    }
+}
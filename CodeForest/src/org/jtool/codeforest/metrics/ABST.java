@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.PackageDependencies;
+import org.jtool.codeforest.metrics.java.PackageMetrics;
+
+/**
+ * Measures the abstractness of this package, which is the ratio of abstract classes and interfaces to all the classes.
+ * The value of a package together with its subpackages ignores the dependencies among them.
+ * @author Katsuhisa Maruyama
+ */
+public class ABST extends Metric {
+    
+    public static final String Name = "ABST";
+    
+    private static final String Description = "Abstractness (abstract classes / classes)";
+    
+    /**
+     * Creates an object returning a metric measurement.
+     */
+    public ABST() {
+        super(Name, Description);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given package.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        PackageDependencies deps = mpackage.getProjectMetrics().getPackageDependencies();
+        return deps.getAbstractness(mpackage.getName(), false);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given package together with its subpackages.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValueWithSubpackages(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        PackageDependencies deps = mpackage.getProjectMetrics().getPackageDependencies();
+        return deps.getAbstractness(mpackage.getName(), true);
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given package.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        PackageDependencies deps = mpackage.getProjectMetrics().getPackageDependencies();
+        return deps.getTotalAbstractness();
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given package.
+     * @param mpackage the package to be examined
+     * @return always <code>1</code>, which is the upper bound of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        return 1;
+    }
+    
+    /**
+     * Test if this metric is related to a package.
+     * @return always <code>true</code>
+     */
+    public boolean isPackageMetric() {
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+
+/**
+ * Measures the mean similarity between the sets of members accessed by the pairs of methods of a class, which is estimated with MinHash sketches.
+ * @author Katsuhisa Maruyama
+ */
+public class ACOH extends Metric {
+    
+    public static final String Name = "ACOH";
+    
+    private static final String Description = "Approximate cohesion among methods";
+    
+    /**
+     * Creates an object returning a metric measurement.
+     */
+    public ACOH() {
+        super(Name, Description);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        return mclass.getMetricValueWithException(MetricSort.APPROXIMATE_COHESION);
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.TOTAL_APPROXIMATE_COHESION);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.MAX_APPROXIMATE_COHESION);
+    }
+    
+    /**
+     * Test if this metric is related to a class.
+     * @return always <code>true</code>
+     */
+    public boolean isClassMetric() {
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+
+/**
+ * Measures the days since the last change of the file of this class, which is collected from the git log.
+ * @author Katsuhisa Maruyama
+ */
+public class DSLC extends Metric {
+    
+    public static final String Name = "DSLC";
+    
+    private static final String Description = "Days since the last change of the file of this class";
+    
+    /**
+     * Creates an object returning a metric measurement.
+     */
+    public DSLC() {
+        super(Name, Description);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        return mclass.getMetricValueWithException(MetricSort.DAYS_SINCE_LAST_CHANGE);
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.TOTAL_DAYS_SINCE_LAST_CHANGE);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.MAX_DAYS_SINCE_LAST_CHANGE);
+    }
+    
+    /**
+     * Test if this metric is related to a class.
+     * @return always <code>true</code>
+     */
+    public boolean isClassMetric() {
+        return true;
+    }
+}
@@ -76,6 +76,14 @@ public interface IMetric {
      */
     public double getMaximumValue(PackageMetrics mpackage) throws UnsupportedMetricsException;
     
+    /**
+     * Returns the metric value with respect to a given package together with its subpackages.
+     * @param mpackage the package to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValueWithSubpackages(PackageMetrics mpackage) throws UnsupportedMetricsException;
+    
     /**
      * Test if this metric is related to a package.
      * @return <code>true</code> if this metric is related to a package, otherwise <code>false</code>
@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics;
+
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.MethodMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+
+/**
+ * Measures the line coverage in percent of this class or method, which is ingested from an external report.
+ * @author Katsuhisa Maruyama
+ */
+public class LCOV extends Metric {
+    
+    public static final String Name = "LCOV";
+    
+    private static final String Description = "Line coverage in percent";
+    
+    /**
+     * Creates an object returning a metric measurement.
+     */
+    public LCOV() {
+        super(Name, Description);
+    }
+    
+    /**
+     * Returns the metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        return mclass.getMetricValueWithException(MetricSort.LINE_COVERAGE);
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.TOTAL_LINE_COVERAGE);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given class.
+     * @param mclass the class to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(ClassMetrics mclass) throws UnsupportedMetricsException {
+        ProjectMetrics mproject = mclass.getPackageMetrics().getProjectMetrics();
+        return mproject.getMetricValueWithException(MetricSort.MAX_LINE_COVERAGE);
+    }
+    
+    /**
+     * Test if this metric is related to a class.
+     * @return always <code>true</code>
+     */
+    public boolean isClassMetric() {
+        return true;
+    }
+    
+    /**
+     * Returns the metric value with respect to a given method.
+     * @param mmethod the method to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValue(MethodMetrics mmethod) throws UnsupportedMetricsException {
+        return mmethod.getMetricValueWithException(MetricSort.LINE_COVERAGE);
+    }
+    
+    /**
+     * Returns the total metric value with respect to a given method.
+     * @param mmethod the method to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getTotalValue(MethodMetrics mmethod) throws UnsupportedMetricsException {
+        ClassMetrics mclass = mmethod.getClassMetrics();
+        return mclass.getMetricValueWithException(MetricSort.TOTAL_LINE_COVERAGE);
+    }
+    
+    /**
+     * Returns the maximum metric value with respect to a given method.
+     * @param mmethod the method to be examined
+     * @return the value of this metric
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getMaximumValue(MethodMetrics mmethod) throws UnsupportedMetricsException {
+        ClassMetrics mclass = mmethod.getClassMetrics();
+        return mclass.getMetricValueWithException(MetricSort.MAX_LINE_COVERAGE);
+    }
+    
+    /**
+     * Test if this metric is related to a method.
+     * @return always <code>true</code>
+     */
+    public boolean isMethodMetric() {
+        return true;
+    }
+}
@@ -126,6 +126,16 @@ public class Metric implements IMetric {
         throw new UnsupportedMetricsException(this.getDescription() + " for a package " + mpackage.getName());
     }
     
+    /**
+     * Returns the metric value with respect to a given package together with its subpackages.
+     * @param mpackage the package to be examined
+     * @return the value of the package itself unless this metric rolls up its subpackages
+     * @throws UnsupportedMetricsException if this metric is not supported, that is the value is invalid
+     */
+    public double getValueWithSubpackages(PackageMetrics mpackage) throws UnsupportedMetricsException {
+        return getValue(mpackage);
+    }
+    
     /**
      * Test if this metric is related to a package.
      * @return always <code>false</code>
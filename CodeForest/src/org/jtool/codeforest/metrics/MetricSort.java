@@ -40,6 +40,29 @@ public interface MetricSort {
     public static final String NUMBER_OF_AFFERENT_FIELDS = "NOAFD";
     public static final String NUMBER_OF_EFFERENT_FIELDS = "NOEFD";
     
+    public static final String INSTABILITY = "INST";
+    public static final String ABSTRACTNESS = "ABST";
+    public static final String DISTANCE_FROM_MAIN_SEQUENCE = "DMS";
+    
+    public static final String NUMBER_OF_COMMITS = "NOCM";
+    public static final String LINES_ADDED = "LADD";
+    public static final String LINES_REMOVED = "LDEL";
+    public static final String NUMBER_OF_AUTHORS = "NOAU";
+    public static final String DAYS_SINCE_LAST_CHANGE = "DSLC";
+    
+    public static final String LINE_COVERAGE = "LCOV";
+    public static final String BRANCH_COVERAGE = "BCOV";
+    public static final String NUMBER_OF_PMD_VIOLATIONS = "NOPV";
+    public static final String NUMBER_OF_CHECKSTYLE_VIOLATIONS = "NOCV";
+    
+    public static final String NUMBER_OF_REACHABLE_METHODS = "NORMD";
+    public static final String CALL_DEPTH = "CDEP";
+    public static final String CALL_RANK = "CRNK";
+    
+    public static final String NUMBER_OF_DESCENDANTS = "NOD";
+    
+    public static final String APPROXIMATE_COHESION = "ACOH";
+    
     public static final String TOTAL_LINE_OF_CODE = "TOTAL_LOC";
     public static final String TOTAL_NUMBER_OF_STATEMENTS = "TOTAL_NOST";
     
@@ -71,6 +94,25 @@ public interface MetricSort {
     public static final String TOTAL_NUMBER_OF_AFFERENT_FIELDS = "TOTAL_NOAFD";
     public static final String TOTAL_NUMBER_OF_EFFERENT_FIELDS = "TOTAL_NOEFD";
     
+    public static final String TOTAL_NUMBER_OF_COMMITS = "TOTAL_NOCM";
+    public static final String TOTAL_LINES_ADDED = "TOTAL_LADD";
+    public static final String TOTAL_LINES_REMOVED = "TOTAL_LDEL";
+    public static final String TOTAL_NUMBER_OF_AUTHORS = "TOTAL_NOAU";
+    public static final String TOTAL_DAYS_SINCE_LAST_CHANGE = "TOTAL_DSLC";
+    
+    public static final String TOTAL_LINE_COVERAGE = "TOTAL_LCOV";
+    public static final String TOTAL_BRANCH_COVERAGE = "TOTAL_BCOV";
+    public static final String TOTAL_NUMBER_OF_PMD_VIOLATIONS = "TOTAL_NOPV";
+    public static final String TOTAL_NUMBER_OF_CHECKSTYLE_VIOLATIONS = "TOTAL_NOCV";
+    
+    public static final String TOTAL_NUMBER_OF_REACHABLE_METHODS = "TOTAL_NORMD";
+    public static final String TOTAL_CALL_DEPTH = "TOTAL_CDEP";
+    public static final String TOTAL_CALL_RANK = "TOTAL_CRNK";
+    
+    public static final String TOTAL_NUMBER_OF_DESCENDANTS = "TOTAL_NOD";
+    
+    public static final String TOTAL_APPROXIMATE_COHESION = "TOTAL_ACOH";
+    
     public static final String MAX_LINE_OF_CODE = "MAX_LOC";
     public static final String MAX_NUMBER_OF_STATEMENTS = "MAX_NOST";
     
@@ -102,10 +144,135 @@ public interface MetricSort {
     public static final String MAX_NUMBER_OF_AFFERENT_FIELDS = "MAX_NOAFD";
     public static final String MAX_NUMBER_OF_EFFERENT_FIELDS = "MAX_NOEFD";
     
+    public static final String MAX_NUMBER_OF_COMMITS = "MAX_NOCM";
+    public static final String MAX_LINES_ADDED = "MAX_LADD";
+    public static final String MAX_LINES_REMOVED = "MAX_LDEL";
+    public static final String MAX_NUMBER_OF_AUTHORS = "MAX_NOAU";
+    public static final String MAX_DAYS_SINCE_LAST_CHANGE = "MAX_DSLC";
+    
+    public static final String MAX_LINE_COVERAGE = "MAX_LCOV";
+    public static final String MAX_BRANCH_COVERAGE = "MAX_BCOV";
+    public static final String MAX_NUMBER_OF_PMD_VIOLATIONS = "MAX_NOPV";
+    public static final String MAX_NUMBER_OF_CHECKSTYLE_VIOLATIONS = "MAX_NOCV";
+    
+    public static final String MAX_NUMBER_OF_REACHABLE_METHODS = "MAX_NORMD";
+    public static final String MAX_CALL_DEPTH = "MAX_CDEP";
+    public static final String MAX_CALL_RANK = "MAX_CRNK";
+    
+    public static final String MAX_NUMBER_OF_DESCENDANTS = "MAX_NOD";
+    
+    public static final String MAX_APPROXIMATE_COHESION = "MAX_ACOH";
+    
+    public static final String[] PACKAGE_METRICS = {
+        LINES_OF_CODE, NUMBER_OF_STATEMENTS, NUMBER_OF_CLASSES, NUMBER_OF_METHODS, NUMBER_OF_FIELDS, NUMBER_OF_METHODS_AND_FIELDS,
+        NUMBER_OF_AFFERENT_PACKAGES, NUMBER_OF_EFFERENT_PACKAGES
+    };
+    
+    public static final String[] CLASS_METRICS = {
+        LINES_OF_CODE, NUMBER_OF_STATEMENTS, NUMBER_OF_METHODS, NUMBER_OF_FIELDS, NUMBER_OF_METHODS_AND_FIELDS,
+        COUPLING_BETWEEN_OBJECTS, DEPTH_OF_INHERITANCE_TREE, NUMBER_OF_CHILDREN, RESPONSE_FOR_CLASS, WEIGHTED_METHODS_PER_CLASS,
+        LACK_OF_COHESION_OF_METHODS, NUMBER_OF_PUBLIC_METHODS, NUMBER_OF_AFFERENT_CLASSES, NUMBER_OF_EFFERENT_CLASSES,
+        TOTAL_LINE_OF_CODE, TOTAL_NUMBER_OF_STATEMENTS, TOTAL_NUMBER_OF_PARAMETERS, TOTAL_CYCLOMATIC_COMPLEXITY,
+        TOTAL_MAX_NUMBER_OF_NESTING, TOTAL_NUMBER_OF_AFFERENT_METHODS, TOTAL_NUMBER_OF_EFFERENT_METHODS,
+        MAX_LINE_OF_CODE, MAX_NUMBER_OF_STATEMENTS, MAX_NUMBER_OF_PARAMETERS, MAX_CYCLOMATIC_COMPLEXITY,
+        MAX_MAX_NUMBER_OF_NESTING, MAX_NUMBER_OF_AFFERENT_METHODS, MAX_NUMBER_OF_EFFERENT_METHODS,
+        NUMBER_OF_COMMITS, LINES_ADDED, LINES_REMOVED, NUMBER_OF_AUTHORS, DAYS_SINCE_LAST_CHANGE,
+        LINE_COVERAGE, BRANCH_COVERAGE, NUMBER_OF_PMD_VIOLATIONS, NUMBER_OF_CHECKSTYLE_VIOLATIONS,
+        NUMBER_OF_REACHABLE_METHODS, CALL_DEPTH, CALL_RANK, NUMBER_OF_DESCENDANTS, APPROXIMATE_COHESION
+    };
+    
+    public static final String[] CHURN_METRICS = {
+        NUMBER_OF_COMMITS, LINES_ADDED, LINES_REMOVED, NUMBER_OF_AUTHORS, DAYS_SINCE_LAST_CHANGE
+    };
+    
+    public static final String[] TOTAL_CHURN_METRICS = {
+        TOTAL_NUMBER_OF_COMMITS, TOTAL_LINES_ADDED, TOTAL_LINES_REMOVED, TOTAL_NUMBER_OF_AUTHORS, TOTAL_DAYS_SINCE_LAST_CHANGE
+    };
+    
+    public static final String[] MAX_CHURN_METRICS = {
+        MAX_NUMBER_OF_COMMITS, MAX_LINES_ADDED, MAX_LINES_REMOVED, MAX_NUMBER_OF_AUTHORS, MAX_DAYS_SINCE_LAST_CHANGE
+    };
+    
+    public static final String[] REPORT_METRICS = {
+        LINE_COVERAGE, BRANCH_COVERAGE, NUMBER_OF_PMD_VIOLATIONS, NUMBER_OF_CHECKSTYLE_VIOLATIONS
+    };
+    
+    public static final String[] TOTAL_REPORT_METRICS = {
+        TOTAL_LINE_COVERAGE, TOTAL_BRANCH_COVERAGE, TOTAL_NUMBER_OF_PMD_VIOLATIONS, TOTAL_NUMBER_OF_CHECKSTYLE_VIOLATIONS
+    };
+    
+    public static final String[] MAX_REPORT_METRICS = {
+        MAX_LINE_COVERAGE, MAX_BRANCH_COVERAGE, MAX_NUMBER_OF_PMD_VIOLATIONS, MAX_NUMBER_OF_CHECKSTYLE_VIOLATIONS
+    };
+    
+    public static final String[] METHOD_REPORT_METRICS = {
+        LINE_COVERAGE, BRANCH_COVERAGE, NUMBER_OF_PMD_VIOLATIONS
+    };
+    
+    public static final String[] TOTAL_METHOD_REPORT_METRICS = {
+        TOTAL_LINE_COVERAGE, TOTAL_BRANCH_COVERAGE, TOTAL_NUMBER_OF_PMD_VIOLATIONS
+    };
+    
+    public static final String[] MAX_METHOD_REPORT_METRICS = {
+        MAX_LINE_COVERAGE, MAX_BRANCH_COVERAGE, MAX_NUMBER_OF_PMD_VIOLATIONS
+    };
+    
+    public static final String[] CALL_GRAPH_METRICS = {
+        NUMBER_OF_REACHABLE_METHODS, CALL_DEPTH, CALL_RANK
+    };
+    
+    public static final String[] TOTAL_CALL_GRAPH_METRICS = {
+        TOTAL_NUMBER_OF_REACHABLE_METHODS, TOTAL_CALL_DEPTH, TOTAL_CALL_RANK
+    };
+    
+    public static final String[] MAX_CALL_GRAPH_METRICS = {
+        MAX_NUMBER_OF_REACHABLE_METHODS, MAX_CALL_DEPTH, MAX_CALL_RANK
+    };
+    
+    public static final String[] HIERARCHY_METRICS = {
+        NUMBER_OF_DESCENDANTS
+    };
+    
+    public static final String[] TOTAL_HIERARCHY_METRICS = {
+        TOTAL_NUMBER_OF_DESCENDANTS
+    };
+    
+    public static final String[] MAX_HIERARCHY_METRICS = {
+        MAX_NUMBER_OF_DESCENDANTS
+    };
+    
+    public static final String[] SKETCH_METRICS = {
+        APPROXIMATE_COHESION
+    };
+    
+    public static final String[] TOTAL_SKETCH_METRICS = {
+        TOTAL_APPROXIMATE_COHESION
+    };
+    
+    public static final String[] MAX_SKETCH_METRICS = {
+        MAX_APPROXIMATE_COHESION
+    };
+    
+    public static final String[] METHOD_METRICS = {
+        LINES_OF_CODE, NUMBER_OF_STATEMENTS, NUMBER_OF_PARAMETERS, CYCLOMATIC_COMPLEXITY, MAX_NUMBER_OF_NESTING,
+        NUMBER_OF_AFFERENT_METHODS, NUMBER_OF_EFFERENT_METHODS, NUMBER_OF_AFFERENT_FIELDS, NUMBER_OF_EFFERENT_FIELDS,
+        LINE_COVERAGE, BRANCH_COVERAGE, NUMBER_OF_PMD_VIOLATIONS,
+        NUMBER_OF_REACHABLE_METHODS, CALL_DEPTH, CALL_RANK
+    };
+    
+    public static final String[] FIELD_METRICS = {
+        LINES_OF_CODE, NUMBER_OF_STATEMENTS,
+        NUMBER_OF_AFFERENT_METHODS, NUMBER_OF_EFFERENT_METHODS, NUMBER_OF_AFFERENT_FIELDS, NUMBER_OF_EFFERENT_FIELDS
+    };
+    
     public static final IMetric[] ALL_SELECTABLE = {
         new LOC(), new NOST(), new NOMD(), new NOFD(), new NOMF(), new NOPM(), new NOACL(), new NOECL(),
-        new CBO(), new DIT(), new NOC(), new RFC(), new WMC(), new LCOM(),
-        new NOPT(), new CC(), new MNON()
+        new CBO(), new DIT(), new NOC(), new NOD(), new RFC(), new WMC(), new LCOM(), new ACOH(),
+        new NOPT(), new CC(), new MNON(),
+        new NOCM(), new LADD(), new LDEL(), new NOAU(), new DSLC(),
+        new LCOV(), new BCOV(), new NOPV(), new NOCV(),
+        new NORMD(), new CDEP(), new CRNK(),
+        new INST(), new ABST(), new DMS()
     };
     
     public static final IMetric DEFAULT_METRIC = new Default();
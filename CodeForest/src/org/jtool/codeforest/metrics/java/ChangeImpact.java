@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.eclipse.model.java.JavaMethod;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Finds the classes that could be affected by changing classes, which propagates changes over the reverse dependency graph among classes.
+ * A class is affected by a changed class if it is an afferent class of the changed class or calls a method of the changed class.
+ * The graph is stored in compressed rows once, and each analysis is a breadth-first search whose frontier and visited classes are bit sets.
+ * @author Katsuhisa Maruyama
+ */
+public class ChangeImpact {
+    
+    /**
+     * The depth limit that means no limit.
+     */
+    public static final int UNLIMITED = -1;
+    
+    /**
+     * The fully-qualified names of the classes.
+     */
+    private String[] names;
+    
+    /**
+     * The indices of the classes, keyed by their fully-qualified names.
+     */
+    private Map<String, Integer> indices = new HashMap<String, Integer>();
+    
+    /**
+     * The offsets of the dependents of each class in the array of dependents.
+     */
+    private int[] offsets;
+    
+    /**
+     * The indices of the classes depending on each class.
+     */
+    private int[] dependents;
+    
+    /**
+     * Creates the reverse dependency graph among classes.
+     * Calls are followed only for classes whose methods have been loaded, so that creating the graph never loads methods on demand.
+     * @param classes the class metrics of a project
+     */
+    public ChangeImpact(List<ClassMetrics> classes) {
+        int size = classes.size();
+        names = new String[size];
+        Map<String, Integer> owners = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            names[i] = classes.get(i).getQualifiedName();
+            indices.put(names[i], new Integer(i));
+            if (classes.get(i).isMembersLoaded()) {
+                for (MethodMetrics mm : classes.get(i).getMethodMetrics()) {
+                    owners.put(mm.getQualifiedName(), new Integer(i));
+                }
+            }
+        }
+        
+        int[][] rows = new int[size][];
+        int[] stamp = new int[size];
+        int[] buffer = new int[size];
+        int edges = 0;
+        for (int i = 0; i < size; i++) {
+            ClassMetrics cm = classes.get(i);
+            int count = 0;
+            stamp[i] = i + 1;
+            for (String name : cm.getAfferentClassNames()) {
+                count = addDependent(indices.get(name), i, stamp, buffer, count);
+            }
+            if (cm.isMembersLoaded()) {
+                for (MethodMetrics mm : cm.getMethodMetrics()) {
+                    JavaMethod jm = mm.getJavaMethod();
+                    if (jm == null) {
+                        continue;
+                    }
+                    for (JavaMethod caller : jm.getCallingJavaMethods()) {
+                        count = addDependent(owners.get(caller.getQualifiedName()), i, stamp, buffer, count);
+                    }
+                }
+            }
+            rows[i] = new int[count];
+            System.arraycopy(buffer, 0, rows[i], 0, count);
+            edges = edges + count;
+        }
+        
+        offsets = new int[size + 1];
+        dependents = new int[edges];
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + rows[i].length;
+            System.arraycopy(rows[i], 0, dependents, offsets[i], rows[i].length);
+        }
+    }
+    
+    /**
+     * Adds a dependent class of a class unless it has already been added.
+     * @param j the index of the dependent class, or <code>null</code> if it is not in the graph
+     * @param i the index of the class
+     * @param stamp the stamps that mark the dependents added for the class
+     * @param buffer the buffer that stores the dependents
+     * @param count the number of the dependents in the buffer
+     * @return the number of the dependents in the buffer after the addition
+     */
+    private int addDependent(Integer j, int i, int[] stamp, int[] buffer, int count) {
+        if (j == null || stamp[j.intValue()] == i + 1) {
+            return count;
+        }
+        stamp[j.intValue()] = i + 1;
+        buffer[count] = j.intValue();
+        return count + 1;
+    }
+    
+    /**
+     * Returns the number of the classes in the graph.
+     * @return the number of the classes
+     */
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * Returns the number of the dependencies in the graph.
+     * @return the number of the dependencies
+     */
+    public int getDependencyCount() {
+        return dependents.length;
+    }
+    
+    /**
+     * Finds the classes that could be affected by changing classes.
+     * @param changed the fully-qualified names of the changed classes
+     * @param maxDepth the maximum distance from the changed classes, or <code>UNLIMITED</code>
+     * @return the distances of the affected classes including the changed ones, keyed by their fully-qualified names in order of the distances
+     */
+    public Map<String, Integer> analyze(Collection<String> changed, int maxDepth) {
+        Map<String, Integer> impact = new LinkedHashMap<String, Integer>();
+        int words = (names.length + 63) / 64;
+        long[] visited = new long[words];
+        long[] frontier = new long[words];
+        long[] next = new long[words];
+        
+        boolean found = false;
+        for (String name : changed) {
+            Integer i = indices.get(name);
+            if (i != null && !get(visited, i.intValue())) {
+                set(visited, i.intValue());
+                set(frontier, i.intValue());
+                impact.put(name, new Integer(0));
+                found = true;
+            }
+        }
+        
+        int depth = 0;
+        while (found && (maxDepth == UNLIMITED || depth < maxDepth)) {
+            depth++;
+            found = false;
+            for (int w = 0; w < words; w++) {
+                long bits = frontier[w];
+                while (bits != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits = bits & (bits - 1);
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int u = dependents[k];
+                        if (!get(visited, u)) {
+                            set(visited, u);
+                            set(next, u);
+                            found = true;
+                        }
+                    }
+                }
+            }
+            
+            for (int w = 0; w < words; w++) {
+                long bits = next[w];
+                while (bits != 0) {
+                    int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits = bits & (bits - 1);
+                    impact.put(names[u], new Integer(depth));
+                }
+            }
+            long[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+            Arrays.fill(next, 0L);
+        }
+        return impact;
+    }
+    
+    /**
+     * Sets a bit.
+     * @param bits the bit set
+     * @param index the index of the bit
+     */
+    private static void set(long[] bits, int index) {
+        bits[index >> 6] = bits[index >> 6] | (1L << (index & 63));
+    }
+    
+    /**
+     * Tests a bit.
+     * @param bits the bit set
+     * @param index the index of the bit
+     * @return <code>true</code> if the bit is set, otherwise <code>false</code>
+     */
+    private static boolean get(long[] bits, int index) {
+        return (bits[index >> 6] & (1L << (index & 63))) != 0;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.util.GitCommand;
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * Stores churn of Java files within a project, which is collected by streaming the output of <code>git log --numstat</code>.
+ * The churn is saved with the hash of the last processed commit, so that a later scan reads only newer commits.
+ * Churn of a file is mapped to the classes declared in the file through its path.
+ * @author Katsuhisa Maruyama
+ */
+public class ChurnHistory {
+    
+    /**
+     * The name of the file storing the churn under the project.
+     */
+    private static final String CHURN_FILENAME = "codeforest-churn.txt";
+    
+    /**
+     * The prefix of a header line of a commit in the log.
+     */
+    private static final String COMMIT_MARK = "@";
+    
+    /**
+     * The number of milliseconds in a day.
+     */
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    
+    /**
+     * The churn histories that have been scanned, keyed by the top directories of the projects.
+     */
+    private static Map<String, ChurnHistory> histories = new HashMap<String, ChurnHistory>();
+    
+    /**
+     * The path of the top directory of the project.
+     */
+    private String topdir;
+    
+    /**
+     * The hash of the last processed commit, or <code>null</code> if no commit has been processed.
+     */
+    private String head = null;
+    
+    /**
+     * The churn of the files, keyed by the file names and then by their paths relative to the project.
+     */
+    private Map<String, Map<String, FileChurn>> files = new HashMap<String, Map<String, FileChurn>>();
+    
+    /**
+     * The shared names of the authors, which avoids storing the same name for every file.
+     */
+    private Map<String, String> authors = new HashMap<String, String>();
+    
+    /**
+     * Creates an empty churn history of a project.
+     * @param topdir the path of the top directory of the project
+     */
+    private ChurnHistory(String topdir) {
+        this.topdir = topdir;
+    }
+    
+    /**
+     * Updates the churn history of a project with commits made after the last scan, and saves it.
+     * @param topdir the path of the top directory of the project
+     * @return the updated churn history, or <code>null</code> if the project is not stored in a git repository
+     */
+    public static ChurnHistory update(String topdir) {
+        ChurnHistory history;
+        synchronized (histories) {
+            history = histories.get(topdir);
+            if (history == null) {
+                history = new ChurnHistory(topdir);
+                history.load();
+            }
+        }
+        
+        synchronized (history) {
+            try {
+                if (history.scan()) {
+                    history.save();
+                }
+            } catch (IOException e) {
+                System.out.println("- No git history available in " + topdir + ": " + e.getMessage());
+                return null;
+            }
+        }
+        
+        synchronized (histories) {
+            histories.put(topdir, history);
+        }
+        return history;
+    }
+    
+    /**
+     * Finds the churn history of a project that has been updated.
+     * @param topdir the path of the top directory of the project
+     * @return the churn history, or <code>null</code> if it has not been updated
+     */
+    public static ChurnHistory find(String topdir) {
+        synchronized (histories) {
+            return histories.get(topdir);
+        }
+    }
+    
+    /**
+     * Returns the hash of the last processed commit.
+     * @return the hash, or <code>null</code> if no commit has been processed
+     */
+    public String getHead() {
+        return head;
+    }
+    
+    /**
+     * Reads commits that have not been processed from the git log.
+     * The whole log is read again if the last processed commit is no longer an ancestor of the current one.
+     * @return <code>true</code> if any commit is read, otherwise <code>false</code>
+     * @throws IOException if git fails
+     */
+    private boolean scan() throws IOException {
+        GitCommand git = new GitCommand(new File(topdir));
+        String current = git.run("rev-parse", "HEAD").get(0).trim();
+        if (current.equals(head)) {
+            return false;
+        }
+        
+        String range = current;
+        if (head != null) {
+            try {
+                git.run("merge-base", "--is-ancestor", head, current);
+                range = head + ".." + current;
+            } catch (IOException e) {
+                files.clear();
+                authors.clear();
+            }
+        }
+        
+        git.stream(new GitCommand.LineHandler() {
+            
+            /**
+             * The author of the commit being read.
+             */
+            private String author;
+            
+            /**
+             * The time of the commit being read.
+             */
+            private long time;
+            
+            /**
+             * Receives a line of the log, which is either a header of a commit or a numstat line of a file.
+             * @param line the line
+             */
+            public void line(String line) {
+                if (line.startsWith(COMMIT_MARK)) {
+                    String[] fields = line.substring(COMMIT_MARK.length()).split("\t");
+                    author = getAuthor(fields.length > 0 ? fields[0] : "");
+                    time = fields.length > 1 ? Long.parseLong(fields[1].trim()) * 1000 : 0;
+                    return;
+                }
+                
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3 && fields[2].endsWith(".java")) {
+                    FileChurn churn = getFileChurn(fields[2], true);
+                    churn.commits++;
+                    churn.added = churn.added + parseCount(fields[0]);
+                    churn.removed = churn.removed + parseCount(fields[1]);
+                    churn.authors.add(author);
+                    churn.last = Math.max(churn.last, time);
+                }
+            }
+        }, "log", "--numstat", "--no-renames", "--relative", "--format=" + COMMIT_MARK + "%ae%x09%ct", range, "--", ".");
+        
+        head = current;
+        return true;
+    }
+    
+    /**
+     * Stores churn metrics of a class declared in a file whose churn is recorded.
+     * @param mclass the class metrics, which must not be frozen
+     * @param time the time at which the days since the last change are measured
+     */
+    public synchronized void collect(ClassMetrics mclass, long time) {
+        FileChurn churn = findFileChurn(mclass.getPath());
+        if (churn == null) {
+            return;
+        }
+        
+        mclass.putMetricValue(MetricSort.NUMBER_OF_COMMITS, churn.commits);
+        mclass.putMetricValue(MetricSort.LINES_ADDED, churn.added);
+        mclass.putMetricValue(MetricSort.LINES_REMOVED, churn.removed);
+        mclass.putMetricValue(MetricSort.NUMBER_OF_AUTHORS, churn.authors.size());
+        mclass.putMetricValue(MetricSort.DAYS_SINCE_LAST_CHANGE, Math.max(0, (time - churn.last) / DAY));
+    }
+    
+    /**
+     * Finds the churn of a file whose path ends with the path relative to the project.
+     * @param path the path of the file
+     * @return the churn of the file, or <code>null</code> if none
+     */
+    private FileChurn findFileChurn(String path) {
+        if (path == null) {
+            return null;
+        }
+        
+        path = path.replace('\\', '/');
+        Map<String, FileChurn> candidates = files.get(path.substring(path.lastIndexOf('/') + 1));
+        if (candidates != null) {
+            for (String p : candidates.keySet()) {
+                if (path.equals(p) || path.endsWith("/" + p)) {
+                    return candidates.get(p);
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Obtains the churn of a file.
+     * @param path the path of the file relative to the project
+     * @param create <code>true</code> if the churn is created when it is not recorded
+     * @return the churn of the file, or <code>null</code> if it is not recorded and not created
+     */
+    private FileChurn getFileChurn(String path, boolean create) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Map<String, FileChurn> candidates = files.get(name);
+        if (candidates == null) {
+            if (!create) {
+                return null;
+            }
+            candidates = new HashMap<String, FileChurn>();
+            files.put(name, candidates);
+        }
+        
+        FileChurn churn = candidates.get(path);
+        if (churn == null && create) {
+            churn = new FileChurn();
+            candidates.put(path, churn);
+        }
+        return churn;
+    }
+    
+    /**
+     * Obtains the shared name of an author.
+     * @param name the name of the author
+     * @return the shared name
+     */
+    private String getAuthor(String name) {
+        String author = authors.get(name);
+        if (author == null) {
+            authors.put(name, name);
+            author = name;
+        }
+        return author;
+    }
+    
+    /**
+     * Parses the number of lines in a numstat line, which is a hyphen for a binary file.
+     * @param str the string representing the number
+     * @return the number of lines
+     */
+    private static long parseCount(String str) {
+        try {
+            return Long.parseLong(str.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Loads the churn saved under the project.
+     */
+    private void load() {
+        File file = new File(topdir, CHURN_FILENAME);
+        if (!file.isFile()) {
+            return;
+        }
+        
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line = reader.readLine();
+            if (line == null || line.trim().length() == 0) {
+                return;
+            }
+            String savedHead = line.trim();
+            
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    continue;
+                }
+                
+                FileChurn churn = getFileChurn(fields[0], true);
+                churn.commits = Integer.parseInt(fields[1]);
+                churn.added = Long.parseLong(fields[2]);
+                churn.removed = Long.parseLong(fields[3]);
+                churn.last = Long.parseLong(fields[4]);
+                for (int i = 5; i < fields.length; i++) {
+                    churn.authors.add(getAuthor(fields[i]));
+                }
+            }
+            head = savedHead;
+            
+        } catch (IOException e) {
+            e.printStackTrace();
+            files.clear();
+            authors.clear();
+        } catch (NumberFormatException e) {
+            System.err.println("Broken churn file: " + file.getAbsolutePath());
+            files.clear();
+            authors.clear();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Saves the churn under the project. The file is replaced only after it has been written completely.
+     */
+    private void save() {
+        File file = new File(topdir, CHURN_FILENAME);
+        File tmp = new File(topdir, CHURN_FILENAME + ".tmp");
+        try {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                writer.write(head);
+                writer.newLine();
+                for (Map<String, FileChurn> candidates : files.values()) {
+                    for (String path : candidates.keySet()) {
+                        FileChurn churn = candidates.get(path);
+                        writer.write(path + "\t" + churn.commits + "\t" + churn.added + "\t" + churn.removed + "\t" + churn.last);
+                        for (String author : churn.authors) {
+                            writer.write("\t" + author);
+                        }
+                        writer.newLine();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                System.err.println("Cannot write " + file.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Returns the number of files whose churn is recorded.
+     * @return the number of the files
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, FileChurn> candidates : files.values()) {
+            size = size + candidates.size();
+        }
+        return size;
+    }
+    
+    /**
+     * Collects information about this churn history.
+     * @return the string for printing
+     */
+    public String toString() {
+        return topdir + " at " + head + " (" + size() + " files)";
+    }
+    
+    /**
+     * Churn of a file.
+     */
+    private static class FileChurn {
+        
+        /**
+         * The number of commits changing the file.
+         */
+        int commits = 0;
+        
+        /**
+         * The number of lines added to the file.
+         */
+        long added = 0;
+        
+        /**
+         * The number of lines removed from the file.
+         */
+        long removed = 0;
+        
+        /**
+         * The time of the last commit changing the file.
+         */
+        long last = 0;
+        
+        /**
+         * The distinct authors of the commits changing the file.
+         */
+        Set<String> authors = new HashSet<String>();
+    }
+}
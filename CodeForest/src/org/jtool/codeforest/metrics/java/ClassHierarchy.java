@@ -0,0 +1,291 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaProject;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * An index of the inheritance hierarchy among the classes within a project, which is numbered by an Euler tour over the forest of superclass relations.
+ * Each class is given the interval of tour positions covering itself and its descendants,
+ * so that the depth and a subclass test are obtained in constant time and the descendants are enumerated in time proportional to their number.
+ * Only superclasses declared within the project are indexed, and super interfaces are not.
+ * @author Katsuhisa Maruyama
+ */
+public class ClassHierarchy {
+    
+    /**
+     * The fully-qualified names of the classes, indexed by the tour positions.
+     */
+    private String[] names;
+    
+    /**
+     * The tour positions of the classes, keyed by their fully-qualified names.
+     */
+    private Map<String, Integer> positions = new HashMap<String, Integer>();
+    
+    /**
+     * The tour position next to the last descendant of each class.
+     */
+    private int[] ends;
+    
+    /**
+     * The number of superclasses of each class within the project.
+     */
+    private int[] depths;
+    
+    /**
+     * The tour position of the root of the hierarchy containing each class.
+     */
+    private int[] roots;
+    
+    /**
+     * The number of direct subclasses of each class within the project.
+     */
+    private int[] children;
+    
+    /**
+     * Creates an index of the inheritance hierarchy among classes.
+     * @param classes the class metrics of a project
+     */
+    public ClassHierarchy(List<ClassMetrics> classes) {
+        int size = classes.size();
+        String[] fqns = new String[size];
+        String[] superFqns = new String[size];
+        for (int i = 0; i < size; i++) {
+            fqns[i] = classes.get(i).getQualifiedName();
+            superFqns[i] = classes.get(i).getSuperClassName();
+        }
+        build(fqns, superFqns);
+    }
+    
+    /**
+     * Creates an index of the inheritance hierarchy among all the classes of a project model.
+     * The index covers the classes whose metrics have not been calculated yet, so that it is built once for a whole calculation.
+     * @param jproject the project
+     */
+    public ClassHierarchy(JavaProject jproject) {
+        int size = jproject.getJavaClasses().size();
+        String[] fqns = new String[size];
+        String[] superFqns = new String[size];
+        int i = 0;
+        for (JavaClass jc : jproject.getJavaClasses()) {
+            fqns[i] = jc.getQualifiedName();
+            superFqns[i] = jc.getSuperClassName();
+            i++;
+        }
+        build(fqns, superFqns);
+    }
+    
+    /**
+     * Numbers the classes by an Euler tour over the forest of superclass relations.
+     * @param fqns the fully-qualified names of the classes
+     * @param superFqns the fully-qualified names of the superclasses of the classes
+     */
+    private void build(String[] fqns, String[] superFqns) {
+        int size = fqns.length;
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            ids.put(fqns[i], new Integer(i));
+        }
+        
+        int[] parents = new int[size];
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            Integer p = ids.get(superFqns[i]);
+            parents[i] = p != null && p.intValue() != i ? p.intValue() : -1;
+            if (parents[i] >= 0) {
+                offsets[parents[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i + 1] + offsets[i];
+        }
+        int[] subclasses = new int[offsets[size]];
+        int[] fill = offsets.clone();
+        for (int i = 0; i < size; i++) {
+            if (parents[i] >= 0) {
+                subclasses[fill[parents[i]]++] = i;
+            }
+        }
+        
+        names = new String[size];
+        ends = new int[size];
+        depths = new int[size];
+        roots = new int[size];
+        children = new int[size];
+        
+        int[] order = new int[size];
+        boolean[] visited = new boolean[size];
+        int[] stack = new int[size];
+        int[] cursor = new int[size];
+        int count = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int r = 0; r < size; r++) {
+                if (visited[r] || (pass == 0 && parents[r] >= 0)) {
+                    continue;
+                }
+                
+                int rootPos = count;
+                int sp = 0;
+                stack[sp++] = r;
+                visited[r] = true;
+                cursor[r] = offsets[r];
+                order[r] = count;
+                names[count] = fqns[r];
+                depths[count] = 0;
+                roots[count] = rootPos;
+                count++;
+                
+                while (sp > 0) {
+                    int v = stack[sp - 1];
+                    if (cursor[v] < offsets[v + 1]) {
+                        int w = subclasses[cursor[v]++];
+                        if (visited[w]) {
+                            continue;
+                        }
+                        visited[w] = true;
+                        cursor[w] = offsets[w];
+                        order[w] = count;
+                        names[count] = fqns[w];
+                        depths[count] = depths[order[v]] + 1;
+                        roots[count] = rootPos;
+                        children[order[v]]++;
+                        count++;
+                        stack[sp++] = w;
+                    } else {
+                        ends[order[v]] = count;
+                        sp--;
+                    }
+                }
+            }
+        }
+        
+        for (int i = 0; i < size; i++) {
+            positions.put(names[i], new Integer(i));
+        }
+    }
+    
+    /**
+     * Returns the number of the classes in this index.
+     * @return the number of the classes
+     */
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * Returns the tour position of a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the tour position, or <code>-1</code> if the class is not in this index
+     */
+    public int getPosition(String fqn) {
+        Integer pos = positions.get(fqn);
+        return pos != null ? pos.intValue() : -1;
+    }
+    
+    /**
+     * Returns the name of a class at a tour position.
+     * @param pos the tour position
+     * @return the fully-qualified name of the class
+     */
+    public String getName(int pos) {
+        return names[pos];
+    }
+    
+    /**
+     * Returns the depth of inheritance of a class within the project, which differs from DIT counting all the superclasses.
+     * @param fqn the fully-qualified name of the class
+     * @return the number of its superclasses within the project, or <code>-1</code> if the class is not in this index
+     */
+    public int getDepth(String fqn) {
+        int pos = getPosition(fqn);
+        return pos >= 0 ? depths[pos] : -1;
+    }
+    
+    /**
+     * Returns the number of direct subclasses of a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the number of the direct subclasses, or <code>-1</code> if the class is not in this index
+     */
+    public int getNumberOfChildren(String fqn) {
+        int pos = getPosition(fqn);
+        return pos >= 0 ? children[pos] : -1;
+    }
+    
+    /**
+     * Returns the number of direct and indirect subclasses of a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the number of the descendants, or <code>-1</code> if the class is not in this index
+     */
+    public int getNumberOfDescendants(String fqn) {
+        int pos = getPosition(fqn);
+        return pos >= 0 ? ends[pos] - pos - 1 : -1;
+    }
+    
+    /**
+     * Tests if a class is the same as or a direct or indirect subclass of another class.
+     * @param sub the fully-qualified name of the class
+     * @param sup the fully-qualified name of the other class
+     * @return <code>true</code> if the class is a subtype of the other, otherwise <code>false</code>
+     */
+    public boolean isSubclassOf(String sub, String sup) {
+        int i = getPosition(sub);
+        int j = getPosition(sup);
+        return i >= 0 && j >= 0 && j <= i && i < ends[j];
+    }
+    
+    /**
+     * Collects the direct and indirect subclasses of a class.
+     * @param fqn the fully-qualified name of the class
+     * @return the fully-qualified names of the descendants
+     */
+    public List<String> getDescendants(String fqn) {
+        List<String> descendants = new ArrayList<String>();
+        int pos = getPosition(fqn);
+        if (pos >= 0) {
+            for (int i = pos + 1; i < ends[pos]; i++) {
+                descendants.add(names[i]);
+            }
+        }
+        return descendants;
+    }
+    
+    /**
+     * Collects the classes in the whole hierarchy containing a class, from its root down to all the descendants of the root.
+     * @param fqn the fully-qualified name of the class
+     * @return the fully-qualified names of the classes in the hierarchy, which is empty if the class is not in this index
+     */
+    public List<String> getHierarchy(String fqn) {
+        List<String> hierarchy = new ArrayList<String>();
+        int pos = getPosition(fqn);
+        if (pos >= 0) {
+            int root = roots[pos];
+            for (int i = root; i < ends[root]; i++) {
+                hierarchy.add(names[i]);
+            }
+        }
+        return hierarchy;
+    }
+    
+    /**
+     * Stores the number of descendants of a class.
+     * The depth of inheritance is not stored since it counts the superclasses outside the project.
+     * @param mclass the class metrics, which must not be frozen
+     */
+    public void collect(ClassMetrics mclass) {
+        int pos = getPosition(mclass.getQualifiedName());
+        if (pos < 0) {
+            return;
+        }
+        
+        mclass.putMetricValue(MetricSort.NUMBER_OF_DESCENDANTS, ends[pos] - pos - 1);
+    }
+}
@@ -13,10 +13,13 @@ import org.jtool.eclipse.model.java.JavaMethod;
 import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaProject;
 import java.util.Set;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.HashMap;
 
 /**
  * An object storing metric information on a class, an interface, or an enum.
@@ -59,6 +62,26 @@ public class ClassMetrics extends CommonMetrics {
      */
     protected List<String> efferentClassNames = new ArrayList<String>();
     
+    /**
+     * The index entry used to load methods and fields on demand, or <code>null</code> if they have been loaded.
+     */
+    private ForestDataIndex.ClassEntry membersEntry = null;
+    
+    /**
+     * <code>true</code> if loading the methods and fields of this class has failed and the failure has been reported.
+     */
+    private boolean membersFailed = false;
+    
+    /**
+     * <code>true</code> if the methods and fields of this class have been frozen, otherwise <code>false</code>.
+     */
+    private boolean membersFrozen = false;
+    
+    /**
+     * The MinHash sketch of the members accessed by this class, or <code>null</code> if it has not been calculated.
+     */
+    private int[] memberSketch = null;
+    
     /**
      * Creates a new object representing a class, an interface, or an enum.
      * @param name the name of the class
@@ -115,6 +138,98 @@ public class ClassMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object sharing metric values with a frozen class, but belonging to another package.
+     * The methods and fields are shallowly copied so that they refer to this class and never keep the original class alive.
+     * If they have not been loaded yet, they are loaded on demand by this class as well.
+     * @param original the frozen class
+     * @param pm a metrics object for a package containing this class
+     */
+    ClassMetrics(ClassMetrics original, PackageMetrics pm) {
+        super(original);
+        
+        jclass = original.jclass;
+        packageMetrics = pm;
+        afferentClassNames = original.afferentClassNames;
+        efferentClassNames = original.efferentClassNames;
+        memberSketch = original.memberSketch;
+        
+        synchronized (original) {
+            if (original.membersEntry != null) {
+                membersEntry = original.membersEntry;
+            } else {
+                copyMembers(original);
+            }
+        }
+    }
+    
+    /**
+     * Creates a new object copying metric values of a frozen class of a previous revision, but representing the same class of a new revision.
+     * The copied values can be changed, so that metrics over the whole project are recalculated for the new revision.
+     * The methods and fields are linked to those of the new revision, and ones not found in the previous revision are calculated.
+     * @param original the frozen class of the previous revision, whose source code is unchanged
+     * @param jclass the class of the new revision
+     * @param pm a metrics object for a package containing this class
+     */
+    ClassMetrics(ClassMetrics original, JavaClass jclass, PackageMetrics pm) {
+        super();
+        
+        metrics.putAll(original.metrics);
+        this.jclass = jclass;
+        packageMetrics = pm;
+        afferentClassNames = new ArrayList<String>(original.afferentClassNames);
+        efferentClassNames = new ArrayList<String>(original.efferentClassNames);
+        memberSketch = original.memberSketch;
+        
+        Map<String, MethodMetrics> methods = new HashMap<String, MethodMetrics>();
+        for (MethodMetrics mm : original.getMethodMetrics()) {
+            methods.put(mm.getSignature(), mm);
+        }
+        for (JavaMethod jm : jclass.getJavaMethods()) {
+            if (jm instanceof CFJavaMethod) {
+                MethodMetrics mm = methods.get(jm.getSignature());
+                if (mm != null) {
+                    methodMetrics.add(new MethodMetrics(mm, (CFJavaMethod)jm, this));
+                } else {
+                    methodMetrics.add(new MethodMetrics((CFJavaMethod)jm, this));
+                }
+            }
+        }
+        
+        Map<String, FieldMetrics> fields = new HashMap<String, FieldMetrics>();
+        for (FieldMetrics fm : original.getFieldMetrics()) {
+            fields.put(fm.getName(), fm);
+        }
+        for (JavaField jf : jclass.getJavaFields()) {
+            if (jf instanceof CFJavaField) {
+                FieldMetrics fm = fields.get(jf.getName());
+                if (fm != null) {
+                    fieldMetrics.add(new FieldMetrics(fm, (CFJavaField)jf, this));
+                } else {
+                    fieldMetrics.add(new FieldMetrics((CFJavaField)jf, this));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copies the loaded methods and fields of a frozen class so that the copies refer to this class.
+     * @param original the frozen class
+     */
+    private void copyMembers(ClassMetrics original) {
+        for (MethodMetrics mm : original.methodMetrics) {
+            methodMetrics.add(new MethodMetrics(mm, this));
+        }
+        for (FieldMetrics fm : original.fieldMetrics) {
+            fieldMetrics.add(new FieldMetrics(fm, this));
+        }
+        if (original.membersFrozen) {
+            methodMetrics = freeze(methodMetrics);
+            fieldMetrics = freeze(fieldMetrics);
+            membersFrozen = true;
+        }
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this class.
      * @param start the character index indicating where the code fragment for this class begins
@@ -163,6 +278,7 @@ public class ClassMetrics extends CommonMetrics {
      * @param name the afferent class name
      */
     public void addAfferentClassName(String name) {
+        checkMutable();
         if (!afferentClassNames.contains(name)) {
             afferentClassNames.add(name);
         }
@@ -181,6 +297,7 @@ public class ClassMetrics extends CommonMetrics {
      * @param name the efferent class name
      */
     public void addEfferentClassName(String name) {
+        checkMutable();
         if (!efferentClassNames.contains(name)) {
             efferentClassNames.add(name);
         }
@@ -202,11 +319,60 @@ public class ClassMetrics extends CommonMetrics {
         return packageMetrics;
     }
     
+    /**
+     * Sets the index entry used to load methods and fields of this class on demand.
+     * @param entry the index entry for this class
+     */
+    void setMembersEntry(ForestDataIndex.ClassEntry entry) {
+        membersEntry = entry;
+    }
+    
+    /**
+     * Tests if methods and fields of this class have been loaded.
+     * @return <code>true</code> if the methods and fields have been loaded, otherwise <code>false</code>
+     */
+    public synchronized boolean isMembersLoaded() {
+        return membersEntry == null;
+    }
+    
+    /**
+     * Loads methods and fields of this class if they have not been loaded yet.
+     * The index entry is kept if the loading fails, so that the loading is retried on the next access.
+     */
+    private synchronized void loadMembers() {
+        if (membersEntry != null) {
+            ForestDataImporter handler;
+            try {
+                handler = membersEntry.loadMembers(this);
+            } catch (IOException e) {
+                if (!membersFailed) {
+                    membersFailed = true;
+                    System.err.println("! Failed to load the members of " + getQualifiedName() + ": " + e.getMessage());
+                }
+                return;
+            }
+            
+            for (MethodMetrics mm : handler.getLoadedMethods()) {
+                add(mm);
+            }
+            for (FieldMetrics fm : handler.getLoadedFields()) {
+                add(fm);
+            }
+            membersEntry = null;
+            membersFailed = false;
+            
+            if (isFrozen()) {
+                freezeMembers();
+            }
+        }
+    }
+    
     /**
      * Obtains the collection of method metrics for this class.
      * @return the collection of method metrics
      */
     public List<MethodMetrics> getMethodMetrics() {
+        loadMembers();
         return methodMetrics;
     }
     
@@ -214,7 +380,8 @@ public class ClassMetrics extends CommonMetrics {
      * Stores a method metrics object.
      * @param pm the method metrics
      */
-    public void add(MethodMetrics mm) {
+    public synchronized void add(MethodMetrics mm) {
+        checkMembersMutable();
         if (!methodMetrics.contains(mm)) {
             methodMetrics.add(mm);
         }
@@ -225,6 +392,7 @@ public class ClassMetrics extends CommonMetrics {
      * @return the collection of field metrics
      */
     public List<FieldMetrics> getFieldMetrics() {
+        loadMembers();
         return fieldMetrics;
     }
     
@@ -232,12 +400,30 @@ public class ClassMetrics extends CommonMetrics {
      * Stores a field metrics object.
      * @param pm the field metrics
      */
-    public void add(FieldMetrics fm) {
+    public synchronized void add(FieldMetrics fm) {
+        checkMembersMutable();
         if (!fieldMetrics.contains(fm)) {
             fieldMetrics.add(fm);
         }
     }
     
+    /**
+     * Sets the MinHash sketch of the members accessed by this class.
+     * @param sketch the sketch, or <code>null</code> if this class accesses no member
+     */
+    void setMemberSketch(int[] sketch) {
+        checkMutable();
+        memberSketch = sketch;
+    }
+    
+    /**
+     * Returns the MinHash sketch of the members accessed by this class.
+     * @return the sketch, or <code>null</code> if it has not been calculated or this class accesses no member
+     */
+    public int[] getMemberSketch() {
+        return memberSketch;
+    }
+    
     /**
      * Returns the object representing this class.
      * @return the class object
@@ -426,8 +612,13 @@ public class ClassMetrics extends CommonMetrics {
     
     /**
      * Collects information on this class, which is related to total metric values.
+     * The imported values are kept if methods of this class have not been loaded yet.
      */
     protected void collectMetricInfoForTotal() {
+        if (!isMembersLoaded()) {
+            return;
+        }
+        
         double totalLOC = 0;
         double totalNOST = 0;
         double totalNOPT = 0;
@@ -457,12 +648,24 @@ public class ClassMetrics extends CommonMetrics {
         putMetricValue(MetricSort.TOTAL_MAX_NUMBER_OF_NESTING, totalMNON);
         putMetricValue(MetricSort.TOTAL_NUMBER_OF_AFFERENT_METHODS, totalNOAMD);
         putMetricValue(MetricSort.TOTAL_NUMBER_OF_EFFERENT_METHODS, totalNOEMD);
+        
+        for (int i = 0; i < MetricSort.METHOD_REPORT_METRICS.length; i++) {
+            collectOptionalMetricInfo(getMethodMetrics(), MetricSort.METHOD_REPORT_METRICS[i], MetricSort.TOTAL_METHOD_REPORT_METRICS[i], false);
+        }
+        for (int i = 0; i < MetricSort.CALL_GRAPH_METRICS.length; i++) {
+            collectOptionalMetricInfo(getMethodMetrics(), MetricSort.CALL_GRAPH_METRICS[i], MetricSort.TOTAL_CALL_GRAPH_METRICS[i], false);
+        }
     }
     
     /**
      * Collects information on this class, which is related to maximum metric values.
+     * The imported values are kept if methods of this class have not been loaded yet.
      */
     protected void collectMetricInfoForMax() {
+        if (!isMembersLoaded()) {
+            return;
+        }
+        
         double maxLOC = 0;
         double maxNOST = 0;
         double maxNOPT = 0;
@@ -492,12 +695,65 @@ public class ClassMetrics extends CommonMetrics {
         putMetricValue(MetricSort.MAX_MAX_NUMBER_OF_NESTING, maxMNON);
         putMetricValue(MetricSort.MAX_NUMBER_OF_AFFERENT_METHODS, maxNOAMD);
         putMetricValue(MetricSort.MAX_NUMBER_OF_EFFERENT_METHODS, maxNOEMD);
+        
+        for (int i = 0; i < MetricSort.METHOD_REPORT_METRICS.length; i++) {
+            collectOptionalMetricInfo(getMethodMetrics(), MetricSort.METHOD_REPORT_METRICS[i], MetricSort.MAX_METHOD_REPORT_METRICS[i], true);
+        }
+        for (int i = 0; i < MetricSort.CALL_GRAPH_METRICS.length; i++) {
+            collectOptionalMetricInfo(getMethodMetrics(), MetricSort.CALL_GRAPH_METRICS[i], MetricSort.MAX_CALL_GRAPH_METRICS[i], true);
+        }
+    }
+    
+    /**
+     * Freezes this class. Its methods and fields are frozen as well if they have been loaded,
+     * otherwise they are frozen as soon as they are loaded on demand.
+     */
+    protected void freeze() {
+        if (isFrozen()) {
+            return;
+        }
+        
+        afferentClassNames = freeze(getSortedNames(afferentClassNames));
+        efferentClassNames = freeze(getSortedNames(efferentClassNames));
+        synchronized (this) {
+            if (membersEntry == null) {
+                freezeMembers();
+            }
+            super.freeze();
+        }
+    }
+    
+    /**
+     * Freezes the methods and fields of this class, which are sorted in dictionary order of their names.
+     */
+    private void freezeMembers() {
+        sortMethods();
+        sortFields();
+        methodMetrics = freeze(methodMetrics);
+        fieldMetrics = freeze(fieldMetrics);
+        for (MethodMetrics mm : methodMetrics) {
+            mm.freeze();
+        }
+        for (FieldMetrics fm : fieldMetrics) {
+            fm.freeze();
+        }
+        membersFrozen = true;
+    }
+    
+    /**
+     * Checks if methods and fields can be added to this class.
+     * @throws IllegalStateException if the methods and fields have been frozen
+     */
+    private void checkMembersMutable() {
+        if (membersFrozen) {
+            throw new IllegalStateException("Metrics cannot be changed after they are published: " + toString());
+        }
     }
     
     /**
      * Sorts the method metrics in dictionary order of their names.
      */
-    public void sortMethods() {
+    private void sortMethods() {
         Collections.sort(methodMetrics, new Comparator<MethodMetrics>() {
             
             public int compare(MethodMetrics m1, MethodMetrics m2) {
@@ -509,7 +765,7 @@ public class ClassMetrics extends CommonMetrics {
     /**
      * Sorts the field metrics in dictionary order of their names.
      */
-    public void sortFields() {
+    private void sortFields() {
         Collections.sort(fieldMetrics, new Comparator<FieldMetrics>() {
             
             public int compare(FieldMetrics m1, FieldMetrics m2) {
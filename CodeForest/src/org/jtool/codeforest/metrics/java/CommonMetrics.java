@@ -5,6 +5,7 @@
 package org.jtool.codeforest.metrics.java;
 
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -13,6 +14,7 @@ import java.util.Map;
 
 /**
  * An object storing information on metrics.
+ * Once frozen, the object and its children cannot be changed, so that they can be shared among threads without locks.
  * @author Katsuhisa Maruyama
  */
 public class CommonMetrics {
@@ -22,12 +24,26 @@ public class CommonMetrics {
      */
     protected Map<String, Double> metrics = new HashMap<String, Double>();
     
+    /**
+     * <code>true</code> if this object has been frozen, otherwise <code>false</code>.
+     */
+    private boolean frozen = false;
+    
     /**
      * Creates a new object storing metrics.
      */
     protected CommonMetrics() {
     }
     
+    /**
+     * Creates a new object sharing metric values with a frozen object.
+     * @param original the frozen object whose metric values are shared
+     */
+    protected CommonMetrics(CommonMetrics original) {
+        metrics = original.metrics;
+        frozen = original.frozen;
+    }
+    
     /**
      * Returns the value of a metric with a given sort.
      * @param sort the sort of the metric
@@ -61,6 +77,7 @@ public class CommonMetrics {
      * @param value the metric value
      */
     public void putMetricValue(String sort, double value) {
+        checkMutable();
         metrics.put(sort, new Double(value));
     }
     
@@ -72,6 +89,31 @@ public class CommonMetrics {
         return metrics;
     }
     
+    /**
+     * Stores the total or maximum value of an optional metric of child elements.
+     * Optional metrics come from outside the source code and are stored only for some elements,
+     * so the value is stored only if any element has the metric.
+     * @param elems the child elements
+     * @param sort the sort of the optional metric
+     * @param target the sort of the total or maximum metric to be stored
+     * @param max <code>true</code> if the maximum value is stored, or <code>false</code> if the total value is stored
+     */
+    protected void collectOptionalMetricInfo(List<? extends CommonMetrics> elems, String sort, String target, boolean max) {
+        double result = 0;
+        boolean found = false;
+        for (CommonMetrics elem : elems) {
+            Double value = elem.metrics.get(sort);
+            if (value != null) {
+                result = max ? Math.max(result, value.doubleValue()) : result + value.doubleValue();
+                found = true;
+            }
+        }
+        
+        if (found) {
+            putMetricValue(target, result);
+        }
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this element.
      * @param start the character index indicating where the code fragment for this element begins
@@ -94,4 +136,53 @@ public class CommonMetrics {
             }
         });
     }
+    
+    /**
+     * Returns a copy of names sorted in dictionary order, leaving the names unchanged.
+     * @param names the names to be sorted
+     * @return the sorted copy of the names
+     */
+    public List<String> getSortedNames(List<String> names) {
+        List<String> sorted = new ArrayList<String>(names);
+        sort(sorted);
+        return sorted;
+    }
+    
+    /**
+     * Tests if this object has been frozen.
+     * @return <code>true</code> if this object can no longer be changed, otherwise <code>false</code>
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+    
+    /**
+     * Freezes this object so that its metric values can no longer be changed.
+     * Subclasses fix the order of their children and freeze them as well.
+     */
+    protected void freeze() {
+        if (!frozen) {
+            metrics = Collections.unmodifiableMap(metrics);
+            frozen = true;
+        }
+    }
+    
+    /**
+     * Checks if this object can be changed.
+     * @throws IllegalStateException if this object has been frozen
+     */
+    protected void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Metrics cannot be changed after they are published: " + toString());
+        }
+    }
+    
+    /**
+     * Returns an unmodifiable copy of a list.
+     * @param list the list to be copied
+     * @return the unmodifiable copy
+     */
+    protected static <T> List<T> freeze(List<T> list) {
+        return Collections.unmodifiableList(new ArrayList<T>(list));
+    }
 }
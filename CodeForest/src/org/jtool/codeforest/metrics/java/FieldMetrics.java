@@ -59,6 +59,31 @@ public class FieldMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object sharing metric values with a frozen field, but belonging to another class.
+     * @param original the frozen field
+     * @param cm a metrics object for a class containing this field
+     */
+    FieldMetrics(FieldMetrics original, ClassMetrics cm) {
+        super(original);
+        
+        jfield = original.jfield;
+        classMetrics = cm;
+    }
+    
+    /**
+     * Creates a new object sharing metric values with a frozen field of a previous revision, but representing the same field of a new revision.
+     * @param original the frozen field of the previous revision
+     * @param jfield the field of the new revision
+     * @param cm a metrics object for a class containing this field
+     */
+    FieldMetrics(FieldMetrics original, CFJavaField jfield, ClassMetrics cm) {
+        super(original);
+        
+        this.jfield = jfield;
+        classMetrics = cm;
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this field.
      * @param start the character index indicating where the code fragment for this field begins
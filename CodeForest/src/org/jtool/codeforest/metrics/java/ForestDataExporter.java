@@ -11,6 +11,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,15 +45,73 @@ public class ForestDataExporter {
         return null;
     }
     
+    /**
+     * Creates a DOM instance that stores project-level information and the list of part files.
+     * @param mproject the project whose information will be exported
+     * @param partFiles the names of the part files storing packages of the project
+     * @return the DOM instance
+     */
+    public static Document getManifestDocument(ProjectMetrics mproject, List<String> partFiles) {
+        try {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Document doc = builder.newDocument();
+            
+            Element projectElem = exportProject(doc, mproject);
+            for (String name : partFiles) {
+                Element partElem = doc.createElement(MetricsManager.PartElem);
+                partElem.setAttribute(MetricsManager.FileAttr, name);
+                projectElem.appendChild(partElem);
+            }
+            return doc;
+            
+        } catch (ParserConfigurationException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+        }
+        return null;
+    }
+    
+    /**
+     * Creates a DOM instance that stores information about a package, which is placed directly under the top element.
+     * @param mproject the project containing the package
+     * @param mpackage the package whose information will be exported
+     * @return the DOM instance
+     */
+    public static Document getPackageDocument(ProjectMetrics mproject, PackageMetrics mpackage) {
+        try {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Document doc = builder.newDocument();
+            
+            export(doc, exportRoot(doc, mproject), mpackage);
+            return doc;
+            
+        } catch (ParserConfigurationException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+        }
+        return null;
+    }
+    
     /**
      * Exports metric values with respect to a project.
+     * Elements are written in the order fixed when the project metrics were frozen, so the metrics are never changed.
      * @param doc the content of the DOM instance
      * @param mproject project metrics
      */
     private static void export(Document doc, ProjectMetrics mproject) {
-        Element rootElem = doc.createElement(MetricsManager.TopElem);
-        rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(mproject.getTime()));
-        doc.appendChild(rootElem);
+        Element projectElem = exportProject(doc, mproject);
+        
+        for (PackageMetrics pm : mproject.getPackageMetrics()) {
+            export(doc, projectElem, pm);
+        }
+    }
+    
+    /**
+     * Exports metric values with respect to a project without its packages.
+     * @param doc the content of the DOM instance
+     * @param mproject project metrics
+     * @return the DOM element for the project
+     */
+    private static Element exportProject(Document doc, ProjectMetrics mproject) {
+        Element rootElem = exportRoot(doc, mproject);
         
         Element projectElem = doc.createElement(MetricsManager.ProjectElem);
         projectElem.setAttribute(MetricsManager.NameAttr, mproject.getName());
@@ -60,11 +119,20 @@ public class ForestDataExporter {
         rootElem.appendChild(projectElem);
         
         exportMetricAttributes(doc, projectElem, mproject.getMetricValues());
-        
-        mproject.sortPackages();
-        for (PackageMetrics pm : mproject.getPackageMetrics()) {
-            export(doc, projectElem, pm);
-        }
+        return projectElem;
+    }
+    
+    /**
+     * Exports the top element of a DOM instance storing information about a project.
+     * @param doc the content of the DOM instance
+     * @param mproject project metrics
+     * @return the top DOM element
+     */
+    private static Element exportRoot(Document doc, ProjectMetrics mproject) {
+        Element rootElem = doc.createElement(MetricsManager.TopElem);
+        rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(mproject.getTime()));
+        doc.appendChild(rootElem);
+        return rootElem;
     }
     
     /**
@@ -78,14 +146,12 @@ public class ForestDataExporter {
         packageElem.setAttribute(MetricsManager.NameAttr, mpackage.getName());
         parent.appendChild(packageElem);
         
-        mpackage.sort(mpackage.getAfferentPackageNames());
-        for (String name : mpackage.getAfferentPackageNames()) {
+        for (String name : mpackage.getSortedNames(mpackage.getAfferentPackageNames())) {
             Element afferentElem = doc.createElement(MetricsManager.AfferentElem);
             afferentElem.setAttribute(MetricsManager.FqnAttr, name);
             packageElem.appendChild(afferentElem);
         }
-        mpackage.sort(mpackage.getEfferentPackageNames());
-        for (String name : mpackage.getEfferentPackageNames()) {
+        for (String name : mpackage.getSortedNames(mpackage.getEfferentPackageNames())) {
             Element efferentElem = doc.createElement(MetricsManager.EfferentElem);
             efferentElem.setAttribute(MetricsManager.FqnAttr, name);
             packageElem.appendChild(efferentElem);
@@ -93,7 +159,6 @@ public class ForestDataExporter {
         
         exportMetricAttributes(doc, packageElem, mpackage.getMetricValues());
         
-        mpackage.sortClasses();
         for (ClassMetrics cm : mpackage.getClassMetrics()) {
             export(doc, packageElem, cm);
         }
@@ -113,6 +178,9 @@ public class ForestDataExporter {
         classElem.setAttribute(MetricsManager.isInterfaceAttr, getBoolean(mclass.isInterface()));
         classElem.setAttribute(MetricsManager.isEnumAttr, getBoolean(mclass.isEnum()));
         classElem.setAttribute(MetricsManager.PathAttr, mclass.getPath());
+        if (mclass.getMemberSketch() != null) {
+            classElem.setAttribute(MetricsManager.SketchAttr, MinHash.encode(mclass.getMemberSketch()));
+        }
         parent.appendChild(classElem);
         
         exportCodeAttributes(doc, classElem, mclass.getJavaClass());
@@ -127,14 +195,12 @@ public class ForestDataExporter {
             classElem.appendChild(superinterfaceElem);
         }
         
-        mclass.sort(mclass.getAfferentClassNames());
-        for (String name : mclass.getAfferentClassNames()) {
+        for (String name : mclass.getSortedNames(mclass.getAfferentClassNames())) {
             Element afferentElem = doc.createElement(MetricsManager.AfferentElem);
             afferentElem.setAttribute(MetricsManager.FqnAttr, name);
             classElem.appendChild(afferentElem);
         }
-        mclass.sort(mclass.getEfferentClassNames());
-        for (String name : mclass.getEfferentClassNames()) {
+        for (String name : mclass.getSortedNames(mclass.getEfferentClassNames())) {
             Element efferentElem = doc.createElement(MetricsManager.EfferentElem);
             efferentElem.setAttribute(MetricsManager.FqnAttr, name);
             classElem.appendChild(efferentElem);
@@ -142,11 +208,9 @@ public class ForestDataExporter {
         
         exportMetricAttributes(doc, classElem, mclass.getMetricValues());
         
-        mclass.sortMethods();
         for (MethodMetrics mm : mclass.getMethodMetrics()) {
             export(doc, classElem, mm);
         }
-        mclass.sortFields();
         for (FieldMetrics fm : mclass.getFieldMetrics()) {
             export(doc, classElem, fm);
         }
@@ -4,18 +4,102 @@
 
 package org.jtool.codeforest.metrics.java;
 
+import org.jtool.codeforest.util.NumberParser;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import java.io.File;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
 
 /**
  * A class importing metric values within a project from an XML file.
+ * Element and attribute names are dispatched through hash tables instead of chains of string comparisons.
  * @author Katsuhisa Maruyama
  */
 public class ForestDataImporter extends DefaultHandler {
     
+    private static final int UNKNOWN = 0;
+    
+    private static final int PROJECT = 1;
+    private static final int PACKAGE = 2;
+    private static final int CLASS = 3;
+    private static final int METHOD = 4;
+    private static final int FIELD = 5;
+    private static final int SUPER_CLASS = 6;
+    private static final int SUPER_INTERFACE = 7;
+    private static final int AFFERENT = 8;
+    private static final int EFFERENT = 9;
+    private static final int METRICS = 10;
+    private static final int CODE = 11;
+    private static final int PART = 12;
+    
+    private static final int NAME = 1;
+    private static final int TIME = 2;
+    private static final int FQN = 3;
+    private static final int SIGNATURE = 4;
+    private static final int TYPE = 5;
+    private static final int MODIFIERS = 6;
+    private static final int PATH = 7;
+    private static final int IS_INTERFACE = 8;
+    private static final int IS_ENUM = 9;
+    private static final int IS_CONSTRUCTOR = 10;
+    private static final int IS_INITIALIZER = 11;
+    private static final int IS_ENUM_CONSTANT = 12;
+    private static final int START = 13;
+    private static final int LENGTH = 14;
+    private static final int UPPER = 15;
+    private static final int BOTTOM = 16;
+    private static final int FILE = 17;
+    private static final int SKETCH = 18;
+    
+    /**
+     * The kinds of elements indexed by their names.
+     */
+    private static final Map<String, Integer> elementKinds = new HashMap<String, Integer>();
+    
+    /**
+     * The kinds of attributes indexed by their names.
+     */
+    private static final Map<String, Integer> attributeKinds = new HashMap<String, Integer>();
+    
+    static {
+        elementKinds.put(MetricsManager.ProjectElem, new Integer(PROJECT));
+        elementKinds.put(MetricsManager.PackageElem, new Integer(PACKAGE));
+        elementKinds.put(MetricsManager.ClassElem, new Integer(CLASS));
+        elementKinds.put(MetricsManager.MethodElem, new Integer(METHOD));
+        elementKinds.put(MetricsManager.FieldElem, new Integer(FIELD));
+        elementKinds.put(MetricsManager.SuperClassElem, new Integer(SUPER_CLASS));
+        elementKinds.put(MetricsManager.SuperInterfaceElem, new Integer(SUPER_INTERFACE));
+        elementKinds.put(MetricsManager.AfferentElem, new Integer(AFFERENT));
+        elementKinds.put(MetricsManager.EfferentElem, new Integer(EFFERENT));
+        elementKinds.put(MetricsManager.MetricsElem, new Integer(METRICS));
+        elementKinds.put(MetricsManager.CodeElem, new Integer(CODE));
+        elementKinds.put(MetricsManager.PartElem, new Integer(PART));
+        
+        attributeKinds.put(MetricsManager.NameAttr, new Integer(NAME));
+        attributeKinds.put(MetricsManager.TimeAttr, new Integer(TIME));
+        attributeKinds.put(MetricsManager.FqnAttr, new Integer(FQN));
+        attributeKinds.put(MetricsManager.SignatureAttr, new Integer(SIGNATURE));
+        attributeKinds.put(MetricsManager.TypeAttr, new Integer(TYPE));
+        attributeKinds.put(MetricsManager.ModifiersAttr, new Integer(MODIFIERS));
+        attributeKinds.put(MetricsManager.PathAttr, new Integer(PATH));
+        attributeKinds.put(MetricsManager.isInterfaceAttr, new Integer(IS_INTERFACE));
+        attributeKinds.put(MetricsManager.isEnumAttr, new Integer(IS_ENUM));
+        attributeKinds.put(MetricsManager.isConstructorAttr, new Integer(IS_CONSTRUCTOR));
+        attributeKinds.put(MetricsManager.isInitializerAttr, new Integer(IS_INITIALIZER));
+        attributeKinds.put(MetricsManager.isEnumConstantAttr, new Integer(IS_ENUM_CONSTANT));
+        attributeKinds.put(MetricsManager.StartPositionAttr, new Integer(START));
+        attributeKinds.put(MetricsManager.CodeLengthAttr, new Integer(LENGTH));
+        attributeKinds.put(MetricsManager.UpperLineNumberAttr, new Integer(UPPER));
+        attributeKinds.put(MetricsManager.BottomLineNumberAttr, new Integer(BOTTOM));
+        attributeKinds.put(MetricsManager.FileAttr, new Integer(FILE));
+        attributeKinds.put(MetricsManager.SketchAttr, new Integer(SKETCH));
+    }
+    
     /**
      * The path name of the project to be imported.
      */
@@ -51,6 +135,56 @@ public class ForestDataImporter extends DefaultHandler {
      */
     private CommonMetrics parent;
     
+    /**
+     * The index of the XML file, or <code>null</code> if methods and fields are imported together with classes.
+     */
+    private ForestDataIndex index;
+    
+    /**
+     * The number of classes imported so far.
+     */
+    private int classCount = 0;
+    
+    /**
+     * <code>true</code> if only methods and fields of an existing class are imported, otherwise <code>false</code>.
+     */
+    private boolean membersOnly = false;
+    
+    /**
+     * <code>true</code> if the parser is within the element of the class whose methods and fields are imported, otherwise <code>false</code>.
+     */
+    private boolean inMembersClass = false;
+    
+    /**
+     * The methods imported for an existing class, which are added to the class only after the parsing succeeds.
+     */
+    private List<MethodMetrics> loadedMethods = new ArrayList<MethodMetrics>();
+    
+    /**
+     * The fields imported for an existing class, which are added to the class only after the parsing succeeds.
+     */
+    private List<FieldMetrics> loadedFields = new ArrayList<FieldMetrics>();
+    
+    /**
+     * The canonical strings of metric names, which are shared by all the imported elements.
+     */
+    private Map<String, String> metricNames = new HashMap<String, String>();
+    
+    /**
+     * The names of part files listed in a manifest of a sharded snapshot.
+     */
+    private List<String> partFiles = new ArrayList<String>();
+    
+    /**
+     * <code>true</code> if total and maximum metric values are collected at the end of the document.
+     */
+    private boolean collectAfterImport = true;
+    
+    /**
+     * The object that guards creation of metrics objects shared among importers.
+     */
+    private Object lock = this;
+    
     /**
      * Creates a new, empty object.
      * @path the path of the project to be imported
@@ -59,6 +193,71 @@ public class ForestDataImporter extends DefaultHandler {
         this.path = path;
     }
     
+    /**
+     * Creates a new, empty object that imports classes without their methods and fields.
+     * @path the path of the project to be imported
+     * @param index the index of the XML file, which is used to load methods and fields on demand
+     */
+    public ForestDataImporter(String path, ForestDataIndex index) {
+        this.path = path;
+        this.index = index;
+    }
+    
+    /**
+     * Creates a new, empty object that imports methods and fields of an existing class.
+     * Elements of other classes are skipped, and the imported methods and fields are not added to the class.
+     * @param mclass the class metrics that the imported methods and fields refer to
+     */
+    ForestDataImporter(ClassMetrics mclass) {
+        this.classMetrics = mclass;
+        this.membersOnly = true;
+    }
+    
+    /**
+     * Creates a new, empty object that imports packages from a part file of a sharded snapshot,
+     * or from a partial snapshot written by a worker. The project element of the partial snapshot is not imported.
+     * Several importers may add packages to the same project concurrently.
+     * @param mproject the project metrics that stores the imported packages
+     */
+    ForestDataImporter(ProjectMetrics mproject) {
+        this.projectMetrics = mproject;
+        this.parent = mproject;
+        this.collectAfterImport = false;
+        this.lock = mproject;
+    }
+    
+    /**
+     * Sets whether total and maximum metric values are collected at the end of the document.
+     * @param collect <code>true</code> if the values are collected, otherwise <code>false</code>
+     */
+    void setCollectAfterImport(boolean collect) {
+        collectAfterImport = collect;
+    }
+    
+    /**
+     * Returns the methods imported for an existing class.
+     * @return the collection of the method metrics
+     */
+    List<MethodMetrics> getLoadedMethods() {
+        return loadedMethods;
+    }
+    
+    /**
+     * Returns the fields imported for an existing class.
+     * @return the collection of the field metrics
+     */
+    List<FieldMetrics> getLoadedFields() {
+        return loadedFields;
+    }
+    
+    /**
+     * Returns the names of part files listed in a manifest of a sharded snapshot.
+     * @return the collection of the names of the part files
+     */
+    List<String> getPartFiles() {
+        return partFiles;
+    }
+    
     /**
      * Receive notification of the beginning of the document.
      */
@@ -69,7 +268,36 @@ public class ForestDataImporter extends DefaultHandler {
      * Receive notification of the end of the document.
      */
     public void endDocument() throws SAXException {
-        projectMetrics.collectMetricsInfoAfterXMLImport();
+        if (projectMetrics != null && collectAfterImport) {
+            projectMetrics.collectMetricsInfoAfterXMLImport();
+        }
+    }
+    
+    /**
+     * Obtains the kind of an element.
+     * @param qname the qualified name of the element
+     * @return the kind of the element
+     */
+    private static int getElementKind(String qname) {
+        Integer kind = elementKinds.get(qname);
+        if (kind != null) {
+            return kind.intValue();
+        }
+        return UNKNOWN;
+    }
+    
+    /**
+     * Obtains the kind of an attribute with a given index.
+     * @param attrs the collection of attributes
+     * @param i the index of the attribute
+     * @return the kind of the attribute
+     */
+    private static int getAttributeKind(Attributes attrs, int i) {
+        Integer kind = attributeKinds.get(attrs.getQName(i));
+        if (kind != null) {
+            return kind.intValue();
+        }
+        return UNKNOWN;
     }
     
     /**
@@ -80,88 +308,141 @@ public class ForestDataImporter extends DefaultHandler {
      * @param attrs the attributes attached to the element
      */
     public void startElement(String uri, String name, String qname, Attributes attrs) {
-        if (qname.equals(MetricsManager.ProjectElem)) {
-            setProjectAttributes(attrs);
-            parent = projectMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.PackageElem)) {
-            setPackageAttributes(attrs);
-            parent = packageMetrics;
+        int kind = getElementKind(qname);
+        if (membersOnly) {
+            startMemberElement(kind, attrs);
             return;
         }
         
-        if (qname.equals(MetricsManager.ClassElem)) {
-            setClassAttributes(attrs);
-            parent = classMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.MethodElem)) {
-            setMethodAttributes(attrs);
-            parent = methodMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.FieldElem)) {
-            setFieldAttributes(attrs);
-            parent = fieldMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.SuperClassElem)) {
-            if (parent == classMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.setSuperClassName(attrs.getValue(0));
+        switch (kind) {
+            case PROJECT:
+                if (lock != projectMetrics) {
+                    setProjectAttributes(attrs);
                 }
-            }
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.SuperInterfaceElem)) {
-            if (parent == classMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.addSuperInterfaceName(attrs.getValue(0));
+                parent = projectMetrics;
+                break;
+            
+            case PACKAGE:
+                setPackageAttributes(attrs);
+                parent = packageMetrics;
+                break;
+            
+            case CLASS:
+                setClassAttributes(attrs);
+                parent = classMetrics;
+                break;
+            
+            case METHOD:
+                setMethodAttributes(attrs);
+                parent = methodMetrics;
+                break;
+            
+            case FIELD:
+                setFieldAttributes(attrs);
+                parent = fieldMetrics;
+                break;
+            
+            case SUPER_CLASS:
+                if (parent == classMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        classMetrics.setSuperClassName(fqn);
+                    }
                 }
-            }
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.AfferentElem)) {
-            if (parent == packageMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    packageMetrics.addAfferentPackageName(attrs.getValue(0));
+                break;
+            
+            case SUPER_INTERFACE:
+                if (parent == classMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        classMetrics.addSuperInterfaceName(fqn);
+                    }
                 }
-            } else if (parent == classMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.addAfferentClassName(attrs.getValue(0));
+                break;
+            
+            case AFFERENT:
+                if (parent == packageMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        packageMetrics.addAfferentPackageName(fqn);
+                    }
+                } else if (parent == classMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        classMetrics.addAfferentClassName(fqn);
+                    }
                 }
-            }
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.EfferentElem)) {
-            if (parent == packageMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    packageMetrics.addEfferentPackageName(attrs.getValue(0));
+                break;
+            
+            case EFFERENT:
+                if (parent == packageMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        packageMetrics.addEfferentPackageName(fqn);
+                    }
+                } else if (parent == classMetrics) {
+                    String fqn = getFqnAttribute(attrs);
+                    if (fqn != null) {
+                        classMetrics.addEfferentClassName(fqn);
+                    }
                 }
-            } else if (parent == classMetrics) {
-                if (attrs.getQName(0).equals(MetricsManager.FqnAttr)) {
-                    classMetrics.addEfferentClassName(attrs.getValue(0));
+                break;
+            
+            case METRICS:
+                setMetricAttributes(attrs);
+                break;
+            
+            case CODE:
+                setCodeAttributes(attrs);
+                break;
+            
+            case PART:
+                for (int i = 0; i < attrs.getLength(); i++) {
+                    if (getAttributeKind(attrs, i) == FILE) {
+                        partFiles.add(attrs.getValue(i));
+                    }
                 }
-            }
-            return;
+                break;
         }
-        
-        if (qname.equals(MetricsManager.MetricsElem)) {
-            setMetricAttributes(attrs);
+    }
+    
+    /**
+     * Receive notification of the start of an element within a class whose methods and fields are imported.
+     * @param kind the kind of the element
+     * @param attrs the attributes attached to the element
+     */
+    private void startMemberElement(int kind, Attributes attrs) {
+        if (kind != CLASS && !inMembersClass) {
             return;
         }
         
-        if (qname.equals(MetricsManager.CodeElem)) {
-            setCodeAttributes(attrs);
-            return;
+        switch (kind) {
+            case CLASS:
+                inMembersClass = classMetrics.getQualifiedName().equals(getFqnAttribute(attrs));
+                parent = classMetrics;
+                break;
+            
+            case METHOD:
+                setMethodAttributes(attrs);
+                parent = methodMetrics;
+                break;
+            
+            case FIELD:
+                setFieldAttributes(attrs);
+                parent = fieldMetrics;
+                break;
+            
+            case METRICS:
+                if (parent != classMetrics) {
+                    setMetricAttributes(attrs);
+                }
+                break;
+            
+            case CODE:
+                if (parent != classMetrics) {
+                    setCodeAttributes(attrs);
+                }
+                break;
         }
     }
     
@@ -172,30 +453,38 @@ public class ForestDataImporter extends DefaultHandler {
      * @param qname the qualified name with prefix
      */
     public void endElement(String uri, String name, String qname) {
-        if (qname.equals(MetricsManager.ProjectElem)) {
-            parent = null;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.PackageElem)) {
-            parent = projectMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.ClassElem)) {
-            parent = packageMetrics;
-            return;
-        }
-        
-        if (qname.equals(MetricsManager.MethodElem)) {
-            parent = classMetrics;
-            return;
+        switch (getElementKind(qname)) {
+            case PROJECT:
+                parent = null;
+                break;
+            
+            case PACKAGE:
+                parent = projectMetrics;
+                break;
+            
+            case CLASS:
+                parent = packageMetrics;
+                inMembersClass = false;
+                break;
+            
+            case METHOD:
+            case FIELD:
+                parent = classMetrics;
+                break;
         }
-        
-        if (qname.equals(MetricsManager.FieldElem)) {
-            parent = classMetrics;
-            return;
+    }
+    
+    /**
+     * Obtains the value of the attribute that represents a fully-qualified name.
+     * @param attrs the collection of attributes
+     * @return the fully-qualified name, or <code>null</code> if the attribute is not found
+     */
+    private String getFqnAttribute(Attributes attrs) {
+        int i = attrs.getIndex(MetricsManager.FqnAttr);
+        if (i >= 0) {
+            return attrs.getValue(i);
         }
+        return null;
     }
     
     /**
@@ -207,12 +496,14 @@ public class ForestDataImporter extends DefaultHandler {
         long time = -1;
         
         for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
-                name = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.TimeAttr)) {
-                time = getLong(attrs.getValue(i));
+            switch (getAttributeKind(attrs, i)) {
+                case NAME:
+                    name = attrs.getValue(i);
+                    break;
+                case TIME:
+                    time = getLong(attrs.getValue(i));
+                    break;
             }
-            
         }
         
         if (name != null && time > 0) {
@@ -229,15 +520,16 @@ public class ForestDataImporter extends DefaultHandler {
     private void setPackageAttributes(Attributes attrs) {
         String name = null;
         
-        for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
-                name = attrs.getValue(i);
-            }
+        int i = attrs.getIndex(MetricsManager.NameAttr);
+        if (i >= 0) {
+            name = attrs.getValue(i);
         }
         
         if (name != null) {
-            packageMetrics = new PackageMetrics(name, projectMetrics);
-            projectMetrics.add(packageMetrics);
+            synchronized (lock) {
+                packageMetrics = new PackageMetrics(name, projectMetrics);
+                projectMetrics.add(packageMetrics);
+            }
         }
     }
     
@@ -252,26 +544,48 @@ public class ForestDataImporter extends DefaultHandler {
         boolean isInterface = false;
         boolean isEnum = false;
         String path = null;
+        int[] sketch = null;
         
         for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
-                name = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.FqnAttr)) {
-                fqn = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
-                modifiers = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.isInterfaceAttr)) {
-                isInterface = getBoolean(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.isEnumAttr)) {
-                isEnum = getBoolean(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.PathAttr)) {
-                path = attrs.getValue(i);
+            switch (getAttributeKind(attrs, i)) {
+                case NAME:
+                    name = attrs.getValue(i);
+                    break;
+                case FQN:
+                    fqn = attrs.getValue(i);
+                    break;
+                case MODIFIERS:
+                    modifiers = getInteger(attrs.getValue(i));
+                    break;
+                case IS_INTERFACE:
+                    isInterface = getBoolean(attrs.getValue(i));
+                    break;
+                case IS_ENUM:
+                    isEnum = getBoolean(attrs.getValue(i));
+                    break;
+                case PATH:
+                    path = attrs.getValue(i);
+                    break;
+                case SKETCH:
+                    sketch = MinHash.decode(attrs.getValue(i));
+                    break;
             }
         }
         
         if (name != null && fqn != null) {
-            classMetrics = new ClassMetrics(name, fqn, modifiers, isInterface, isEnum, path, packageMetrics);
-            packageMetrics.add(classMetrics);
+            synchronized (lock) {
+                classMetrics = new ClassMetrics(name, fqn, modifiers, isInterface, isEnum, path, packageMetrics);
+                packageMetrics.add(classMetrics);
+            }
+            classMetrics.setMemberSketch(sketch);
+            
+            if (index != null && classCount < index.getClassEntries().size()) {
+                ForestDataIndex.ClassEntry entry = index.getClassEntries().get(classCount);
+                if (entry.hasMembers() && entry.getQualifiedName().equals(fqn)) {
+                    classMetrics.setMembersEntry(entry);
+                }
+            }
+            classCount++;
         }
     }
     
@@ -288,24 +602,37 @@ public class ForestDataImporter extends DefaultHandler {
         boolean isInitializer = false;
         
         for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
-                 name = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.SignatureAttr)) {
-                sig = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.TypeAttr)) {
-                type = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
-                modifiers = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.isConstructorAttr)) {
-                isConstructor = getBoolean(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.isInitializerAttr)) {
-                isInitializer = getBoolean(attrs.getValue(i));
+            switch (getAttributeKind(attrs, i)) {
+                case NAME:
+                    name = attrs.getValue(i);
+                    break;
+                case SIGNATURE:
+                    sig = attrs.getValue(i);
+                    break;
+                case TYPE:
+                    type = attrs.getValue(i);
+                    break;
+                case MODIFIERS:
+                    modifiers = getInteger(attrs.getValue(i));
+                    break;
+                case IS_CONSTRUCTOR:
+                    isConstructor = getBoolean(attrs.getValue(i));
+                    break;
+                case IS_INITIALIZER:
+                    isInitializer = getBoolean(attrs.getValue(i));
+                    break;
             }
         }
         
         if (sig != null) {
-            methodMetrics = new MethodMetrics(name, sig, type, modifiers, isConstructor, isInitializer, classMetrics);
-            classMetrics.add(methodMetrics);
+            synchronized (lock) {
+                methodMetrics = new MethodMetrics(name, sig, type, modifiers, isConstructor, isInitializer, classMetrics);
+                if (membersOnly) {
+                    loadedMethods.add(methodMetrics);
+                } else {
+                    classMetrics.add(methodMetrics);
+                }
+            }
         }
     }
     
@@ -320,35 +647,65 @@ public class ForestDataImporter extends DefaultHandler {
         boolean isEnumConstant = false;
         
         for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.NameAttr)) {
-                name = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.TypeAttr)) {
-                type = attrs.getValue(i);
-            } else if (attrs.getQName(i).equals(MetricsManager.ModifiersAttr)) {
-                modifiers = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.isEnumConstantAttr)) {
-                isEnumConstant = getBoolean(attrs.getValue(i));
+            switch (getAttributeKind(attrs, i)) {
+                case NAME:
+                    name = attrs.getValue(i);
+                    break;
+                case TYPE:
+                    type = attrs.getValue(i);
+                    break;
+                case MODIFIERS:
+                    modifiers = getInteger(attrs.getValue(i));
+                    break;
+                case IS_ENUM_CONSTANT:
+                    isEnumConstant = getBoolean(attrs.getValue(i));
+                    break;
             }
         }
         
         if (name != null) {
-            fieldMetrics = new FieldMetrics(name, type, modifiers, isEnumConstant, classMetrics);
-            classMetrics.add(fieldMetrics);
+            synchronized (lock) {
+                fieldMetrics = new FieldMetrics(name, type, modifiers, isEnumConstant, classMetrics);
+                if (membersOnly) {
+                    loadedFields.add(fieldMetrics);
+                } else {
+                    classMetrics.add(fieldMetrics);
+                }
+            }
         }
     }
     
     /**
      * Sets attributes for metrics with respect to an element.
+     * Metric values of a project are not imported when packages are imported into an existing project.
      * @param attrs the collection of attributes
      */
     private void setMetricAttributes(Attributes attrs) {
         if (parent == null) {
             return;
         }
+        if (parent == projectMetrics && lock == projectMetrics) {
+            return;
+        }
         
+        Map<String, Double> metrics = parent.getMetricValues();
         for (int i = 0; i < attrs.getLength(); i++) {
-            parent.putMetricValue(attrs.getQName(i), Double.parseDouble(attrs.getValue(i)));
+            metrics.put(getMetricName(attrs.getQName(i)), NumberParser.parseBoxedDouble(attrs.getValue(i)));
+        }
+    }
+    
+    /**
+     * Obtains the canonical string of a metric name.
+     * @param name the metric name
+     * @return the canonical string shared by all the elements
+     */
+    private String getMetricName(String name) {
+        String sort = metricNames.get(name);
+        if (sort == null) {
+            metricNames.put(name, name);
+            sort = name;
         }
+        return sort;
     }
     
     /**
@@ -366,14 +723,19 @@ public class ForestDataImporter extends DefaultHandler {
         int bottom = 0;
         
         for (int i = 0; i < attrs.getLength(); i++) {
-            if (attrs.getQName(i).equals(MetricsManager.StartPositionAttr)) {
-                start = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.CodeLengthAttr)) {
-                len = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.UpperLineNumberAttr)) {
-                upper = getInteger(attrs.getValue(i));
-            } else if (attrs.getQName(i).equals(MetricsManager.BottomLineNumberAttr)) {
-                bottom = getInteger(attrs.getValue(i));
+            switch (getAttributeKind(attrs, i)) {
+                case START:
+                    start = getInteger(attrs.getValue(i));
+                    break;
+                case LENGTH:
+                    len = getInteger(attrs.getValue(i));
+                    break;
+                case UPPER:
+                    upper = getInteger(attrs.getValue(i));
+                    break;
+                case BOTTOM:
+                    bottom = getInteger(attrs.getValue(i));
+                    break;
             }
         }
         
@@ -403,7 +765,7 @@ public class ForestDataImporter extends DefaultHandler {
      * @return the integer value
      */
     private int getInteger(String value) {
-        return Integer.parseInt(value);
+        return NumberParser.parseInt(value);
     }
     
     /**
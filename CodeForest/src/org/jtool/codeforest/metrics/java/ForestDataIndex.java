@@ -0,0 +1,683 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.XMLWriter;
+import org.xml.sax.SAXException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.InputStream;
+import java.io.FilterInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An index recording the byte offsets of package and class elements within an XML file storing metric values.
+ * The index allows the class-level model to be imported without methods and fields, which are loaded on demand.
+ * @author Katsuhisa Maruyama
+ */
+public class ForestDataIndex {
+    
+    private static final String INDEX_FILENAME_EXT = ".idx";
+    
+    private static final String HEADER = "codeforest-index";
+    private static final String VERSION = "2";
+    private static final String PackageEntryTag = "P";
+    private static final String ClassEntryTag = "C";
+    private static final String SEPARATOR = "\t";
+    
+    /**
+     * The indexes that have been read, which are weakly referenced so that an index is released
+     * as soon as no class loads its methods and fields from the indexed file any longer.
+     */
+    private static Map<ForestDataIndex, Boolean> openIndexes = Collections.synchronizedMap(new WeakHashMap<ForestDataIndex, Boolean>());
+    
+    /**
+     * The XML file indexed by this object.
+     */
+    private File file;
+    
+    /**
+     * The length of the XML file when it was indexed.
+     */
+    private long length;
+    
+    /**
+     * The modification time of the XML file when it was indexed.
+     */
+    private long modified;
+    
+    /**
+     * The collection of entries for packages in document order.
+     */
+    private List<PackageEntry> packageEntries = new ArrayList<PackageEntry>();
+    
+    /**
+     * The collection of entries for classes in document order.
+     */
+    private List<ClassEntry> classEntries = new ArrayList<ClassEntry>();
+    
+    /**
+     * Creates a new, empty index.
+     * @param file the XML file to be indexed
+     */
+    private ForestDataIndex(File file) {
+        this.file = file;
+        this.length = file.length();
+        this.modified = file.lastModified();
+    }
+    
+    /**
+     * Returns the XML file indexed by this object.
+     * @return the XML file
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Tests if the indexed XML file has not been changed since it was indexed, so that the recorded offsets are still valid.
+     * @return <code>true</code> if the length and the modification time of the file are unchanged, otherwise <code>false</code>
+     */
+    public boolean isUpToDate() {
+        return file.length() == length && file.lastModified() == modified;
+    }
+    
+    /**
+     * Returns the entries for packages in document order.
+     * @return the collection of the package entries
+     */
+    public List<PackageEntry> getPackageEntries() {
+        return packageEntries;
+    }
+    
+    /**
+     * Returns the entries for classes in document order.
+     * @return the collection of the class entries
+     */
+    public List<ClassEntry> getClassEntries() {
+        return classEntries;
+    }
+    
+    /**
+     * Returns the index file corresponding to a given XML file.
+     * @param file the XML file
+     * @return the index file
+     */
+    public static File getIndexFile(File file) {
+        String path = file.getPath();
+        int index = path.lastIndexOf('.');
+        if (index > path.lastIndexOf(File.separatorChar)) {
+            path = path.substring(0, index);
+        }
+        return new File(path + INDEX_FILENAME_EXT);
+    }
+    
+    /**
+     * Tests if methods and fields may still be loaded on demand from an XML file, so that the file must not be removed.
+     * @param file the XML file
+     * @return <code>true</code> if an index of the file is still in use, otherwise <code>false</code>
+     */
+    public static boolean isOpen(File file) {
+        File afile = file.getAbsoluteFile();
+        synchronized (openIndexes) {
+            for (ForestDataIndex index : openIndexes.keySet()) {
+                if (index.file.getAbsoluteFile().equals(afile)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Scans an XML file storing metric values and writes its index next to it.
+     * @param file the XML file
+     */
+    public static void write(File file) {
+        File ifile = getIndexFile(file);
+        File tmpfile = new File(ifile.getPath() + XMLWriter.TMP_FILENAME_EXT);
+        
+        ForestDataIndex index = scan(file);
+        if (index == null) {
+            ifile.delete();
+            return;
+        }
+        
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmpfile), "UTF-8"));
+            writer.println(HEADER + SEPARATOR + VERSION + SEPARATOR + String.valueOf(index.length) + SEPARATOR + String.valueOf(index.modified));
+            for (PackageEntry entry : index.packageEntries) {
+                writer.println(PackageEntryTag + SEPARATOR + entry.start + SEPARATOR + entry.end + SEPARATOR + entry.name);
+            }
+            for (ClassEntry entry : index.classEntries) {
+                writer.println(ClassEntryTag + SEPARATOR + entry.start + SEPARATOR + entry.membersStart + SEPARATOR +
+                               entry.membersEnd + SEPARATOR + entry.end + SEPARATOR + entry.fqn);
+            }
+            writer.close();
+            writer = null;
+            
+            XMLWriter.rename(tmpfile, ifile);
+            
+        } catch (IOException e) {
+            System.err.println("Index: Export error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * Reads the index of an XML file storing metric values.
+     * @param file the XML file
+     * @return the index, or <code>null</code> if no index is available or the index is out of date
+     */
+    public static ForestDataIndex read(File file) {
+        File ifile = getIndexFile(file);
+        if (!ifile.canRead()) {
+            return null;
+        }
+        
+        ForestDataIndex index = new ForestDataIndex(file);
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(ifile), "UTF-8"));
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            
+            String[] header = line.split(SEPARATOR);
+            if (header.length != 4 || !header[0].equals(HEADER) || !header[1].equals(VERSION) ||
+                Long.parseLong(header[2]) != index.length || Long.parseLong(header[3]) != index.modified) {
+                return null;
+            }
+            
+            while ((line = reader.readLine()) != null) {
+                String[] items = line.split(SEPARATOR, -1);
+                if (items[0].equals(PackageEntryTag) && items.length == 4) {
+                    PackageEntry entry = new PackageEntry(items[3], Long.parseLong(items[1]));
+                    entry.end = Long.parseLong(items[2]);
+                    index.packageEntries.add(entry);
+                    
+                } else if (items[0].equals(ClassEntryTag) && items.length == 6) {
+                    ClassEntry entry = new ClassEntry(index, items[5], Long.parseLong(items[1]));
+                    entry.membersStart = Long.parseLong(items[2]);
+                    entry.membersEnd = Long.parseLong(items[3]);
+                    entry.end = Long.parseLong(items[4]);
+                    index.classEntries.add(entry);
+                    
+                } else {
+                    return null;
+                }
+            }
+            openIndexes.put(index, Boolean.TRUE);
+            return index;
+            
+        } catch (NumberFormatException e) {
+            System.err.println("Index: Import error occurred: " + e.getMessage() + ".");
+        } catch (IOException e) {
+            System.err.println("Index: Import error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Scans an XML file and collects the offsets of package and class elements.
+     * The scan relies on the indented output of the exporter, which places each element on its own line.
+     * @param file the XML file
+     * @return the index, or <code>null</code> if the scan fails
+     */
+    private static ForestDataIndex scan(File file) {
+        ForestDataIndex index = new ForestDataIndex(file);
+        PackageEntry packageEntry = null;
+        ClassEntry classEntry = null;
+        
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            long offset = 0;
+            long lineStart = 0;
+            int indent = 0;
+            boolean inIndent = true;
+            
+            int ch;
+            while (true) {
+                ch = in.read();
+                if (ch == '\n' || ch == -1) {
+                    String line = new String(buf.toByteArray(), "UTF-8").trim();
+                    long elemStart = lineStart + indent;
+                    
+                    if (isStartTag(line, MetricsManager.PackageElem)) {
+                        packageEntry = new PackageEntry(getAttribute(line, MetricsManager.NameAttr), elemStart);
+                        
+                    } else if (isEndTag(line, MetricsManager.PackageElem)) {
+                        if (packageEntry != null) {
+                            packageEntry.end = elemStart + line.length();
+                            index.packageEntries.add(packageEntry);
+                            packageEntry = null;
+                        }
+                        
+                    } else if (isStartTag(line, MetricsManager.ClassElem)) {
+                        classEntry = new ClassEntry(index, getAttribute(line, MetricsManager.FqnAttr), elemStart);
+                        
+                    } else if (isStartTag(line, MetricsManager.MethodElem) || isStartTag(line, MetricsManager.FieldElem)) {
+                        if (classEntry != null && classEntry.membersStart < 0) {
+                            classEntry.membersStart = elemStart;
+                        }
+                        
+                    } else if (isEndTag(line, MetricsManager.ClassElem)) {
+                        if (classEntry != null) {
+                            if (classEntry.membersStart >= 0) {
+                                classEntry.membersEnd = elemStart;
+                            }
+                            classEntry.end = elemStart + line.length();
+                            index.classEntries.add(classEntry);
+                            classEntry = null;
+                        }
+                    }
+                    
+                    if (ch == -1) {
+                        break;
+                    }
+                    
+                    buf.reset();
+                    offset++;
+                    lineStart = offset;
+                    indent = 0;
+                    inIndent = true;
+                    continue;
+                }
+                
+                if (inIndent && (ch == ' ' || ch == '\t' || ch == '\r')) {
+                    indent++;
+                } else {
+                    inIndent = false;
+                    buf.write(ch);
+                }
+                offset++;
+            }
+            return index;
+            
+        } catch (IOException e) {
+            System.err.println("Index: Scan error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Tests if a given line starts with the start tag of an element.
+     * @param line the line to be tested
+     * @param elem the name of the element
+     * @return <code>true</code> if the line starts with the start tag, otherwise <code>false</code>
+     */
+    private static boolean isStartTag(String line, String elem) {
+        if (line.length() <= elem.length() + 1 || line.charAt(0) != '<' || !line.startsWith(elem, 1)) {
+            return false;
+        }
+        char ch = line.charAt(elem.length() + 1);
+        return ch == ' ' || ch == '>' || ch == '/';
+    }
+    
+    /**
+     * Tests if a given line starts with the end tag of an element.
+     * @param line the line to be tested
+     * @param elem the name of the element
+     * @return <code>true</code> if the line starts with the end tag, otherwise <code>false</code>
+     */
+    private static boolean isEndTag(String line, String elem) {
+        return line.equals("</" + elem + ">");
+    }
+    
+    /**
+     * Extracts the value of an attribute from a start tag.
+     * @param line the line containing the start tag
+     * @param attr the name of the attribute
+     * @return the unescaped value of the attribute, or an empty string if the attribute is not found
+     */
+    private static String getAttribute(String line, String attr) {
+        String key = " " + attr + "=\"";
+        int start = line.indexOf(key);
+        if (start < 0) {
+            return "";
+        }
+        start = start + key.length();
+        int end = line.indexOf('"', start);
+        if (end < 0) {
+            return "";
+        }
+        
+        String value = line.substring(start, end);
+        value = value.replace("&lt;", "<");
+        value = value.replace("&gt;", ">");
+        value = value.replace("&quot;", "\"");
+        value = value.replace("&apos;", "'");
+        value = value.replace("&amp;", "&");
+        return value;
+    }
+    
+    /**
+     * Opens a stream of the indexed XML file that omits methods and fields of every class.
+     * @return the input stream of the class-level contents
+     * @throws IOException if the file cannot be opened
+     */
+    public InputStream openClassLevelStream() throws IOException {
+        List<long[]> skips = new ArrayList<long[]>();
+        for (ClassEntry entry : classEntries) {
+            if (entry.hasMembers()) {
+                skips.add(new long[] { entry.membersStart, entry.membersEnd });
+            }
+        }
+        return new SkippingInputStream(new BufferedInputStream(new FileInputStream(file)), skips);
+    }
+    
+    /**
+     * An entry recording the offsets of a package element.
+     */
+    public static class PackageEntry {
+        
+        /**
+         * The name of the package.
+         */
+        private String name;
+        
+        /**
+         * The offset of the start tag of the package element.
+         */
+        private long start;
+        
+        /**
+         * The offset just after the end tag of the package element.
+         */
+        private long end = -1;
+        
+        /**
+         * Creates a new entry.
+         * @param name the name of the package
+         * @param start the offset of the start tag
+         */
+        PackageEntry(String name, long start) {
+            this.name = name;
+            this.start = start;
+        }
+        
+        /**
+         * Returns the name of the package.
+         * @return the package name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Returns the offset of the start tag of the package element.
+         * @return the start offset
+         */
+        public long getStart() {
+            return start;
+        }
+        
+        /**
+         * Returns the offset just after the end tag of the package element.
+         * @return the end offset
+         */
+        public long getEnd() {
+            return end;
+        }
+    }
+    
+    /**
+     * An entry recording the offsets of a class element and its methods and fields.
+     */
+    public static class ClassEntry {
+        
+        /**
+         * The index containing this entry.
+         */
+        private ForestDataIndex index;
+        
+        /**
+         * The fully-qualified name of the class.
+         */
+        private String fqn;
+        
+        /**
+         * The offset of the start tag of the class element.
+         */
+        private long start;
+        
+        /**
+         * The offset of the first method or field element, or <code>-1</code> if the class has none.
+         */
+        private long membersStart = -1;
+        
+        /**
+         * The offset just after the last method or field element, or <code>-1</code> if the class has none.
+         */
+        private long membersEnd = -1;
+        
+        /**
+         * The offset just after the end tag of the class element.
+         */
+        private long end = -1;
+        
+        /**
+         * Creates a new entry.
+         * @param index the index containing the entry
+         * @param fqn the fully-qualified name of the class
+         * @param start the offset of the start tag
+         */
+        ClassEntry(ForestDataIndex index, String fqn, long start) {
+            this.index = index;
+            this.fqn = fqn;
+            this.start = start;
+        }
+        
+        /**
+         * Returns the fully-qualified name of the class.
+         * @return the class name
+         */
+        public String getQualifiedName() {
+            return fqn;
+        }
+        
+        /**
+         * Tests if the class has any methods or fields.
+         * @return <code>true</code> if the class has members, otherwise <code>false</code>
+         */
+        public boolean hasMembers() {
+            return membersStart >= 0 && membersEnd > membersStart;
+        }
+        
+        /**
+         * Reads the methods and fields of the class from the indexed XML file, which are not added to the class.
+         * Only the class element is read if the file is unchanged since it was indexed,
+         * otherwise the whole file is parsed to find the class element.
+         * @param mclass the class metrics that the read methods and fields refer to
+         * @return the importer holding the read methods and fields
+         * @throws IOException if the file cannot be read or parsed
+         */
+        ForestDataImporter loadMembers(ClassMetrics mclass) throws IOException {
+            try {
+                SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                if (index.isUpToDate()) {
+                    try {
+                        ForestDataImporter handler = new ForestDataImporter(mclass);
+                        parser.parse(new ByteArrayInputStream(readElement()), handler);
+                        return handler;
+                    } catch (SAXException e) {
+                        parser.reset();
+                    }
+                }
+                
+                ForestDataImporter handler = new ForestDataImporter(mclass);
+                parser.parse(index.file, handler);
+                return handler;
+                
+            } catch (ParserConfigurationException e) {
+                throw new IOException(e.getMessage(), e);
+            } catch (SAXException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        
+        /**
+         * Reads the bytes of the class element from the indexed XML file.
+         * @return the bytes of the element
+         * @throws IOException if the file cannot be read
+         */
+        private byte[] readElement() throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(index.file, "r");
+            try {
+                byte[] bytes = new byte[(int)(end - start)];
+                raf.seek(start);
+                raf.readFully(bytes);
+                return bytes;
+            } finally {
+                raf.close();
+            }
+        }
+    }
+    
+    /**
+     * An input stream that skips given ranges of bytes of the underlying stream.
+     */
+    private static class SkippingInputStream extends FilterInputStream {
+        
+        /**
+         * The ranges to be skipped, sorted by their start offsets.
+         */
+        private List<long[]> skips;
+        
+        /**
+         * The index of the next range to be skipped.
+         */
+        private int next = 0;
+        
+        /**
+         * The current offset in the underlying stream.
+         */
+        private long pos = 0;
+        
+        /**
+         * Creates a new stream.
+         * @param in the underlying stream
+         * @param skips the ranges to be skipped
+         */
+        SkippingInputStream(InputStream in, List<long[]> skips) {
+            super(in);
+            this.skips = skips;
+        }
+        
+        /**
+         * Skips the current range if the offset reaches its start.
+         * @throws IOException if an I/O error occurs
+         */
+        private void skipRange() throws IOException {
+            while (next < skips.size() && pos >= skips.get(next)[0]) {
+                long end = skips.get(next)[1];
+                while (pos < end) {
+                    long n = in.skip(end - pos);
+                    if (n <= 0) {
+                        if (in.read() == -1) {
+                            return;
+                        }
+                        n = 1;
+                    }
+                    pos = pos + n;
+                }
+                next++;
+            }
+        }
+        
+        /**
+         * Reads the next byte of data.
+         * @return the next byte, or <code>-1</code> if the end of the stream is reached
+         * @throws IOException if an I/O error occurs
+         */
+        public int read() throws IOException {
+            skipRange();
+            int ch = in.read();
+            if (ch != -1) {
+                pos++;
+            }
+            return ch;
+        }
+        
+        /**
+         * Reads up to <code>len</code> bytes of data into an array of bytes.
+         * @param b the buffer into which the data is read
+         * @param off the start offset in the buffer
+         * @param len the maximum number of bytes read
+         * @return the number of bytes read, or <code>-1</code> if the end of the stream is reached
+         * @throws IOException if an I/O error occurs
+         */
+        public int read(byte[] b, int off, int len) throws IOException {
+            skipRange();
+            if (next < skips.size()) {
+                len = (int)Math.min(len, skips.get(next)[0] - pos);
+            }
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                pos = pos + n;
+            }
+            return n;
+        }
+        
+        /**
+         * Skips over bytes of data.
+         * @param n the number of bytes to be skipped
+         * @return the number of bytes actually skipped
+         * @throws IOException if an I/O error occurs
+         */
+        public long skip(long n) throws IOException {
+            byte[] b = new byte[(int)Math.min(n, 4096)];
+            int len = read(b, 0, b.length);
+            if (len < 0) {
+                return 0;
+            }
+            return len;
+        }
+        
+        /**
+         * Tests if this stream supports the mark and reset methods.
+         * @return always <code>false</code>
+         */
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
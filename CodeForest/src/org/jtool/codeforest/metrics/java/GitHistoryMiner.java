@@ -0,0 +1,459 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.util.GitCommand;
+import org.jtool.codeforest.util.Time;
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaModelFactory;
+import org.jtool.eclipse.model.java.JavaPackage;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * A cancellable job that mines the history of a project stored in a local git repository.
+ * Commits are checked out one by one into a worktree dedicated to the mining, and only the packages containing
+ * Java files whose content hashes differ from the previous commit are recalculated, together with the packages
+ * depending on them or depended on by them. The other packages take over the metric values of the previous commit,
+ * but are linked to the model of the new commit so that their call graph and hierarchy metrics are recalculated.
+ * Each version is recorded as a delta in a history store and published, so that a forest grows commit by commit.
+ * @author Katsuhisa Maruyama
+ */
+public class GitHistoryMiner extends Job {
+    
+    /**
+     * The name of the directory under the project storing the history mined from git.
+     */
+    public static final String HISTORY_DIRNAME = "codeforest-git";
+    
+    /**
+     * The suffix of the name of the project mirroring the worktree.
+     */
+    private static final String MIRROR_SUFFIX = "-history";
+    
+    /**
+     * The number of commits after which all the packages are recalculated, so that metrics on coupling do not drift.
+     */
+    private static final int FULL_INTERVAL = 50;
+    
+    /**
+     * The project whose history is mined.
+     */
+    private IJavaProject project;
+    
+    /**
+     * <code>true</code> if only commits pointed to by tags are mined, otherwise <code>false</code>.
+     */
+    private boolean releasesOnly;
+    
+    /**
+     * The publisher that receives the versions of the mined commits.
+     */
+    private MetricsPublisher publisher;
+    
+    /**
+     * Creates a job that mines the history of a project.
+     * @param project the project whose history is mined
+     * @param releasesOnly <code>true</code> if only commits pointed to by tags are mined, or <code>false</code> if all the first-parent commits are mined
+     * @param publisher the publisher that receives the versions of the mined commits
+     */
+    public GitHistoryMiner(IJavaProject project, boolean releasesOnly, MetricsPublisher publisher) {
+        super("Mining git history of " + project.getElementName());
+        
+        this.project = project;
+        this.releasesOnly = releasesOnly;
+        this.publisher = publisher;
+        setUser(true);
+        setPriority(Job.LONG);
+    }
+    
+    /**
+     * Creates an empty version of project metrics, which represents a project whose commits have not been mined yet.
+     * @param project the project
+     * @return the empty project metrics
+     */
+    public static ProjectMetrics createEmpty(IJavaProject project) {
+        return new ProjectMetrics(project.getElementName(), project.getProject().getLocation().toOSString(), new ArrayList<ProjectMetrics>(), Time.getCurrentTime(), false);
+    }
+    
+    /**
+     * Mines the commits one by one.
+     * @param monitor the progress monitor
+     * @return the status of the job
+     */
+    protected IStatus run(IProgressMonitor monitor) {
+        String topdir = project.getProject().getLocation().toOSString();
+        GitCommand git = new GitCommand(new File(topdir));
+        IProject mirror = null;
+        
+        try {
+            List<String[]> commits = getCommits(git);
+            if (commits.isEmpty()) {
+                System.out.println("- No commits to be mined in " + topdir);
+                return Status.OK_STATUS;
+            }
+            
+            File worktree = prepareWorktree(git, commits.get(0)[0]);
+            String prefix = getPrefix(git);
+            File mirrorDir = prefix.length() == 0 ? worktree : new File(worktree, prefix);
+            GitCommand wgit = new GitCommand(worktree);
+            GitCommand mgit = new GitCommand(mirrorDir);
+            SnapshotHistory history = new SnapshotHistory(topdir + File.separator + HISTORY_DIRNAME);
+            
+            monitor.beginTask("Mining commits ... ", commits.size());
+            
+            ProjectMetrics previous = null;
+            String prevHash = null;
+            long last = 0;
+            int sinceFull = 0;
+            
+            for (int idx = 0; idx < commits.size(); idx++) {
+                if (monitor.isCanceled()) {
+                    monitor.done();
+                    return Status.CANCEL_STATUS;
+                }
+                
+                String hash = commits.get(idx)[0];
+                long time = Math.max(Long.parseLong(commits.get(idx)[1]) * 1000, last + 1);
+                last = time;
+                monitor.subTask((idx + 1) + "/" + commits.size() + " - " + hash.substring(0, 8));
+                
+                if (history.contains(time)) {
+                    previous = null;
+                    prevHash = hash;
+                    monitor.worked(1);
+                    continue;
+                }
+                
+                wgit.run("checkout", "-q", "-f", "--detach", hash);
+                if (!mirrorDir.isDirectory()) {
+                    previous = null;
+                    prevHash = hash;
+                    monitor.worked(1);
+                    continue;
+                }
+                if (mirror == null) {
+                    mirror = openMirror(mirrorDir);
+                }
+                
+                Map<String, List<String>> changed = null;
+                if (previous != null && sinceFull < FULL_INTERVAL) {
+                    changed = getChangedFiles(mgit, prevHash, hash);
+                }
+                
+                ProjectMetrics mproject;
+                if (changed != null && changed.isEmpty()) {
+                    mproject = new ProjectMetrics(previous.getJavaProject(), previous, new ArrayList<JavaPackage>(), null, null, time);
+                    
+                } else {
+                    mirror.refreshLocal(IResource.DEPTH_INFINITE, null);
+                    JavaModelFactory factory = new JavaModelFactory(JavaCore.create(mirror));
+                    factory.setJavaASTVisitor(new CFFileInfoCollector());
+                    JavaProject jproject = factory.create();
+                    CallGraph graph = ProjectMetrics.createCallGraph(jproject);
+                    ClassHierarchy hierarchy = new ClassHierarchy(jproject);
+                    
+                    if (changed == null) {
+                        mproject = new ProjectMetrics(jproject, null, jproject.getJavaPackages(), graph, hierarchy, time);
+                        sinceFull = 0;
+                    } else {
+                        mproject = new ProjectMetrics(jproject, previous, getAffectedPackages(jproject, previous, changed), graph, hierarchy, time);
+                        sinceFull++;
+                    }
+                }
+                
+                history.add(mproject);
+                publisher.publish(mproject);
+                System.out.println("- Mine commit " + hash + " into " + history.getVersions().size() + " versions");
+                
+                previous = mproject;
+                prevHash = hash;
+                monitor.worked(1);
+            }
+            
+        } catch (IOException e) {
+            e.printStackTrace();
+            monitor.done();
+            return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to mine git history of " + project.getElementName(), e);
+        } catch (CoreException e) {
+            e.printStackTrace();
+            monitor.done();
+            return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to mine git history of " + project.getElementName(), e);
+        } finally {
+            closeMirror(mirror);
+        }
+        
+        monitor.done();
+        return Status.OK_STATUS;
+    }
+    
+    /**
+     * Obtains the commits to be mined in chronological order.
+     * @param git the git command running in the project
+     * @return the collection of pairs of the hash and the commit time in seconds
+     * @throws IOException if git fails
+     */
+    private List<String[]> getCommits(GitCommand git) throws IOException {
+        List<String> lines;
+        if (releasesOnly) {
+            lines = git.run("log", "--no-walk", "--tags", "--format=%H %ct");
+            Collections.reverse(lines);
+        } else {
+            lines = git.run("log", "--reverse", "--first-parent", "--format=%H %ct", "HEAD");
+        }
+        
+        List<String[]> commits = new ArrayList<String[]>();
+        for (String line : lines) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length == 2) {
+                commits.add(fields);
+            }
+        }
+        return commits;
+    }
+    
+    /**
+     * Obtains the path of the project relative to the top directory of the repository.
+     * @param git the git command running in the project
+     * @return the relative path ending with a slash, or an empty string if the project is the top directory
+     * @throws IOException if git fails
+     */
+    private String getPrefix(GitCommand git) throws IOException {
+        List<String> lines = git.run("rev-parse", "--show-prefix");
+        if (lines.isEmpty()) {
+            return "";
+        }
+        return lines.get(0).trim();
+    }
+    
+    /**
+     * Creates a worktree dedicated to the mining unless it already exists.
+     * @param git the git command running in the project
+     * @param hash the hash of the commit checked out first
+     * @return the top directory of the worktree
+     * @throws IOException if git fails
+     */
+    private File prepareWorktree(GitCommand git, String hash) throws IOException {
+        File worktree = getHistoryLocation().append(project.getElementName()).toFile();
+        if (!new File(worktree, ".git").exists()) {
+            worktree.getParentFile().mkdirs();
+            git.run("worktree", "add", "-f", "--detach", worktree.getAbsolutePath(), hash);
+        }
+        return worktree;
+    }
+    
+    /**
+     * Opens a project mirroring the worktree, which is created in the workspace unless it already exists.
+     * @param dir the directory of the project in the worktree
+     * @return the mirror project
+     * @throws CoreException if the project cannot be created or opened
+     * @throws IOException if the class path of the project cannot be copied
+     */
+    private IProject openMirror(File dir) throws CoreException, IOException {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        IProject mirror = workspace.getRoot().getProject(project.getElementName() + MIRROR_SUFFIX);
+        if (!mirror.exists()) {
+            IProjectDescription description = workspace.newProjectDescription(mirror.getName());
+            description.setLocation(new Path(dir.getAbsolutePath()));
+            description.setNatureIds(project.getProject().getDescription().getNatureIds());
+            mirror.create(description, null);
+        }
+        mirror.open(null);
+        
+        File classpath = new File(dir, ".classpath");
+        if (!classpath.exists()) {
+            copy(new File(project.getProject().getLocation().toFile(), ".classpath"), classpath);
+        }
+        return mirror;
+    }
+    
+    /**
+     * Closes the project mirroring the worktree, so that it is not taken as a project of the workspace.
+     * @param mirror the mirror project, or <code>null</code> if it has not been opened
+     */
+    private void closeMirror(IProject mirror) {
+        if (mirror == null || !mirror.isOpen()) {
+            return;
+        }
+        
+        try {
+            mirror.close(null);
+        } catch (CoreException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Obtains the directory under which the worktrees dedicated to the mining are created.
+     * @return the path of the directory
+     */
+    private static IPath getHistoryLocation() {
+        return Activator.getDefault().getStateLocation().append("history");
+    }
+    
+    /**
+     * Tests if a project mirrors a worktree dedicated to the mining.
+     * @param project the project
+     * @return <code>true</code> if the project is located in a worktree of the mining, otherwise <code>false</code>
+     */
+    public static boolean isMirror(IProject project) {
+        IPath location = project.getLocation();
+        return location != null && getHistoryLocation().isPrefixOf(location);
+    }
+    
+    /**
+     * Obtains Java files whose content hashes differ between two commits.
+     * @param git the git command running in the project of the worktree
+     * @param from the hash of the older commit
+     * @param to the hash of the newer commit
+     * @return the map from the file names to the paths of the changed files relative to the project
+     * @throws IOException if git fails
+     */
+    private Map<String, List<String>> getChangedFiles(GitCommand git, String from, String to) throws IOException {
+        Map<String, List<String>> changed = new HashMap<String, List<String>>();
+        for (String line : git.run("diff", "--raw", "--no-abbrev", "--no-renames", "--relative", from, to, "--", "*.java")) {
+            int tab = line.indexOf('\t');
+            String[] fields = line.substring(0, Math.max(tab, 0)).split(" ");
+            if (tab < 0 || fields.length < 4 || fields[2].equals(fields[3])) {
+                continue;
+            }
+            
+            String path = line.substring(tab + 1);
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            List<String> paths = changed.get(name);
+            if (paths == null) {
+                paths = new ArrayList<String>();
+                changed.put(name, paths);
+            }
+            paths.add(path);
+        }
+        return changed;
+    }
+    
+    /**
+     * Obtains packages to be recalculated, which contain changed files in either commit, depend on them, or are depended on by them.
+     * Packages that did not exist in the previous commit are always recalculated.
+     * @param jproject the project of the newer commit
+     * @param previous the version of the older commit
+     * @param changed the map from the file names to the paths of the changed files
+     * @return the collection of the packages
+     */
+    private List<JavaPackage> getAffectedPackages(JavaProject jproject, ProjectMetrics previous, Map<String, List<String>> changed) {
+        Set<String> names = new HashSet<String>();
+        Set<String> known = new HashSet<String>();
+        for (PackageMetrics pm : previous.getPackageMetrics()) {
+            known.add(pm.getName());
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                if (isChanged(cm.getPath(), changed)) {
+                    names.add(pm.getName());
+                    names.addAll(pm.getAfferentPackageNames());
+                    names.addAll(pm.getEfferentPackageNames());
+                    break;
+                }
+            }
+        }
+        
+        for (JavaPackage jp : jproject.getJavaPackages()) {
+            for (JavaClass jc : jp.getJavaClasses()) {
+                if (isChanged(jc.getJavaFile().getPath(), changed)) {
+                    names.add(jp.getName());
+                    for (JavaPackage dep : jp.getAfferentJavaPackages()) {
+                        names.add(dep.getName());
+                    }
+                    for (JavaPackage dep : jp.getEfferentJavaPackages()) {
+                        names.add(dep.getName());
+                    }
+                    break;
+                }
+            }
+        }
+        
+        List<JavaPackage> jpackages = new ArrayList<JavaPackage>();
+        for (JavaPackage jp : jproject.getJavaPackages()) {
+            if (names.contains(jp.getName()) || !known.contains(jp.getName())) {
+                jpackages.add(jp);
+            }
+        }
+        return jpackages;
+    }
+    
+    /**
+     * Tests if a file is one of the changed files.
+     * @param path the path of the file
+     * @param changed the map from the file names to the paths of the changed files relative to the project
+     * @return <code>true</code> if the file is changed, otherwise <code>false</code>
+     */
+    private boolean isChanged(String path, Map<String, List<String>> changed) {
+        if (path == null) {
+            return false;
+        }
+        
+        path = path.replace('\\', '/');
+        List<String> paths = changed.get(path.substring(path.lastIndexOf('/') + 1));
+        if (paths != null) {
+            for (String p : paths) {
+                if (path.equals(p) || path.endsWith("/" + p)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Copies a file.
+     * @param from the file to be copied
+     * @param to the file to be written
+     * @throws IOException if the file cannot be copied
+     */
+    private static void copy(File from, File to) throws IOException {
+        if (!from.isFile()) {
+            return;
+        }
+        
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) > 0) {
+                    out.write(buf, 0, len);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,601 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.IMetric;
+import org.jtool.codeforest.metrics.MetricSort;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * Finds the worst classes and methods of a project by a metric or a weighted combination of metrics, and flags multivariate outliers.
+ * The values are read in a single pass into a column for each metric, and each value is turned into a robust z-score with the median and the median absolute deviation,
+ * which are selected in linear time within the column. Since most metric values are heavily skewed, the z-scores are taken on their logarithms.
+ * A query scores the rows column by column and keeps the top ones in a bounded min-heap instead of sorting all of them.
+ * @author Katsuhisa Maruyama
+ */
+public class Hotspots {
+    
+    /**
+     * The default number of the classes or methods found by a query.
+     */
+    public static final int DEFAULT_COUNT = 50;
+    
+    /**
+     * The ratio of the standard deviation to the median absolute deviation of normally distributed values.
+     */
+    private static final double MAD_TO_SIGMA = 1.4826;
+    
+    /**
+     * The ratio of the interquartile range to the standard deviation of normally distributed values.
+     */
+    private static final double IQR_PER_SIGMA = 1.349;
+    
+    /**
+     * The ratio of the standard deviation to the mean absolute deviation of normally distributed values.
+     */
+    private static final double MEAN_DEVIATION_TO_SIGMA = 1.2533;
+    
+    /**
+     * The standard normal quantile of the probability 0.999, which sets the threshold of the robust distance of an outlier.
+     */
+    private static final double OUTLIER_Z = 3.090;
+    
+    /**
+     * The values of the classes.
+     */
+    private Table classTable;
+    
+    /**
+     * The values of the methods.
+     */
+    private Table methodTable;
+    
+    /**
+     * Collects the values of the classes and methods of a project.
+     * @param classes the class metrics of the project
+     */
+    public Hotspots(List<ClassMetrics> classes) {
+        int methodCount = 0;
+        for (ClassMetrics cm : classes) {
+            methodCount = methodCount + cm.getMethodMetrics().size();
+        }
+        
+        classTable = new Table(false, classes.size());
+        methodTable = new Table(true, methodCount);
+        for (ClassMetrics cm : classes) {
+            classTable.add(cm.getQualifiedName(), cm.getQualifiedName(), cm);
+            for (MethodMetrics mm : cm.getMethodMetrics()) {
+                methodTable.add(mm.getQualifiedName(), cm.getQualifiedName(), mm);
+            }
+        }
+        classTable.complete();
+        methodTable.complete();
+    }
+    
+    /**
+     * Returns the number of the classes or methods.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @return the number of the classes or methods
+     */
+    public int size(boolean method) {
+        return getTable(method).size;
+    }
+    
+    /**
+     * Returns the names of the metrics that have values for the classes or methods.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @return the names of the metrics
+     */
+    public String[] getMetricNames(boolean method) {
+        Table table = getTable(method);
+        List<String> names = new ArrayList<String>();
+        for (String name : table.metricNames) {
+            if (table.indices.containsKey(name)) {
+                names.add(name);
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+    
+    /**
+     * Tests if a metric has values for the classes or methods.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @param name the name of the metric
+     * @return <code>true</code> if the metric has values, otherwise <code>false</code>
+     */
+    public boolean hasMetric(boolean method, String name) {
+        return getTable(method).indices.containsKey(name);
+    }
+    
+    /**
+     * Returns the number of the classes or methods flagged as multivariate outliers.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @return the number of the outliers
+     */
+    public int getOutlierCount(boolean method) {
+        return getTable(method).outlierCount;
+    }
+    
+    /**
+     * Finds the classes or methods with the highest scores.
+     * The score is the weighted sum of the robust z-scores of the metrics, or the robust distance if no weight is given.
+     * A negative weight ranks low values as bad ones, such as those of coverage.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @param weights the weights keyed by the names of the metrics, where metrics without values are ignored
+     * @param count the maximum number of the classes or methods to be found
+     * @param outliersOnly <code>true</code> if only the outliers are found, otherwise <code>false</code>
+     * @return the found classes or methods in descending order of their scores
+     */
+    public List<Entry> find(boolean method, Map<String, Double> weights, int count, boolean outliersOnly) {
+        return getTable(method).find(weights, count, outliersOnly);
+    }
+    
+    /**
+     * Returns the table of the classes or methods.
+     * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+     * @return the table
+     */
+    private Table getTable(boolean method) {
+        return method ? methodTable : classTable;
+    }
+    
+    /**
+     * Approximates a quantile of the chi-square distribution with the Wilson-Hilferty transformation.
+     * @param dof the degrees of freedom
+     * @param z the standard normal quantile of the same probability
+     * @return the approximated quantile
+     */
+    private static double chiSquareQuantile(int dof, double z) {
+        double a = 2.0 / (9.0 * dof);
+        double b = 1 - a + z * Math.sqrt(a);
+        return dof * b * b * b;
+    }
+    
+    /**
+     * A class or method found by a query.
+     */
+    public static class Entry {
+        
+        /**
+         * The fully-qualified name of the class or the qualified name of the method.
+         */
+        private String name;
+        
+        /**
+         * The fully-qualified name of the class or the class declaring the method.
+         */
+        private String className;
+        
+        /**
+         * The score of the class or method.
+         */
+        private double score;
+        
+        /**
+         * The robust distance of the class or method from the median of all of them.
+         */
+        private double distance;
+        
+        /**
+         * <code>true</code> if the class or method is a multivariate outlier, otherwise <code>false</code>.
+         */
+        private boolean outlier;
+        
+        /**
+         * Creates a found class or method.
+         * @param name the name of the class or method
+         * @param className the fully-qualified name of the class or the class declaring the method
+         * @param score the score
+         * @param distance the robust distance
+         * @param outlier <code>true</code> if the class or method is a multivariate outlier, otherwise <code>false</code>
+         */
+        Entry(String name, String className, double score, double distance, boolean outlier) {
+            this.name = name;
+            this.className = className;
+            this.score = score;
+            this.distance = distance;
+            this.outlier = outlier;
+        }
+        
+        /**
+         * Returns the name of the class or method.
+         * @return the fully-qualified name of the class or the qualified name of the method
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Returns the class of the class or method, whose tree displays it.
+         * @return the fully-qualified name of the class or the class declaring the method
+         */
+        public String getClassName() {
+            return className;
+        }
+        
+        /**
+         * Returns the score of the class or method.
+         * @return the score
+         */
+        public double getScore() {
+            return score;
+        }
+        
+        /**
+         * Returns the robust distance of the class or method, which is the square root of the sum of its squared robust z-scores.
+         * @return the robust distance
+         */
+        public double getDistance() {
+            return distance;
+        }
+        
+        /**
+         * Tests if the class or method is a multivariate outlier.
+         * @return <code>true</code> if it is an outlier, otherwise <code>false</code>
+         */
+        public boolean isOutlier() {
+            return outlier;
+        }
+    }
+    
+    /**
+     * The values of the classes or methods, which are stored in a column for each metric.
+     */
+    private static class Table {
+        
+        /**
+         * The number of the rows.
+         */
+        private int size = 0;
+        
+        /**
+         * The names of the classes or methods.
+         */
+        private String[] names;
+        
+        /**
+         * The fully-qualified names of the classes or the classes declaring the methods.
+         */
+        private String[] classNames;
+        
+        /**
+         * The names of the metrics of the columns.
+         */
+        private String[] metricNames;
+        
+        /**
+         * The indices of the columns having values, keyed by the names of the metrics.
+         */
+        private Map<String, Integer> indices = new HashMap<String, Integer>();
+        
+        /**
+         * The logarithms of the values of each column, which are negative if the values are missing.
+         */
+        private float[][] values;
+        
+        /**
+         * The number of the values that are not missing in each column.
+         */
+        private int[] counts;
+        
+        /**
+         * The medians of the logarithms of the values of each column.
+         */
+        private double[] medians;
+        
+        /**
+         * The robust scales of the logarithms of the values of each column, which are zero if all the values are the same.
+         */
+        private double[] scales;
+        
+        /**
+         * The robust distances of the rows.
+         */
+        private float[] distances;
+        
+        /**
+         * The flags of the rows that are multivariate outliers.
+         */
+        private boolean[] outliers;
+        
+        /**
+         * The number of the outliers.
+         */
+        private int outlierCount = 0;
+        
+        /**
+         * Creates an empty table with a column for each metric related to the classes or methods.
+         * @param method <code>true</code> for the methods, or <code>false</code> for the classes
+         * @param capacity the number of the rows
+         */
+        Table(boolean method, int capacity) {
+            List<String> columnNames = new ArrayList<String>();
+            for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+                if (method ? metric.isMethodMetric() : metric.isClassMetric()) {
+                    columnNames.add(metric.getName());
+                }
+            }
+            
+            int columns = columnNames.size();
+            metricNames = columnNames.toArray(new String[columns]);
+            values = new float[columns][capacity];
+            counts = new int[columns];
+            medians = new double[columns];
+            scales = new double[columns];
+            names = new String[capacity];
+            classNames = new String[capacity];
+        }
+        
+        /**
+         * Adds a row.
+         * @param name the name of the class or method
+         * @param className the fully-qualified name of the class or the class declaring the method
+         * @param metrics the metrics of the class or method
+         */
+        void add(String name, String className, CommonMetrics metrics) {
+            names[size] = name;
+            classNames[size] = className;
+            for (int m = 0; m < metricNames.length; m++) {
+                double value = metrics.getMetricValue(metricNames[m]);
+                if (value >= 0) {
+                    values[m][size] = (float)Math.log1p(value);
+                    counts[m]++;
+                } else {
+                    values[m][size] = -1;
+                }
+            }
+            size++;
+        }
+        
+        /**
+         * Calculates the medians and robust scales of the columns, and flags the rows whose robust distances exceed the 99.9th percentile of the chi-square distribution.
+         */
+        void complete() {
+            float[] buffer = new float[size];
+            int dof = 0;
+            for (int m = 0; m < metricNames.length; m++) {
+                if (counts[m] > 0) {
+                    indices.put(metricNames[m], new Integer(m));
+                    setScale(m, buffer);
+                    if (scales[m] > 0) {
+                        dof++;
+                    }
+                }
+            }
+            
+            double[] squares = new double[size];
+            for (int m = 0; m < metricNames.length; m++) {
+                if (scales[m] > 0) {
+                    for (int i = 0; i < size; i++) {
+                        double z = getZ(m, i);
+                        squares[i] = squares[i] + z * z;
+                    }
+                }
+            }
+            
+            double threshold = dof > 0 ? chiSquareQuantile(dof, OUTLIER_Z) : Double.POSITIVE_INFINITY;
+            distances = new float[size];
+            outliers = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                distances[i] = (float)Math.sqrt(squares[i]);
+                if (squares[i] > threshold) {
+                    outliers[i] = true;
+                    outlierCount++;
+                }
+            }
+        }
+        
+        /**
+         * Calculates the median of a column and estimates its standard deviation robustly.
+         * The median absolute deviation is used unless it is zero, which is common in counts, and then the interquartile range and the mean absolute deviation are tried.
+         * @param m the index of the column
+         * @param buffer the buffer that can hold all the values of the column
+         */
+        private void setScale(int m, float[] buffer) {
+            int n = copyValues(m, buffer);
+            double median = select(buffer, n, (n - 1) / 2);
+            medians[m] = median;
+            
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                buffer[i] = (float)Math.abs(buffer[i] - median);
+                sum = sum + buffer[i];
+            }
+            double mad = select(buffer, n, (n - 1) / 2);
+            if (mad > 0) {
+                scales[m] = MAD_TO_SIGMA * mad;
+                return;
+            }
+            
+            copyValues(m, buffer);
+            double iqr = select(buffer, n, (3 * (n - 1)) / 4) - select(buffer, n, (n - 1) / 4);
+            if (iqr > 0) {
+                scales[m] = iqr / IQR_PER_SIGMA;
+            } else {
+                scales[m] = MEAN_DEVIATION_TO_SIGMA * sum / n;
+            }
+        }
+        
+        /**
+         * Copies the values of a column that are not missing.
+         * @param m the index of the column
+         * @param buffer the buffer that receives the values
+         * @return the number of the copied values
+         */
+        private int copyValues(int m, float[] buffer) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[m][i] >= 0) {
+                    buffer[n] = values[m][i];
+                    n++;
+                }
+            }
+            return n;
+        }
+        
+        /**
+         * Returns the robust z-score of a value.
+         * @param m the index of the column
+         * @param i the index of the row
+         * @return the robust z-score, which is <code>0</code> if the value is missing or all the values are the same
+         */
+        private double getZ(int m, int i) {
+            float value = values[m][i];
+            if (value < 0 || scales[m] <= 0) {
+                return 0;
+            }
+            return (value - medians[m]) / scales[m];
+        }
+        
+        /**
+         * Finds the rows with the highest scores.
+         * @param weights the weights keyed by the names of the metrics
+         * @param count the maximum number of the rows to be found
+         * @param outliersOnly <code>true</code> if only the outliers are found, otherwise <code>false</code>
+         * @return the found rows in descending order of their scores
+         */
+        List<Entry> find(Map<String, Double> weights, int count, boolean outliersOnly) {
+            double[] scores = new double[size];
+            boolean weighted = false;
+            for (Map.Entry<String, Double> weight : weights.entrySet()) {
+                Integer m = indices.get(weight.getKey());
+                if (m == null || weight.getValue() == null || scales[m.intValue()] <= 0) {
+                    continue;
+                }
+                
+                weighted = true;
+                double w = weight.getValue().doubleValue();
+                for (int i = 0; i < size; i++) {
+                    scores[i] = scores[i] + w * getZ(m.intValue(), i);
+                }
+            }
+            if (!weighted) {
+                for (int i = 0; i < size; i++) {
+                    scores[i] = distances[i];
+                }
+            }
+            
+            int[] heap = new int[Math.max(0, Math.min(count, size))];
+            int filled = 0;
+            for (int i = 0; i < size && heap.length > 0; i++) {
+                if (outliersOnly && !outliers[i]) {
+                    continue;
+                }
+                
+                if (filled < heap.length) {
+                    heap[filled] = i;
+                    siftUp(heap, filled, scores);
+                    filled++;
+                } else if (scores[i] > scores[heap[0]]) {
+                    heap[0] = i;
+                    siftDown(heap, filled, scores);
+                }
+            }
+            
+            Entry[] found = new Entry[filled];
+            for (int k = filled - 1; k >= 0; k--) {
+                int i = heap[0];
+                found[k] = new Entry(names[i], classNames[i], scores[i], distances[i], outliers[i]);
+                heap[0] = heap[k];
+                siftDown(heap, k, scores);
+            }
+            
+            List<Entry> result = new ArrayList<Entry>(filled);
+            for (Entry entry : found) {
+                result.add(entry);
+            }
+            return result;
+        }
+        
+        /**
+         * Selects the k-th smallest of values in expected linear time, which partially reorders them.
+         * @param a the values
+         * @param n the number of the values
+         * @param k the rank of the value to be selected, starting from <code>0</code>
+         * @return the selected value
+         */
+        private static float select(float[] a, int n, int k) {
+            int low = 0;
+            int high = n - 1;
+            while (low < high) {
+                float pivot = a[(low + high) >>> 1];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (a[i] < pivot) {
+                        i++;
+                    }
+                    while (a[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        float tmp = a[i];
+                        a[i] = a[j];
+                        a[j] = tmp;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    high = j;
+                } else if (k >= i) {
+                    low = i;
+                } else {
+                    return a[k];
+                }
+            }
+            return a[k];
+        }
+        
+        /**
+         * Moves up an element of a min-heap of rows ordered by their scores.
+         * @param heap the indices of the rows in the heap
+         * @param k the position of the element
+         * @param scores the scores of the rows
+         */
+        private static void siftUp(int[] heap, int k, double[] scores) {
+            int i = heap[k];
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (scores[heap[parent]] <= scores[i]) {
+                    break;
+                }
+                heap[k] = heap[parent];
+                k = parent;
+            }
+            heap[k] = i;
+        }
+        
+        /**
+         * Moves down the root of a min-heap of rows ordered by their scores.
+         * @param heap the indices of the rows in the heap
+         * @param n the number of the elements in the heap
+         * @param scores the scores of the rows
+         */
+        private static void siftDown(int[] heap, int n, double[] scores) {
+            if (n == 0) {
+                return;
+            }
+            
+            int i = heap[0];
+            int k = 0;
+            while (2 * k + 1 < n) {
+                int child = 2 * k + 1;
+                if (child + 1 < n && scores[heap[child + 1]] < scores[heap[child]]) {
+                    child++;
+                }
+                if (scores[i] <= scores[heap[child]]) {
+                    break;
+                }
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = i;
+        }
+    }
+}
@@ -60,6 +60,33 @@ public class MethodMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object sharing metric values with a frozen method, but belonging to another class.
+     * @param original the frozen method
+     * @param cm a metrics object for a class containing this method
+     */
+    MethodMetrics(MethodMetrics original, ClassMetrics cm) {
+        super(original);
+        
+        jmethod = original.jmethod;
+        classMetrics = cm;
+    }
+    
+    /**
+     * Creates a new object copying metric values of a frozen method of a previous revision, but representing the same method of a new revision.
+     * The copied values can be changed, so that metrics over the whole project are recalculated for the new revision.
+     * @param original the frozen method of the previous revision
+     * @param jmethod the method of the new revision
+     * @param cm a metrics object for a class containing this method
+     */
+    MethodMetrics(MethodMetrics original, CFJavaMethod jmethod, ClassMetrics cm) {
+        super();
+        
+        metrics.putAll(original.metrics);
+        this.jmethod = jmethod;
+        classMetrics = cm;
+    }
+    
     /**
      * Sets the code properties with respect to positions and line numbers of this method.
      * @param start the character index indicating where the code fragment for this method begins
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.Time;
+import org.jtool.eclipse.model.java.JavaModelFactory;
+import org.jtool.eclipse.model.java.JavaPackage;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * A cancellable job that parses a project and calculates its metric values in the background.
+ * Packages whose metrics have been calculated are published as versions, so that a forest is filled in as they complete.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricsJob extends Job {
+    
+    /**
+     * The minimum interval in milliseconds between versions published while calculating.
+     */
+    static final long PUBLISH_INTERVAL = 500;
+    
+    /**
+     * The project whose metric values are calculated, which is parsed by this job.
+     */
+    private IJavaProject project;
+    
+    /**
+     * The publisher that receives the calculated versions.
+     */
+    private MetricsPublisher publisher;
+    
+    /**
+     * Creates a job that calculates metric values within a project.
+     * @param project the project whose metric values are calculated
+     * @param publisher the publisher that receives the calculated versions
+     * @param rule the scheduling rule of the job, or <code>null</code> if none
+     */
+    public MetricsJob(IJavaProject project, MetricsPublisher publisher, ISchedulingRule rule) {
+        super("Calculating metrics of " + project.getElementName());
+        
+        this.project = project;
+        this.publisher = publisher;
+        setRule(rule);
+        setUser(true);
+        setPriority(Job.LONG);
+    }
+    
+    /**
+     * Creates an empty version of project metrics, which represents a project that has not been parsed yet.
+     * @param project the project
+     * @return the empty project metrics
+     */
+    public static ProjectMetrics createEmpty(IJavaProject project) {
+        return new ProjectMetrics(project.getElementName(), project.getProject().getLocation().toOSString(), new ArrayList<ProjectMetrics>(), Time.getCurrentTime(), false);
+    }
+    
+    /**
+     * Parses the project and calculates metric values of its packages one by one, where all the versions share the time of the empty version.
+     * @param monitor the progress monitor
+     * @return the status of the job
+     */
+    protected IStatus run(IProgressMonitor monitor) {
+        SubMonitor progress = SubMonitor.convert(monitor, "Calculating metrics ... ", 2);
+        
+        progress.subTask("Parsing " + project.getElementName() + " ...");
+        JavaModelFactory factory = new JavaModelFactory(project);
+        factory.setJavaASTVisitor(new CFFileInfoCollector());
+        JavaProject jproject = factory.create();
+        progress.worked(1);
+        if (monitor.isCanceled()) {
+            monitor.done();
+            return Status.CANCEL_STATUS;
+        }
+        
+        progress.subTask("Scanning git log and quality reports ...");
+        ProjectMetrics.collectExternalInfo(jproject);
+        progress.subTask("Analyzing the call graph ...");
+        CallGraph graph = ProjectMetrics.createCallGraph(jproject);
+        ClassHierarchy hierarchy = new ClassHierarchy(jproject);
+        
+        List<JavaPackage> jpackages = new ArrayList<JavaPackage>(jproject.getJavaPackages());
+        SubMonitor calculation = progress.newChild(1).setWorkRemaining(jpackages.size());
+        
+        ProjectMetrics previous = publisher.getProjectMetrics();
+        long time = previous.getTime();
+        List<PackageMetrics> pending = new ArrayList<PackageMetrics>();
+        long published = System.currentTimeMillis();
+        
+        int idx = 1;
+        for (JavaPackage jp : jpackages) {
+            if (monitor.isCanceled()) {
+                monitor.done();
+                return Status.CANCEL_STATUS;
+            }
+            
+            calculation.subTask(idx + "/" + jpackages.size() + " - " + jp.getName());
+            pending.add(ProjectMetrics.calculate(jp, graph, hierarchy, time));
+            calculation.worked(1);
+            
+            if (idx < jpackages.size() && System.currentTimeMillis() - published >= PUBLISH_INTERVAL) {
+                previous = new ProjectMetrics(jproject, previous, pending, hierarchy, false);
+                publisher.publish(previous);
+                pending.clear();
+                published = System.currentTimeMillis();
+            }
+            idx++;
+        }
+        
+        publisher.publish(new ProjectMetrics(jproject, previous, pending, hierarchy, true));
+        monitor.done();
+        return Status.OK_STATUS;
+    }
+}
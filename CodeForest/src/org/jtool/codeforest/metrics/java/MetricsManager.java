@@ -4,15 +4,40 @@
 
 package org.jtool.codeforest.metrics.java;
 
+import org.jtool.codeforest.Activator;
+import org.jtool.codeforest.util.Time;
 import org.jtool.codeforest.util.XMLWriter;
+import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jdt.core.IJavaProject;
 import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import org.w3c.dom.Document;
 import java.io.File;
+import java.io.InputStream;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An object that manages metric values within a project.
@@ -22,6 +47,8 @@ public class MetricsManager {
     
     private static final String XML_FILENAME = "codeforest";
     private static final String XML_FILENAME_EXT = ".xml";
+    static final String MANIFEST_FILENAME = "manifest.xml";
+    private static final String PART_FILENAME = "part";
     
     public static final String TopElem = "codeForest";
     
@@ -40,6 +67,9 @@ public class MetricsManager {
     
     public static final String MetricsElem = "metrics";
     
+    public static final String PartElem = "part";
+    public static final String FileAttr = "file";
+    
     public static final String DateAttr = "date";
     public static final String TimeAttr = "time";
     
@@ -49,6 +79,7 @@ public class MetricsManager {
     public static final String SignatureAttr = "sig";
     public static final String FqnAttr = "fqn";
     public static final String ModifiersAttr = "modifiers";
+    public static final String SketchAttr = "sketch";
     
     public static final String isInterfaceAttr = "isInterface";
     public static final String isEnumAttr = "isEnum";
@@ -67,12 +98,67 @@ public class MetricsManager {
     public static final String BottomLineNumberAttr = "bottom";
     public static final String ExtendedBottomLineNumberAttr = "exbottom";
     
+    /**
+     * <code>true</code> if metric values are exported into a directory of part files, otherwise <code>false</code>.
+     */
+    private boolean sharded = false;
+    
+    /**
+     * The maximum number of full snapshots kept in the top directory, or zero for no limit.
+     */
+    private int retentionCount = 0;
+    
+    /**
+     * The maximum age of full snapshots kept in the top directory in days, or zero for no limit.
+     */
+    private int retentionDays = 0;
+    
     /**
      * Creates a new, empty object.
      */
     public MetricsManager() {
     }
     
+    /**
+     * Sets whether metric values are exported into a directory with a manifest and one part file per package.
+     * @param sharded <code>true</code> if the sharded layout is used, otherwise <code>false</code>
+     */
+    public void setSharded(boolean sharded) {
+        this.sharded = sharded;
+    }
+    
+    /**
+     * Tests if metric values are exported into a directory with a manifest and one part file per package.
+     * @return <code>true</code> if the sharded layout is used, otherwise <code>false</code>
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+    
+    /**
+     * Sets the retention policy of full snapshots, which is applied whenever metric values are exported.
+     * Versions recorded in the history are never removed by the policy.
+     * @param count the maximum number of full snapshots to be kept, or zero for no limit
+     * @param days the maximum age of full snapshots to be kept in days, or zero for no limit
+     */
+    public void setRetention(int count, int days) {
+        retentionCount = count;
+        retentionDays = days;
+    }
+    
+    /**
+     * Updates the catalog of snapshots within a project and removes full snapshots that exceed the retention policy.
+     * Snapshots from which methods and fields are still loaded on demand are kept.
+     * @param topdir the path of the top directory for the project
+     * @return the updated catalog
+     */
+    public SnapshotCatalog updateCatalog(String topdir) {
+        SnapshotCatalog catalog = new SnapshotCatalog(topdir);
+        catalog.refresh();
+        catalog.applyRetention(retentionCount, retentionDays);
+        return catalog;
+    }
+    
     /**
      * Collects metric values within a project and returns an object storing these values.
      * @param jproject the project whose metric values are collected
@@ -80,11 +166,131 @@ public class MetricsManager {
      */
     public ProjectMetrics create(JavaProject jproject) {
         if (jproject != null) {
+            ProjectMetrics.collectExternalInfo(jproject);
             return new ProjectMetrics(jproject);
         }
         return null;
     }
     
+    /**
+     * Collects metric values of packages within a project, which form a shard analyzed by a worker process.
+     * @param jproject the project whose metric values are collected
+     * @param packageNames the names of the packages of the shard
+     * @return the project metric containing only the packages of the shard, or <code>null</code> if the creation fails
+     */
+    public ProjectMetrics create(JavaProject jproject, Collection<String> packageNames) {
+        if (jproject == null) {
+            return null;
+        }
+        
+        Set<String> names = new HashSet<String>(packageNames);
+        List<JavaPackage> jpackages = new ArrayList<JavaPackage>();
+        for (JavaPackage jp : jproject.getJavaPackages()) {
+            if (names.contains(jp.getName())) {
+                jpackages.add(jp);
+            }
+        }
+        ProjectMetrics.collectExternalInfo(jproject);
+        return new ProjectMetrics(jproject, null, jpackages, ProjectMetrics.createCallGraph(jproject), new ClassHierarchy(jproject), false);
+    }
+    
+    /**
+     * Collects metric values within a project in the background.
+     * The returned publisher holds an empty version at first, and receives versions as packages are calculated.
+     * The metric values are exported when the calculation completes without cancellation.
+     * @param project the project whose metric values are collected, which is parsed in the background
+     * @param rule the scheduling rule of the calculation, or <code>null</code> if none
+     * @return the publisher of the calculated versions
+     */
+    public MetricsPublisher createInBackground(IJavaProject project, ISchedulingRule rule) {
+        final MetricsPublisher publisher = new MetricsPublisher(MetricsJob.createEmpty(project));
+        
+        MetricsJob job = new MetricsJob(project, publisher, rule);
+        job.addJobChangeListener(new JobChangeAdapter() {
+            
+            /**
+             * Exports the metric values when the calculation is done.
+             * @param event the event details
+             */
+            public void done(IJobChangeEvent event) {
+                if (event.getResult().isOK()) {
+                    writeXMLInBackground(publisher.getProjectMetrics());
+                }
+            }
+        });
+        job.schedule();
+        return publisher;
+    }
+    
+    /**
+     * Collects metric values within projects of a workspace in the background.
+     * The metric values of each project are exported as soon as they are calculated, and
+     * the returned publisher receives versions that combine the projects calculated so far.
+     * @param projects the projects whose metric values are collected, which are parsed in the background
+     * @param name the name of the workspace
+     * @param path the path of the top directory of the workspace
+     * @param rule the scheduling rule of the calculation, or <code>null</code> if none
+     * @return the publisher of the combined versions
+     */
+    public MetricsPublisher createInBackground(List<IJavaProject> projects, String name, String path, ISchedulingRule rule) {
+        MetricsPublisher publisher = new MetricsPublisher(WorkspaceMetricsJob.createEmpty(name, path));
+        
+        WorkspaceMetricsJob job = new WorkspaceMetricsJob(projects, name, path, this, publisher, rule);
+        job.schedule();
+        return publisher;
+    }
+    
+    /**
+     * Collects metric values within a project by worker processes in the background.
+     * The returned publisher holds an empty version at first, and receives the merged version, which has the same time.
+     * The metric values are exported when all the workers succeed.
+     * @param coordinator the coordinator that runs the worker processes
+     * @param rule the scheduling rule of the calculation, or <code>null</code> if none
+     * @return the publisher of the merged version
+     */
+    public MetricsPublisher createInShards(final ShardCoordinator coordinator, ISchedulingRule rule) {
+        final MetricsPublisher publisher = new MetricsPublisher(new ProjectMetrics(coordinator.getName(), coordinator.getTopDir(), new ArrayList<ProjectMetrics>(), Time.getCurrentTime(), false));
+        
+        Job job = new Job("Calculating metrics of " + coordinator.getName() + " by worker processes") {
+            
+            /**
+             * Runs the worker processes and merges their results.
+             * @param monitor the progress monitor
+             * @return the status of the job
+             */
+            protected IStatus run(IProgressMonitor monitor) {
+                ProjectMetrics mproject = coordinator.run(MetricsManager.this, publisher.getProjectMetrics().getTime());
+                if (mproject == null) {
+                    return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Worker processes failed to calculate metrics of " + coordinator.getName());
+                }
+                
+                publisher.publish(mproject);
+                writeXMLInBackground(mproject);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setRule(rule);
+        job.setUser(true);
+        job.setPriority(Job.LONG);
+        job.schedule();
+        return publisher;
+    }
+    
+    /**
+     * Mines metric values of commits of a project stored in a local git repository in the background.
+     * The versions of the commits are recorded in a history store under the project and published one by one.
+     * @param project the project whose history is mined
+     * @param releasesOnly <code>true</code> if only commits pointed to by tags are mined, otherwise <code>false</code>
+     * @return the publisher of the mined versions
+     */
+    public MetricsPublisher createFromGit(IJavaProject project, boolean releasesOnly) {
+        MetricsPublisher publisher = new MetricsPublisher(GitHistoryMiner.createEmpty(project));
+        
+        GitHistoryMiner job = new GitHistoryMiner(project, releasesOnly, publisher);
+        job.schedule();
+        return publisher;
+    }
+    
     /**
      * Imports metric values within a project and returns an object storing these values.
      * @param jproject the project whose metric values are collected
@@ -96,12 +302,28 @@ public class MetricsManager {
     
     /**
      * Imports metric values within a project and returns an object storing these values.
+     * If the file has an up-to-date index, methods and fields of each class are loaded on demand.
      * @param path the path of the file storing metric values
      * @return the project metric, or <code>null</code> if the creation fails
      */
     public ProjectMetrics readXML(String path) {
         File file = new File(path);
+        if (file.isDirectory()) {
+            return readShards(file);
+        }
+        if (file.getName().equals(MANIFEST_FILENAME)) {
+            return readShards(file.getParentFile());
+        }
+        
         if (file.canRead()) {
+            ForestDataIndex index = ForestDataIndex.read(file);
+            if (index != null) {
+                ProjectMetrics mproject = readXML(path, index);
+                if (mproject != null) {
+                    return mproject;
+                }
+            }
+            
             SAXParserFactory factory = SAXParserFactory.newInstance();
             try {
                 SAXParser parser = factory.newSAXParser();
@@ -120,12 +342,103 @@ public class MetricsManager {
         return null;
     }
     
+    /**
+     * Imports class-level metric values within a project, skipping methods and fields by using an index.
+     * @param path the path of the file storing metric values
+     * @param index the index of the file
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    private ProjectMetrics readXML(String path, ForestDataIndex index) {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        InputStream in = null;
+        try {
+            SAXParser parser = factory.newSAXParser();
+            ForestDataImporter handler = new ForestDataImporter(path, index);
+            in = index.openClassLevelStream();
+            parser.parse(in, handler);
+            return handler.getProjectMetrics();
+            
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+        } catch (SAXException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return null;
+    }
+    
     /**
      * Exports metric values within a project.
      * @param mproject the project metrics
      */
     public void writeXML(ProjectMetrics mproject) {
-        writeXML(mproject.getJavaProject().getTopDir(), mproject);
+        mproject.freeze();
+        writeSnapshot(mproject.getJavaProject().getTopDir(), mproject);
+    }
+    
+    /**
+     * Exports metric values within a project in the background.
+     * The project metrics are frozen before this method returns, so that they can be read while the xml files are being written.
+     * @param mproject the project metrics
+     * @return the job writing the xml files, which has been scheduled
+     */
+    public Job writeXMLInBackground(final ProjectMetrics mproject) {
+        final String topdir = mproject.getJavaProject().getTopDir();
+        mproject.freeze();
+        
+        Job job = new Job("Writing metric values of " + mproject.getName()) {
+            
+            /**
+             * Writes the xml files.
+             * @param monitor the progress monitor
+             * @return the status of the job
+             */
+            protected IStatus run(IProgressMonitor monitor) {
+                writeSnapshot(topdir, mproject);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setPriority(Job.LONG);
+        job.setRule(new DirectoryRule(topdir));
+        job.schedule();
+        return job;
+    }
+    
+    /**
+     * Exports metric values within a project, and records them into the history.
+     * Part files are built package by package from the project metrics when the export is sharded.
+     * @param topdir the path of the top directory for the project
+     * @param mproject the project metrics, which have been frozen
+     */
+    private void writeSnapshot(String topdir, ProjectMetrics mproject) {
+        if (sharded) {
+            writeShards(topdir, mproject);
+            writeHistory(topdir, mproject);
+        } else {
+            Document doc = ForestDataExporter.getDocument(mproject);
+            if (doc == null) {
+                return;
+            }
+            writeXML(topdir, mproject.getTime(), doc, true);
+            writeHistory(topdir, mproject.getTime(), doc);
+        }
+        updateCatalog(topdir);
+    }
+    
+    /**
+     * Returns the name of the file storing metric values of a version.
+     * @param time the time of the version
+     * @return the file name
+     */
+    static String getFileName(long time) {
+        return XML_FILENAME + String.valueOf(time) + XML_FILENAME_EXT;
     }
     
     /**
@@ -134,15 +447,364 @@ public class MetricsManager {
      * @param mproject the project metrics
      */
     public void writeXML(String topdir, ProjectMetrics mproject) {
-        String filename = XML_FILENAME + String.valueOf(mproject.getTime()) + XML_FILENAME_EXT;
-        File file = new File(topdir + File.separator + filename);
+        writeXML(topdir, mproject.getTime(), ForestDataExporter.getDocument(mproject), true);
+    }
+    
+    /**
+     * Exports metric values captured in a DOM instance into an xml file, which replaces the existing one atomically.
+     * @param topdir the path of the top directory for the project
+     * @param time the time of the metric values
+     * @param doc the DOM instance storing the metric values
+     * @param indexed <code>true</code> if the index of the xml file is written, otherwise <code>false</code>
+     */
+    private void writeXML(String topdir, long time, Document doc, boolean indexed) {
+        File file = new File(topdir + File.separator + getFileName(time));
+        if (!XMLWriter.writeAtomically(file, doc)) {
+            return;
+        }
         
-        if (file.exists()) {
-            file.delete();
+        if (indexed) {
+            ForestDataIndex.write(file);
+        }
+        System.out.println("- Export metric values to xml file: " + file.getAbsolutePath());
+    }
+    
+    /**
+     * Records metric values within a project into its history as a delta from the latest version.
+     * @param topdir the path of the top directory for the project
+     * @param mproject the project metrics
+     */
+    public void writeHistory(String topdir, ProjectMetrics mproject) {
+        writeHistory(topdir, mproject.getTime(), ForestDataExporter.getDocument(mproject));
+    }
+    
+    /**
+     * Records metric values captured in a DOM instance into the history.
+     * @param topdir the path of the top directory for the project
+     * @param curtime the time of the metric values
+     * @param doc the DOM instance storing the metric values, which is not changed
+     */
+    private void writeHistory(String topdir, long curtime, Document doc) {
+        SnapshotHistory history = new SnapshotHistory(topdir);
+        history.add(doc, curtime);
+    }
+    
+    /**
+     * Imports metric values of a version within a project from its history.
+     * @param topdir the path of the top directory for the project
+     * @param time the time of the version
+     * @return the project metric, or <code>null</code> if the version is not recorded
+     */
+    public ProjectMetrics readHistory(String topdir, long time) {
+        return new SnapshotHistory(topdir).read(time);
+    }
+    
+    /**
+     * Compares metric values stored in two snapshots and writes the differences into a report.
+     * The report is written in JSON format if its name ends with ".json", otherwise in CSV format.
+     * @param oldPath the path of the snapshot storing the old metric values
+     * @param newPath the path of the snapshot storing the new metric values
+     * @param reportPath the path of the report file
+     * @return <code>true</code> if the report was written, otherwise <code>false</code>
+     */
+    public boolean writeDiffReport(String oldPath, String newPath, String reportPath) {
+        int format = SnapshotDiffReport.CSV;
+        if (reportPath.endsWith(".json")) {
+            format = SnapshotDiffReport.JSON;
+        }
+        
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(reportPath));
+            SnapshotDiffReport report = new SnapshotDiffReport(writer, format);
+            report.start();
+            boolean result = new SnapshotDiff(new File(oldPath), new File(newPath)).diff(report);
+            report.finish();
+            
+            System.out.println("- Export " + report.getCount() + " differences to report file: " + reportPath);
+            return result;
+            
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Exports metric values within a project into flat tables of packages, classes, methods, and fields.
+     * @param mproject the project metrics
+     * @param dir the path of the directory storing the tables
+     * @param format the format of the tables (<code>MetricsTableExporter.CSV</code> or <code>MetricsTableExporter.JSON_LINES</code>)
+     * @return <code>true</code> if the tables were written, otherwise <code>false</code>
+     */
+    public boolean writeTables(ProjectMetrics mproject, String dir, int format) {
+        String prefix = XML_FILENAME + String.valueOf(mproject.getTime());
+        MetricsTableExporter exporter = new MetricsTableExporter(format);
+        if (exporter.export(mproject, dir, prefix)) {
+            System.out.println("- Export " + exporter.getCount(SnapshotDiff.METHOD) + " method rows to tables: " + dir);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Exports metric values stored in a snapshot into flat tables of packages, classes, methods, and fields.
+     * The snapshot is streamed without building its model.
+     * @param path the path of the xml file, the manifest, or the directory storing the snapshot
+     * @param dir the path of the directory storing the tables
+     * @param format the format of the tables (<code>MetricsTableExporter.CSV</code> or <code>MetricsTableExporter.JSON_LINES</code>)
+     * @return <code>true</code> if the tables were written, otherwise <code>false</code>
+     */
+    public boolean writeTables(String path, String dir, int format) {
+        File file = new File(path);
+        String prefix = file.getName();
+        if (prefix.equals(MANIFEST_FILENAME)) {
+            prefix = file.getAbsoluteFile().getParentFile().getName();
+        } else if (prefix.endsWith(XML_FILENAME_EXT)) {
+            prefix = prefix.substring(0, prefix.length() - XML_FILENAME_EXT.length());
+        }
+        
+        MetricsTableExporter exporter = new MetricsTableExporter(format);
+        if (exporter.export(file, dir, prefix)) {
+            System.out.println("- Export " + exporter.getCount(SnapshotDiff.METHOD) + " method rows to tables: " + dir);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Imports metric values within a project from a directory with a manifest and part files.
+     * The part files are parsed concurrently and the total and maximum values are collected after they are merged.
+     * @param dir the directory storing the manifest and the part files
+     * @return the project metric, or <code>null</code> if the creation fails
+     */
+    private ProjectMetrics readShards(final File dir) {
+        File manifest = new File(dir, MANIFEST_FILENAME);
+        if (!manifest.canRead()) {
+            return null;
+        }
+        
+        ForestDataImporter handler = new ForestDataImporter(dir.getPath());
+        handler.setCollectAfterImport(false);
+        try {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(manifest, handler);
+            
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+            return null;
+        } catch (SAXException e) {
+            e.printStackTrace();
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        
+        final ProjectMetrics mproject = handler.getProjectMetrics();
+        if (mproject == null) {
+            return null;
+        }
+        
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final String name : handler.getPartFiles()) {
+            tasks.add(new Callable<Object>() {
+                
+                /**
+                 * Parses a part file.
+                 * @return always <code>null</code>
+                 * @throws Exception if the part file cannot be parsed
+                 */
+                public Object call() throws Exception {
+                    SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                    parser.parse(new File(dir, name), new ForestDataImporter(mproject));
+                    return null;
+                }
+            });
+        }
+        
+        if (!runConcurrently(tasks)) {
+            return null;
         }
         
+        mproject.collectMetricsInfoAfterXMLImport();
+        return mproject;
+    }
+    
+    /**
+     * Exports metric values within a project into a given xml file, which is replaced atomically.
+     * @param file the xml file
+     * @param mproject the project metrics
+     * @return <code>true</code> if the file was written, otherwise <code>false</code>
+     */
+    public boolean exportXML(File file, ProjectMetrics mproject) {
         Document doc = ForestDataExporter.getDocument(mproject);
-        XMLWriter.write(file, doc);
-        System.out.println("- Export metric values to xml file: " + file.getAbsolutePath());
+        return doc != null && XMLWriter.writeAtomically(file, doc);
+    }
+    
+    /**
+     * Merges partial snapshots written by worker processes into one project metrics.
+     * The snapshots are parsed concurrently, and then the afferent and efferent classes and packages across them
+     * and the total and maximum values are recomputed.
+     * @param name the name of the project
+     * @param topdir the path of the top directory for the project
+     * @param files the xml files of the partial snapshots, whose packages are disjoint
+     * @param time the time given to the merged project metrics
+     * @return the merged project metrics, or <code>null</code> if any snapshot cannot be parsed
+     */
+    public ProjectMetrics merge(String name, String topdir, List<File> files, long time) {
+        final ProjectMetrics mproject = new ProjectMetrics(name, topdir, time);
+        
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final File file : files) {
+            tasks.add(new Callable<Object>() {
+                
+                /**
+                 * Parses a partial snapshot.
+                 * @return always <code>null</code>
+                 * @throws Exception if the snapshot cannot be parsed
+                 */
+                public Object call() throws Exception {
+                    SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+                    parser.parse(file, new ForestDataImporter(mproject));
+                    return null;
+                }
+            });
+        }
+        
+        if (!runConcurrently(tasks)) {
+            return null;
+        }
+        
+        mproject.collectMetricsInfoAfterMerge();
+        return mproject;
+    }
+    
+    /**
+     * Exports metric values within a project into a directory with a manifest and one part file per package.
+     * The part files are built from the packages and written concurrently into a temporary directory, which replaces the existing directory.
+     * @param topdir the path of the top directory for the project
+     * @param mproject the project metrics, which have been frozen
+     */
+    public void writeShards(String topdir, final ProjectMetrics mproject) {
+        String dirname = XML_FILENAME + String.valueOf(mproject.getTime());
+        final File dir = new File(topdir + File.separator + dirname);
+        final File tmpdir = new File(topdir + File.separator + dirname + XMLWriter.TMP_FILENAME_EXT);
+        
+        if (tmpdir.exists()) {
+            File[] files = tmpdir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        } else {
+            tmpdir.mkdirs();
+        }
+        
+        List<PackageMetrics> packages = mproject.getPackageMetrics();
+        List<String> partFiles = new ArrayList<String>();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int idx = 0; idx < packages.size(); idx++) {
+            final String name = PART_FILENAME + String.valueOf(idx) + XML_FILENAME_EXT;
+            final PackageMetrics pm = packages.get(idx);
+            partFiles.add(name);
+            
+            tasks.add(new Callable<Object>() {
+                
+                /**
+                 * Builds and writes a part file.
+                 * @return always <code>null</code>
+                 * @throws IOException if the part file cannot be written
+                 */
+                public Object call() throws IOException {
+                    Document partDoc = ForestDataExporter.getPackageDocument(mproject, pm);
+                    if (partDoc == null || !XMLWriter.writeAtomically(new File(tmpdir, name), partDoc)) {
+                        throw new IOException("Cannot write " + name);
+                    }
+                    return null;
+                }
+            });
+        }
+        
+        if (!runConcurrently(tasks)) {
+            return;
+        }
+        
+        Document manifestDoc = ForestDataExporter.getManifestDocument(mproject, partFiles);
+        if (manifestDoc != null && XMLWriter.writeAtomically(new File(tmpdir, MANIFEST_FILENAME), manifestDoc) && XMLWriter.rename(tmpdir, dir)) {
+            System.out.println("- Export metric values to xml files: " + dir.getAbsolutePath());
+        }
+    }
+    
+    /**
+     * Runs tasks concurrently on a pool whose size is the number of available processors.
+     * @param tasks the tasks to be run
+     * @return <code>true</code> if all the tasks succeeded, otherwise <code>false</code>
+     */
+    private boolean runConcurrently(List<Callable<Object>> tasks) {
+        int size = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(size);
+        boolean success = true;
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    success = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        } finally {
+            executor.shutdown();
+        }
+        return success;
+    }
+    
+    /**
+     * A scheduling rule that prevents jobs writing files under the same top directory from running at the same time,
+     * since the files, the history, and the catalog of snapshots within a project are not safe for concurrent writers.
+     */
+    private static class DirectoryRule implements ISchedulingRule {
+        
+        /**
+         * The absolute path of the top directory.
+         */
+        private String topdir;
+        
+        /**
+         * Creates a new rule for a top directory.
+         * @param topdir the path of the top directory for a project
+         */
+        DirectoryRule(String topdir) {
+            this.topdir = new File(topdir).getAbsolutePath();
+        }
+        
+        /**
+         * Tests if this rule contains another rule.
+         * @param rule the rule to be tested
+         * @return <code>true</code> if the rule is for the same top directory, otherwise <code>false</code>
+         */
+        public boolean contains(ISchedulingRule rule) {
+            return isConflicting(rule);
+        }
+        
+        /**
+         * Tests if this rule conflicts with another rule.
+         * @param rule the rule to be tested
+         * @return <code>true</code> if the rule is for the same top directory, otherwise <code>false</code>
+         */
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule == this || (rule instanceof DirectoryRule && ((DirectoryRule)rule).topdir.equals(topdir));
+        }
     }
 }
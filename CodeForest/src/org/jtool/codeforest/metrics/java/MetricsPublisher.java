@@ -0,0 +1,161 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes versions of project metrics to readers running concurrently.
+ * A published version is frozen and replaced atomically, so readers always see a consistent version without locks.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricsPublisher {
+    
+    /**
+     * The latest version.
+     */
+    private AtomicReference<Version> current = new AtomicReference<Version>();
+    
+    /**
+     * The listeners notified when a new version is published.
+     */
+    private List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    
+    /**
+     * Creates a publisher without any version.
+     */
+    public MetricsPublisher() {
+    }
+    
+    /**
+     * Creates a publisher with an initial version.
+     * @param mproject the project metrics of the initial version, or <code>null</code> if no version is published
+     */
+    public MetricsPublisher(ProjectMetrics mproject) {
+        if (mproject != null) {
+            publish(mproject);
+        }
+    }
+    
+    /**
+     * Returns the latest version.
+     * @return the latest version, or <code>null</code> if no version has been published
+     */
+    public Version getVersion() {
+        return current.get();
+    }
+    
+    /**
+     * Returns the project metrics of the latest version.
+     * @return the project metrics, or <code>null</code> if no version has been published
+     */
+    public ProjectMetrics getProjectMetrics() {
+        Version version = current.get();
+        if (version != null) {
+            return version.getProjectMetrics();
+        }
+        return null;
+    }
+    
+    /**
+     * Freezes project metrics and publishes them as a new version.
+     * @param mproject the project metrics to be published
+     * @return the published version
+     */
+    public Version publish(ProjectMetrics mproject) {
+        mproject.freeze();
+        
+        while (true) {
+            Version prev = current.get();
+            long number = 1;
+            if (prev != null) {
+                if (prev.getProjectMetrics() == mproject) {
+                    return prev;
+                }
+                number = prev.getNumber() + 1;
+            }
+            
+            Version version = new Version(number, mproject);
+            if (current.compareAndSet(prev, version)) {
+                for (Listener listener : listeners) {
+                    listener.published(version);
+                }
+                return version;
+            }
+        }
+    }
+    
+    /**
+     * Adds a listener notified when a new version is published.
+     * @param listener the listener to be added
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener notified when a new version is published.
+     * @param listener the listener to be removed
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * A version of project metrics.
+     */
+    public static class Version {
+        
+        /**
+         * The number of this version, which increases each time a version is published.
+         */
+        private final long number;
+        
+        /**
+         * The frozen project metrics of this version.
+         */
+        private final ProjectMetrics mproject;
+        
+        /**
+         * Creates a version.
+         * @param number the version number
+         * @param mproject the frozen project metrics
+         */
+        private Version(long number, ProjectMetrics mproject) {
+            this.number = number;
+            this.mproject = mproject;
+        }
+        
+        /**
+         * Returns the number of this version.
+         * @return the version number
+         */
+        public long getNumber() {
+            return number;
+        }
+        
+        /**
+         * Returns the project metrics of this version.
+         * @return the frozen project metrics
+         */
+        public ProjectMetrics getProjectMetrics() {
+            return mproject;
+        }
+    }
+    
+    /**
+     * A listener notified when a new version is published.
+     */
+    public interface Listener {
+        
+        /**
+         * Invoked on the publishing thread after a new version is published.
+         * @param version the published version
+         */
+        public void published(Version version);
+    }
+}
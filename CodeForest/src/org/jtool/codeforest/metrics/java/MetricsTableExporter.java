@@ -0,0 +1,480 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Exports metric values into flat tables, one per level of packages, classes, methods, and fields.
+ * Each row is written as soon as its element is visited, so that the memory used does not depend on the number of rows.
+ * The metric columns of each table are ordered as defined in <code>MetricSort</code>.
+ * @author Katsuhisa Maruyama
+ */
+public class MetricsTableExporter {
+    
+    public static final int CSV = 0;
+    public static final int JSON_LINES = 1;
+    
+    private static final String CSV_FILENAME_EXT = ".csv";
+    private static final String JSON_LINES_FILENAME_EXT = ".jsonl";
+    
+    /**
+     * The size of the buffer of each writer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    /**
+     * The levels of the tables.
+     */
+    private static final int[] LEVELS = { SnapshotDiff.PACKAGE, SnapshotDiff.CLASS, SnapshotDiff.METHOD, SnapshotDiff.FIELD };
+    
+    /**
+     * The format of the tables.
+     */
+    private int format;
+    
+    /**
+     * The writers of the tables indexed by their levels.
+     */
+    private Writer[] writers = new Writer[LEVELS.length + 1];
+    
+    /**
+     * The numbers of rows written into the tables indexed by their levels.
+     */
+    private long[] counts = new long[LEVELS.length + 1];
+    
+    /**
+     * The buffer reused for building a row.
+     */
+    private StringBuffer buf = new StringBuffer(512);
+    
+    /**
+     * Creates an exporter.
+     * @param format the format of the tables (<code>CSV</code> or <code>JSON_LINES</code>)
+     */
+    public MetricsTableExporter(int format) {
+        this.format = format;
+    }
+    
+    /**
+     * Returns the name of the file storing the table of a level.
+     * @param prefix the prefix of the file name
+     * @param level the level of the table
+     * @param format the format of the table
+     * @return the file name
+     */
+    public static String getFileName(String prefix, int level, int format) {
+        String ext = CSV_FILENAME_EXT;
+        if (format == JSON_LINES) {
+            ext = JSON_LINES_FILENAME_EXT;
+        }
+        return prefix + "-" + getTableName(level) + ext;
+    }
+    
+    /**
+     * Returns the name of the table of a level.
+     * @param level the level of the table
+     * @return the table name
+     */
+    private static String getTableName(int level) {
+        if (level == SnapshotDiff.PACKAGE) {
+            return "packages";
+        } else if (level == SnapshotDiff.CLASS) {
+            return "classes";
+        } else if (level == SnapshotDiff.METHOD) {
+            return "methods";
+        }
+        return "fields";
+    }
+    
+    /**
+     * Returns the number of rows written into the table of a level.
+     * @param level the level of the table
+     * @return the number of the rows
+     */
+    public long getCount(int level) {
+        return counts[level];
+    }
+    
+    /**
+     * Returns the names of the columns identifying a row of the table of a level.
+     * @param level the level of the table
+     * @return the names of the key columns
+     */
+    private static String[] getKeyColumns(int level) {
+        if (level == SnapshotDiff.PACKAGE) {
+            return new String[] { MetricsManager.PackageElem };
+        } else if (level == SnapshotDiff.CLASS) {
+            return new String[] { MetricsManager.PackageElem, MetricsManager.ClassElem };
+        } else if (level == SnapshotDiff.METHOD) {
+            return new String[] { MetricsManager.ClassElem, MetricsManager.MethodElem, MetricsManager.SignatureAttr };
+        }
+        return new String[] { MetricsManager.ClassElem, MetricsManager.FieldElem };
+    }
+    
+    /**
+     * Returns the names of the metric columns of the table of a level.
+     * @param level the level of the table
+     * @return the names of the metric columns
+     */
+    private static String[] getMetricColumns(int level) {
+        if (level == SnapshotDiff.PACKAGE) {
+            return MetricSort.PACKAGE_METRICS;
+        } else if (level == SnapshotDiff.CLASS) {
+            return MetricSort.CLASS_METRICS;
+        } else if (level == SnapshotDiff.METHOD) {
+            return MetricSort.METHOD_METRICS;
+        }
+        return MetricSort.FIELD_METRICS;
+    }
+    
+    /**
+     * Exports metric values stored in the model of a project.
+     * @param mproject the project metrics
+     * @param dir the path of the directory storing the tables
+     * @param prefix the prefix of the names of the table files
+     * @return <code>true</code> if the tables were written, otherwise <code>false</code>
+     */
+    public boolean export(ProjectMetrics mproject, String dir, String prefix) {
+        try {
+            open(dir, prefix);
+            
+            String[][] values = createValueArrays();
+            for (PackageMetrics pm : mproject.getPackageMetrics()) {
+                writeRow(SnapshotDiff.PACKAGE, new String[] { pm.getName() }, getValues(pm, SnapshotDiff.PACKAGE, values));
+                
+                for (ClassMetrics cm : pm.getClassMetrics()) {
+                    String fqn = cm.getQualifiedName();
+                    writeRow(SnapshotDiff.CLASS, new String[] { pm.getName(), fqn }, getValues(cm, SnapshotDiff.CLASS, values));
+                    
+                    for (MethodMetrics mm : cm.getMethodMetrics()) {
+                        String[] keys = new String[] { fqn, mm.getName(), mm.getSignature() };
+                        writeRow(SnapshotDiff.METHOD, keys, getValues(mm, SnapshotDiff.METHOD, values));
+                    }
+                    for (FieldMetrics fm : cm.getFieldMetrics()) {
+                        String[] keys = new String[] { fqn, fm.getName() };
+                        writeRow(SnapshotDiff.FIELD, keys, getValues(fm, SnapshotDiff.FIELD, values));
+                    }
+                }
+            }
+            return close();
+            
+        } catch (IOException e) {
+            System.err.println("Table: Export error occurred: " + e.getMessage() + ".");
+            close();
+        }
+        return false;
+    }
+    
+    /**
+     * Exports metric values stored in a snapshot without building its model.
+     * @param file the xml file, the manifest, or the directory of part files storing the snapshot
+     * @param dir the path of the directory storing the tables
+     * @param prefix the prefix of the names of the table files
+     * @return <code>true</code> if the tables were written, otherwise <code>false</code>
+     */
+    public boolean export(File file, String dir, String prefix) {
+        try {
+            open(dir, prefix);
+            
+            String[][] values = createValueArrays();
+            if (file.isDirectory() || file.getName().equals(MetricsManager.MANIFEST_FILENAME)) {
+                File manifest = file;
+                if (file.isDirectory()) {
+                    manifest = new File(file, MetricsManager.MANIFEST_FILENAME);
+                }
+                for (String name : getPartFiles(manifest)) {
+                    export(new File(manifest.getParentFile(), name), values);
+                }
+            } else {
+                export(file, values);
+            }
+            return close();
+            
+        } catch (XMLStreamException e) {
+            System.err.println("Table: Export error occurred: " + file.getPath() + ": " + e.getMessage() + ".");
+            close();
+        } catch (IOException e) {
+            System.err.println("Table: Export error occurred: " + e.getMessage() + ".");
+            close();
+        }
+        return false;
+    }
+    
+    /**
+     * Streams the elements of a snapshot file and writes a row for each element with metric values.
+     * The metric values of an element precede its nested elements, so each row is written when they are encountered.
+     * @param file the file storing packages of the snapshot
+     * @param values the arrays reused for storing metric values of each level
+     * @throws XMLStreamException if the file is malformed
+     * @throws IOException if the file cannot be read or a table cannot be written
+     */
+    private void export(File file, String[][] values) throws XMLStreamException, IOException {
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+            reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            
+            String packageName = null;
+            String className = null;
+            String[] keys = null;
+            int pending = 0;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                
+                String qname = reader.getLocalName();
+                if (qname.equals(MetricsManager.MetricsElem)) {
+                    if (pending != 0) {
+                        String[] sorts = getMetricColumns(pending);
+                        String[] vals = values[pending];
+                        for (int i = 0; i < sorts.length; i++) {
+                            vals[i] = reader.getAttributeValue(null, sorts[i]);
+                        }
+                        writeRow(pending, keys, vals);
+                        pending = 0;
+                    }
+                    
+                } else if (qname.equals(MetricsManager.PackageElem)) {
+                    packageName = reader.getAttributeValue(null, MetricsManager.NameAttr);
+                    keys = new String[] { packageName };
+                    pending = SnapshotDiff.PACKAGE;
+                    
+                } else if (qname.equals(MetricsManager.ClassElem)) {
+                    className = reader.getAttributeValue(null, MetricsManager.FqnAttr);
+                    keys = new String[] { packageName, className };
+                    pending = SnapshotDiff.CLASS;
+                    
+                } else if (qname.equals(MetricsManager.MethodElem)) {
+                    keys = new String[] { className, reader.getAttributeValue(null, MetricsManager.NameAttr),
+                                          reader.getAttributeValue(null, MetricsManager.SignatureAttr) };
+                    pending = SnapshotDiff.METHOD;
+                    
+                } else if (qname.equals(MetricsManager.FieldElem)) {
+                    keys = new String[] { className, reader.getAttributeValue(null, MetricsManager.NameAttr) };
+                    pending = SnapshotDiff.FIELD;
+                    
+                } else if (qname.equals(MetricsManager.ProjectElem)) {
+                    pending = 0;
+                }
+            }
+            
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) { /* empty */ }
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+    }
+    
+    /**
+     * Collects the names of part files listed in a manifest.
+     * @param manifest the manifest file
+     * @return the collection of the names of the part files
+     * @throws XMLStreamException if the manifest is malformed
+     * @throws IOException if the manifest cannot be read
+     */
+    private List<String> getPartFiles(File manifest) throws XMLStreamException, IOException {
+        List<String> names = new ArrayList<String>();
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(manifest));
+            reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals(MetricsManager.PartElem)) {
+                    names.add(reader.getAttributeValue(null, MetricsManager.FileAttr));
+                }
+            }
+            
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) { /* empty */ }
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Creates the arrays reused for storing metric values of each level.
+     * @return the arrays indexed by the levels
+     */
+    private static String[][] createValueArrays() {
+        String[][] values = new String[LEVELS.length + 1][];
+        for (int level : LEVELS) {
+            values[level] = new String[getMetricColumns(level).length];
+        }
+        return values;
+    }
+    
+    /**
+     * Obtains metric values of an element in the column order of its table.
+     * @param metrics the metrics of the element
+     * @param level the level of the element
+     * @param values the arrays reused for storing metric values of each level
+     * @return the metric values, whose missing ones are <code>null</code>
+     */
+    private static String[] getValues(CommonMetrics metrics, int level, String[][] values) {
+        Map<String, Double> map = metrics.getMetricValues();
+        String[] sorts = getMetricColumns(level);
+        String[] vals = values[level];
+        for (int i = 0; i < sorts.length; i++) {
+            Double value = map.get(sorts[i]);
+            if (value != null) {
+                vals[i] = String.valueOf(value.doubleValue());
+            } else {
+                vals[i] = null;
+            }
+        }
+        return vals;
+    }
+    
+    /**
+     * Opens the writers of the tables and writes their headers.
+     * @param dir the path of the directory storing the tables
+     * @param prefix the prefix of the names of the table files
+     * @throws IOException if a table cannot be written
+     */
+    private void open(String dir, String prefix) throws IOException {
+        for (int level : LEVELS) {
+            File file = new File(dir, getFileName(prefix, level, format));
+            writers[level] = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+            counts[level] = 0;
+            
+            if (format == CSV) {
+                buf.setLength(0);
+                String[] keys = getKeyColumns(level);
+                for (int i = 0; i < keys.length; i++) {
+                    if (i > 0) {
+                        buf.append(',');
+                    }
+                    buf.append(keys[i]);
+                }
+                for (String sort : getMetricColumns(level)) {
+                    buf.append(',');
+                    buf.append(sort);
+                }
+                buf.append('\n');
+                writers[level].write(buf.toString());
+            }
+        }
+    }
+    
+    /**
+     * Closes the writers of the tables.
+     * @return <code>true</code> if all the writers were closed successfully, otherwise <code>false</code>
+     */
+    private boolean close() {
+        boolean result = true;
+        for (int level : LEVELS) {
+            if (writers[level] != null) {
+                try {
+                    writers[level].close();
+                } catch (IOException e) {
+                    System.err.println("Table: Export error occurred: " + e.getMessage() + ".");
+                    result = false;
+                }
+                writers[level] = null;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Writes a row into the table of a level.
+     * @param level the level of the table
+     * @param keys the values of the key columns
+     * @param values the values of the metric columns, whose missing ones are <code>null</code>
+     * @throws IOException if the table cannot be written
+     */
+    private void writeRow(int level, String[] keys, String[] values) throws IOException {
+        buf.setLength(0);
+        if (format == JSON_LINES) {
+            String[] keyColumns = getKeyColumns(level);
+            String[] sorts = getMetricColumns(level);
+            buf.append('{');
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                buf.append('"');
+                buf.append(keyColumns[i]);
+                buf.append("\":");
+                buf.append(keys[i] != null ? SnapshotDiffReport.quoteJSON(keys[i]) : "null");
+            }
+            for (int i = 0; i < sorts.length; i++) {
+                buf.append(",\"");
+                buf.append(sorts[i]);
+                buf.append("\":");
+                buf.append(isNumber(values[i]) ? values[i] : "null");
+            }
+            buf.append("}\n");
+            
+        } else {
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                if (keys[i] != null) {
+                    buf.append(SnapshotDiffReport.quoteCSV(keys[i]));
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                buf.append(',');
+                if (values[i] != null) {
+                    buf.append(values[i]);
+                }
+            }
+            buf.append('\n');
+        }
+        
+        writers[level].write(buf.toString());
+        counts[level]++;
+    }
+    
+    /**
+     * Tests if a metric value string can be written as a JSON number.
+     * @param value the metric value string
+     * @return <code>true</code> if the value is a finite number, otherwise <code>false</code>
+     */
+    private static boolean isNumber(String value) {
+        if (value == null || value.length() == 0) {
+            return false;
+        }
+        char ch = value.charAt(0);
+        return (ch >= '0' && ch <= '9') || (ch == '-' && value.length() > 1 && value.charAt(1) >= '0' && value.charAt(1) <= '9');
+    }
+}
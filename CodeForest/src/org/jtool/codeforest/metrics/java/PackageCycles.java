@@ -0,0 +1,428 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Partitions the packages of a dependency matrix into strongly connected components, each of which with two or more packages is a dependency cycle.
+ * The components are numbered so that a package depends only on packages in the same or lower-numbered components,
+ * and the packages are ordered component by component, so that the rows of a cycle form a block on the diagonal of the matrix.
+ * When a new matrix has the same packages as the previous one, only the components affected by the changed dependencies are recalculated.
+ * @author Katsuhisa Maruyama
+ */
+public class PackageCycles {
+    
+    /**
+     * The dependency matrix among packages.
+     */
+    private PackageDependencies dependencies;
+    
+    /**
+     * The component of each package.
+     */
+    private int[] component;
+    
+    /**
+     * The indices of the packages in the partitioned order.
+     */
+    private int[] order;
+    
+    /**
+     * The position of each package in the partitioned order.
+     */
+    private int[] position;
+    
+    /**
+     * The position of the first package of each component, followed by the number of the packages.
+     */
+    private int[] blockStarts;
+    
+    /**
+     * The number of components that contain two or more packages.
+     */
+    private int numCycles;
+    
+    /**
+     * <code>true</code> if the components were calculated incrementally from the previous ones.
+     */
+    private boolean incremental;
+    
+    /**
+     * Creates the partition of the packages of a dependency matrix.
+     * @param dependencies the dependency matrix
+     */
+    public PackageCycles(PackageDependencies dependencies) {
+        this.dependencies = dependencies;
+        int size = dependencies.size();
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = i;
+        }
+        
+        List<int[]> components = new ArrayList<int[]>();
+        new Tarjan(dependencies).run(nodes, components);
+        setComponents(components);
+        incremental = false;
+    }
+    
+    /**
+     * Creates the partition of the packages of a dependency matrix from the partition of the previous matrix with the same packages.
+     * @param dependencies the dependency matrix
+     * @param previous the partition of the previous matrix
+     * @param dirty the components of the previous partition whose dependencies inside have been removed
+     */
+    private PackageCycles(PackageDependencies dependencies, PackageCycles previous, boolean[] dirty) {
+        this.dependencies = dependencies;
+        
+        Tarjan tarjan = new Tarjan(dependencies);
+        List<int[]> components = new ArrayList<int[]>();
+        for (int c = 0; c < previous.getComponentCount(); c++) {
+            int[] members = Arrays.copyOfRange(previous.order, previous.blockStarts[c], previous.blockStarts[c + 1]);
+            if (dirty[c]) {
+                tarjan.run(members, components);
+            } else {
+                components.add(members);
+            }
+        }
+        setComponents(components);
+        incremental = true;
+    }
+    
+    /**
+     * Partitions the packages of a new dependency matrix, reusing the partition of the previous matrix where possible.
+     * A dependency added between components never merges them if it follows the order of the components,
+     * and a dependency removed from a component can only split that component.
+     * The whole partition is recalculated if the packages are changed or an added dependency goes against the order.
+     * @param previous the partition of the previous matrix, or <code>null</code> if none
+     * @param dependencies the new dependency matrix
+     * @return the partition of the new matrix
+     */
+    public static PackageCycles update(PackageCycles previous, PackageDependencies dependencies) {
+        if (previous == null) {
+            return new PackageCycles(dependencies);
+        }
+        if (previous.dependencies == dependencies) {
+            return previous;
+        }
+        
+        PackageDependencies old = previous.dependencies;
+        int size = dependencies.size();
+        if (old.size() != size) {
+            return new PackageCycles(dependencies);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!old.getName(i).equals(dependencies.getName(i))) {
+                return new PackageCycles(dependencies);
+            }
+        }
+        
+        boolean[] dirty = new boolean[previous.getComponentCount()];
+        for (int i = 0; i < size; i++) {
+            long[] oldBits = old.getEfferentBits(i);
+            long[] newBits = dependencies.getEfferentBits(i);
+            for (int w = 0; w < newBits.length; w++) {
+                long changed = oldBits[w] ^ newBits[w];
+                while (changed != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(changed);
+                    changed = changed & (changed - 1);
+                    
+                    int ci = previous.component[i];
+                    int cj = previous.component[j];
+                    if ((newBits[w] & (1L << (j & 63))) != 0) {
+                        if (cj > ci) {
+                            return new PackageCycles(dependencies);
+                        }
+                    } else if (ci == cj) {
+                        dirty[ci] = true;
+                    }
+                }
+            }
+        }
+        return new PackageCycles(dependencies, previous, dirty);
+    }
+    
+    /**
+     * Stores the components in the order in which they are listed.
+     * @param components the members of the components, which are sorted within each component
+     */
+    private void setComponents(List<int[]> components) {
+        int size = dependencies.size();
+        component = new int[size];
+        order = new int[size];
+        position = new int[size];
+        blockStarts = new int[components.size() + 1];
+        numCycles = 0;
+        
+        int pos = 0;
+        for (int c = 0; c < components.size(); c++) {
+            int[] members = components.get(c);
+            blockStarts[c] = pos;
+            for (int i : members) {
+                component[i] = c;
+                order[pos] = i;
+                position[i] = pos;
+                pos++;
+            }
+            if (members.length > 1) {
+                numCycles++;
+            }
+        }
+        blockStarts[components.size()] = pos;
+    }
+    
+    /**
+     * Returns the dependency matrix that is partitioned.
+     * @return the dependency matrix
+     */
+    public PackageDependencies getDependencies() {
+        return dependencies;
+    }
+    
+    /**
+     * Returns the number of the packages.
+     * @return the number of the packages
+     */
+    public int size() {
+        return order.length;
+    }
+    
+    /**
+     * Returns the number of the components.
+     * @return the number of the components
+     */
+    public int getComponentCount() {
+        return blockStarts.length - 1;
+    }
+    
+    /**
+     * Returns the number of the dependency cycles.
+     * @return the number of the components that contain two or more packages
+     */
+    public int getCycleCount() {
+        return numCycles;
+    }
+    
+    /**
+     * Returns the number of the packages in dependency cycles.
+     * @return the number of the packages
+     */
+    public int getPackageCountInCycles() {
+        int count = 0;
+        for (int c = 0; c < getComponentCount(); c++) {
+            int length = blockStarts[c + 1] - blockStarts[c];
+            if (length > 1) {
+                count = count + length;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Tests if the components were calculated incrementally from the previous partition.
+     * @return <code>true</code> if the components were calculated incrementally, otherwise <code>false</code>
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+    
+    /**
+     * Returns the index of the package at a position in the partitioned order.
+     * @param pos the position
+     * @return the index of the package in the dependency matrix
+     */
+    public int getPackageAt(int pos) {
+        return order[pos];
+    }
+    
+    /**
+     * Returns the position of a package in the partitioned order.
+     * @param i the index of the package in the dependency matrix
+     * @return the position
+     */
+    public int getPosition(int i) {
+        return position[i];
+    }
+    
+    /**
+     * Returns the component of a package.
+     * @param i the index of the package in the dependency matrix
+     * @return the number of the component
+     */
+    public int getComponent(int i) {
+        return component[i];
+    }
+    
+    /**
+     * Returns the position of the first package of a component in the partitioned order.
+     * @param c the number of the component
+     * @return the position
+     */
+    public int getBlockStart(int c) {
+        return blockStarts[c];
+    }
+    
+    /**
+     * Returns the position next to the last package of a component in the partitioned order.
+     * @param c the number of the component
+     * @return the position
+     */
+    public int getBlockEnd(int c) {
+        return blockStarts[c + 1];
+    }
+    
+    /**
+     * Tests if a package is in a dependency cycle.
+     * @param i the index of the package in the dependency matrix
+     * @return <code>true</code> if the package is in a cycle, otherwise <code>false</code>
+     */
+    public boolean isInCycle(int i) {
+        int c = component[i];
+        return blockStarts[c + 1] - blockStarts[c] > 1;
+    }
+    
+    /**
+     * Collects information about this partition.
+     * @return the string for printing
+     */
+    public String toString() {
+        return numCycles + " cycles among " + size() + " packages" + (incremental ? " (incremental)" : "");
+    }
+    
+    /**
+     * Tarjan's algorithm without recursion, which finds the strongly connected components among a set of packages.
+     */
+    private static class Tarjan {
+        
+        /**
+         * The dependency matrix among packages.
+         */
+        PackageDependencies dependencies;
+        
+        /**
+         * The visiting order of each package, or <code>-1</code> if it has not been visited.
+         */
+        int[] index;
+        
+        /**
+         * The lowest visiting order reachable from each package.
+         */
+        int[] low;
+        
+        /**
+         * The index from which the dependencies of each package are searched next.
+         */
+        int[] cursor;
+        
+        /**
+         * The number of the run in which each package is in the set.
+         */
+        int[] member;
+        
+        /**
+         * <code>true</code> if each package is on the stack of a component being found.
+         */
+        boolean[] onStack;
+        
+        /**
+         * The stack of packages of components being found.
+         */
+        int[] stack;
+        
+        /**
+         * The stack of packages being visited.
+         */
+        int[] calls;
+        
+        /**
+         * The number of runs.
+         */
+        int runs = 0;
+        
+        /**
+         * Creates the working space of the algorithm.
+         * @param dependencies the dependency matrix
+         */
+        Tarjan(PackageDependencies dependencies) {
+            this.dependencies = dependencies;
+            int size = dependencies.size();
+            index = new int[size];
+            low = new int[size];
+            cursor = new int[size];
+            member = new int[size];
+            onStack = new boolean[size];
+            stack = new int[size];
+            calls = new int[size];
+        }
+        
+        /**
+         * Finds the components among a set of packages, ignoring dependencies to packages outside the set.
+         * The components are appended in the order in which they are completed, so that no component depends on a later one.
+         * @param nodes the indices of the packages in the set
+         * @param components the collection that receives the sorted members of the components
+         */
+        void run(int[] nodes, List<int[]> components) {
+            runs++;
+            for (int v : nodes) {
+                member[v] = runs;
+                index[v] = -1;
+                cursor[v] = 0;
+            }
+            
+            int counter = 0;
+            int sp = 0;
+            for (int root : nodes) {
+                if (index[root] >= 0) {
+                    continue;
+                }
+                
+                int cp = 0;
+                calls[cp++] = root;
+                index[root] = low[root] = counter++;
+                stack[sp++] = root;
+                onStack[root] = true;
+                
+                while (cp > 0) {
+                    int v = calls[cp - 1];
+                    int w = dependencies.nextDependency(v, cursor[v]);
+                    while (w >= 0 && member[w] != runs) {
+                        w = dependencies.nextDependency(v, w + 1);
+                    }
+                    
+                    if (w >= 0) {
+                        cursor[v] = w + 1;
+                        if (index[w] < 0) {
+                            calls[cp++] = w;
+                            index[w] = low[w] = counter++;
+                            stack[sp++] = w;
+                            onStack[w] = true;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                        continue;
+                    }
+                    
+                    cp--;
+                    if (low[v] == index[v]) {
+                        int top = sp;
+                        do {
+                            sp--;
+                            onStack[stack[sp]] = false;
+                        } while (stack[sp] != v);
+                        int[] members = Arrays.copyOfRange(stack, sp, top);
+                        Arrays.sort(members);
+                        components.add(members);
+                    }
+                    if (cp > 0) {
+                        int u = calls[cp - 1];
+                        low[u] = Math.min(low[u], low[v]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.lang.reflect.Modifier;
+
+/**
+ * A dependency matrix among the packages within a project, whose rows and columns are bit sets over package indices.
+ * The packages are indexed in dictionary order of their names, so that the subpackages of a package have consecutive indices.
+ * Martin's instability, abstractness, and distance from the main sequence are calculated on the matrix
+ * for each package alone and for each package together with its subpackages.
+ * @author Katsuhisa Maruyama
+ */
+public class PackageDependencies {
+    
+    /**
+     * The names of the packages in dictionary order.
+     */
+    private List<String> names = new ArrayList<String>();
+    
+    /**
+     * The indices of the packages, keyed by their names.
+     */
+    private Map<String, Integer> indices = new HashMap<String, Integer>();
+    
+    /**
+     * The number of words in a row of the matrix.
+     */
+    private int words;
+    
+    /**
+     * The rows of the matrix, each of which has bits of the packages that a package depends on.
+     */
+    private long[][] efferent;
+    
+    /**
+     * The columns of the matrix, each of which has bits of the packages that depend on a package.
+     */
+    private long[][] afferent;
+    
+    /**
+     * The number of classes in each package.
+     */
+    private int[] classes;
+    
+    /**
+     * The number of abstract classes and interfaces in each package.
+     */
+    private int[] abstracts;
+    
+    /**
+     * The index of the first subpackage of each package.
+     */
+    private int[] starts;
+    
+    /**
+     * The index next to the last subpackage of each package, which equals the index of the first one if there is no subpackage.
+     */
+    private int[] ends;
+    
+    /**
+     * The instability, the abstractness, and the distance of each package alone.
+     */
+    private double[][] values;
+    
+    /**
+     * The instability, the abstractness, and the distance of each package together with its subpackages.
+     */
+    private double[][] rolledUpValues;
+    
+    /**
+     * The index of the instability in the values.
+     */
+    private static final int I = 0;
+    
+    /**
+     * The index of the abstractness in the values.
+     */
+    private static final int A = 1;
+    
+    /**
+     * The index of the distance from the main sequence in the values.
+     */
+    private static final int D = 2;
+    
+    /**
+     * Creates a dependency matrix among packages.
+     * @param packages the package metrics of a project
+     */
+    public PackageDependencies(List<PackageMetrics> packages) {
+        Map<String, PackageMetrics> byName = new HashMap<String, PackageMetrics>();
+        for (PackageMetrics pm : packages) {
+            byName.put(pm.getName(), pm);
+        }
+        names.addAll(byName.keySet());
+        Collections.sort(names);
+        
+        int size = names.size();
+        for (int i = 0; i < size; i++) {
+            indices.put(names.get(i), new Integer(i));
+        }
+        
+        words = (size + 63) / 64;
+        efferent = new long[size][words];
+        afferent = new long[size][words];
+        classes = new int[size];
+        abstracts = new int[size];
+        for (int i = 0; i < size; i++) {
+            PackageMetrics pm = byName.get(names.get(i));
+            for (String name : pm.getEfferentPackageNames()) {
+                Integer j = indices.get(name);
+                if (j != null && j.intValue() != i) {
+                    set(efferent[i], j.intValue());
+                    set(afferent[j.intValue()], i);
+                }
+            }
+            for (String name : pm.getAfferentPackageNames()) {
+                Integer j = indices.get(name);
+                if (j != null && j.intValue() != i) {
+                    set(afferent[i], j.intValue());
+                    set(efferent[j.intValue()], i);
+                }
+            }
+            
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                classes[i]++;
+                if (cm.isInterface() || Modifier.isAbstract(cm.getModifiers())) {
+                    abstracts[i]++;
+                }
+            }
+        }
+        
+        starts = new int[size];
+        ends = new int[size];
+        for (int i = 0; i < size; i++) {
+            String prefix = names.get(i) + ".";
+            int start = -Collections.binarySearch(names, prefix) - 1;
+            int end = start;
+            while (end < size && names.get(end).startsWith(prefix)) {
+                end++;
+            }
+            starts[i] = start;
+            ends[i] = end;
+        }
+        
+        values = new double[size][];
+        rolledUpValues = new double[size][];
+        for (int i = 0; i < size; i++) {
+            values[i] = calculate(efferent[i], afferent[i], classes[i], abstracts[i], i, i, i);
+            
+            long[] out = efferent[i].clone();
+            long[] in = afferent[i].clone();
+            int numClasses = classes[i];
+            int numAbstracts = abstracts[i];
+            for (int j = starts[i]; j < ends[i]; j++) {
+                or(out, efferent[j]);
+                or(in, afferent[j]);
+                numClasses = numClasses + classes[j];
+                numAbstracts = numAbstracts + abstracts[j];
+            }
+            rolledUpValues[i] = calculate(out, in, numClasses, numAbstracts, i, starts[i], ends[i]);
+        }
+    }
+    
+    /**
+     * Calculates the instability, the abstractness, and the distance of a package or a group of packages.
+     * Dependencies among the packages in the group are ignored.
+     * @param out the bits of the packages that the group depends on
+     * @param in the bits of the packages that depend on the group
+     * @param numClasses the number of classes in the group
+     * @param numAbstracts the number of abstract classes and interfaces in the group
+     * @param self the index of the package representing the group
+     * @param start the index of the first subpackage in the group
+     * @param end the index next to the last subpackage in the group
+     * @return the instability, the abstractness, and the distance
+     */
+    private double[] calculate(long[] out, long[] in, int numClasses, int numAbstracts, int self, int start, int end) {
+        int ce = count(out, self, start, end);
+        int ca = count(in, self, start, end);
+        
+        double[] result = new double[3];
+        result[I] = ca + ce > 0 ? (double)ce / (ca + ce) : 0;
+        result[A] = numClasses > 0 ? (double)numAbstracts / numClasses : 0;
+        result[D] = Math.abs(result[A] + result[I] - 1);
+        return result;
+    }
+    
+    /**
+     * Counts the bits of packages outside a group.
+     * @param bits the bits of packages
+     * @param self the index of the package representing the group
+     * @param start the index of the first subpackage in the group
+     * @param end the index next to the last subpackage in the group
+     * @return the number of the packages outside the group
+     */
+    private int count(long[] bits, int self, int start, int end) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count = count + Long.bitCount(bits[w]);
+        }
+        if (get(bits, self)) {
+            count--;
+        }
+        for (int j = start; j < end; j++) {
+            if (j != self && get(bits, j)) {
+                count--;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Sets a bit.
+     * @param bits the bit set
+     * @param index the index of the bit
+     */
+    private static void set(long[] bits, int index) {
+        bits[index >> 6] = bits[index >> 6] | (1L << (index & 63));
+    }
+    
+    /**
+     * Tests a bit.
+     * @param bits the bit set
+     * @param index the index of the bit
+     * @return <code>true</code> if the bit is set, otherwise <code>false</code>
+     */
+    private static boolean get(long[] bits, int index) {
+        return (bits[index >> 6] & (1L << (index & 63))) != 0;
+    }
+    
+    /**
+     * Merges a bit set into another one.
+     * @param bits the bit set that receives the bits
+     * @param other the bit set to be merged
+     */
+    private static void or(long[] bits, long[] other) {
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] = bits[w] | other[w];
+        }
+    }
+    
+    /**
+     * Returns the number of the packages in this matrix.
+     * @return the number of the packages
+     */
+    public int size() {
+        return names.size();
+    }
+    
+    /**
+     * Returns the name of a package.
+     * @param i the index of the package
+     * @return the name of the package
+     */
+    public String getName(int i) {
+        return names.get(i);
+    }
+    
+    /**
+     * Returns the index of a package.
+     * @param name the name of the package
+     * @return the index of the package, or <code>-1</code> if the package is not in this matrix
+     */
+    public int getIndex(String name) {
+        Integer i = indices.get(name);
+        return i != null ? i.intValue() : -1;
+    }
+    
+    /**
+     * Tests if a package depends on another package.
+     * @param i the index of the depending package
+     * @param j the index of the depended package
+     * @return <code>true</code> if the package depends on the other, otherwise <code>false</code>
+     */
+    public boolean dependsOn(int i, int j) {
+        return get(efferent[i], j);
+    }
+    
+    /**
+     * Returns the row of the matrix for a package, which must not be modified.
+     * @param i the index of the package
+     * @return the bits of the packages that the package depends on
+     */
+    long[] getEfferentBits(int i) {
+        return efferent[i];
+    }
+    
+    /**
+     * Finds the index of the first package at or after an index that a package depends on.
+     * @param i the index of the depending package
+     * @param from the index where the search starts
+     * @return the index of the depended package, or <code>-1</code> if there is no such package
+     */
+    public int nextDependency(int i, int from) {
+        long[] bits = efferent[i];
+        int w = from >> 6;
+        if (w >= words) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << (from & 63));
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            w++;
+            if (w >= words) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+    
+    /**
+     * Returns the instability of a package.
+     * @param name the name of the package
+     * @param subpackages <code>true</code> if the subpackages of the package are included, otherwise <code>false</code>
+     * @return the instability, or <code>-1</code> if the package is not in this matrix
+     */
+    public double getInstability(String name, boolean subpackages) {
+        return getValue(name, subpackages, I);
+    }
+    
+    /**
+     * Returns the abstractness of a package.
+     * @param name the name of the package
+     * @param subpackages <code>true</code> if the subpackages of the package are included, otherwise <code>false</code>
+     * @return the abstractness, or <code>-1</code> if the package is not in this matrix
+     */
+    public double getAbstractness(String name, boolean subpackages) {
+        return getValue(name, subpackages, A);
+    }
+    
+    /**
+     * Returns the distance from the main sequence of a package.
+     * @param name the name of the package
+     * @param subpackages <code>true</code> if the subpackages of the package are included, otherwise <code>false</code>
+     * @return the distance, or <code>-1</code> if the package is not in this matrix
+     */
+    public double getDistance(String name, boolean subpackages) {
+        return getValue(name, subpackages, D);
+    }
+    
+    /**
+     * Returns the sum of the instability of all the packages.
+     * @return the sum of the instability
+     */
+    public double getTotalInstability() {
+        return getTotalValue(I);
+    }
+    
+    /**
+     * Returns the sum of the abstractness of all the packages.
+     * @return the sum of the abstractness
+     */
+    public double getTotalAbstractness() {
+        return getTotalValue(A);
+    }
+    
+    /**
+     * Returns the sum of the distance from the main sequence of all the packages.
+     * @return the sum of the distance
+     */
+    public double getTotalDistance() {
+        return getTotalValue(D);
+    }
+    
+    /**
+     * Returns a value of a package.
+     * @param name the name of the package
+     * @param subpackages <code>true</code> if the subpackages of the package are included, otherwise <code>false</code>
+     * @param kind the index of the value
+     * @return the value, or <code>-1</code> if the package is not in this matrix
+     */
+    private double getValue(String name, boolean subpackages, int kind) {
+        int i = getIndex(name);
+        if (i < 0) {
+            return -1;
+        }
+        return subpackages ? rolledUpValues[i][kind] : values[i][kind];
+    }
+    
+    /**
+     * Returns the sum of a value of all the packages alone.
+     * @param kind the index of the value
+     * @return the sum of the value
+     */
+    private double getTotalValue(int kind) {
+        double total = 0;
+        for (double[] v : values) {
+            total = total + v[kind];
+        }
+        return total;
+    }
+}
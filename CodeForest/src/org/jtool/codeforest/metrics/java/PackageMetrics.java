@@ -4,6 +4,7 @@
 
 package org.jtool.codeforest.metrics.java;
 
+import org.jtool.codeforest.metrics.IMetric;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.eclipse.model.java.JavaClass;
@@ -12,6 +13,10 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
 
 /**
  * An object storing information on a package.
@@ -49,6 +54,17 @@ public class PackageMetrics extends CommonMetrics {
      */
     protected List<String> efferentPackageNames = new ArrayList<String>();
     
+    /**
+     * The quantile sketches of the values of the classes in this package, keyed by the names of the metrics, which are created when this package is frozen.
+     */
+    private Map<String, QuantileSketch> classQuantiles = null;
+    
+    /**
+     * The quantile sketches of the values of the methods in this package, keyed by the names of the metrics.
+     * They are created when this package is frozen if the methods of all its classes have been loaded, otherwise when they are first requested.
+     */
+    private Map<String, QuantileSketch> methodQuantiles = null;
+    
     /**
      * Creates a new object representing a package.
      * @param name the name of the package
@@ -87,6 +103,101 @@ public class PackageMetrics extends CommonMetrics {
         collectMetricInfo();
     }
     
+    /**
+     * Creates a new object sharing metric values with a frozen package, but belonging to another project.
+     * The classes of the package are shallowly copied so that they refer to this package.
+     * @param original the frozen package
+     * @param pm a metrics object for a project containing this package
+     */
+    PackageMetrics(PackageMetrics original, ProjectMetrics pm) {
+        super(original);
+        
+        jpackage = original.jpackage;
+        projectMetrics = pm;
+        afferentPackageNames = original.afferentPackageNames;
+        efferentPackageNames = original.efferentPackageNames;
+        classQuantiles = original.classQuantiles;
+        methodQuantiles = original.methodQuantiles;
+        
+        List<ClassMetrics> classes = new ArrayList<ClassMetrics>(original.classMetrics.size());
+        for (ClassMetrics cm : original.classMetrics) {
+            classes.add(new ClassMetrics(cm, this));
+        }
+        classMetrics = freeze(classes);
+    }
+    
+    /**
+     * Creates a new object copying metric values of a frozen package of a previous revision, but representing the same package of a new revision.
+     * The classes are linked to those of the new revision and can be changed, so that metrics over the whole project are recalculated.
+     * Classes not found in the previous revision are calculated.
+     * @param original the frozen package of the previous revision, whose source code is unchanged
+     * @param jpackage the package of the new revision
+     * @param pm a metrics object for a project containing this package
+     */
+    PackageMetrics(PackageMetrics original, JavaPackage jpackage, ProjectMetrics pm) {
+        super();
+        
+        metrics.putAll(original.metrics);
+        this.jpackage = jpackage;
+        projectMetrics = pm;
+        
+        Map<String, ClassMetrics> classes = new HashMap<String, ClassMetrics>();
+        for (ClassMetrics cm : original.classMetrics) {
+            classes.put(cm.getQualifiedName(), cm);
+        }
+        for (JavaClass jc : jpackage.getJavaClasses()) {
+            ClassMetrics cm = classes.get(jc.getQualifiedName());
+            if (cm != null) {
+                classMetrics.add(new ClassMetrics(cm, jc, this));
+            } else {
+                classMetrics.add(new ClassMetrics(jc, this));
+            }
+        }
+        
+        for (JavaPackage jp : jpackage.getAfferentJavaPackages()) {
+            afferentPackageNames.add(jp.getName());
+        }
+        for (JavaPackage jp : jpackage.getEfferentJavaPackages()) {
+            efferentPackageNames.add(jp.getName());
+        }
+        
+        collectMetricInfo();
+    }
+    
+    /**
+     * Creates a new object merging frozen packages that have the same name in different projects, which belongs to a workspace.
+     * The classes of the packages are shallowly copied so that they refer to this package.
+     * A class whose fully-qualified name has already been merged from another project is skipped,
+     * so that the fully-qualified names of classes are unique within the workspace.
+     * @param originals the frozen packages with the same name
+     * @param pm a metrics object for a workspace containing this package
+     */
+    PackageMetrics(List<PackageMetrics> originals, ProjectMetrics pm) {
+        super();
+        
+        jpackage = JavaPackage.create(originals.get(0).getName(), pm.getJavaProject());
+        projectMetrics = pm;
+        
+        Set<String> fqns = new HashSet<String>();
+        for (PackageMetrics original : originals) {
+            for (ClassMetrics cm : original.classMetrics) {
+                if (fqns.add(cm.getQualifiedName())) {
+                    classMetrics.add(new ClassMetrics(cm, this));
+                } else {
+                    System.out.println("- Skip duplicate class in workspace " + pm.getName() + ": " + cm.getQualifiedName());
+                }
+            }
+            for (String name : original.afferentPackageNames) {
+                addAfferentPackageName(name);
+            }
+            for (String name : original.efferentPackageNames) {
+                addEfferentPackageName(name);
+            }
+        }
+        
+        collectMetricInfo(classMetrics.size(), afferentPackageNames.size(), efferentPackageNames.size());
+    }
+    
     /**
      * Returns the metrics object for a project containing this package.
      * @return the project metrics
@@ -108,6 +219,7 @@ public class PackageMetrics extends CommonMetrics {
      * @param pm the class metrics
      */
     public void add(ClassMetrics cm) {
+        checkMutable();
         if (!classMetrics.contains(cm)) {
             classMetrics.add(cm);
         }
@@ -134,6 +246,7 @@ public class PackageMetrics extends CommonMetrics {
      * @param name the afferent package name
      */
     public void addAfferentPackageName(String name) {
+        checkMutable();
         if (!afferentPackageNames.contains(name)) {
             afferentPackageNames.add(name);
         }
@@ -152,6 +265,7 @@ public class PackageMetrics extends CommonMetrics {
      * @param name the efferent package name
      */
     public void addEfferentPackageName(String name) {
+        checkMutable();
         if (!efferentPackageNames.contains(name)) {
             efferentPackageNames.add(name);
         }
@@ -177,10 +291,20 @@ public class PackageMetrics extends CommonMetrics {
      * Collects information on this package.
      */
     private void collectMetricInfo() {
+        collectMetricInfo(jpackage.getJavaClasses().size(), jpackage.getAfferentJavaPackages().size(), jpackage.getEfferentJavaPackages().size());
+    }
+    
+    /**
+     * Collects information on this package with given numbers of classes and afferent and efferent packages.
+     * @param classes the number of classes
+     * @param afferents the number of afferent packages
+     * @param efferents the number of efferent packages
+     */
+    private void collectMetricInfo(double classes, double afferents, double efferents) {
         try {
-            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(jpackage.getJavaClasses().size()));
-            metrics.put(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, new Double(jpackage.getAfferentJavaPackages().size()));
-            metrics.put(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, new Double(jpackage.getEfferentJavaPackages().size()));
+            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(classes));
+            metrics.put(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, new Double(afferents));
+            metrics.put(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, new Double(efferents));
             
             metrics.put(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
             metrics.put(MetricSort.NUMBER_OF_FIELDS, sum(MetricSort.NUMBER_OF_FIELDS));
@@ -206,10 +330,125 @@ public class PackageMetrics extends CommonMetrics {
         return new Double(value);
     }
     
+    /**
+     * Freezes this package and all its classes, which are sorted in dictionary order of their names.
+     */
+    protected void freeze() {
+        if (isFrozen()) {
+            return;
+        }
+        
+        afferentPackageNames = freeze(getSortedNames(afferentPackageNames));
+        efferentPackageNames = freeze(getSortedNames(efferentPackageNames));
+        sortClasses();
+        classMetrics = freeze(classMetrics);
+        for (ClassMetrics cm : classMetrics) {
+            cm.freeze();
+        }
+        classQuantiles = collectClassQuantiles();
+        if (isMembersLoaded()) {
+            methodQuantiles = collectMethodQuantiles();
+        }
+        super.freeze();
+    }
+    
+    /**
+     * Tests if the methods and fields of all the classes in this package have been loaded.
+     * @return <code>true</code> if all the members have been loaded, otherwise <code>false</code>
+     */
+    private boolean isMembersLoaded() {
+        for (ClassMetrics cm : classMetrics) {
+            if (!cm.isMembersLoaded()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Collects the quantile sketches of the values of the classes in this package in a single pass, which does not load their members.
+     * @return the quantile sketches keyed by the names of the metrics
+     */
+    private Map<String, QuantileSketch> collectClassQuantiles() {
+        Map<String, QuantileSketch> quantiles = new HashMap<String, QuantileSketch>();
+        for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+            if (metric.isClassMetric()) {
+                quantiles.put(metric.getName(), new QuantileSketch());
+            }
+        }
+        
+        for (ClassMetrics cm : classMetrics) {
+            for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+                if (metric.isClassMetric()) {
+                    addQuantileValue(quantiles, metric, cm.getMetricValue(metric.getName()));
+                }
+            }
+        }
+        return quantiles;
+    }
+    
+    /**
+     * Collects the quantile sketches of the values of the methods in this package in a single pass, which loads the members of the classes not loaded yet.
+     * @return the quantile sketches keyed by the names of the metrics
+     */
+    private Map<String, QuantileSketch> collectMethodQuantiles() {
+        Map<String, QuantileSketch> quantiles = new HashMap<String, QuantileSketch>();
+        for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+            if (metric.isMethodMetric()) {
+                quantiles.put(metric.getName(), new QuantileSketch());
+            }
+        }
+        
+        for (ClassMetrics cm : classMetrics) {
+            for (MethodMetrics mm : cm.getMethodMetrics()) {
+                for (IMetric metric : MetricSort.ALL_SELECTABLE) {
+                    if (metric.isMethodMetric()) {
+                        addQuantileValue(quantiles, metric, mm.getMetricValue(metric.getName()));
+                    }
+                }
+            }
+        }
+        return quantiles;
+    }
+    
+    /**
+     * Adds a metric value to its quantile sketch unless the value is missing.
+     * @param quantiles the quantile sketches keyed by the names of the metrics
+     * @param metric the metric
+     * @param value the metric value, which is negative if it is missing
+     */
+    private static void addQuantileValue(Map<String, QuantileSketch> quantiles, IMetric metric, double value) {
+        if (value >= 0) {
+            quantiles.get(metric.getName()).update(value);
+        }
+    }
+    
+    /**
+     * Returns the quantile sketch of the values of a metric for the classes in this package.
+     * @param name the name of the metric
+     * @return the quantile sketch, or <code>null</code> if this package has not been frozen or the metric is not related to a class
+     */
+    QuantileSketch getClassQuantiles(String name) {
+        return classQuantiles != null ? classQuantiles.get(name) : null;
+    }
+    
+    /**
+     * Returns the quantile sketch of the values of a metric for the methods in this package.
+     * The sketches are collected on the first request if the members of some classes had not been loaded when this package was frozen.
+     * @param name the name of the metric
+     * @return the quantile sketch, or <code>null</code> if this package has not been frozen or the metric is not related to a method
+     */
+    synchronized QuantileSketch getMethodQuantiles(String name) {
+        if (methodQuantiles == null && isFrozen()) {
+            methodQuantiles = collectMethodQuantiles();
+        }
+        return methodQuantiles != null ? methodQuantiles.get(name) : null;
+    }
+    
     /**
      * Sorts the class metrics in dictionary order of their names.
      */
-    public void sortClasses() {
+    private void sortClasses() {
         Collections.sort(classMetrics, new Comparator<ClassMetrics>() {
             
             public int compare(ClassMetrics m1, ClassMetrics m2) {
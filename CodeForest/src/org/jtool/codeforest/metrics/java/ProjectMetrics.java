@@ -4,18 +4,18 @@
 
 package org.jtool.codeforest.metrics.java;
 
-import org.jtool.codeforest.Activator;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.codeforest.util.Time;
 import org.jtool.eclipse.model.java.JavaPackage;
 import org.jtool.eclipse.model.java.JavaProject;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.jface.operation.IRunnableWithProgress;
-import org.eclipse.ui.IWorkbenchWindow;
-
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.Collection;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -46,6 +46,46 @@ public class ProjectMetrics extends CommonMetrics {
      */
     private long time;
     
+    /**
+     * <code>false</code> if this project information contains only part of the packages, otherwise <code>true</code>.
+     */
+    private boolean complete = true;
+    
+    /**
+     * The dependency matrix among the packages, which is created when it is first used.
+     */
+    private PackageDependencies packageDependencies = null;
+    
+    /**
+     * The index of the inheritance hierarchy among the classes, which is given by the calculation or created when it is first used.
+     */
+    private ClassHierarchy classHierarchy = null;
+    
+    /**
+     * The index of classes accessing similar members, which is created when it is first used.
+     */
+    private SimilarClasses similarClasses = null;
+    
+    /**
+     * The reverse dependency graph among the classes for change impact analysis, which is created when it is first used.
+     */
+    private ChangeImpact changeImpact = null;
+    
+    /**
+     * The columns of the metric values of the classes and methods for finding hotspots, which are created when they are first used.
+     */
+    private Hotspots hotspots = null;
+    
+    /**
+     * The quantile sketches of the values of all the classes, keyed by the names of the metrics, which are merged when they are first used.
+     */
+    private Map<String, QuantileSketch> classQuantiles = new HashMap<String, QuantileSketch>();
+    
+    /**
+     * The quantile sketches of the values of all the methods, keyed by the names of the metrics, which are merged when they are first used.
+     */
+    private Map<String, QuantileSketch> methodQuantiles = new HashMap<String, QuantileSketch>();
+    
     /**
      * Creates a new object storing project metrics.
      * @param name the name of the project
@@ -64,74 +104,278 @@ public class ProjectMetrics extends CommonMetrics {
      * @param node an AST node for this project
      */
     public ProjectMetrics(JavaProject jproject) {
+        this(jproject, null, jproject.getJavaPackages(), createCallGraph(jproject), new ClassHierarchy(jproject), true);
+    }
+    
+    /**
+     * Collects information on a project from outside its source code, which is stored into classes calculated later.
+     * The git log is scanned for churn and the quality reports placed under the project are ingested.
+     * @param jproject the project
+     */
+    static void collectExternalInfo(JavaProject jproject) {
+        ChurnHistory.update(jproject.getTopDir());
+        QualityReports.update(jproject.getTopDir(), jproject);
+    }
+    
+    /**
+     * Creates the call graph of the methods within a project and analyzes it, which is done once for a whole calculation.
+     * @param jproject the project
+     * @return the analyzed call graph
+     */
+    static CallGraph createCallGraph(JavaProject jproject) {
+        CallGraph graph = new CallGraph(jproject);
+        graph.analyze();
+        return graph;
+    }
+    
+    /**
+     * Creates a new object storing project metrics, which extends a previous version with newly calculated packages.
+     * The packages of the previous version are shared, so that only the given packages are calculated.
+     * The time of the previous version is taken over, so that all the versions of one calculation are stored under the same time.
+     * @param jproject the project
+     * @param previous the previous version of the project metrics, or <code>null</code> if none
+     * @param jpackages the packages whose metrics are calculated
+     * @param graph the analyzed call graph of the project, or <code>null</code> if no package is calculated
+     * @param hierarchy the index of the inheritance hierarchy among all the classes of the project, or <code>null</code> if no package is calculated
+     * @param complete <code>true</code> if this version contains all the packages of the project, otherwise <code>false</code>
+     */
+    ProjectMetrics(JavaProject jproject, ProjectMetrics previous, Collection<JavaPackage> jpackages, CallGraph graph, ClassHierarchy hierarchy, boolean complete) {
         super();
         
         this.jproject = jproject;
+        this.complete = complete;
         
-        calculatePackageMetrics(this);
+        time = previous != null ? previous.getTime() : Time.getCurrentTime();
+        
+        if (previous != null) {
+            for (PackageMetrics pm : previous.getPackageMetrics()) {
+                packageMetrics.add(new PackageMetrics(pm, this));
+            }
+        }
+        ChurnHistory churn = ChurnHistory.find(jproject.getTopDir());
+        QualityReports reports = QualityReports.find(jproject.getTopDir());
+        List<PackageMetrics> created = new ArrayList<PackageMetrics>();
+        for (JavaPackage jp : jpackages) {
+            created.add(new PackageMetrics(jp, this));
+        }
+        packageMetrics.addAll(created);
+        
+        classHierarchy = hierarchy;
+        for (PackageMetrics pm : created) {
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                collectClassInfo(cm, churn, reports, graph, hierarchy, time);
+            }
+        }
         
         collectMetricInfo();
         collectMetricInfoForTotal();
         collectMetricInfoForMax();
         
-        time = Time.getCurrentTime();
+        freeze();
     }
     
     /**
-     * Returns the time when this project information was generated.
-     * @return the time
+     * Creates a new object storing project metrics, which extends a previous version with packages calculated on their own.
+     * The packages of the previous version and the calculated packages are shared, so that no metrics are calculated here.
+     * The time of the previous version is taken over, so that all the versions of one calculation are stored under the same time.
+     * @param jproject the project
+     * @param previous the previous version of the project metrics, or <code>null</code> if none
+     * @param calculated the frozen packages calculated by {@link #calculate(JavaPackage, CallGraph, ClassHierarchy, long)}
+     * @param hierarchy the index of the inheritance hierarchy among all the classes of the project
+     * @param complete <code>true</code> if this version contains all the packages of the project, otherwise <code>false</code>
      */
-    public long getTime() {
-        return time;
+    ProjectMetrics(JavaProject jproject, ProjectMetrics previous, List<PackageMetrics> calculated, ClassHierarchy hierarchy, boolean complete) {
+        super();
+        
+        this.jproject = jproject;
+        this.complete = complete;
+        
+        time = previous != null ? previous.getTime() : Time.getCurrentTime();
+        
+        if (previous != null) {
+            for (PackageMetrics pm : previous.getPackageMetrics()) {
+                packageMetrics.add(new PackageMetrics(pm, this));
+            }
+        }
+        for (PackageMetrics pm : calculated) {
+            packageMetrics.add(new PackageMetrics(pm, this));
+        }
+        classHierarchy = hierarchy;
+        
+        collectMetricInfo();
+        collectMetricInfoForTotal();
+        collectMetricInfoForMax();
+        
+        freeze();
     }
     
     /**
-     * Calculates package metrics and class metrics.
-     * @param projectMetrics the project metrics that stores the calculated metrics
+     * Calculates metric values of a package on its own, which is frozen so that it can be shared by the versions of a project.
+     * The package belongs to no project until it is copied into a version.
+     * @param jp the package
+     * @param graph the analyzed call graph of the project
+     * @param hierarchy the index of the inheritance hierarchy among all the classes of the project
+     * @param time the time of the calculation
+     * @return the frozen package metrics
      */
-    private void calculatePackageMetrics(final ProjectMetrics projectMetrics) {
-        try {
-            IWorkbenchWindow workbenchWindow = Activator.getWorkbenchWindow();
-            workbenchWindow.run(true, true, new IRunnableWithProgress() {
-                
-                /**
-                 * Creates a model by parsing Java files.
-                 * @param monitor the progress monitor to use to display progress and receive requests for cancellation
-                 * @exception InvocationTargetException if the run method must propagate a checked exception
-                 * @exception InterruptedException if the operation detects a request to cancel
-                 */
-                @Override
-                public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
-                    monitor.beginTask("Calculating metrics ... ", jproject.getJavaPackages().size());
-                    
-                    int idx = 1;
-                    for (JavaPackage jp : jproject.getJavaPackages()) {
-                        monitor.subTask(idx + "/" + jproject.getJavaPackages().size() + " - " + jp.getName());
-                        
-                        PackageMetrics pm = new PackageMetrics(jp, projectMetrics);
-                        packageMetrics.add(pm);
-                        
-                        if (monitor.isCanceled()) {
-                            monitor.done();
-                            throw new InterruptedException();
-                        }
-                        monitor.worked(1);
-                        idx++;
+    static PackageMetrics calculate(JavaPackage jp, CallGraph graph, ClassHierarchy hierarchy, long time) {
+        String topdir = jp.getJavaProject().getTopDir();
+        ChurnHistory churn = ChurnHistory.find(topdir);
+        QualityReports reports = QualityReports.find(topdir);
+        
+        PackageMetrics pm = new PackageMetrics(jp, null);
+        for (ClassMetrics cm : pm.getClassMetrics()) {
+            collectClassInfo(cm, churn, reports, graph, hierarchy, time);
+            cm.collectMetricInfoForTotal();
+            cm.collectMetricInfoForMax();
+        }
+        pm.freeze();
+        return pm;
+    }
+    
+    /**
+     * Stores metrics of a class that are calculated from outside its source code or over the whole project.
+     * @param cm the class metrics, which must not be frozen
+     * @param churn the churn of the project, or <code>null</code> if none
+     * @param reports the quality reports of the project, or <code>null</code> if none
+     * @param graph the analyzed call graph of the project, or <code>null</code> if none
+     * @param hierarchy the index of the inheritance hierarchy among all the classes of the project, or <code>null</code> if none
+     * @param time the time of the calculation
+     */
+    private static void collectClassInfo(ClassMetrics cm, ChurnHistory churn, QualityReports reports, CallGraph graph, ClassHierarchy hierarchy, long time) {
+        if (churn != null) {
+            churn.collect(cm, time);
+        }
+        if (reports != null) {
+            reports.collect(cm);
+        }
+        if (graph != null) {
+            graph.collect(cm);
+        }
+        if (hierarchy != null) {
+            hierarchy.collect(cm);
+        }
+        MinHash.collect(cm);
+    }
+    
+    /**
+     * Creates a new object storing project metrics of a revision, which is derived from the version of a previous revision.
+     * Packages of the previous version are reused if they still exist and are not recalculated, so that only the given packages are calculated.
+     * If the revision has its own model, the reused packages are linked to it and their metrics over the whole project are recalculated,
+     * otherwise they are shared with the previous version.
+     * @param jproject the project of the revision
+     * @param previous the version of the previous revision, or <code>null</code> if none
+     * @param jpackages the packages whose metrics are recalculated
+     * @param graph the analyzed call graph of the revision, or <code>null</code> if no package is recalculated
+     * @param hierarchy the index of the inheritance hierarchy among all the classes of the revision, or <code>null</code> if no package is recalculated
+     * @param time the time of the revision
+     */
+    ProjectMetrics(JavaProject jproject, ProjectMetrics previous, Collection<JavaPackage> jpackages, CallGraph graph, ClassHierarchy hierarchy, long time) {
+        super();
+        
+        this.jproject = jproject;
+        
+        List<PackageMetrics> created = new ArrayList<PackageMetrics>();
+        if (previous != null) {
+            Map<String, JavaPackage> existing = new HashMap<String, JavaPackage>();
+            for (JavaPackage jp : jproject.getJavaPackages()) {
+                existing.put(jp.getName(), jp);
+            }
+            Set<String> recalculated = new HashSet<String>();
+            for (JavaPackage jp : jpackages) {
+                recalculated.add(jp.getName());
+            }
+            
+            for (PackageMetrics pm : previous.getPackageMetrics()) {
+                JavaPackage jp = existing.get(pm.getName());
+                if (jp != null && !recalculated.contains(pm.getName())) {
+                    if (jproject == previous.getJavaProject()) {
+                        packageMetrics.add(new PackageMetrics(pm, this));
+                    } else {
+                        created.add(new PackageMetrics(pm, jp, this));
                     }
-                    monitor.done();
                 }
-                
-            });
-            
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            System.out.println("# InvocationTargetException because " + cause);
-            for (StackTraceElement elem : e.getStackTrace()) {
-                System.err.println(elem.toString());
             }
-        } catch (InterruptedException e) {
-            return;
         }
+        for (JavaPackage jp : jpackages) {
+            created.add(new PackageMetrics(jp, this));
+        }
+        packageMetrics.addAll(created);
+        
+        classHierarchy = hierarchy;
+        for (PackageMetrics pm : created) {
+            for (ClassMetrics cm : pm.getClassMetrics()) {
+                collectClassInfo(cm, null, null, graph, hierarchy, time);
+            }
+        }
+        
+        collectMetricInfo();
+        collectMetricInfoForTotal();
+        collectMetricInfoForMax();
+        
+        this.time = time;
+        freeze();
+    }
+    
+    /**
+     * Creates a new object storing metrics of a workspace, which combines the packages of projects.
+     * The packages of the projects are shared, so that no metrics are recalculated.
+     * Packages that have the same name in several projects are merged into one package, since packages are identified by their names.
+     * @param name the name of the workspace
+     * @param path the top directory of the workspace
+     * @param projects the frozen metrics of the projects
+     * @param time the time shared by all the versions of the workspace
+     * @param complete <code>true</code> if this version contains all the projects of the workspace, otherwise <code>false</code>
+     */
+    ProjectMetrics(String name, String path, List<ProjectMetrics> projects, long time, boolean complete) {
+        super();
+        
+        jproject = JavaProject.create(name, path);
+        this.complete = complete;
+        
+        double files = 0;
+        Map<String, List<PackageMetrics>> packages = new LinkedHashMap<String, List<PackageMetrics>>();
+        for (ProjectMetrics mp : projects) {
+            for (PackageMetrics pm : mp.getPackageMetrics()) {
+                List<PackageMetrics> same = packages.get(pm.getName());
+                if (same == null) {
+                    same = new ArrayList<PackageMetrics>();
+                    packages.put(pm.getName(), same);
+                }
+                same.add(pm);
+            }
+            files = files + mp.getMetricValue(MetricSort.NUMBER_OF_FILES);
+        }
+        for (List<PackageMetrics> same : packages.values()) {
+            if (same.size() == 1) {
+                packageMetrics.add(new PackageMetrics(same.get(0), this));
+            } else {
+                packageMetrics.add(new PackageMetrics(same, this));
+            }
+        }
+        
+        collectMetricInfo(files, packageMetrics.size(), getClassMetrics().size());
+        collectMetricInfoForTotal();
+        collectMetricInfoForMax();
+        
+        this.time = time;
+        freeze();
+    }
+    
+    /**
+     * Returns the time when this project information was generated.
+     * @return the time
+     */
+    public long getTime() {
+        return time;
+    }
+    
+    /**
+     * Tests if this project information contains all the packages of the project.
+     * @return <code>false</code> if the packages are still being calculated, otherwise <code>true</code>
+     */
+    public boolean isComplete() {
+        return complete;
     }
     
     /**
@@ -155,6 +399,7 @@ public class ProjectMetrics extends CommonMetrics {
      * @param pm the package metrics
      */
     public void add(PackageMetrics pm) {
+        checkMutable();
         if (!packageMetrics.contains(pm)) {
             packageMetrics.add(pm);
         }
@@ -172,6 +417,105 @@ public class ProjectMetrics extends CommonMetrics {
         return classes;
     }
     
+    /**
+     * Returns the dependency matrix among the packages of this project, which is created only once.
+     * @return the package dependency matrix
+     */
+    public synchronized PackageDependencies getPackageDependencies() {
+        if (packageDependencies == null) {
+            packageDependencies = new PackageDependencies(packageMetrics);
+        }
+        return packageDependencies;
+    }
+    
+    /**
+     * Returns the index of the inheritance hierarchy among the classes of this project, which is created only once.
+     * @return the class hierarchy index
+     */
+    public synchronized ClassHierarchy getClassHierarchy() {
+        if (classHierarchy == null) {
+            classHierarchy = new ClassHierarchy(getClassMetrics());
+        }
+        return classHierarchy;
+    }
+    
+    /**
+     * Returns the index of classes accessing similar members within this project, which is created only once.
+     * @return the similar class index
+     */
+    public synchronized SimilarClasses getSimilarClasses() {
+        if (similarClasses == null) {
+            similarClasses = new SimilarClasses(getClassMetrics());
+        }
+        return similarClasses;
+    }
+    
+    /**
+     * Returns the reverse dependency graph among the classes within this project for change impact analysis, which is created only once.
+     * @return the change impact graph
+     */
+    public synchronized ChangeImpact getChangeImpact() {
+        if (changeImpact == null) {
+            changeImpact = new ChangeImpact(getClassMetrics());
+        }
+        return changeImpact;
+    }
+    
+    /**
+     * Returns the metric values of the classes and methods within this project for finding hotspots, which are collected only once.
+     * @return the hotspot finder
+     */
+    public synchronized Hotspots getHotspots() {
+        if (hotspots == null) {
+            hotspots = new Hotspots(getClassMetrics());
+        }
+        return hotspots;
+    }
+    
+    /**
+     * Returns the quantile sketch of the values of a metric for all the classes within this project, which merges the sketches of the packages only once.
+     * @param name the name of the metric
+     * @return the quantile sketch, or <code>null</code> if the metric is not related to a class or this project has not been frozen
+     */
+    public synchronized QuantileSketch getClassQuantiles(String name) {
+        if (!classQuantiles.containsKey(name) && isFrozen()) {
+            classQuantiles.put(name, mergeQuantiles(name, false));
+        }
+        return classQuantiles.get(name);
+    }
+    
+    /**
+     * Returns the quantile sketch of the values of a metric for all the methods within this project, which merges the sketches of the packages only once.
+     * @param name the name of the metric
+     * @return the quantile sketch, or <code>null</code> if the metric is not related to a method or this project has not been frozen
+     */
+    public synchronized QuantileSketch getMethodQuantiles(String name) {
+        if (!methodQuantiles.containsKey(name) && isFrozen()) {
+            methodQuantiles.put(name, mergeQuantiles(name, true));
+        }
+        return methodQuantiles.get(name);
+    }
+    
+    /**
+     * Merges the quantile sketches of a metric over all the packages.
+     * @param name the name of the metric
+     * @param method <code>true</code> if the sketches of the methods are merged, or <code>false</code> if those of the classes are merged
+     * @return the merged sketch, or <code>null</code> if no package has a sketch of the metric
+     */
+    private QuantileSketch mergeQuantiles(String name, boolean method) {
+        QuantileSketch merged = null;
+        for (PackageMetrics pm : packageMetrics) {
+            QuantileSketch sketch = method ? pm.getMethodQuantiles(name) : pm.getClassQuantiles(name);
+            if (sketch != null) {
+                if (merged == null) {
+                    merged = new QuantileSketch();
+                }
+                merged.merge(sketch);
+            }
+        }
+        return merged;
+    }
+    
     /**
      * Returns the name of this project.
      * @return the name
@@ -200,10 +544,24 @@ public class ProjectMetrics extends CommonMetrics {
      * Collects information on this project.
      */
     private void collectMetricInfo() {
+        if (complete) {
+            collectMetricInfo(jproject.getJavaFiles().size(), jproject.getJavaPackages().size(), jproject.getJavaClasses().size());
+        } else {
+            collectMetricInfo(jproject.getJavaFiles().size(), packageMetrics.size(), getClassMetrics().size());
+        }
+    }
+    
+    /**
+     * Collects information on this project with given numbers of files, packages, and classes.
+     * @param files the number of files
+     * @param packages the number of packages
+     * @param classes the number of classes
+     */
+    private void collectMetricInfo(double files, double packages, double classes) {
         try {
-            metrics.put(MetricSort.NUMBER_OF_FILES, new Double(jproject.getJavaFiles().size()));
-            metrics.put(MetricSort.NUMBER_OF_PACKAGES, new Double(jproject.getJavaPackages().size()));
-            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(jproject.getJavaClasses().size()));
+            metrics.put(MetricSort.NUMBER_OF_FILES, new Double(files));
+            metrics.put(MetricSort.NUMBER_OF_PACKAGES, new Double(packages));
+            metrics.put(MetricSort.NUMBER_OF_CLASSES, new Double(classes));
             
             metrics.put(MetricSort.LINES_OF_CODE, sum(MetricSort.LINES_OF_CODE));
             metrics.put(MetricSort.NUMBER_OF_METHODS, sum(MetricSort.NUMBER_OF_METHODS));
@@ -232,6 +590,7 @@ public class ProjectMetrics extends CommonMetrics {
     
     /**
      * Collects information on this project, which is related to total metric values.
+     * Classes shared with a previous version are frozen and keep their own values.
      */
     protected void collectMetricInfoForTotal() {
         double totalLOC = 0;
@@ -292,13 +651,32 @@ public class ProjectMetrics extends CommonMetrics {
         putMetricValue(MetricSort.TOTAL_LACK_OF_COHESION_OF_METHODS, totalLCOM);
         putMetricValue(MetricSort.TOTAL_WEIGHTED_METHODS_PER_CLASS, totalWMC);
         
+        for (int i = 0; i < MetricSort.CHURN_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.CHURN_METRICS[i], MetricSort.TOTAL_CHURN_METRICS[i], false);
+        }
+        for (int i = 0; i < MetricSort.REPORT_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.REPORT_METRICS[i], MetricSort.TOTAL_REPORT_METRICS[i], false);
+        }
+        for (int i = 0; i < MetricSort.CALL_GRAPH_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.CALL_GRAPH_METRICS[i], MetricSort.TOTAL_CALL_GRAPH_METRICS[i], false);
+        }
+        for (int i = 0; i < MetricSort.HIERARCHY_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.HIERARCHY_METRICS[i], MetricSort.TOTAL_HIERARCHY_METRICS[i], false);
+        }
+        for (int i = 0; i < MetricSort.SKETCH_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.SKETCH_METRICS[i], MetricSort.TOTAL_SKETCH_METRICS[i], false);
+        }
+        
         for (ClassMetrics cm : classes) {
-            cm.collectMetricInfoForTotal();
+            if (!cm.isFrozen()) {
+                cm.collectMetricInfoForTotal();
+            }
         }
     }
     
     /**
      * Collects information on this project, which is related to maximum metric values.
+     * Classes shared with a previous version are frozen and keep their own values.
      */
     protected void collectMetricInfoForMax() {
         double maxLOC = 0;
@@ -359,23 +737,144 @@ public class ProjectMetrics extends CommonMetrics {
         putMetricValue(MetricSort.MAX_LACK_OF_COHESION_OF_METHODS, maxLCOM);
         putMetricValue(MetricSort.MAX_WEIGHTED_METHODS_PER_CLASS, maxWMC);
         
+        for (int i = 0; i < MetricSort.CHURN_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.CHURN_METRICS[i], MetricSort.MAX_CHURN_METRICS[i], true);
+        }
+        for (int i = 0; i < MetricSort.REPORT_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.REPORT_METRICS[i], MetricSort.MAX_REPORT_METRICS[i], true);
+        }
+        for (int i = 0; i < MetricSort.CALL_GRAPH_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.CALL_GRAPH_METRICS[i], MetricSort.MAX_CALL_GRAPH_METRICS[i], true);
+        }
+        for (int i = 0; i < MetricSort.HIERARCHY_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.HIERARCHY_METRICS[i], MetricSort.MAX_HIERARCHY_METRICS[i], true);
+        }
+        for (int i = 0; i < MetricSort.SKETCH_METRICS.length; i++) {
+            collectOptionalMetricInfo(classes, MetricSort.SKETCH_METRICS[i], MetricSort.MAX_SKETCH_METRICS[i], true);
+        }
+        
         for (ClassMetrics cm : classes) {
-            cm.collectMetricInfoForMax();
+            if (!cm.isFrozen()) {
+                cm.collectMetricInfoForMax();
+            }
         }
     }
     
     /**
-     * Collects information on this project. This method must be called after importing XML data.
+     * Collects information on this project and freezes it. This method must be called after importing XML data.
      */
     public void collectMetricsInfoAfterXMLImport() {
         collectMetricInfoForTotal();
         collectMetricInfoForMax();
+        freeze();
+    }
+    
+    /**
+     * Collects information on this project and freezes it. This method must be called after merging partial snapshots
+     * whose packages are disjoint, so that afferent and efferent classes and packages and the descendants of classes across the snapshots are recomputed.
+     */
+    void collectMetricsInfoAfterMerge() {
+        relink();
+        
+        Set<String> files = new HashSet<String>();
+        List<ClassMetrics> classes = getClassMetrics();
+        ClassHierarchy hierarchy = getClassHierarchy();
+        for (ClassMetrics cm : classes) {
+            files.add(cm.getPath());
+            hierarchy.collect(cm);
+        }
+        collectMetricInfo(files.size(), packageMetrics.size(), classes.size());
+        collectMetricInfoForTotal();
+        collectMetricInfoForMax();
+        freeze();
+    }
+    
+    /**
+     * Recomputes afferent and efferent classes and packages so that they are consistent over all the packages of this project.
+     */
+    private void relink() {
+        Map<String, ClassMetrics> classes = new HashMap<String, ClassMetrics>();
+        for (ClassMetrics cm : getClassMetrics()) {
+            classes.put(cm.getQualifiedName(), cm);
+        }
+        
+        for (ClassMetrics cm : classes.values()) {
+            for (String fqn : cm.getEfferentClassNames()) {
+                ClassMetrics target = classes.get(fqn);
+                if (target != null) {
+                    target.addAfferentClassName(cm.getQualifiedName());
+                }
+            }
+        }
+        for (ClassMetrics cm : classes.values()) {
+            for (String fqn : cm.getAfferentClassNames()) {
+                ClassMetrics source = classes.get(fqn);
+                if (source != null) {
+                    source.addEfferentClassName(cm.getQualifiedName());
+                }
+            }
+        }
+        
+        for (ClassMetrics cm : classes.values()) {
+            cm.putMetricValue(MetricSort.NUMBER_OF_AFFERENT_CLASSES, count(cm.getAfferentClassNames(), classes.keySet()));
+            cm.putMetricValue(MetricSort.NUMBER_OF_EFFERENT_CLASSES, count(cm.getEfferentClassNames(), classes.keySet()));
+            
+            PackageMetrics pm = cm.getPackageMetrics();
+            for (String fqn : cm.getEfferentClassNames()) {
+                ClassMetrics target = classes.get(fqn);
+                if (target != null && target.getPackageMetrics() != pm) {
+                    pm.addEfferentPackageName(target.getPackageMetrics().getName());
+                    target.getPackageMetrics().addAfferentPackageName(pm.getName());
+                }
+            }
+        }
+        
+        Set<String> packages = new HashSet<String>();
+        for (PackageMetrics pm : packageMetrics) {
+            packages.add(pm.getName());
+        }
+        for (PackageMetrics pm : packageMetrics) {
+            pm.putMetricValue(MetricSort.NUMBER_OF_AFFERENT_PACKAGES, count(pm.getAfferentPackageNames(), packages));
+            pm.putMetricValue(MetricSort.NUMBER_OF_EFFERENT_PACKAGES, count(pm.getEfferentPackageNames(), packages));
+        }
+    }
+    
+    /**
+     * Counts names that are contained in a given collection.
+     * @param names the names to be counted
+     * @param existing the collection of existing names
+     * @return the number of the names contained in the collection
+     */
+    private static int count(List<String> names, Set<String> existing) {
+        int num = 0;
+        for (String name : names) {
+            if (existing.contains(name)) {
+                num++;
+            }
+        }
+        return num;
+    }
+    
+    /**
+     * Freezes this project and all its packages, which are sorted in dictionary order of their names.
+     */
+    protected void freeze() {
+        if (isFrozen()) {
+            return;
+        }
+        
+        sortPackages();
+        packageMetrics = freeze(packageMetrics);
+        for (PackageMetrics pm : packageMetrics) {
+            pm.freeze();
+        }
+        super.freeze();
     }
     
     /**
      * Sorts the package metrics in dictionary order of their names.
      */
-    public void sortPackages() {
+    private void sortPackages() {
         Collections.sort(packageMetrics, new Comparator<PackageMetrics>() {
             
             public int compare(PackageMetrics m1, PackageMetrics m2) {
@@ -0,0 +1,552 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.eclipse.model.java.JavaClass;
+import org.jtool.eclipse.model.java.JavaMethod;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * Stores values ingested from external quality reports on a project, which are JaCoCo coverage reports,
+ * PMD reports, and Checkstyle reports in XML. The reports are streamed by a SAX parser, and each element is joined to
+ * a class or a method through a hash index on fully-qualified names of classes and signatures of methods.
+ * Only counters of the classes and methods in the index are kept, so the memory does not grow with the size of the reports.
+ * @author Katsuhisa Maruyama
+ */
+public class QualityReports {
+    
+    /**
+     * The name of the directory under the project in which any report can be placed.
+     */
+    public static final String REPORTS_DIRNAME = "codeforest-reports";
+    
+    /**
+     * The paths of reports relative to the project, which are generated by Maven and Gradle by default.
+     */
+    private static final String[] DEFAULT_REPORTS = {
+        "target/site/jacoco/jacoco.xml", "build/reports/jacoco/test/jacocoTestReport.xml",
+        "target/pmd.xml", "build/reports/pmd/main.xml",
+        "target/checkstyle-result.xml", "build/reports/checkstyle/main.xml"
+    };
+    
+    /**
+     * The formats of reports, which are identified by their root elements.
+     */
+    private static final int UNKNOWN = 0;
+    private static final int JACOCO = 1;
+    private static final int PMD = 2;
+    private static final int CHECKSTYLE = 3;
+    
+    /**
+     * The indices of counters kept for a class or a method.
+     */
+    private static final int LINE_MISSED = 0;
+    private static final int LINE_COVERED = 1;
+    private static final int BRANCH_MISSED = 2;
+    private static final int BRANCH_COVERED = 3;
+    private static final int PMD_VIOLATIONS = 4;
+    private static final int CHECKSTYLE_VIOLATIONS = 5;
+    private static final int COUNTERS = 6;
+    
+    /**
+     * The name of constructors in the signatures of methods.
+     */
+    private static final String INIT = "<init>";
+    
+    /**
+     * The ingested reports, keyed by the top directories of the projects.
+     */
+    private static Map<String, QualityReports> reports = new HashMap<String, QualityReports>();
+    
+    /**
+     * The keys of the classes and methods of the project, which are fully-qualified names of classes,
+     * fully-qualified names of methods with their parameter types, and fully-qualified names of methods without them.
+     */
+    private Set<String> index = new HashSet<String>();
+    
+    /**
+     * The fully-qualified names of top-level classes, keyed by the paths of their files derived from the names.
+     */
+    private Map<String, String> files = new HashMap<String, String>();
+    
+    /**
+     * The counters of the classes and methods found in the reports, keyed by the keys in the index.
+     */
+    private Map<String, long[]> counters = new HashMap<String, long[]>();
+    
+    /**
+     * The formats of the ingested reports.
+     */
+    private boolean[] ingested = new boolean[CHECKSTYLE + 1];
+    
+    /**
+     * Creates an index of a project.
+     * @param jproject the project
+     */
+    private QualityReports(JavaProject jproject) {
+        for (JavaClass jc : jproject.getJavaClasses()) {
+            String fqn = jc.getQualifiedName();
+            index.add(fqn);
+            
+            String simple = fqn.substring(fqn.lastIndexOf('.') + 1);
+            String path = jc.getJavaFile() != null ? jc.getJavaFile().getPath() : null;
+            if (path != null && path.replace('\\', '/').endsWith("/" + simple + ".java")) {
+                files.put(fqn.replace('.', '/') + ".java", fqn);
+            }
+            
+            for (JavaMethod jm : jc.getJavaMethods()) {
+                index.add(getMethodKey(fqn, jm.isConstructor() ? INIT : jm.getName(), getParameterTypes(jm.getSignature())));
+                index.add(getMethodKey(fqn, jm.getName()));
+            }
+        }
+    }
+    
+    /**
+     * Ingests the quality reports placed under a project.
+     * The reports are either in the default locations of Maven and Gradle or in the reports directory under the project.
+     * @param topdir the path of the top directory of the project
+     * @param jproject the project
+     * @return the ingested reports, or <code>null</code> if no report is found
+     */
+    public static QualityReports update(String topdir, JavaProject jproject) {
+        List<File> files = new ArrayList<File>();
+        for (String path : DEFAULT_REPORTS) {
+            File file = new File(topdir, path);
+            if (file.isFile()) {
+                files.add(file);
+            }
+        }
+        File[] extra = new File(topdir, REPORTS_DIRNAME).listFiles();
+        if (extra != null) {
+            for (File file : extra) {
+                if (file.isFile() && file.getName().endsWith(".xml")) {
+                    files.add(file);
+                }
+            }
+        }
+        
+        QualityReports qr = null;
+        if (!files.isEmpty()) {
+            qr = new QualityReports(jproject);
+            for (File file : files) {
+                qr.ingest(file);
+            }
+        }
+        
+        synchronized (reports) {
+            if (qr != null) {
+                reports.put(topdir, qr);
+            } else {
+                reports.remove(topdir);
+            }
+        }
+        return qr;
+    }
+    
+    /**
+     * Finds the reports of a project that have been ingested.
+     * @param topdir the path of the top directory of the project
+     * @return the ingested reports, or <code>null</code> if none
+     */
+    public static QualityReports find(String topdir) {
+        synchronized (reports) {
+            return reports.get(topdir);
+        }
+    }
+    
+    /**
+     * Streams a report and accumulates counters of the classes and methods in the index.
+     * @param file the file of the report
+     */
+    private void ingest(File file) {
+        long start = System.currentTimeMillis();
+        InputStream in = null;
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setValidating(false);
+            factory.setNamespaceAware(false);
+            try {
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            } catch (Exception e) {
+                /* The parser reads the DTD of JaCoCo reports if it does not support the feature. */
+            }
+            SAXParser parser = factory.newSAXParser();
+            
+            in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+            ReportHandler handler = new ReportHandler();
+            parser.parse(in, handler);
+            if (handler.format != UNKNOWN) {
+                ingested[handler.format] = true;
+                System.out.println("- Ingest report " + file.getAbsolutePath() + " (" + (System.currentTimeMillis() - start) + " ms)");
+            }
+            
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+        } catch (SAXException e) {
+            System.err.println("Cannot ingest report " + file.getAbsolutePath() + ": " + e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stores values ingested from the reports into a class and its methods.
+     * Violations are stored as zero for classes and methods not found in reports that have been ingested.
+     * @param mclass the class metrics, which must not be frozen
+     */
+    public void collect(ClassMetrics mclass) {
+        String fqn = mclass.getQualifiedName();
+        long[] cc = counters.get(fqn);
+        collectCoverage(mclass, cc);
+        if (ingested[PMD]) {
+            mclass.putMetricValue(MetricSort.NUMBER_OF_PMD_VIOLATIONS, cc != null ? cc[PMD_VIOLATIONS] : 0);
+        }
+        if (ingested[CHECKSTYLE]) {
+            mclass.putMetricValue(MetricSort.NUMBER_OF_CHECKSTYLE_VIOLATIONS, cc != null ? cc[CHECKSTYLE_VIOLATIONS] : 0);
+        }
+        
+        for (MethodMetrics mm : mclass.getMethodMetrics()) {
+            long[] mc = counters.get(getMethodKey(fqn, mm.isConstructor() ? INIT : mm.getName(), getParameterTypes(mm.getSignature())));
+            collectCoverage(mm, mc);
+            if (ingested[PMD]) {
+                long[] nc = counters.get(getMethodKey(fqn, mm.getName()));
+                mm.putMetricValue(MetricSort.NUMBER_OF_PMD_VIOLATIONS, nc != null ? nc[PMD_VIOLATIONS] : 0);
+            }
+        }
+    }
+    
+    /**
+     * Stores coverage into a class or a method if its lines or branches are found in coverage reports.
+     * @param metrics the class or method metrics
+     * @param c the counters of the class or method, or <code>null</code> if none
+     */
+    private void collectCoverage(CommonMetrics metrics, long[] c) {
+        if (c == null) {
+            return;
+        }
+        
+        if (c[LINE_MISSED] + c[LINE_COVERED] > 0) {
+            metrics.putMetricValue(MetricSort.LINE_COVERAGE, 100.0 * c[LINE_COVERED] / (c[LINE_MISSED] + c[LINE_COVERED]));
+        }
+        if (c[BRANCH_MISSED] + c[BRANCH_COVERED] > 0) {
+            metrics.putMetricValue(MetricSort.BRANCH_COVERAGE, 100.0 * c[BRANCH_COVERED] / (c[BRANCH_MISSED] + c[BRANCH_COVERED]));
+        }
+    }
+    
+    /**
+     * Adds a value to a counter of a class or a method in the index.
+     * @param key the key of the class or method
+     * @param kind the index of the counter
+     * @param value the value to be added
+     */
+    private void count(String key, int kind, long value) {
+        if (key == null || !index.contains(key)) {
+            return;
+        }
+        
+        long[] c = counters.get(key);
+        if (c == null) {
+            c = new long[COUNTERS];
+            counters.put(key, c);
+        }
+        c[kind] = c[kind] + value;
+    }
+    
+    /**
+     * Finds a top-level class declared in a file.
+     * @param path the path of the file written in a report
+     * @return the fully-qualified name of the class, or <code>null</code> if none
+     */
+    private String findClass(String path) {
+        if (path == null) {
+            return null;
+        }
+        
+        path = path.replace('\\', '/');
+        int pos = -1;
+        do {
+            String fqn = files.get(path.substring(pos + 1));
+            if (fqn != null) {
+                return fqn;
+            }
+            pos = path.indexOf('/', pos + 1);
+        } while (pos >= 0);
+        return null;
+    }
+    
+    /**
+     * Returns the key of a method with its parameter types.
+     * @param fqn the fully-qualified name of the class declaring the method
+     * @param name the name of the method
+     * @param params the simple names of the parameter types separated by commas
+     * @return the key of the method
+     */
+    private static String getMethodKey(String fqn, String name, String params) {
+        return fqn + "#" + name + "(" + params + ")";
+    }
+    
+    /**
+     * Returns the key of all the methods with a name, which are overloaded.
+     * @param fqn the fully-qualified name of the class declaring the methods
+     * @param name the name of the methods
+     * @return the key of the methods
+     */
+    private static String getMethodKey(String fqn, String name) {
+        return fqn + "#" + name;
+    }
+    
+    /**
+     * Obtains the simple names of parameter types from the signature of a method written in source code.
+     * Type arguments are removed, and variable arity parameters are regarded as arrays.
+     * @param sig the signature of the method
+     * @return the simple names of the parameter types separated by commas
+     */
+    static String getParameterTypes(String sig) {
+        int open = sig != null ? sig.indexOf('(') : -1;
+        int close = sig != null ? sig.lastIndexOf(')') : -1;
+        if (open < 0 || close < open) {
+            return "";
+        }
+        
+        StringBuilder params = new StringBuilder();
+        int depth = 0;
+        for (int i = open + 1; i < close; i++) {
+            char ch = sig.charAt(i);
+            if (ch == '<') {
+                depth++;
+            } else if (ch == '>') {
+                depth--;
+            } else if (depth == 0) {
+                params.append(ch);
+            }
+        }
+        
+        StringBuilder buf = new StringBuilder();
+        for (String type : params.toString().replace("...", "[]").split("[,\\s]+")) {
+            if (type.length() > 0) {
+                if (buf.length() > 0) {
+                    buf.append(',');
+                }
+                buf.append(type.substring(type.lastIndexOf('.') + 1));
+            }
+        }
+        return buf.toString();
+    }
+    
+    /**
+     * Obtains the simple names of parameter types from a method descriptor of the class file format.
+     * @param desc the method descriptor
+     * @return the simple names of the parameter types separated by commas
+     */
+    static String getDescriptorTypes(String desc) {
+        StringBuilder buf = new StringBuilder();
+        int i = desc.indexOf('(') + 1;
+        int close = desc.indexOf(')');
+        while (i > 0 && i < close) {
+            int dims = 0;
+            while (desc.charAt(i) == '[') {
+                dims++;
+                i++;
+            }
+            
+            String type;
+            char ch = desc.charAt(i);
+            if (ch == 'L') {
+                int end = desc.indexOf(';', i);
+                String name = desc.substring(i + 1, end);
+                type = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('$')) + 1);
+                i = end + 1;
+            } else {
+                type = getPrimitiveType(ch);
+                i++;
+            }
+            
+            if (buf.length() > 0) {
+                buf.append(',');
+            }
+            buf.append(type);
+            for (int d = 0; d < dims; d++) {
+                buf.append("[]");
+            }
+        }
+        return buf.toString();
+    }
+    
+    /**
+     * Obtains the name of a primitive type from its descriptor.
+     * @param ch the descriptor of the primitive type
+     * @return the name of the primitive type
+     */
+    private static String getPrimitiveType(char ch) {
+        switch (ch) {
+            case 'B': return "byte";
+            case 'C': return "char";
+            case 'D': return "double";
+            case 'F': return "float";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'S': return "short";
+            case 'Z': return "boolean";
+        }
+        return "void";
+    }
+    
+    /**
+     * Parses a long value of an attribute.
+     * @param attrs the attributes of an element
+     * @param name the name of the attribute
+     * @return the value, or zero if the attribute is missing or invalid
+     */
+    private static long getLong(Attributes attrs, String name) {
+        String value = attrs.getValue(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * A handler that receives elements of a report and accumulates counters.
+     * Only the current class, method, and file are kept while streaming.
+     */
+    private class ReportHandler extends DefaultHandler {
+        
+        /**
+         * The format of the report, which is determined by its root element.
+         */
+        int format = UNKNOWN;
+        
+        /**
+         * The key of the class whose element is being read, or <code>null</code> if none.
+         */
+        private String classKey = null;
+        
+        /**
+         * The key of the method whose element is being read, or <code>null</code> if none.
+         */
+        private String methodKey = null;
+        
+        /**
+         * The fully-qualified name of the top-level class declared in the file whose element is being read, or <code>null</code> if none.
+         */
+        private String fileClass = null;
+        
+        /**
+         * Receives notification of the start of an element.
+         * @param uri the namespace URI
+         * @param localName the local name
+         * @param qName the qualified name
+         * @param attrs the attributes attached to the element
+         * @throws SAXException if the report is not in a supported format
+         */
+        public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+            if (format == UNKNOWN) {
+                if (qName.equals("report")) {
+                    format = JACOCO;
+                } else if (qName.equals("pmd")) {
+                    format = PMD;
+                } else if (qName.equals("checkstyle")) {
+                    format = CHECKSTYLE;
+                } else {
+                    throw new SAXException("Unsupported report whose root element is " + qName);
+                }
+                return;
+            }
+            
+            if (format == JACOCO) {
+                if (qName.equals("class")) {
+                    String name = attrs.getValue("name");
+                    classKey = name != null ? name.replace('/', '.').replace('$', '.') : null;
+                } else if (qName.equals("method") && classKey != null) {
+                    String name = attrs.getValue("name");
+                    String desc = attrs.getValue("desc");
+                    methodKey = name != null && desc != null ? getMethodKey(classKey, name, getDescriptorTypes(desc)) : null;
+                } else if (qName.equals("counter") && classKey != null) {
+                    String key = methodKey != null ? methodKey : classKey;
+                    String type = attrs.getValue("type");
+                    if ("LINE".equals(type)) {
+                        count(key, LINE_MISSED, getLong(attrs, "missed"));
+                        count(key, LINE_COVERED, getLong(attrs, "covered"));
+                    } else if ("BRANCH".equals(type)) {
+                        count(key, BRANCH_MISSED, getLong(attrs, "missed"));
+                        count(key, BRANCH_COVERED, getLong(attrs, "covered"));
+                    }
+                }
+                
+            } else if (format == PMD) {
+                if (qName.equals("file")) {
+                    fileClass = findClass(attrs.getValue("name"));
+                } else if (qName.equals("violation")) {
+                    String pkg = attrs.getValue("package");
+                    String cls = attrs.getValue("class");
+                    String fqn = cls != null ? (pkg != null && pkg.length() > 0 ? pkg + "." + cls : cls) : null;
+                    if (fqn == null || !index.contains(fqn)) {
+                        fqn = fileClass;
+                    }
+                    if (fqn != null) {
+                        count(fqn, PMD_VIOLATIONS, 1);
+                        String method = attrs.getValue("method");
+                        if (method != null && method.length() > 0) {
+                            count(getMethodKey(fqn, method), PMD_VIOLATIONS, 1);
+                        }
+                    }
+                }
+                
+            } else if (format == CHECKSTYLE) {
+                if (qName.equals("file")) {
+                    fileClass = findClass(attrs.getValue("name"));
+                } else if (qName.equals("error") && fileClass != null) {
+                    count(fileClass, CHECKSTYLE_VIOLATIONS, 1);
+                }
+            }
+        }
+        
+        /**
+         * Receives notification of the end of an element.
+         * @param uri the namespace URI
+         * @param localName the local name
+         * @param qName the qualified name
+         */
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equals("method")) {
+                methodKey = null;
+            } else if (qName.equals("class")) {
+                classKey = null;
+            } else if (qName.equals("file")) {
+                fileClass = null;
+            }
+        }
+    }
+}
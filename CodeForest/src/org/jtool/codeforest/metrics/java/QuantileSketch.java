@@ -0,0 +1,273 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.Arrays;
+
+/**
+ * A KLL sketch that approximates the quantiles of a stream of values in a single pass within bounded space.
+ * Values are stored in levels of compactors, where an item at level h stands for 2^h values.
+ * A full compactor sorts its items and promotes every other one to the next level, alternating which half is kept,
+ * so that the rank error stays within about 1.7% of the number of values with 200 items at the top level.
+ * Sketches of disjoint streams are merged into the sketch of their union, so that no global sort is needed.
+ * @author Katsuhisa Maruyama
+ */
+public class QuantileSketch {
+    
+    /**
+     * The capacity of the compactor at the top level.
+     */
+    private static final int K = 200;
+    
+    /**
+     * The ratio of the capacity of a compactor to that of the compactor at the next level.
+     */
+    private static final double DECAY = 2.0 / 3.0;
+    
+    /**
+     * The items of the compactors at each level.
+     */
+    private double[][] items = new double[1][K];
+    
+    /**
+     * The number of the items in the compactors at each level.
+     */
+    private int[] sizes = new int[1];
+    
+    /**
+     * The number of the levels.
+     */
+    private int levels = 1;
+    
+    /**
+     * The bits that alternate which half of the items is promoted at each level.
+     */
+    private long parities = 0;
+    
+    /**
+     * The number of values in the stream.
+     */
+    private long count = 0;
+    
+    /**
+     * The minimum value in the stream.
+     */
+    private double min = Double.NaN;
+    
+    /**
+     * The maximum value in the stream.
+     */
+    private double max = Double.NaN;
+    
+    /**
+     * Creates an empty sketch.
+     */
+    public QuantileSketch() {
+    }
+    
+    /**
+     * Adds a value to this sketch.
+     * @param value the value
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        
+        add(0, value);
+        count++;
+        min = count == 1 ? value : Math.min(min, value);
+        max = count == 1 ? value : Math.max(max, value);
+        compress();
+    }
+    
+    /**
+     * Merges another sketch into this sketch, which leaves the other sketch unchanged.
+     * @param other the sketch to be merged
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.count == 0) {
+            return;
+        }
+        
+        for (int h = 0; h < other.levels; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                add(h, other.items[h][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count = count + other.count;
+        compress();
+    }
+    
+    /**
+     * Appends an item to the compactor at a level.
+     * @param h the level
+     * @param value the item
+     */
+    private void add(int h, double value) {
+        while (h >= levels) {
+            grow();
+        }
+        if (sizes[h] == items[h].length) {
+            items[h] = Arrays.copyOf(items[h], items[h].length * 2);
+        }
+        items[h][sizes[h]++] = value;
+    }
+    
+    /**
+     * Adds an empty compactor on the top.
+     */
+    private void grow() {
+        items = Arrays.copyOf(items, levels + 1);
+        sizes = Arrays.copyOf(sizes, levels + 1);
+        items[levels] = new double[K];
+        levels++;
+    }
+    
+    /**
+     * Returns the capacity of the compactor at a level.
+     * @param h the level
+     * @return the capacity
+     */
+    private int capacity(int h) {
+        return Math.max(2, (int)Math.ceil(K * Math.pow(DECAY, levels - 1 - h)));
+    }
+    
+    /**
+     * Compacts the lowest full compactors until all the items fit in the total capacity.
+     */
+    private void compress() {
+        while (true) {
+            int total = 0;
+            int capacity = 0;
+            for (int h = 0; h < levels; h++) {
+                total = total + sizes[h];
+                capacity = capacity + capacity(h);
+            }
+            if (total <= capacity) {
+                return;
+            }
+            
+            for (int h = 0; h < levels; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Promotes every other item of the compactor at a level to the next level.
+     * An odd item is left at the level.
+     * @param h the level
+     */
+    private void compact(int h) {
+        if (h + 1 >= levels) {
+            grow();
+        }
+        
+        double[] level = items[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        int rest = size % 2;
+        int offset = (int)((parities >>> (h & 63)) & 1L);
+        parities = parities ^ (1L << (h & 63));
+        for (int i = rest + offset; i < size; i = i + 2) {
+            add(h + 1, level[i]);
+        }
+        sizes[h] = rest;
+    }
+    
+    /**
+     * Returns the number of values in the stream.
+     * @return the number of the values
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the minimum value in the stream.
+     * @return the minimum value, or <code>NaN</code> if the stream is empty
+     */
+    public double getMin() {
+        return min;
+    }
+    
+    /**
+     * Returns the maximum value in the stream.
+     * @return the maximum value, or <code>NaN</code> if the stream is empty
+     */
+    public double getMax() {
+        return max;
+    }
+    
+    /**
+     * Estimates a quantile of the stream.
+     * @param q the fraction of the values not exceeding the quantile, between <code>0</code> and <code>1</code>
+     * @return the estimated quantile, or <code>NaN</code> if the stream is empty
+     */
+    public double getQuantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        
+        int total = 0;
+        for (int h = 0; h < levels; h++) {
+            total = total + sizes[h];
+        }
+        double[] values = new double[total];
+        int n = 0;
+        for (int h = 0; h < levels; h++) {
+            System.arraycopy(items[h], 0, values, n, sizes[h]);
+            n = n + sizes[h];
+        }
+        Arrays.sort(values);
+        
+        int low = 0;
+        int high = total - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getRank(values[mid]) >= q) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return values[low];
+    }
+    
+    /**
+     * Estimates the fraction of the values in the stream that do not exceed a value.
+     * @param value the value
+     * @return the estimated fraction between <code>0</code> and <code>1</code>, or <code>NaN</code> if the stream is empty
+     */
+    public double getRank(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        
+        long below = 0;
+        long weight = 0;
+        for (int h = 0; h < levels; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (items[h][i] <= value) {
+                    below = below + (1L << h);
+                }
+                weight = weight + (1L << h);
+            }
+        }
+        return (double)below / weight;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Coordinates an analysis that is distributed to worker processes.
+ * Packages under the source roots of a project are split into shards, each of which is analyzed by a worker process
+ * started with a launch command. The partial snapshots written by the workers are merged into one project metrics.
+ * @author Katsuhisa Maruyama
+ */
+public class ShardCoordinator {
+    
+    /**
+     * The name of the application that analyzes a shard in a worker process.
+     */
+    public static final String ANALYZER_APPLICATION = "CodeForest.analyzer";
+    
+    /**
+     * The placeholders replaced in a launch command.
+     */
+    public static final String PROJECT = "{project}";
+    public static final String PACKAGES = "{packages}";
+    public static final String OUTPUT = "{output}";
+    public static final String WORKSPACE = "{workspace}";
+    public static final String INDEX = "{index}";
+    public static final String HOST = "{host}";
+    
+    /**
+     * The prefix of the name of the directory storing files exchanged with the workers.
+     */
+    private static final String WORK_DIRNAME = "codeforest-shards";
+    
+    /**
+     * The name of the project.
+     */
+    private String name;
+    
+    /**
+     * The path of the top directory of the project.
+     */
+    private String topdir;
+    
+    /**
+     * The paths of the source roots of the project.
+     */
+    private List<String> sourceRoots;
+    
+    /**
+     * The number of shards.
+     */
+    private int numberOfShards;
+    
+    /**
+     * The tokens of the command that launches a worker process.
+     */
+    private List<String> command;
+    
+    /**
+     * The hosts assigned to the workers in a round-robin fashion.
+     */
+    private List<String> hosts = new ArrayList<String>();
+    
+    /**
+     * Creates a coordinator of an analysis.
+     * @param name the name of the project
+     * @param topdir the path of the top directory of the project
+     * @param sourceRoots the paths of the source roots of the project
+     * @param shards the number of shards
+     * @param command the tokens of the command that launches a worker process, which may contain placeholders
+     */
+    public ShardCoordinator(String name, String topdir, List<String> sourceRoots, int shards, List<String> command) {
+        this.name = name;
+        this.topdir = topdir;
+        this.sourceRoots = new ArrayList<String>(sourceRoots);
+        this.numberOfShards = Math.max(1, shards);
+        this.command = new ArrayList<String>(command);
+    }
+    
+    /**
+     * Returns the tokens of the command that launches a worker process on the local host.
+     * @param launcher the path of the launcher of Eclipse
+     * @return the tokens of the command
+     */
+    public static List<String> getLocalCommand(String launcher) {
+        List<String> tokens = new ArrayList<String>();
+        tokens.add(launcher);
+        tokens.add("-nosplash");
+        tokens.add("-application");
+        tokens.add(ANALYZER_APPLICATION);
+        tokens.add("-data");
+        tokens.add(WORKSPACE);
+        tokens.add("-project");
+        tokens.add(PROJECT);
+        tokens.add("-packages");
+        tokens.add(PACKAGES);
+        tokens.add("-out");
+        tokens.add(OUTPUT);
+        return tokens;
+    }
+    
+    /**
+     * Sets the hosts assigned to the workers, which replace the host placeholder in the launch command.
+     * The paths of the project and the exchanged files must be reachable from the hosts.
+     * @param hosts the names of the hosts
+     */
+    public void setHosts(List<String> hosts) {
+        this.hosts = new ArrayList<String>(hosts);
+    }
+    
+    /**
+     * Returns the name of the project.
+     * @return the project name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the path of the top directory of the project.
+     * @return the path of the top directory
+     */
+    public String getTopDir() {
+        return topdir;
+    }
+    
+    /**
+     * Splits the packages under the source roots into shards whose numbers of files are balanced.
+     * @return the collection of shards, each of which is the collection of names of packages
+     */
+    public List<List<String>> split() {
+        final List<String> names = new ArrayList<String>();
+        final List<Integer> weights = new ArrayList<Integer>();
+        for (String root : sourceRoots) {
+            collectPackages(new File(root), "", names, weights);
+        }
+        
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < names.size(); i++) {
+            order.add(new Integer(i));
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            
+            public int compare(Integer i1, Integer i2) {
+                return weights.get(i2.intValue()).compareTo(weights.get(i1.intValue()));
+            }
+        });
+        
+        int size = Math.max(1, Math.min(numberOfShards, names.size()));
+        final long[] loads = new long[size];
+        List<List<String>> shards = new ArrayList<List<String>>();
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(size, new Comparator<Integer>() {
+            
+            public int compare(Integer s1, Integer s2) {
+                long l1 = loads[s1.intValue()];
+                long l2 = loads[s2.intValue()];
+                return l1 < l2 ? -1 : (l1 > l2 ? 1 : s1.compareTo(s2));
+            }
+        });
+        for (int s = 0; s < size; s++) {
+            shards.add(new ArrayList<String>());
+            queue.add(new Integer(s));
+        }
+        
+        for (Integer i : order) {
+            Integer s = queue.poll();
+            shards.get(s.intValue()).add(names.get(i.intValue()));
+            loads[s.intValue()] = loads[s.intValue()] + weights.get(i.intValue()).intValue();
+            queue.add(s);
+        }
+        return shards;
+    }
+    
+    /**
+     * Collects packages containing Java files under a directory.
+     * @param dir the directory
+     * @param pname the name of the package corresponding to the directory
+     * @param names the collection that stores the names of the packages
+     * @param weights the collection that stores the numbers of Java files in the packages
+     */
+    private void collectPackages(File dir, String pname, List<String> names, List<Integer> weights) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        
+        int count = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                String sub = pname.length() == 0 ? file.getName() : pname + "." + file.getName();
+                collectPackages(file, sub, names, weights);
+            } else if (file.getName().endsWith(".java")) {
+                count++;
+            }
+        }
+        
+        if (count > 0) {
+            int index = names.indexOf(pname);
+            if (index >= 0) {
+                weights.set(index, new Integer(weights.get(index).intValue() + count));
+            } else {
+                names.add(pname);
+                weights.add(new Integer(count));
+            }
+        }
+    }
+    
+    /**
+     * Runs worker processes for the shards and merges their partial snapshots.
+     * @param manager the manager that merges the partial snapshots
+     * @param time the time given to the merged project metrics
+     * @return the merged project metrics, or <code>null</code> if any worker fails
+     */
+    public ProjectMetrics run(MetricsManager manager, long time) {
+        List<List<String>> shards = split();
+        File workdir = new File(topdir, WORK_DIRNAME + String.valueOf(System.currentTimeMillis()));
+        if (!workdir.mkdirs()) {
+            System.err.println("Cannot create " + workdir.getAbsolutePath());
+            return null;
+        }
+        
+        List<Process> processes = new ArrayList<Process>();
+        List<File> outputs = new ArrayList<File>();
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                File packages = new File(workdir, "shard" + i + ".txt");
+                writeLines(packages, shards.get(i));
+                File output = new File(workdir, "shard" + i + ".xml");
+                outputs.add(output);
+                
+                List<String> tokens = getCommand(i, packages, output, new File(workdir, "workspace" + i));
+                ProcessBuilder builder = new ProcessBuilder(tokens);
+                builder.redirectErrorStream(true);
+                Process process = builder.start();
+                drain(process.getInputStream(), "[shard " + i + "] ");
+                processes.add(process);
+            }
+            
+            boolean success = true;
+            for (int i = 0; i < processes.size(); i++) {
+                int status = processes.get(i).waitFor();
+                if (status != 0 || !outputs.get(i).isFile()) {
+                    System.err.println("Worker of shard " + i + " failed with exit status " + status);
+                    success = false;
+                }
+            }
+            if (!success) {
+                return null;
+            }
+            
+        } catch (IOException e) {
+            e.printStackTrace();
+            destroy(processes);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroy(processes);
+            return null;
+        }
+        
+        ProjectMetrics mproject = manager.merge(name, topdir, outputs, time);
+        if (mproject != null) {
+            delete(workdir);
+        }
+        return mproject;
+    }
+    
+    /**
+     * Returns the tokens of the command that launches the worker of a shard.
+     * @param index the index of the shard
+     * @param packages the file listing the names of packages of the shard
+     * @param output the file which the partial snapshot is written into
+     * @param workspace the workspace directory dedicated to the worker
+     * @return the tokens whose placeholders are replaced
+     */
+    private List<String> getCommand(int index, File packages, File output, File workspace) {
+        String host = hosts.isEmpty() ? "localhost" : hosts.get(index % hosts.size());
+        List<String> tokens = new ArrayList<String>();
+        for (String token : command) {
+            token = token.replace(PROJECT, topdir);
+            token = token.replace(PACKAGES, packages.getAbsolutePath());
+            token = token.replace(OUTPUT, output.getAbsolutePath());
+            token = token.replace(WORKSPACE, workspace.getAbsolutePath());
+            token = token.replace(INDEX, String.valueOf(index));
+            token = token.replace(HOST, host);
+            tokens.add(token);
+        }
+        return tokens;
+    }
+    
+    /**
+     * Writes lines into a file.
+     * @param file the file
+     * @param lines the lines to be written
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeLines(File file, List<String> lines) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+    
+    /**
+     * Reads lines from a file.
+     * @param file the file
+     * @return the lines read from the file, excluding empty ones
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+    
+    /**
+     * Prints the output of a worker process in the background, so that the process is not blocked.
+     * @param in the output of the process
+     * @param prefix the prefix of each printed line
+     */
+    private static void drain(final InputStream in, final String prefix) {
+        Thread thread = new Thread(new Runnable() {
+            
+            /**
+             * Runs a new thread.
+             */
+            public void run() {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        System.out.println(prefix + line);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Kills worker processes.
+     * @param processes the processes
+     */
+    private static void destroy(List<Process> processes) {
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+    
+    /**
+     * Deletes a file or a directory with its contents.
+     * @param file the file or the directory
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
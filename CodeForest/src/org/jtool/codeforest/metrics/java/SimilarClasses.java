@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * An index that finds classes accessing similar sets of members, which hashes bands of the MinHash sketches of the classes.
+ * Two classes fall into the same bucket of a band if their sketches agree on all the rows of the band,
+ * so that a query examines only the classes sharing a bucket instead of all the classes.
+ * With 16 bands of 4 rows, a pair with similarity 0.5 is found with probability 0.65 and a pair with similarity 0.8 with probability 0.999.
+ * @author Katsuhisa Maruyama
+ */
+public class SimilarClasses {
+    
+    /**
+     * The number of bands of a sketch.
+     */
+    private static final int BANDS = 16;
+    
+    /**
+     * The number of rows in a band.
+     */
+    private static final int ROWS = MinHash.NUM_HASHES / BANDS;
+    
+    /**
+     * The default minimum similarity of classes found as similar ones.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.5;
+    
+    /**
+     * The fully-qualified names of the classes having sketches.
+     */
+    private List<String> names = new ArrayList<String>();
+    
+    /**
+     * The sketches of the classes.
+     */
+    private List<int[]> sketches = new ArrayList<int[]>();
+    
+    /**
+     * The indices of the classes, keyed by their fully-qualified names.
+     */
+    private Map<String, Integer> indices = new HashMap<String, Integer>();
+    
+    /**
+     * The buckets of each band, keyed by the hash values of the rows of the band.
+     */
+    private List<Map<Long, List<Integer>>> buckets = new ArrayList<Map<Long, List<Integer>>>();
+    
+    /**
+     * Creates an index of the classes that have sketches.
+     * @param classes the class metrics of a project
+     */
+    public SimilarClasses(List<ClassMetrics> classes) {
+        for (int b = 0; b < BANDS; b++) {
+            buckets.add(new HashMap<Long, List<Integer>>());
+        }
+        
+        for (ClassMetrics cm : classes) {
+            int[] sketch = cm.getMemberSketch();
+            if (sketch == null || indices.containsKey(cm.getQualifiedName())) {
+                continue;
+            }
+            
+            Integer index = new Integer(names.size());
+            names.add(cm.getQualifiedName());
+            sketches.add(sketch);
+            indices.put(cm.getQualifiedName(), index);
+            for (int b = 0; b < BANDS; b++) {
+                Long key = new Long(getBandKey(sketch, b));
+                List<Integer> bucket = buckets.get(b).get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<Integer>(2);
+                    buckets.get(b).put(key, bucket);
+                }
+                bucket.add(index);
+            }
+        }
+    }
+    
+    /**
+     * Calculates the hash value of the rows of a band.
+     * @param sketch the sketch
+     * @param band the index of the band
+     * @return the hash value
+     */
+    private static long getBandKey(int[] sketch, int band) {
+        long key = 17;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            key = key * 1000003L + sketch[r];
+        }
+        return key;
+    }
+    
+    /**
+     * Returns the number of the classes in this index.
+     * @return the number of the classes
+     */
+    public int size() {
+        return names.size();
+    }
+    
+    /**
+     * Estimates the similarity of the sets of members accessed by two classes.
+     * @param fqn1 the fully-qualified name of a class
+     * @param fqn2 the fully-qualified name of the other class
+     * @return the estimated similarity, or <code>0</code> if either class is not in this index
+     */
+    public double getSimilarity(String fqn1, String fqn2) {
+        Integer i = indices.get(fqn1);
+        Integer j = indices.get(fqn2);
+        if (i == null || j == null) {
+            return 0;
+        }
+        return MinHash.similarity(sketches.get(i.intValue()), sketches.get(j.intValue()));
+    }
+    
+    /**
+     * Finds classes similar to a class, in descending order of their similarity.
+     * @param fqn the fully-qualified name of the class
+     * @param threshold the minimum similarity
+     * @param max the maximum number of the classes to be found
+     * @return the fully-qualified names of the similar classes, which does not contain the class itself
+     */
+    public List<String> findSimilar(String fqn, double threshold, int max) {
+        List<String> result = new ArrayList<String>();
+        Integer index = indices.get(fqn);
+        if (index == null) {
+            return result;
+        }
+        
+        final int[] sketch = sketches.get(index.intValue());
+        Set<Integer> candidates = new HashSet<Integer>();
+        for (int b = 0; b < BANDS; b++) {
+            List<Integer> bucket = buckets.get(b).get(new Long(getBandKey(sketch, b)));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        candidates.remove(index);
+        
+        List<Integer> similar = new ArrayList<Integer>();
+        for (Integer i : candidates) {
+            if (MinHash.similarity(sketch, sketches.get(i.intValue())) >= threshold) {
+                similar.add(i);
+            }
+        }
+        Collections.sort(similar, new Comparator<Integer>() {
+            
+            /**
+             * Compares two classes in descending order of their similarity, and then in dictionary order of their names.
+             * @param i1 the index of a class
+             * @param i2 the index of the other class
+             * @return the result of the comparison
+             */
+            public int compare(Integer i1, Integer i2) {
+                double s1 = MinHash.similarity(sketch, sketches.get(i1.intValue()));
+                double s2 = MinHash.similarity(sketch, sketches.get(i2.intValue()));
+                if (s1 != s2) {
+                    return s1 > s2 ? -1 : 1;
+                }
+                return names.get(i1.intValue()).compareTo(names.get(i2.intValue()));
+            }
+        });
+        
+        for (int k = 0; k < similar.size() && k < max; k++) {
+            result.add(names.get(similar.get(k).intValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.util.Time;
+import org.jtool.codeforest.util.XMLWriter;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * A catalog listing snapshots of metric values stored in the top directory of a project.
+ * The number of classes and the lines of code of each snapshot are read from its header, which precedes its packages,
+ * and are cached in a catalog file together with the size and the modification time of the snapshot.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotCatalog {
+    
+    private static final String CATALOG_FILENAME = "codeforest-catalog.xml";
+    
+    public static final String CatalogElem = "codeForestCatalog";
+    public static final String SnapshotElem = "snapshot";
+    public static final String FormatAttr = "format";
+    public static final String ClassesAttr = "classes";
+    public static final String LinesAttr = "loc";
+    public static final String SizeAttr = "size";
+    public static final String ModifiedAttr = "modified";
+    
+    /**
+     * The formats of snapshots.
+     */
+    public static final String XML_FORMAT = "xml";
+    public static final String SHARDED_FORMAT = "sharded";
+    public static final String HISTORY_FORMAT = "history";
+    
+    /**
+     * The path of the top directory of the project.
+     */
+    private String topdir;
+    
+    /**
+     * The entries of the snapshots in reverse chronological order.
+     */
+    private List<Entry> entries = new ArrayList<Entry>();
+    
+    /**
+     * Creates a catalog of snapshots of a project.
+     * @param topdir the path of the top directory of the project
+     */
+    public SnapshotCatalog(String topdir) {
+        this.topdir = topdir;
+    }
+    
+    /**
+     * Returns the entries of the snapshots.
+     * @return the collection of the entries in reverse chronological order
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+    
+    /**
+     * Returns the catalog file.
+     * @return the catalog file
+     */
+    private File getCatalogFile() {
+        return new File(topdir + File.separator + CATALOG_FILENAME);
+    }
+    
+    /**
+     * Updates the entries with the snapshots existing in the top directory.
+     * Only the headers of snapshots that were added or changed since the catalog file was written are read.
+     */
+    public void refresh() {
+        Map<String, Entry> cached = readCatalog();
+        entries.clear();
+        boolean changed = false;
+        
+        File[] files = new File(topdir).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String format = null;
+                File header = file;
+                long time = -1;
+                
+                if (file.isFile()) {
+                    time = getTime(file.getName(), MetricsManager.getFileName(0));
+                    format = XML_FORMAT;
+                } else if (file.isDirectory()) {
+                    time = getTime(file.getName() + ".xml", MetricsManager.getFileName(0));
+                    format = SHARDED_FORMAT;
+                    header = new File(file, MetricsManager.MANIFEST_FILENAME);
+                }
+                
+                if (time < 0 || !header.isFile()) {
+                    continue;
+                }
+                
+                Entry entry = getEntry(cached, file.getName(), header, time, format, getSize(file));
+                if (entry != null) {
+                    changed = changed || entry.isNew;
+                    entries.add(entry);
+                }
+            }
+        }
+        
+        SnapshotHistory history = new SnapshotHistory(topdir);
+        for (Long version : history.getVersions()) {
+            File header = history.getHeaderFile(version.longValue());
+            String name = SnapshotHistory.HISTORY_DIRNAME + "/" + header.getName();
+            Entry entry = getEntry(cached, name, header, version.longValue(), HISTORY_FORMAT, header.length());
+            if (entry != null) {
+                changed = changed || entry.isNew;
+                entries.add(entry);
+            }
+        }
+        
+        Collections.sort(entries, new Comparator<Entry>() {
+            
+            /**
+             * Compares two entries in reverse chronological order.
+             * @param e1 the first entry to be compared
+             * @param e2 the second entry to be compared
+             * @return the negative integer, zero, or a positive integer as the first argument is newer than, equal to, or older than the second
+             */
+            public int compare(Entry e1, Entry e2) {
+                if (e1.time != e2.time) {
+                    return e1.time > e2.time ? -1 : 1;
+                }
+                return e1.format.compareTo(e2.format);
+            }
+        });
+        
+        if (changed || cached.size() != entries.size()) {
+            writeCatalog();
+        }
+    }
+    
+    /**
+     * Obtains the entry of a snapshot from the cached entries or from the header of the snapshot.
+     * @param cached the cached entries
+     * @param name the name of the snapshot relative to the top directory
+     * @param header the file containing the header of the snapshot
+     * @param time the time of the snapshot
+     * @param format the format of the snapshot
+     * @param size the size of the snapshot in bytes
+     * @return the entry, or <code>null</code> if the header cannot be read
+     */
+    private Entry getEntry(Map<String, Entry> cached, String name, File header, long time, String format, long size) {
+        Entry entry = cached.get(name);
+        if (entry != null && entry.size == size && entry.modified == header.lastModified() && entry.format.equals(format)) {
+            return entry;
+        }
+        
+        entry = new Entry(name, time, format);
+        entry.size = size;
+        entry.modified = header.lastModified();
+        entry.isNew = true;
+        if (!readHeader(header, entry)) {
+            return null;
+        }
+        return entry;
+    }
+    
+    /**
+     * Extracts the time from the name of a snapshot file.
+     * @param name the file name
+     * @param sample the name of a snapshot file with time zero
+     * @return the time, or <code>-1</code> if the name does not match
+     */
+    private static long getTime(String name, String sample) {
+        String prefix = sample.substring(0, sample.indexOf('0'));
+        String suffix = sample.substring(sample.indexOf('0') + 1);
+        if (name.startsWith(prefix) && name.endsWith(suffix) && name.length() > prefix.length() + suffix.length()) {
+            String str = name.substring(prefix.length(), name.length() - suffix.length());
+            for (int i = 0; i < str.length(); i++) {
+                if (!Character.isDigit(str.charAt(i))) {
+                    return -1;
+                }
+            }
+            try {
+                return Long.parseLong(str);
+            } catch (NumberFormatException e) { /* empty */ }
+        }
+        return -1;
+    }
+    
+    /**
+     * Calculates the size of a snapshot file or directory.
+     * @param file the file or directory
+     * @return the size in bytes
+     */
+    private static long getSize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        
+        long size = 0;
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size = size + f.length();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Reads the number of classes and the lines of code from the header of a snapshot.
+     * Reading stops at the first package or part element, so the rest of the snapshot is never parsed.
+     * @param file the file containing the header
+     * @param entry the entry storing the read values
+     * @return <code>true</code> if the header was read, otherwise <code>false</code>
+     */
+    private boolean readHeader(File file, Entry entry) {
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            
+            boolean inProject = false;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                
+                String qname = reader.getLocalName();
+                if (qname.equals(MetricsManager.ProjectElem)) {
+                    inProject = true;
+                    
+                } else if (qname.equals(MetricsManager.MetricsElem) && inProject) {
+                    entry.classes = getInt(reader.getAttributeValue(null, MetricSort.NUMBER_OF_CLASSES));
+                    entry.loc = getInt(reader.getAttributeValue(null, MetricSort.LINES_OF_CODE));
+                    return true;
+                    
+                } else if (qname.equals(MetricsManager.PackageElem) || qname.equals(MetricsManager.PartElem)) {
+                    return inProject;
+                }
+            }
+            
+        } catch (XMLStreamException e) {
+            System.err.println("Catalog: Read error occurred: " + file.getPath() + ": " + e.getMessage() + ".");
+        } catch (IOException e) {
+            System.err.println("Catalog: Read error occurred: " + file.getPath() + ": " + e.getMessage() + ".");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) { /* empty */ }
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Converts a metric value string into an integer.
+     * @param str the metric value string
+     * @return the integer value, or <code>-1</code> if the string is not a number
+     */
+    private static int getInt(String str) {
+        if (str == null) {
+            return -1;
+        }
+        try {
+            return (int)Double.parseDouble(str);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Reads the entries cached in the catalog file.
+     * @return the map from the names of snapshots to their entries
+     */
+    private Map<String, Entry> readCatalog() {
+        Map<String, Entry> cached = new HashMap<String, Entry>();
+        File file = getCatalogFile();
+        if (!file.canRead()) {
+            return cached;
+        }
+        
+        InputStream in = null;
+        XMLStreamReader reader = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals(SnapshotElem)) {
+                    try {
+                        Entry entry = new Entry(reader.getAttributeValue(null, MetricsManager.FileAttr),
+                                                Long.parseLong(reader.getAttributeValue(null, MetricsManager.TimeAttr)),
+                                                reader.getAttributeValue(null, FormatAttr));
+                        entry.classes = Integer.parseInt(reader.getAttributeValue(null, ClassesAttr));
+                        entry.loc = Integer.parseInt(reader.getAttributeValue(null, LinesAttr));
+                        entry.size = Long.parseLong(reader.getAttributeValue(null, SizeAttr));
+                        entry.modified = Long.parseLong(reader.getAttributeValue(null, ModifiedAttr));
+                        if (entry.name != null && entry.format != null) {
+                            cached.put(entry.name, entry);
+                        }
+                    } catch (NumberFormatException e) { /* empty */ }
+                }
+            }
+            
+        } catch (XMLStreamException e) {
+            cached.clear();
+        } catch (IOException e) {
+            cached.clear();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) { /* empty */ }
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return cached;
+    }
+    
+    /**
+     * Writes the entries into the catalog file.
+     */
+    private void writeCatalog() {
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Element rootElem = doc.createElement(CatalogElem);
+            rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(Time.getCurrentTime()));
+            doc.appendChild(rootElem);
+            
+            for (Entry entry : entries) {
+                Element elem = doc.createElement(SnapshotElem);
+                elem.setAttribute(MetricsManager.FileAttr, entry.name);
+                elem.setAttribute(MetricsManager.TimeAttr, String.valueOf(entry.time));
+                elem.setAttribute(FormatAttr, entry.format);
+                elem.setAttribute(ClassesAttr, String.valueOf(entry.classes));
+                elem.setAttribute(LinesAttr, String.valueOf(entry.loc));
+                elem.setAttribute(SizeAttr, String.valueOf(entry.size));
+                elem.setAttribute(ModifiedAttr, String.valueOf(entry.modified));
+                rootElem.appendChild(elem);
+                entry.isNew = false;
+            }
+            XMLWriter.writeAtomically(getCatalogFile(), doc);
+            
+        } catch (ParserConfigurationException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+        }
+    }
+    
+    /**
+     * Removes full snapshots that exceed the retention limits.
+     * The newest full snapshot, the versions recorded in the history, and snapshots still open are always kept.
+     * @param maxCount the maximum number of full snapshots to be kept, or zero for no limit
+     * @param maxDays the maximum age of full snapshots to be kept in days, or zero for no limit
+     * @return the number of the removed snapshots
+     */
+    public int applyRetention(int maxCount, int maxDays) {
+        if (maxCount <= 0 && maxDays <= 0) {
+            return 0;
+        }
+        
+        long limit = Time.getCurrentTime() - (long)maxDays * 24 * 60 * 60 * 1000;
+        int count = 0;
+        int removed = 0;
+        for (Entry entry : new ArrayList<Entry>(entries)) {
+            if (entry.isHistory()) {
+                continue;
+            }
+            
+            count++;
+            if (count == 1) {
+                continue;
+            }
+            if ((maxCount > 0 && count > maxCount) || (maxDays > 0 && entry.time < limit)) {
+                if (remove(entry)) {
+                    removed++;
+                }
+            }
+        }
+        
+        if (removed > 0) {
+            writeCatalog();
+        }
+        return removed;
+    }
+    
+    /**
+     * Removes a full snapshot and its index unless methods and fields are still loaded from the snapshot on demand.
+     * @param entry the entry of the snapshot
+     * @return <code>true</code> if the snapshot was removed, otherwise <code>false</code>
+     */
+    public boolean remove(Entry entry) {
+        if (entry.isHistory()) {
+            return false;
+        }
+        
+        File file = entry.getFile();
+        if (ForestDataIndex.isOpen(file)) {
+            System.out.println("- Keep snapshot still open: " + file.getAbsolutePath());
+            return false;
+        }
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+        } else {
+            ForestDataIndex.getIndexFile(file).delete();
+        }
+        
+        if (file.delete()) {
+            entries.remove(entry);
+            System.out.println("- Remove snapshot: " + file.getAbsolutePath());
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * An entry of a snapshot in the catalog.
+     */
+    public class Entry {
+        
+        /**
+         * The name of the snapshot relative to the top directory.
+         */
+        private String name;
+        
+        /**
+         * The time of the snapshot.
+         */
+        private long time;
+        
+        /**
+         * The format of the snapshot.
+         */
+        private String format;
+        
+        /**
+         * The number of classes in the snapshot.
+         */
+        private int classes = -1;
+        
+        /**
+         * The lines of code in the snapshot.
+         */
+        private int loc = -1;
+        
+        /**
+         * The size of the snapshot in bytes.
+         */
+        private long size;
+        
+        /**
+         * The modification time of the file containing the header of the snapshot.
+         */
+        private long modified;
+        
+        /**
+         * A flag indicating if this entry has not been written into the catalog file.
+         */
+        private boolean isNew = false;
+        
+        /**
+         * Creates an entry.
+         * @param name the name of the snapshot relative to the top directory
+         * @param time the time of the snapshot
+         * @param format the format of the snapshot
+         */
+        private Entry(String name, long time, String format) {
+            this.name = name;
+            this.time = time;
+            this.format = format;
+        }
+        
+        /**
+         * Returns the file or directory of the snapshot.
+         * @return the file or directory
+         */
+        public File getFile() {
+            return new File(topdir + File.separator + name.replace('/', File.separatorChar));
+        }
+        
+        /**
+         * Returns the path of the top directory of the project.
+         * @return the path of the top directory
+         */
+        public String getTopDir() {
+            return topdir;
+        }
+        
+        /**
+         * Returns the time of the snapshot.
+         * @return the time
+         */
+        public long getTime() {
+            return time;
+        }
+        
+        /**
+         * Returns the format of the snapshot.
+         * @return the format (<code>XML_FORMAT</code>, <code>SHARDED_FORMAT</code>, or <code>HISTORY_FORMAT</code>)
+         */
+        public String getFormat() {
+            return format;
+        }
+        
+        /**
+         * Tests if the snapshot is recorded in the history.
+         * @return <code>true</code> if the snapshot is a version of the history, otherwise <code>false</code>
+         */
+        public boolean isHistory() {
+            return format.equals(HISTORY_FORMAT);
+        }
+        
+        /**
+         * Returns the number of classes in the snapshot.
+         * @return the number of classes, or <code>-1</code> if unknown
+         */
+        public int getNumberOfClasses() {
+            return classes;
+        }
+        
+        /**
+         * Returns the lines of code in the snapshot.
+         * @return the lines of code, or <code>-1</code> if unknown
+         */
+        public int getLinesOfCode() {
+            return loc;
+        }
+        
+        /**
+         * Returns the size of the snapshot.
+         * @return the size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
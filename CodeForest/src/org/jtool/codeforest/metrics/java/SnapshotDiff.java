@@ -0,0 +1,604 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.NumberParser;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.BufferedInputStream;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares metric values stored in two snapshot files.
+ * Both snapshots are read as streams and joined package by package in dictionary order of their names,
+ * so that only one package of each snapshot is kept in memory.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotDiff {
+    
+    public static final int ADDED = 1;
+    public static final int REMOVED = 2;
+    public static final int CHANGED = 3;
+    
+    public static final int PACKAGE = 1;
+    public static final int CLASS = 2;
+    public static final int METHOD = 3;
+    public static final int FIELD = 4;
+    
+    /**
+     * The separator between the name of a class and the name of its member.
+     */
+    public static final char MEMBER_SEPARATOR = '#';
+    
+    /**
+     * A listener receiving differences found between two snapshots.
+     */
+    public interface Listener {
+        
+        /**
+         * Receives a difference.
+         * @param diff the difference
+         */
+        public void found(Difference diff);
+    }
+    
+    /**
+     * The snapshot file storing the old metric values.
+     */
+    private File oldFile;
+    
+    /**
+     * The snapshot file storing the new metric values.
+     */
+    private File newFile;
+    
+    /**
+     * Creates an object comparing two snapshots.
+     * @param oldFile the xml file, the directory, or the manifest file storing the old metric values
+     * @param newFile the xml file, the directory, or the manifest file storing the new metric values
+     */
+    public SnapshotDiff(File oldFile, File newFile) {
+        this.oldFile = oldFile;
+        this.newFile = newFile;
+    }
+    
+    /**
+     * Compares the two snapshots and collects the found differences.
+     * @return the collection of the differences, or <code>null</code> if the comparison fails
+     */
+    public List<Difference> diff() {
+        final List<Difference> diffs = new ArrayList<Difference>();
+        boolean result = diff(new Listener() {
+            
+            /**
+             * Collects a difference.
+             * @param diff the difference
+             */
+            public void found(Difference diff) {
+                diffs.add(diff);
+            }
+        });
+        
+        if (result) {
+            return diffs;
+        }
+        return null;
+    }
+    
+    /**
+     * Compares the two snapshots and passes the found differences to a listener in the order of their names.
+     * @param listener the listener receiving the differences
+     * @return <code>true</code> if the comparison succeeded, otherwise <code>false</code>
+     */
+    public boolean diff(Listener listener) {
+        SnapshotReader oldReader = new SnapshotReader(oldFile);
+        SnapshotReader newReader = new SnapshotReader(newFile);
+        try {
+            List<Entry> oldEntries = oldReader.nextPackage();
+            List<Entry> newEntries = newReader.nextPackage();
+            
+            while (oldEntries != null || newEntries != null) {
+                int cmp;
+                if (oldEntries == null) {
+                    cmp = 1;
+                } else if (newEntries == null) {
+                    cmp = -1;
+                } else {
+                    cmp = oldEntries.get(0).name.compareTo(newEntries.get(0).name);
+                }
+                
+                if (cmp < 0) {
+                    for (Entry entry : oldEntries) {
+                        listener.found(new Difference(REMOVED, entry, null));
+                    }
+                    oldEntries = oldReader.nextPackage();
+                    
+                } else if (cmp > 0) {
+                    for (Entry entry : newEntries) {
+                        listener.found(new Difference(ADDED, null, entry));
+                    }
+                    newEntries = newReader.nextPackage();
+                    
+                } else {
+                    merge(oldEntries, newEntries, listener);
+                    oldEntries = oldReader.nextPackage();
+                    newEntries = newReader.nextPackage();
+                }
+            }
+            return true;
+            
+        } catch (XMLStreamException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            oldReader.close();
+            newReader.close();
+        }
+        return false;
+    }
+    
+    /**
+     * Joins the sorted entries of a package in the two snapshots.
+     * @param oldEntries the entries of the package in the old snapshot
+     * @param newEntries the entries of the package in the new snapshot
+     * @param listener the listener receiving the differences
+     */
+    private void merge(List<Entry> oldEntries, List<Entry> newEntries, Listener listener) {
+        int i = 0;
+        int j = 0;
+        while (i < oldEntries.size() || j < newEntries.size()) {
+            int cmp;
+            if (i == oldEntries.size()) {
+                cmp = 1;
+            } else if (j == newEntries.size()) {
+                cmp = -1;
+            } else {
+                cmp = oldEntries.get(i).compareTo(newEntries.get(j));
+            }
+            
+            if (cmp < 0) {
+                listener.found(new Difference(REMOVED, oldEntries.get(i), null));
+                i++;
+                
+            } else if (cmp > 0) {
+                listener.found(new Difference(ADDED, null, newEntries.get(j)));
+                j++;
+                
+            } else {
+                if (!oldEntries.get(i).values.equals(newEntries.get(j).values)) {
+                    listener.found(new Difference(CHANGED, oldEntries.get(i), newEntries.get(j)));
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+    
+    /**
+     * Returns the name of a level.
+     * @param level the level of elements
+     * @return the name of the level
+     */
+    public static String getLevelName(int level) {
+        if (level == PACKAGE) {
+            return MetricsManager.PackageElem;
+        } else if (level == CLASS) {
+            return MetricsManager.ClassElem;
+        } else if (level == METHOD) {
+            return MetricsManager.MethodElem;
+        } else if (level == FIELD) {
+            return MetricsManager.FieldElem;
+        }
+        return "";
+    }
+    
+    /**
+     * Returns the name of a kind of differences.
+     * @param kind the kind of differences
+     * @return the name of the kind
+     */
+    public static String getKindName(int kind) {
+        if (kind == ADDED) {
+            return "added";
+        } else if (kind == REMOVED) {
+            return "removed";
+        } else if (kind == CHANGED) {
+            return "changed";
+        }
+        return "";
+    }
+    
+    /**
+     * An element of a snapshot with its metric values.
+     */
+    private static class Entry implements Comparable<Entry> {
+        
+        /**
+         * The level of the element.
+         */
+        private int level;
+        
+        /**
+         * The name of the element, which is unique within the level.
+         */
+        private String name;
+        
+        /**
+         * The metric values of the element.
+         */
+        private Map<String, Double> values = new HashMap<String, Double>();
+        
+        /**
+         * Creates an entry.
+         * @param level the level of the element
+         * @param name the name of the element
+         */
+        private Entry(int level, String name) {
+            this.level = level;
+            this.name = name;
+        }
+        
+        /**
+         * Compares this entry with another one in dictionary order of their names and in order of their levels.
+         * @param entry the entry to be compared
+         * @return the negative, zero, or positive value
+         */
+        public int compareTo(Entry entry) {
+            int cmp = name.compareTo(entry.name);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return level - entry.level;
+        }
+    }
+    
+    /**
+     * A difference of an element between two snapshots.
+     */
+    public static class Difference {
+        
+        /**
+         * The kind of this difference.
+         */
+        private int kind;
+        
+        /**
+         * The element in the old snapshot, or <code>null</code> if the element was added.
+         */
+        private Entry oldEntry;
+        
+        /**
+         * The element in the new snapshot, or <code>null</code> if the element was removed.
+         */
+        private Entry newEntry;
+        
+        /**
+         * Creates a difference.
+         * @param kind the kind of the difference
+         * @param oldEntry the element in the old snapshot
+         * @param newEntry the element in the new snapshot
+         */
+        private Difference(int kind, Entry oldEntry, Entry newEntry) {
+            this.kind = kind;
+            this.oldEntry = oldEntry;
+            this.newEntry = newEntry;
+        }
+        
+        /**
+         * Returns the kind of this difference.
+         * @return the kind (<code>ADDED</code>, <code>REMOVED</code>, or <code>CHANGED</code>)
+         */
+        public int getKind() {
+            return kind;
+        }
+        
+        /**
+         * Returns the level of the element of this difference.
+         * @return the level (<code>PACKAGE</code>, <code>CLASS</code>, <code>METHOD</code>, or <code>FIELD</code>)
+         */
+        public int getLevel() {
+            return getEntry().level;
+        }
+        
+        /**
+         * Returns the name of the element of this difference.
+         * The name of a member is the fully-qualified name of its class and its signature or name separated by <code>MEMBER_SEPARATOR</code>.
+         * @return the name of the element
+         */
+        public String getName() {
+            return getEntry().name;
+        }
+        
+        /**
+         * Returns the entry of the element that exists.
+         * @return the entry in the new snapshot, or the entry in the old snapshot if the element was removed
+         */
+        private Entry getEntry() {
+            if (newEntry != null) {
+                return newEntry;
+            }
+            return oldEntry;
+        }
+        
+        /**
+         * Returns the sorts of metrics concerning this difference.
+         * @return the sorts of all the metrics of an added or removed element, or the sorts of changed metrics
+         */
+        public Set<String> getMetricSorts() {
+            Set<String> sorts = new TreeSet<String>();
+            if (oldEntry != null) {
+                sorts.addAll(oldEntry.values.keySet());
+            }
+            if (newEntry != null) {
+                sorts.addAll(newEntry.values.keySet());
+            }
+            
+            if (kind == CHANGED) {
+                for (String sort : new ArrayList<String>(sorts)) {
+                    Double oldValue = oldEntry.values.get(sort);
+                    Double newValue = newEntry.values.get(sort);
+                    if (oldValue != null && oldValue.equals(newValue)) {
+                        sorts.remove(sort);
+                    }
+                }
+            }
+            return sorts;
+        }
+        
+        /**
+         * Tests if the old snapshot has a metric value of the element.
+         * @param sort the sort of the metric
+         * @return <code>true</code> if the old value exists, otherwise <code>false</code>
+         */
+        public boolean hasOldValue(String sort) {
+            return oldEntry != null && oldEntry.values.containsKey(sort);
+        }
+        
+        /**
+         * Tests if the new snapshot has a metric value of the element.
+         * @param sort the sort of the metric
+         * @return <code>true</code> if the new value exists, otherwise <code>false</code>
+         */
+        public boolean hasNewValue(String sort) {
+            return newEntry != null && newEntry.values.containsKey(sort);
+        }
+        
+        /**
+         * Returns the metric value of the element in the old snapshot.
+         * @param sort the sort of the metric
+         * @return the metric value, or <code>-1</code> if none
+         */
+        public double getOldValue(String sort) {
+            if (hasOldValue(sort)) {
+                return oldEntry.values.get(sort).doubleValue();
+            }
+            return -1;
+        }
+        
+        /**
+         * Returns the metric value of the element in the new snapshot.
+         * @param sort the sort of the metric
+         * @return the metric value, or <code>-1</code> if none
+         */
+        public double getNewValue(String sort) {
+            if (hasNewValue(sort)) {
+                return newEntry.values.get(sort).doubleValue();
+            }
+            return -1;
+        }
+        
+        /**
+         * Returns the change of a metric value of the element.
+         * A missing value is regarded as zero.
+         * @param sort the sort of the metric
+         * @return the new value minus the old value
+         */
+        public double getDelta(String sort) {
+            double oldValue = 0;
+            if (hasOldValue(sort)) {
+                oldValue = getOldValue(sort);
+            }
+            double newValue = 0;
+            if (hasNewValue(sort)) {
+                newValue = getNewValue(sort);
+            }
+            return newValue - oldValue;
+        }
+    }
+    
+    /**
+     * A reader that reads a snapshot package by package.
+     */
+    private static class SnapshotReader {
+        
+        /**
+         * The files storing the packages of the snapshot.
+         */
+        private List<File> files = new ArrayList<File>();
+        
+        /**
+         * The index of the file being read.
+         */
+        private int fileIndex = 0;
+        
+        /**
+         * The input stream of the file being read.
+         */
+        private InputStream in;
+        
+        /**
+         * The stream reader of the file being read.
+         */
+        private XMLStreamReader reader;
+        
+        /**
+         * The name of the package read last.
+         */
+        private String lastPackageName;
+        
+        /**
+         * Creates a reader of a snapshot.
+         * @param file the xml file, the directory, or the manifest file storing the snapshot
+         */
+        private SnapshotReader(File file) {
+            if (file.isDirectory()) {
+                file = new File(file, MetricsManager.MANIFEST_FILENAME);
+            }
+            
+            if (file.getName().equals(MetricsManager.MANIFEST_FILENAME)) {
+                for (String name : readPartFiles(file)) {
+                    files.add(new File(file.getParentFile(), name));
+                }
+            } else {
+                files.add(file);
+            }
+        }
+        
+        /**
+         * Reads the names of the part files listed in a manifest file.
+         * @param manifest the manifest file
+         * @return the collection of the names of the part files
+         */
+        private List<String> readPartFiles(File manifest) {
+            List<String> names = new ArrayList<String>();
+            InputStream min = null;
+            try {
+                min = new BufferedInputStream(new FileInputStream(manifest));
+                XMLStreamReader mreader = XMLInputFactory.newInstance().createXMLStreamReader(min);
+                while (mreader.hasNext()) {
+                    if (mreader.next() == XMLStreamConstants.START_ELEMENT && mreader.getLocalName().equals(MetricsManager.PartElem)) {
+                        names.add(mreader.getAttributeValue(null, MetricsManager.FileAttr));
+                    }
+                }
+                mreader.close();
+                
+            } catch (XMLStreamException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (min != null) {
+                    try {
+                        min.close();
+                    } catch (IOException e) { /* empty */ }
+                }
+            }
+            return names;
+        }
+        
+        /**
+         * Reads the next package of the snapshot.
+         * @return the entries of the package and its classes and members, the first of which is the package entry,
+         *         or <code>null</code> if no package remains
+         * @throws XMLStreamException if the snapshot is malformed or its packages are not sorted
+         * @throws IOException if the snapshot cannot be read
+         */
+        private List<Entry> nextPackage() throws XMLStreamException, IOException {
+            List<Entry> entries = null;
+            Entry current = null;
+            String className = null;
+            
+            while (true) {
+                if (reader == null) {
+                    if (fileIndex >= files.size()) {
+                        return null;
+                    }
+                    in = new BufferedInputStream(new FileInputStream(files.get(fileIndex)));
+                    reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+                    fileIndex++;
+                }
+                
+                if (!reader.hasNext()) {
+                    closeFile();
+                    continue;
+                }
+                
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String qname = reader.getLocalName();
+                    
+                    if (qname.equals(MetricsManager.PackageElem)) {
+                        String name = reader.getAttributeValue(null, MetricsManager.NameAttr);
+                        if (lastPackageName != null && lastPackageName.compareTo(name) >= 0) {
+                            throw new XMLStreamException("Packages are not sorted: " + name, reader.getLocation());
+                        }
+                        lastPackageName = name;
+                        entries = new ArrayList<Entry>();
+                        current = new Entry(PACKAGE, name);
+                        entries.add(current);
+                        
+                    } else if (entries == null) {
+                        current = null;
+                        
+                    } else if (qname.equals(MetricsManager.ClassElem)) {
+                        className = reader.getAttributeValue(null, MetricsManager.FqnAttr);
+                        current = new Entry(CLASS, className);
+                        entries.add(current);
+                        
+                    } else if (qname.equals(MetricsManager.MethodElem)) {
+                        current = new Entry(METHOD, className + MEMBER_SEPARATOR + reader.getAttributeValue(null, MetricsManager.SignatureAttr));
+                        entries.add(current);
+                        
+                    } else if (qname.equals(MetricsManager.FieldElem)) {
+                        current = new Entry(FIELD, className + MEMBER_SEPARATOR + reader.getAttributeValue(null, MetricsManager.NameAttr));
+                        entries.add(current);
+                        
+                    } else if (qname.equals(MetricsManager.MetricsElem) && current != null) {
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            try {
+                                current.values.put(reader.getAttributeLocalName(i), NumberParser.parseBoxedDouble(reader.getAttributeValue(i)));
+                            } catch (NumberFormatException e) { /* empty */ }
+                        }
+                    }
+                    
+                } else if (event == XMLStreamConstants.END_ELEMENT && entries != null) {
+                    if (reader.getLocalName().equals(MetricsManager.PackageElem)) {
+                        Collections.sort(entries.subList(1, entries.size()));
+                        return entries;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Closes the file being read.
+         */
+        private void closeFile() {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) { /* empty */ }
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) { /* empty */ }
+            reader = null;
+            in = null;
+        }
+        
+        /**
+         * Closes this reader.
+         */
+        private void close() {
+            closeFile();
+            fileIndex = files.size();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes differences between two snapshots into a CSV or JSON report as they are found.
+ * A CSV report has one row per metric, and a JSON report is an array with one object per element.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotDiffReport implements SnapshotDiff.Listener {
+    
+    public static final int CSV = 0;
+    public static final int JSON = 1;
+    
+    /**
+     * The writer of the report.
+     */
+    private Writer writer;
+    
+    /**
+     * The format of the report.
+     */
+    private int format;
+    
+    /**
+     * The number of differences written.
+     */
+    private int count = 0;
+    
+    /**
+     * The exception occurred while writing, or <code>null</code> if none.
+     */
+    private IOException error;
+    
+    /**
+     * Creates a report.
+     * @param writer the writer of the report
+     * @param format the format of the report (<code>CSV</code> or <code>JSON</code>)
+     */
+    public SnapshotDiffReport(Writer writer, int format) {
+        this.writer = writer;
+        this.format = format;
+    }
+    
+    /**
+     * Writes the beginning of the report.
+     * @throws IOException if the report cannot be written
+     */
+    public void start() throws IOException {
+        if (format == JSON) {
+            writer.write("[");
+        } else {
+            writer.write("kind,level,name,metric,old,new,delta\n");
+        }
+    }
+    
+    /**
+     * Writes a difference.
+     * @param diff the difference
+     */
+    public void found(SnapshotDiff.Difference diff) {
+        if (error != null) {
+            return;
+        }
+        
+        try {
+            if (format == JSON) {
+                writeJSON(diff);
+            } else {
+                writeCSV(diff);
+            }
+            count++;
+            
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+    
+    /**
+     * Writes the end of the report.
+     * @throws IOException if the report cannot be written
+     */
+    public void finish() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        
+        if (format == JSON) {
+            writer.write("\n]\n");
+        }
+        writer.flush();
+    }
+    
+    /**
+     * Returns the number of differences written.
+     * @return the number of the differences
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Writes the rows of a difference in CSV format.
+     * @param diff the difference
+     * @throws IOException if the report cannot be written
+     */
+    private void writeCSV(SnapshotDiff.Difference diff) throws IOException {
+        String prefix = SnapshotDiff.getKindName(diff.getKind()) + "," + SnapshotDiff.getLevelName(diff.getLevel()) + "," +
+                        quoteCSV(diff.getName()) + ",";
+        
+        for (String sort : diff.getMetricSorts()) {
+            StringBuffer buf = new StringBuffer(prefix);
+            buf.append(quoteCSV(sort));
+            buf.append(',');
+            if (diff.hasOldValue(sort)) {
+                buf.append(String.valueOf(diff.getOldValue(sort)));
+            }
+            buf.append(',');
+            if (diff.hasNewValue(sort)) {
+                buf.append(String.valueOf(diff.getNewValue(sort)));
+            }
+            buf.append(',');
+            buf.append(String.valueOf(diff.getDelta(sort)));
+            buf.append('\n');
+            writer.write(buf.toString());
+        }
+    }
+    
+    /**
+     * Writes the object of a difference in JSON format.
+     * @param diff the difference
+     * @throws IOException if the report cannot be written
+     */
+    private void writeJSON(SnapshotDiff.Difference diff) throws IOException {
+        StringBuffer buf = new StringBuffer();
+        if (count > 0) {
+            buf.append(',');
+        }
+        buf.append("\n{\"kind\":\"" + SnapshotDiff.getKindName(diff.getKind()) + "\"");
+        buf.append(",\"level\":\"" + SnapshotDiff.getLevelName(diff.getLevel()) + "\"");
+        buf.append(",\"name\":" + quoteJSON(diff.getName()));
+        buf.append(",\"metrics\":{");
+        
+        boolean first = true;
+        for (String sort : diff.getMetricSorts()) {
+            if (!first) {
+                buf.append(',');
+            }
+            first = false;
+            
+            buf.append(quoteJSON(sort) + ":{\"old\":");
+            buf.append(diff.hasOldValue(sort) ? toJSON(diff.getOldValue(sort)) : "null");
+            buf.append(",\"new\":");
+            buf.append(diff.hasNewValue(sort) ? toJSON(diff.getNewValue(sort)) : "null");
+            buf.append(",\"delta\":");
+            buf.append(toJSON(diff.getDelta(sort)));
+            buf.append('}');
+        }
+        buf.append("}}");
+        writer.write(buf.toString());
+    }
+    
+    /**
+     * Quotes a string for a CSV field if needed.
+     * @param str the string
+     * @return the CSV field
+     */
+    static String quoteCSV(String str) {
+        if (str.indexOf(',') < 0 && str.indexOf('"') < 0 && str.indexOf('\n') < 0) {
+            return str;
+        }
+        return "\"" + str.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * Quotes a string for a JSON string literal.
+     * @param str the string
+     * @return the JSON string literal
+     */
+    static String quoteJSON(String str) {
+        StringBuffer buf = new StringBuffer();
+        buf.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                buf.append('\\');
+                buf.append(ch);
+            } else if (ch < 0x20) {
+                buf.append(String.format("\\u%04x", new Integer(ch)));
+            } else {
+                buf.append(ch);
+            }
+        }
+        buf.append('"');
+        return buf.toString();
+    }
+    
+    /**
+     * Converts a double value into a JSON number.
+     * @param value the double value
+     * @return the JSON number, or <code>null</code> if the value is not finite
+     */
+    private static String toJSON(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return String.valueOf(value);
+    }
+}
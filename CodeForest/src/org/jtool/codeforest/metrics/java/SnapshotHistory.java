@@ -0,0 +1,891 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.Time;
+import org.jtool.codeforest.util.XMLReader;
+import org.jtool.codeforest.util.XMLWriter;
+import org.xml.sax.SAXException;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
+
+/**
+ * A store that keeps the history of metric values of a project as a base snapshot and per-version deltas.
+ * A delta records added, removed, and replaced packages and classes, and changes of class metric values.
+ * A new base is written periodically so that any version is reconstructed from a few files.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotHistory {
+    
+    static final String HISTORY_DIRNAME = "codeforest-history";
+    private static final String BASE_FILENAME = "base";
+    private static final String DELTA_FILENAME = "delta";
+    private static final String FILENAME_EXT = ".xml";
+    
+    public static final String DeltaElem = "codeForestDelta";
+    public static final String AddPackageElem = "addPackage";
+    public static final String RemovePackageElem = "removePackage";
+    public static final String ReplacePackageElem = "replacePackage";
+    public static final String AddClassElem = "addClass";
+    public static final String RemoveClassElem = "removeClass";
+    public static final String ReplaceClassElem = "replaceClass";
+    public static final String ChangeMetricsElem = "changeMetrics";
+    
+    public static final String BaseAttr = "base";
+    public static final String PackageAttr = "package";
+    public static final String RemovedAttr = "removed";
+    
+    /**
+     * The default number of deltas written between two bases.
+     */
+    private static final int DEFAULT_REBASE_INTERVAL = 10;
+    
+    /**
+     * The directory storing the bases and the deltas.
+     */
+    private File dir;
+    
+    /**
+     * The path of the top directory of the project.
+     */
+    private String topdir;
+    
+    /**
+     * The number of deltas written between two bases.
+     */
+    private int rebaseInterval = DEFAULT_REBASE_INTERVAL;
+    
+    /**
+     * The times of all the versions in chronological order.
+     */
+    private List<Long> versions = new ArrayList<Long>();
+    
+    /**
+     * The times of versions stored as bases.
+     */
+    private Set<Long> bases = new HashSet<Long>();
+    
+    /**
+     * The times of versions stored as deltas.
+     */
+    private Set<Long> deltas = new HashSet<Long>();
+    
+    /**
+     * Creates a history store of a project.
+     * @param topdir the path of the top directory of the project
+     */
+    public SnapshotHistory(String topdir) {
+        this.topdir = topdir;
+        dir = new File(topdir + File.separator + HISTORY_DIRNAME);
+        scan();
+    }
+    
+    /**
+     * Sets the number of deltas written between two bases.
+     * @param interval the number of deltas
+     */
+    public void setRebaseInterval(int interval) {
+        if (interval > 0) {
+            rebaseInterval = interval;
+        }
+    }
+    
+    /**
+     * Returns the times of all the versions stored in this history.
+     * @return the collection of the times in chronological order
+     */
+    public List<Long> getVersions() {
+        return versions;
+    }
+    
+    /**
+     * Tests if this history contains a version with a given time.
+     * @param time the time of the version
+     * @return <code>true</code> if the version is contained, otherwise <code>false</code>
+     */
+    public boolean contains(long time) {
+        return bases.contains(new Long(time)) || deltas.contains(new Long(time));
+    }
+    
+    /**
+     * Collects the versions stored in the history directory.
+     */
+    private void scan() {
+        versions.clear();
+        bases.clear();
+        deltas.clear();
+        
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        
+        Set<Long> times = new HashSet<Long>();
+        for (File file : files) {
+            long time = getTime(file.getName(), BASE_FILENAME);
+            if (time > 0) {
+                bases.add(new Long(time));
+                times.add(new Long(time));
+            }
+            time = getTime(file.getName(), DELTA_FILENAME);
+            if (time > 0) {
+                deltas.add(new Long(time));
+                times.add(new Long(time));
+            }
+        }
+        versions.addAll(times);
+        Collections.sort(versions);
+    }
+    
+    /**
+     * Extracts the time from the name of a base or delta file.
+     * @param name the file name
+     * @param prefix the prefix of the file name
+     * @return the time, or <code>-1</code> if the name does not match
+     */
+    private static long getTime(String name, String prefix) {
+        if (name.startsWith(prefix) && name.endsWith(FILENAME_EXT)) {
+            try {
+                return Long.parseLong(name.substring(prefix.length(), name.length() - FILENAME_EXT.length()));
+            } catch (NumberFormatException e) { /* empty */ }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the file storing the base of a version.
+     * @param time the time of the version
+     * @return the base file
+     */
+    private File getBaseFile(long time) {
+        return new File(dir, BASE_FILENAME + String.valueOf(time) + FILENAME_EXT);
+    }
+    
+    /**
+     * Returns the file storing the delta of a version.
+     * @param time the time of the version
+     * @return the delta file
+     */
+    private File getDeltaFile(long time) {
+        return new File(dir, DELTA_FILENAME + String.valueOf(time) + FILENAME_EXT);
+    }
+    
+    /**
+     * Returns the file whose header carries the project-level metric values of a version.
+     * @param time the time of the version
+     * @return the delta file if it exists, otherwise the base file
+     */
+    File getHeaderFile(long time) {
+        if (deltas.contains(new Long(time))) {
+            return getDeltaFile(time);
+        }
+        return getBaseFile(time);
+    }
+    
+    /**
+     * Adds a new version of metric values to this history.
+     * The version is stored as a delta from the latest version, and also as a base when re-basing is due.
+     * @param mproject the project metrics of the new version
+     */
+    public void add(ProjectMetrics mproject) {
+        if (!contains(mproject.getTime())) {
+            add(ForestDataExporter.getDocument(mproject), mproject.getTime());
+        }
+    }
+    
+    /**
+     * Adds a new version of metric values to this history.
+     * @param doc the DOM instance storing the metric values of the new version, which is not changed
+     * @param time the time of the new version
+     */
+    public void add(Document doc, long time) {
+        if (doc == null || contains(time)) {
+            return;
+        }
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        
+        if (versions.size() == 0) {
+            XMLWriter.writeAtomically(getBaseFile(time), doc);
+            scan();
+            return;
+        }
+        
+        long latest = versions.get(versions.size() - 1).longValue();
+        Document prev = reconstructDocument(latest);
+        if (prev == null) {
+            XMLWriter.writeAtomically(getBaseFile(time), doc);
+            scan();
+            return;
+        }
+        
+        Document delta = diff(prev, doc, latest, time);
+        if (delta == null) {
+            return;
+        }
+        XMLWriter.writeAtomically(getDeltaFile(time), delta);
+        
+        if (getNumberOfDeltasSinceBase() >= rebaseInterval ||
+            countElements(delta.getDocumentElement()) * 2 > countElements(doc.getDocumentElement())) {
+            XMLWriter.writeAtomically(getBaseFile(time), doc);
+        }
+        scan();
+    }
+    
+    /**
+     * Obtains the number of deltas written after the latest base.
+     * @return the number of deltas
+     */
+    private int getNumberOfDeltasSinceBase() {
+        int num = 0;
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            if (bases.contains(versions.get(i))) {
+                break;
+            }
+            num++;
+        }
+        return num;
+    }
+    
+    /**
+     * Reconstructs metric values of a version.
+     * @param time the time of the version
+     * @return the project metrics, or <code>null</code> if the version cannot be reconstructed
+     */
+    public ProjectMetrics read(long time) {
+        Document doc = reconstructDocument(time);
+        if (doc == null) {
+            return null;
+        }
+        
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.transform(new DOMSource(doc), new StreamResult(out));
+            
+            String path = topdir + File.separator + MetricsManager.getFileName(time);
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            ForestDataImporter handler = new ForestDataImporter(path);
+            parser.parse(new ByteArrayInputStream(out.toByteArray()), handler);
+            return handler.getProjectMetrics();
+            
+        } catch (TransformerException e) {
+            e.printStackTrace();
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+        } catch (SAXException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    /**
+     * Reconstructs the DOM instance of a version from the nearest base and the following deltas.
+     * @param time the time of the version
+     * @return the DOM instance, or <code>null</code> if the version cannot be reconstructed
+     */
+    public Document reconstructDocument(long time) {
+        int index = versions.indexOf(new Long(time));
+        if (index < 0) {
+            return null;
+        }
+        
+        int baseIndex = index;
+        while (baseIndex >= 0 && !bases.contains(versions.get(baseIndex))) {
+            baseIndex--;
+        }
+        if (baseIndex < 0) {
+            return null;
+        }
+        
+        Document doc = readDocument(getBaseFile(versions.get(baseIndex).longValue()));
+        if (doc == null) {
+            return null;
+        }
+        
+        for (int i = baseIndex + 1; i <= index; i++) {
+            Document delta = readDocument(getDeltaFile(versions.get(i).longValue()));
+            if (delta == null) {
+                return null;
+            }
+            apply(doc, delta);
+        }
+        return doc;
+    }
+    
+    /**
+     * Extracts the time series of a metric value of a class.
+     * Only the deltas are read, and the series restarts from a base at a version without a delta;
+     * versions in which the class does not exist are omitted.
+     * @param fqn the fully-qualified name of the class
+     * @param sort the sort of the metric
+     * @return the map from the times of versions to the metric values, in chronological order
+     */
+    public Map<Long, Double> getTimeSeries(String fqn, String sort) {
+        Map<Long, Double> series = new LinkedHashMap<Long, Double>();
+        
+        String packageName = null;
+        String value = null;
+        for (int i = 0; i < versions.size(); i++) {
+            Long time = versions.get(i);
+            Document delta = null;
+            if (i > 0 && deltas.contains(time)) {
+                delta = readDocument(getDeltaFile(time.longValue()));
+            }
+            
+            if (delta == null) {
+                if (!bases.contains(time)) {
+                    break;
+                }
+                Document base = readDocument(getBaseFile(time.longValue()));
+                if (base == null) {
+                    break;
+                }
+                
+                packageName = null;
+                value = null;
+                Element projectElem = getChild(base.getDocumentElement(), MetricsManager.ProjectElem);
+                if (projectElem != null) {
+                    for (Element packageElem : getChildren(projectElem, MetricsManager.PackageElem)) {
+                        Element classElem = getClassElement(packageElem, fqn);
+                        if (classElem != null) {
+                            packageName = packageElem.getAttribute(MetricsManager.NameAttr);
+                            value = getMetricAttribute(classElem, sort);
+                            break;
+                        }
+                    }
+                }
+                putValue(series, time, packageName, value);
+                continue;
+            }
+            
+            for (Element op : getChildren(delta.getDocumentElement(), null)) {
+                String name = op.getTagName();
+                if (name.equals(RemovePackageElem)) {
+                    if (op.getAttribute(MetricsManager.NameAttr).equals(packageName)) {
+                        packageName = null;
+                    }
+                    
+                } else if (name.equals(AddPackageElem)) {
+                    Element packageElem = getChild(op, MetricsManager.PackageElem);
+                    Element classElem = getClassElement(packageElem, fqn);
+                    if (classElem != null) {
+                        packageName = packageElem.getAttribute(MetricsManager.NameAttr);
+                        value = getMetricAttribute(classElem, sort);
+                    }
+                    
+                } else if (name.equals(RemoveClassElem)) {
+                    if (op.getAttribute(MetricsManager.FqnAttr).equals(fqn)) {
+                        packageName = null;
+                    }
+                    
+                } else if (name.equals(AddClassElem) || name.equals(ReplaceClassElem)) {
+                    Element classElem = getChild(op, MetricsManager.ClassElem);
+                    if (classElem != null && classElem.getAttribute(MetricsManager.FqnAttr).equals(fqn)) {
+                        packageName = op.getAttribute(PackageAttr);
+                        value = getMetricAttribute(classElem, sort);
+                    }
+                    
+                } else if (name.equals(ChangeMetricsElem)) {
+                    if (op.getAttribute(MetricsManager.FqnAttr).equals(fqn)) {
+                        if (op.hasAttribute(sort)) {
+                            value = op.getAttribute(sort);
+                        } else if (isRemoved(op, sort)) {
+                            value = null;
+                        }
+                    }
+                }
+            }
+            putValue(series, time, packageName, value);
+        }
+        return series;
+    }
+    
+    /**
+     * Stores a metric value into a time series if the class exists at the version.
+     * @param series the time series
+     * @param time the time of the version
+     * @param packageName the name of the package containing the class, or <code>null</code> if the class does not exist
+     * @param value the string of the metric value, or <code>null</code> if the value does not exist
+     */
+    private void putValue(Map<Long, Double> series, Long time, String packageName, String value) {
+        if (packageName != null && value != null && value.length() > 0) {
+            try {
+                series.put(time, new Double(Double.parseDouble(value)));
+            } catch (NumberFormatException e) { /* empty */ }
+        }
+    }
+    
+    /**
+     * Creates a delta between two versions.
+     * @param prev the DOM instance of the previous version
+     * @param cur the DOM instance of the current version
+     * @param prevTime the time of the previous version
+     * @param time the time of the current version
+     * @return the DOM instance of the delta, or <code>null</code> if the creation fails
+     */
+    private Document diff(Document prev, Document cur, long prevTime, long time) {
+        Document delta;
+        try {
+            delta = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+            return null;
+        }
+        
+        Element rootElem = delta.createElement(DeltaElem);
+        rootElem.setAttribute(MetricsManager.DateAttr, Time.toString(time));
+        rootElem.setAttribute(MetricsManager.TimeAttr, String.valueOf(time));
+        rootElem.setAttribute(BaseAttr, String.valueOf(prevTime));
+        delta.appendChild(rootElem);
+        
+        Element prevProject = getChild(prev.getDocumentElement(), MetricsManager.ProjectElem);
+        Element curProject = getChild(cur.getDocumentElement(), MetricsManager.ProjectElem);
+        if (prevProject == null || curProject == null) {
+            return null;
+        }
+        
+        rootElem.appendChild(delta.importNode(getHeader(curProject, MetricsManager.PackageElem), true));
+        
+        Map<String, Element> prevPackages = getPackageElements(prevProject);
+        Map<String, Element> curPackages = getPackageElements(curProject);
+        
+        for (String name : prevPackages.keySet()) {
+            if (!curPackages.containsKey(name)) {
+                Element op = delta.createElement(RemovePackageElem);
+                op.setAttribute(MetricsManager.NameAttr, name);
+                rootElem.appendChild(op);
+            }
+        }
+        
+        for (String name : curPackages.keySet()) {
+            Element curPackage = curPackages.get(name);
+            Element prevPackage = prevPackages.get(name);
+            if (prevPackage == null) {
+                Element op = delta.createElement(AddPackageElem);
+                op.appendChild(delta.importNode(curPackage, true));
+                rootElem.appendChild(op);
+                continue;
+            }
+            
+            Element curHeader = getHeader(curPackage, MetricsManager.ClassElem);
+            if (!curHeader.isEqualNode(getHeader(prevPackage, MetricsManager.ClassElem))) {
+                Element op = delta.createElement(ReplacePackageElem);
+                op.appendChild(delta.importNode(curHeader, true));
+                rootElem.appendChild(op);
+            }
+            
+            diff(delta, rootElem, name, prevPackage, curPackage);
+        }
+        return delta;
+    }
+    
+    /**
+     * Creates operations of a delta with respect to classes within a package.
+     * @param delta the DOM instance of the delta
+     * @param rootElem the root element of the delta
+     * @param packageName the name of the package
+     * @param prevPackage the package element of the previous version
+     * @param curPackage the package element of the current version
+     */
+    private void diff(Document delta, Element rootElem, String packageName, Element prevPackage, Element curPackage) {
+        Map<String, Element> prevClasses = getClassElements(prevPackage);
+        Map<String, Element> curClasses = getClassElements(curPackage);
+        
+        for (String fqn : prevClasses.keySet()) {
+            if (!curClasses.containsKey(fqn)) {
+                Element op = delta.createElement(RemoveClassElem);
+                op.setAttribute(PackageAttr, packageName);
+                op.setAttribute(MetricsManager.FqnAttr, fqn);
+                rootElem.appendChild(op);
+            }
+        }
+        
+        for (String fqn : curClasses.keySet()) {
+            Element curClass = curClasses.get(fqn);
+            Element prevClass = prevClasses.get(fqn);
+            if (prevClass == null) {
+                Element op = delta.createElement(AddClassElem);
+                op.setAttribute(PackageAttr, packageName);
+                op.appendChild(delta.importNode(curClass, true));
+                rootElem.appendChild(op);
+                continue;
+            }
+            
+            if (curClass.isEqualNode(prevClass)) {
+                continue;
+            }
+            
+            if (getHeader(curClass, MetricsManager.MetricsElem).isEqualNode(getHeader(prevClass, MetricsManager.MetricsElem))) {
+                Element op = delta.createElement(ChangeMetricsElem);
+                op.setAttribute(PackageAttr, packageName);
+                op.setAttribute(MetricsManager.FqnAttr, fqn);
+                
+                Element curMetrics = getChild(curClass, MetricsManager.MetricsElem);
+                Element prevMetrics = getChild(prevClass, MetricsManager.MetricsElem);
+                StringBuffer removed = new StringBuffer();
+                
+                NamedNodeMap curAttrs = curMetrics.getAttributes();
+                for (int i = 0; i < curAttrs.getLength(); i++) {
+                    Attr attr = (Attr)curAttrs.item(i);
+                    if (!attr.getValue().equals(prevMetrics.getAttribute(attr.getName())) || !prevMetrics.hasAttribute(attr.getName())) {
+                        op.setAttribute(attr.getName(), attr.getValue());
+                    }
+                }
+                NamedNodeMap prevAttrs = prevMetrics.getAttributes();
+                for (int i = 0; i < prevAttrs.getLength(); i++) {
+                    Attr attr = (Attr)prevAttrs.item(i);
+                    if (!curMetrics.hasAttribute(attr.getName())) {
+                        if (removed.length() > 0) {
+                            removed.append(' ');
+                        }
+                        removed.append(attr.getName());
+                    }
+                }
+                if (removed.length() > 0) {
+                    op.setAttribute(RemovedAttr, removed.toString());
+                }
+                rootElem.appendChild(op);
+                
+            } else {
+                Element op = delta.createElement(ReplaceClassElem);
+                op.setAttribute(PackageAttr, packageName);
+                op.appendChild(delta.importNode(curClass, true));
+                rootElem.appendChild(op);
+            }
+        }
+    }
+    
+    /**
+     * Applies a delta to the DOM instance of the previous version.
+     * @param doc the DOM instance, which is changed into the next version
+     * @param delta the DOM instance of the delta
+     */
+    private void apply(Document doc, Document delta) {
+        Element deltaRoot = delta.getDocumentElement();
+        Element projectElem = getChild(doc.getDocumentElement(), MetricsManager.ProjectElem);
+        if (projectElem == null) {
+            return;
+        }
+        
+        doc.getDocumentElement().setAttribute(MetricsManager.DateAttr, deltaRoot.getAttribute(MetricsManager.DateAttr));
+        Map<String, Element> packages = getPackageElements(projectElem);
+        Map<String, Map<String, Element>> classes = new HashMap<String, Map<String, Element>>();
+        
+        for (Element op : getChildren(deltaRoot, null)) {
+            String name = op.getTagName();
+            
+            if (name.equals(MetricsManager.ProjectElem)) {
+                replaceHeader(doc, projectElem, op, MetricsManager.PackageElem);
+                
+            } else if (name.equals(RemovePackageElem)) {
+                Element packageElem = packages.remove(op.getAttribute(MetricsManager.NameAttr));
+                if (packageElem != null) {
+                    projectElem.removeChild(packageElem);
+                }
+                
+            } else if (name.equals(AddPackageElem)) {
+                Element packageElem = (Element)doc.importNode(getChild(op, MetricsManager.PackageElem), true);
+                projectElem.appendChild(packageElem);
+                packages.put(packageElem.getAttribute(MetricsManager.NameAttr), packageElem);
+                
+            } else if (name.equals(ReplacePackageElem)) {
+                Element header = getChild(op, MetricsManager.PackageElem);
+                Element packageElem = packages.get(header.getAttribute(MetricsManager.NameAttr));
+                if (packageElem != null) {
+                    replaceHeader(doc, packageElem, header, MetricsManager.ClassElem);
+                }
+                
+            } else {
+                String packageName = op.getAttribute(PackageAttr);
+                Element packageElem = packages.get(packageName);
+                if (packageElem == null) {
+                    continue;
+                }
+                
+                Map<String, Element> classMap = classes.get(packageName);
+                if (classMap == null) {
+                    classMap = getClassElements(packageElem);
+                    classes.put(packageName, classMap);
+                }
+                
+                if (name.equals(RemoveClassElem)) {
+                    Element classElem = classMap.remove(op.getAttribute(MetricsManager.FqnAttr));
+                    if (classElem != null) {
+                        packageElem.removeChild(classElem);
+                    }
+                    
+                } else if (name.equals(AddClassElem) || name.equals(ReplaceClassElem)) {
+                    Element classElem = (Element)doc.importNode(getChild(op, MetricsManager.ClassElem), true);
+                    Element oldElem = classMap.put(classElem.getAttribute(MetricsManager.FqnAttr), classElem);
+                    if (oldElem != null) {
+                        packageElem.replaceChild(classElem, oldElem);
+                    } else {
+                        packageElem.appendChild(classElem);
+                    }
+                    
+                } else if (name.equals(ChangeMetricsElem)) {
+                    Element classElem = classMap.get(op.getAttribute(MetricsManager.FqnAttr));
+                    Element metricsElem = getChild(classElem, MetricsManager.MetricsElem);
+                    if (metricsElem == null) {
+                        continue;
+                    }
+                    
+                    NamedNodeMap attrs = op.getAttributes();
+                    for (int i = 0; i < attrs.getLength(); i++) {
+                        Attr attr = (Attr)attrs.item(i);
+                        if (!attr.getName().equals(PackageAttr) && !attr.getName().equals(MetricsManager.FqnAttr) &&
+                            !attr.getName().equals(RemovedAttr)) {
+                            metricsElem.setAttribute(attr.getName(), attr.getValue());
+                        }
+                    }
+                    if (op.hasAttribute(RemovedAttr)) {
+                        for (String sort : op.getAttribute(RemovedAttr).split(" ")) {
+                            metricsElem.removeAttribute(sort);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Replaces the attributes and the child elements except for nested elements of an element.
+     * @param doc the DOM instance containing the element
+     * @param elem the element to be changed
+     * @param header the element holding the new attributes and child elements
+     * @param nestedName the name of nested elements to be kept
+     */
+    private void replaceHeader(Document doc, Element elem, Element header, String nestedName) {
+        NamedNodeMap attrs = header.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr)attrs.item(i);
+            elem.setAttribute(attr.getName(), attr.getValue());
+        }
+        
+        Node first = null;
+        for (Element child : getChildren(elem, null)) {
+            if (child.getTagName().equals(nestedName)) {
+                if (first == null) {
+                    first = child;
+                }
+            } else {
+                elem.removeChild(child);
+            }
+        }
+        
+        for (Element child : getChildren(header, null)) {
+            Node node = doc.importNode(child, true);
+            if (first != null) {
+                elem.insertBefore(node, first);
+            } else {
+                elem.appendChild(node);
+            }
+        }
+    }
+    
+    /**
+     * Creates a copy of an element without nested elements with a given name.
+     * @param elem the element
+     * @param nestedName the name of nested elements to be excluded
+     * @return the copy of the element
+     */
+    private Element getHeader(Element elem, String nestedName) {
+        Element header = (Element)elem.cloneNode(false);
+        for (Element child : getChildren(elem, null)) {
+            if (!child.getTagName().equals(nestedName)) {
+                header.appendChild(child.cloneNode(true));
+            }
+        }
+        return header;
+    }
+    
+    /**
+     * Obtains package elements within a project element.
+     * @param projectElem the project element
+     * @return the map from the names of packages to their elements
+     */
+    private Map<String, Element> getPackageElements(Element projectElem) {
+        Map<String, Element> map = new LinkedHashMap<String, Element>();
+        for (Element elem : getChildren(projectElem, MetricsManager.PackageElem)) {
+            map.put(elem.getAttribute(MetricsManager.NameAttr), elem);
+        }
+        return map;
+    }
+    
+    /**
+     * Obtains class elements within a package element.
+     * @param packageElem the package element
+     * @return the map from the fully-qualified names of classes to their elements
+     */
+    private Map<String, Element> getClassElements(Element packageElem) {
+        Map<String, Element> map = new LinkedHashMap<String, Element>();
+        for (Element elem : getChildren(packageElem, MetricsManager.ClassElem)) {
+            map.put(elem.getAttribute(MetricsManager.FqnAttr), elem);
+        }
+        return map;
+    }
+    
+    /**
+     * Finds a class element within a package element.
+     * @param packageElem the package element
+     * @param fqn the fully-qualified name of the class
+     * @return the class element, or <code>null</code> if none
+     */
+    private Element getClassElement(Element packageElem, String fqn) {
+        if (packageElem == null) {
+            return null;
+        }
+        for (Element elem : getChildren(packageElem, MetricsManager.ClassElem)) {
+            if (elem.getAttribute(MetricsManager.FqnAttr).equals(fqn)) {
+                return elem;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Obtains the value of a metric stored in a class element.
+     * @param classElem the class element
+     * @param sort the sort of the metric
+     * @return the string of the metric value, or <code>null</code> if none
+     */
+    private String getMetricAttribute(Element classElem, String sort) {
+        Element metricsElem = getChild(classElem, MetricsManager.MetricsElem);
+        if (metricsElem != null && metricsElem.hasAttribute(sort)) {
+            return metricsElem.getAttribute(sort);
+        }
+        return null;
+    }
+    
+    /**
+     * Tests if a metric is recorded as removed in an operation of a delta.
+     * @param op the operation element
+     * @param sort the sort of the metric
+     * @return <code>true</code> if the metric is removed, otherwise <code>false</code>
+     */
+    private boolean isRemoved(Element op, String sort) {
+        if (op.hasAttribute(RemovedAttr)) {
+            for (String name : op.getAttribute(RemovedAttr).split(" ")) {
+                if (name.equals(sort)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Obtains the first child element with a given name.
+     * @param elem the parent element
+     * @param name the name of the child element
+     * @return the child element, or <code>null</code> if none
+     */
+    private static Element getChild(Element elem, String name) {
+        if (elem == null) {
+            return null;
+        }
+        for (Node node = elem.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && ((Element)node).getTagName().equals(name)) {
+                return (Element)node;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Obtains child elements with a given name.
+     * @param elem the parent element
+     * @param name the name of the child elements, or <code>null</code> for all the child elements
+     * @return the collection of the child elements
+     */
+    private static List<Element> getChildren(Element elem, String name) {
+        List<Element> children = new ArrayList<Element>();
+        NodeList nodes = elem.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                if (name == null || ((Element)node).getTagName().equals(name)) {
+                    children.add((Element)node);
+                }
+            }
+        }
+        return children;
+    }
+    
+    /**
+     * Counts elements within an element.
+     * @param elem the element
+     * @return the number of the elements including the given one
+     */
+    private static int countElements(Element elem) {
+        int num = 1;
+        for (Element child : getChildren(elem, null)) {
+            num = num + countElements(child);
+        }
+        return num;
+    }
+    
+    /**
+     * Reads a DOM instance from an XML file and removes whitespace between elements.
+     * @param file the XML file
+     * @return the DOM instance, or <code>null</code> if the file cannot be read
+     */
+    private static Document readDocument(File file) {
+        if (!file.canRead()) {
+            return null;
+        }
+        Document doc = XMLReader.read(file);
+        if (doc != null) {
+            removeWhitespace(doc.getDocumentElement());
+        }
+        return doc;
+    }
+    
+    /**
+     * Removes whitespace-only text nodes within an element.
+     * @param elem the element
+     */
+    private static void removeWhitespace(Element elem) {
+        Node node = elem.getFirstChild();
+        while (node != null) {
+            Node next = node.getNextSibling();
+            if (node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().trim().length() == 0) {
+                elem.removeChild(node);
+            } else if (node.getNodeType() == Node.ELEMENT_NODE) {
+                removeWhitespace((Element)node);
+            }
+            node = next;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.metrics.java;
+
+import org.jtool.codeforest.util.Time;
+import org.jtool.eclipse.model.java.JavaModelFactory;
+import org.jtool.eclipse.model.java.JavaProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cancellable job that calculates metric values within projects of a workspace in the background.
+ * The projects are calculated on a pool shared by all the jobs, and each of them is exported into its own snapshot.
+ * The projects whose metrics have been calculated are combined and published as versions of a workspace forest.
+ * @author Katsuhisa Maruyama
+ */
+public class WorkspaceMetricsJob extends Job {
+    
+    /**
+     * The interval in milliseconds at which cancellation is checked while waiting for a project.
+     */
+    private static final long POLL_INTERVAL = 100;
+    
+    /**
+     * The pool shared by all the jobs, whose size is bounded by the number of available processors.
+     */
+    private static ExecutorService pool = null;
+    
+    /**
+     * The projects whose metric values are calculated, which are parsed by the threads of the pool.
+     */
+    private List<IJavaProject> javaProjects;
+    
+    /**
+     * The name of the workspace.
+     */
+    private String name;
+    
+    /**
+     * The path of the top directory of the workspace.
+     */
+    private String path;
+    
+    /**
+     * The manager that exports the metric values of each project.
+     */
+    private MetricsManager manager;
+    
+    /**
+     * The publisher that receives the combined versions.
+     */
+    private MetricsPublisher publisher;
+    
+    /**
+     * Creates a job that calculates metric values within projects of a workspace.
+     * @param projects the projects whose metric values are calculated
+     * @param name the name of the workspace
+     * @param path the path of the top directory of the workspace
+     * @param manager the manager that exports the metric values of each project
+     * @param publisher the publisher that receives the combined versions
+     * @param rule the scheduling rule of the job, or <code>null</code> if none
+     */
+    public WorkspaceMetricsJob(List<IJavaProject> projects, String name, String path, MetricsManager manager, MetricsPublisher publisher, ISchedulingRule rule) {
+        super("Calculating metrics of " + name);
+        
+        this.javaProjects = new ArrayList<IJavaProject>(projects);
+        this.name = name;
+        this.path = path;
+        this.manager = manager;
+        this.publisher = publisher;
+        setRule(rule);
+        setUser(true);
+        setPriority(Job.LONG);
+    }
+    
+    /**
+     * Creates an empty version of workspace metrics, which represents a workspace whose projects have not been calculated yet.
+     * @param name the name of the workspace
+     * @param path the path of the top directory of the workspace
+     * @return the empty workspace metrics
+     */
+    public static ProjectMetrics createEmpty(String name, String path) {
+        return new ProjectMetrics(name, path, new ArrayList<ProjectMetrics>(), Time.getCurrentTime(), false);
+    }
+    
+    /**
+     * Returns the pool shared by all the jobs.
+     * @return the pool whose threads are daemon threads
+     */
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            int size = Math.max(1, Runtime.getRuntime().availableProcessors());
+            pool = Executors.newFixedThreadPool(size, new ThreadFactory() {
+                
+                /**
+                 * The number of threads created so far.
+                 */
+                private int count = 0;
+                
+                /**
+                 * Creates a new thread.
+                 * @param r the runnable to be executed by the thread
+                 * @return the created thread
+                 */
+                public synchronized Thread newThread(Runnable r) {
+                    count++;
+                    Thread thread = new Thread(r, "CodeForest metrics " + count);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+    
+    /**
+     * Calculates metric values of the projects concurrently.
+     * @param monitor the progress monitor
+     * @return the status of the job
+     */
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask("Calculating metrics ... ", javaProjects.size());
+        
+        CompletionService<ProjectMetrics> service = new ExecutorCompletionService<ProjectMetrics>(getPool());
+        List<Future<ProjectMetrics>> futures = new ArrayList<Future<ProjectMetrics>>();
+        for (final IJavaProject project : javaProjects) {
+            futures.add(service.submit(new Callable<ProjectMetrics>() {
+                
+                /**
+                 * Parses a project and calculates its metric values together with its churn and quality reports.
+                 * @return the project metrics
+                 */
+                public ProjectMetrics call() {
+                    JavaModelFactory factory = new JavaModelFactory(project);
+                    factory.setJavaASTVisitor(new CFFileInfoCollector());
+                    JavaProject jproject = factory.create();
+                    ProjectMetrics.collectExternalInfo(jproject);
+                    return new ProjectMetrics(jproject);
+                }
+            }));
+        }
+        
+        List<ProjectMetrics> projects = new ArrayList<ProjectMetrics>();
+        long time = publisher.getProjectMetrics().getTime();
+        long published = System.currentTimeMillis();
+        try {
+            for (int idx = 1; idx <= javaProjects.size(); idx++) {
+                Future<ProjectMetrics> future = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                while (future == null) {
+                    if (monitor.isCanceled()) {
+                        cancelAll(futures);
+                        monitor.done();
+                        return Status.CANCEL_STATUS;
+                    }
+                    future = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+                
+                try {
+                    ProjectMetrics mproject = future.get();
+                    monitor.subTask(idx + "/" + javaProjects.size() + " - " + mproject.getName());
+                    projects.add(mproject);
+                    manager.writeXMLInBackground(mproject);
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+                
+                if (idx < javaProjects.size() && System.currentTimeMillis() - published >= MetricsJob.PUBLISH_INTERVAL) {
+                    publisher.publish(new ProjectMetrics(name, path, projects, time, false));
+                    published = System.currentTimeMillis();
+                }
+                monitor.worked(1);
+            }
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            monitor.done();
+            return Status.CANCEL_STATUS;
+        }
+        
+        publisher.publish(new ProjectMetrics(name, path, projects, time, true));
+        monitor.done();
+        return Status.OK_STATUS;
+    }
+    
+    /**
+     * Cancels the calculation of projects that have not been finished.
+     * @param futures the futures of the calculation
+     */
+    private void cancelAll(List<Future<ProjectMetrics>> futures) {
+        for (Future<ProjectMetrics> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -7,8 +7,12 @@ package org.jtool.codeforest.ui;
 import org.jtool.codeforest.Activator;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 import org.jtool.codeforest.ui.view.PropertyView;
+import org.jtool.codeforest.ui.view.DsmView;
+import org.jtool.codeforest.ui.view.HotspotView;
 import org.jtool.codeforest.ui.view.control.InteractionView;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.graphics.Color;
@@ -17,7 +21,7 @@ import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
 
 /**
- * Provides a tab frame that displays property and interaction views.
+ * Provides a tab frame that displays property, interaction, dependency structure matrix, and hotspot views.
  * @author Katsuhisa Maruyama
  */
 public class CodeForestBottomTabFrame {
@@ -37,6 +41,16 @@ public class CodeForestBottomTabFrame {
      */
     private static final String INTERACTION_VIEW_TITLE = "Interaction";
     
+    /**
+     * The title string that represents the dependency structure matrix view.
+     */
+    private static final String DSM_VIEW_TITLE = "DSM";
+    
+    /**
+     * The title string that represents the hotspot view.
+     */
+    private static final String HOTSPOT_VIEW_TITLE = "Hotspots";
+    
     /**
      * A property view.
      */
@@ -47,6 +61,16 @@ public class CodeForestBottomTabFrame {
      */
     private InteractionView interactionView;
     
+    /**
+     * A dependency structure matrix view.
+     */
+    private DsmView dsmView;
+    
+    /**
+     * A hotspot view.
+     */
+    private HotspotView hotspotView;
+    
     /**
      * Creates tab frame display on the bottom of the window.
      * @param frame the main frame
@@ -83,6 +107,37 @@ public class CodeForestBottomTabFrame {
         interactionViewTab.setText(INTERACTION_VIEW_TITLE);
         interactionViewTab.setControl(interactionPanel);
         interactionViewTab.setImage(Activator.getImage("task"));
+        
+        Composite dsmPanel = new Composite(tabFolder, SWT.NONE);
+        dsmPanel.setBounds(0, 0, bounds.width, bounds.height);
+        dsmView = new DsmView(dsmPanel, mproject);
+        
+        CTabItem dsmViewTab = new CTabItem(tabFolder, SWT.NONE);
+        dsmViewTab.setText(DSM_VIEW_TITLE);
+        dsmViewTab.setControl(dsmPanel);
+        dsmViewTab.setImage(Activator.getImage("package"));
+        
+        Composite hotspotPanel = new Composite(tabFolder, SWT.NONE);
+        hotspotPanel.setBounds(0, 0, bounds.width, bounds.height);
+        hotspotView = new HotspotView(hotspotPanel, frame, mproject);
+        
+        final CTabItem hotspotViewTab = new CTabItem(tabFolder, SWT.NONE);
+        hotspotViewTab.setText(HOTSPOT_VIEW_TITLE);
+        hotspotViewTab.setControl(hotspotPanel);
+        hotspotViewTab.setImage(Activator.getImage("inspect"));
+        
+        tabFolder.addSelectionListener(new SelectionAdapter() {
+            
+            /**
+             * Builds the hotspots when their tab is shown for the first time.
+             * @param evt the selection event
+             */
+            public void widgetSelected(SelectionEvent evt) {
+                if (evt.item == hotspotViewTab) {
+                    hotspotView.show();
+                }
+            }
+        });
     }
     
     /**
@@ -109,6 +164,22 @@ public class CodeForestBottomTabFrame {
         return interactionView;
     }
     
+    /**
+     * Obtains the dependency structure matrix view.
+     * @return the dependency structure matrix view
+     */
+    DsmView getDsmView() {
+        return dsmView;
+    }
+    
+    /**
+     * Obtains the hotspot view.
+     * @return the hotspot view
+     */
+    HotspotView getHotspotView() {
+        return hotspotView;
+    }
+    
     /**
      * Focuses on the property view.
      */
@@ -123,12 +194,29 @@ public class CodeForestBottomTabFrame {
         tabFolder.setSelection(1);
     }
     
+    /**
+     * Focuses on the dependency structure matrix view.
+     */
+    void focusDsmView() {
+        tabFolder.setSelection(2);
+    }
+    
+    /**
+     * Focuses on the hotspot view.
+     */
+    void focusHotspotView() {
+        tabFolder.setSelection(3);
+        hotspotView.show();
+    }
+    
     /**
      * Disposes this tab frame.
      */
     void dispose() {
         propertyView.dispose();
         interactionView.dispose();
+        dsmView.dispose();
+        hotspotView.dispose();
         tabFolder.dispose();
     }
 }
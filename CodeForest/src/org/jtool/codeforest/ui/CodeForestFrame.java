@@ -4,8 +4,11 @@
 
 package org.jtool.codeforest.ui;
 
+import org.jtool.codeforest.metrics.java.MetricsPublisher;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
 import org.jtool.codeforest.ui.view.PropertyView;
+import org.jtool.codeforest.ui.view.DsmView;
+import org.jtool.codeforest.ui.view.HotspotView;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.ui.view.SettingView;
 import org.jtool.codeforest.ui.view.SourceCodeView;
@@ -44,9 +47,14 @@ public class CodeForestFrame {
     private CodeForestBottomTabFrame bottomTabFrame;
     
     /**
-     * The metrics of a project represented by a forest.
+     * The publisher of versions of the metrics of a project represented by a forest.
      */
-    private ProjectMetrics projectMetrics;
+    private MetricsPublisher metricsPublisher;
+    
+    /**
+     * The number of the version displayed in this frame.
+     */
+    private long displayedVersion = 0;
     
     /**
      * A forest view.
@@ -74,25 +82,48 @@ public class CodeForestFrame {
      * @param mproject the metrics of a project represented by a forest
      */
     public CodeForestFrame(Shell parent, ProjectMetrics mproject) {
+        this(parent, new MetricsPublisher(mproject));
+    }
+    
+    /**
+     * Creates a main frame that displays versions published while the metrics of a project are being calculated.
+     * The frame is opened in a computing state and filled in as packages complete.
+     * @param parent the parent of the frame
+     * @param publisher the publisher of versions of the metrics of a project represented by a forest
+     */
+    public CodeForestFrame(Shell parent, MetricsPublisher publisher) {
         baseShell = new Shell(parent.getDisplay());
         baseShell.setLayout(new FormLayout());
         baseShell.setSize(1500, 1000);
         
-        baseShell.setText(mproject.getName() + " - " + Time.toString(mproject.getTime()));
+        metricsPublisher = publisher;
+        metricsPublisher.addListener(new MetricsPublisher.Listener() {
+            
+            /**
+             * Displays a new version when it is published.
+             * @param version the published version
+             */
+            public void published(MetricsPublisher.Version version) {
+                if (baseShell != null && !baseShell.isDisposed()) {
+                    baseShell.getDisplay().asyncExec(new Runnable() {
+                        
+                        /**
+                         * Runs a new thread.
+                         */
+                        public void run() {
+                            showLatestVersion();
+                        }
+                    });
+                }
+            }
+        });
         
-        projectMetrics = mproject;
+        displayedVersion = metricsPublisher.getVersion().getNumber();
+        baseShell.setText(getTitle(metricsPublisher.getProjectMetrics()));
         
         createPane();
     }
     
-    /**
-     * Creates a main frame.
-     * @param parent the parent of the frame
-     */
-    public CodeForestFrame(Shell parent) {
-        this(parent, null);
-    }
-    
     /**
      * Returns the shell of this frame.
      * @return the shell of the frame
@@ -106,7 +137,51 @@ public class CodeForestFrame {
      * @return the project metrics
      */
     public ProjectMetrics getProjectMetrics() {
-        return projectMetrics;
+        return metricsPublisher.getProjectMetrics();
+    }
+    
+    /**
+     * Obtains the publisher of versions of the metrics of a project represented by a forest.
+     * A recomputation publishes its result into this publisher and the frame displays it.
+     * @return the metrics publisher
+     */
+    public MetricsPublisher getMetricsPublisher() {
+        return metricsPublisher;
+    }
+    
+    /**
+     * Rebuilds the forest and the property view with the latest version of the project metrics.
+     * This method must be called on the display thread.
+     */
+    private void showLatestVersion() {
+        if (baseShell == null || baseShell.isDisposed()) {
+            return;
+        }
+        
+        MetricsPublisher.Version version = metricsPublisher.getVersion();
+        if (version.getNumber() <= displayedVersion) {
+            return;
+        }
+        displayedVersion = version.getNumber();
+        
+        ProjectMetrics mproject = version.getProjectMetrics();
+        baseShell.setText(getTitle(mproject));
+        forestView.build(mproject, settingView.getSettingData());
+        getPropertyView().setProjectMetrics(mproject);
+        getDsmView().setProjectMetrics(mproject);
+        getHotspotView().setProjectMetrics(mproject);
+    }
+    
+    /**
+     * Returns the title of this frame displaying project metrics.
+     * @param mproject the project metrics
+     * @return the title of the frame
+     */
+    private String getTitle(ProjectMetrics mproject) {
+        if (!mproject.isComplete()) {
+            return mproject.getName() + " - computing ...";
+        }
+        return mproject.getName() + " - " + Time.toString(mproject.getTime());
     }
     
     /**
@@ -173,6 +248,30 @@ public class CodeForestFrame {
         return bottomTabFrame.getInteractionView();
     }
     
+    /**
+     * Obtains the dependency structure matrix view in this frame.
+     * @return the dependency structure matrix view
+     */
+    public DsmView getDsmView() {
+        return bottomTabFrame.getDsmView();
+    }
+    
+    /**
+     * Obtains the hotspot view in this frame.
+     * @return the hotspot view
+     */
+    public HotspotView getHotspotView() {
+        return bottomTabFrame.getHotspotView();
+    }
+    
+    /**
+     * Obtains the repository that stores information on a forest.
+     * @return the repository, or <code>null</code> if it has not been created yet
+     */
+    public CodeForestRepository getCodeForestRepository() {
+        return codeForestRepository;
+    }
+    
     /**
      * Focuses on the tree view.
      */
@@ -201,6 +300,20 @@ public class CodeForestFrame {
         bottomTabFrame.focusInteractionView();
     }
     
+    /**
+     * Focuses on the dependency structure matrix view.
+     */
+    public void focusDsmView() {
+        bottomTabFrame.focusDsmView();
+    }
+    
+    /**
+     * Focuses on the hotspot view.
+     */
+    public void focusHotspotView() {
+        bottomTabFrame.focusHotspotView();
+    }
+    
     /**
      * Creates the pane of this frame.
      */
@@ -285,7 +398,7 @@ public class CodeForestFrame {
         
         forestView = new ForestView(forestPanel, this);
         
-        forestView.build(projectMetrics, settingView.getSettingData());
+        forestView.build(getProjectMetrics(), settingView.getSettingData());
         getTreeView().setSceneGraph(null);
     }
     
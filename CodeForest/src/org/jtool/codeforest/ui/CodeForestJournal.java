@@ -0,0 +1,485 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui;
+
+import org.jtool.codeforest.ui.view.control.InteractionRecord;
+import org.jtool.codeforest.ui.view.control.Memo;
+import org.jtool.codeforest.ui.view.SettingData;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * An append-only journal that records changes of interaction records and memos as they happen.
+ * Each change is appended as one line with a sequence number, and the file is synchronized with the disk periodically.
+ * @author Katsuhisa Maruyama
+ */
+public class CodeForestJournal {
+    
+    /**
+     * The kinds of changes recorded in the journal.
+     */
+    private static final String ADD_INTERACTION    = "I";
+    private static final String EDIT_INTERACTION   = "D";
+    private static final String REMOVE_INTERACTION = "X";
+    private static final String ADD_MEMO           = "M";
+    private static final String REMOVE_MEMO        = "R";
+    
+    /**
+     * The field terminating a complete line, which detects a line truncated by a crash.
+     */
+    private static final String END_OF_RECORD = ".";
+    
+    /**
+     * The character encoding of the journal file.
+     */
+    private static final String ENCODING = "UTF-8";
+    
+    /**
+     * The journal file.
+     */
+    private File file;
+    
+    /**
+     * The output stream of the journal file.
+     */
+    private FileOutputStream out;
+    
+    /**
+     * The writer of the journal file.
+     */
+    private Writer writer;
+    
+    /**
+     * The sequence number of the last change.
+     */
+    private long lastSeq = 0;
+    
+    /**
+     * The number of changes appended since the journal was truncated.
+     */
+    private int size = 0;
+    
+    /**
+     * A flag indicating if some changes have not been synchronized with the disk.
+     */
+    private boolean dirty = false;
+    
+    /**
+     * Creates a journal.
+     * @param file the journal file
+     */
+    public CodeForestJournal(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Returns the journal file.
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the sequence number of the last change.
+     * @return the sequence number
+     */
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+    
+    /**
+     * Returns the number of changes appended since the journal was truncated.
+     * @return the number of the changes
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Opens the journal for appending changes.
+     * @param seq the sequence number of the last change already applied
+     */
+    public synchronized void open(long seq) {
+        if (seq > lastSeq) {
+            lastSeq = seq;
+        }
+        try {
+            boolean truncated = endsWithPartialLine();
+            out = new FileOutputStream(file, true);
+            writer = new BufferedWriter(new OutputStreamWriter(out, ENCODING));
+            if (truncated) {
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Journal: Open error occurred: " + e.getMessage() + ".");
+            out = null;
+            writer = null;
+        }
+    }
+    
+    /**
+     * Tests if the journal file ends with a line truncated by a crash.
+     * @return <code>true</code> if the last line is not terminated, otherwise <code>false</code>
+     * @throws IOException if the journal file cannot be read
+     */
+    private boolean endsWithPartialLine() throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+        
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(file.length() - 1);
+            return raf.read() != '\n';
+        } finally {
+            raf.close();
+        }
+    }
+    
+    /**
+     * Closes the journal after synchronizing it with the disk.
+     */
+    public synchronized void close() {
+        sync();
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) { /* empty */ }
+        writer = null;
+        out = null;
+    }
+    
+    /**
+     * Synchronizes the appended changes with the disk.
+     */
+    public synchronized void sync() {
+        if (!dirty || out == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            out.getFD().sync();
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Journal: Sync error occurred: " + e.getMessage() + ".");
+        }
+    }
+    
+    /**
+     * Appends the addition of an interaction record.
+     * @param record the added interaction record
+     */
+    public void addInteractionRecord(InteractionRecord record) {
+        append(new String[] { ADD_INTERACTION, String.valueOf(record.getTime()), String.valueOf(record.getType()), record.getDescription(),
+                              record.getTrunkHeight(), record.getTrunkRadius(), record.getTrunkColor(),
+                              record.getFoliageHeight(), record.getFoliageRadius(), record.getFoliageColor() });
+    }
+    
+    /**
+     * Appends the change of the description of an interaction record.
+     * @param record the changed interaction record
+     */
+    public void editInteractionRecord(InteractionRecord record) {
+        append(new String[] { EDIT_INTERACTION, String.valueOf(record.getTime()), record.getDescription() });
+    }
+    
+    /**
+     * Appends the removal of an interaction record.
+     * @param record the removed interaction record
+     */
+    public void removeInteractionRecord(InteractionRecord record) {
+        append(new String[] { REMOVE_INTERACTION, String.valueOf(record.getTime()) });
+    }
+    
+    /**
+     * Appends the addition of a memo.
+     * @param memo the added memo
+     */
+    public void addMemo(Memo memo) {
+        append(new String[] { ADD_MEMO, String.valueOf(memo.getTime()), memo.getClassName(), memo.getComments() });
+    }
+    
+    /**
+     * Appends the removal of a memo.
+     * @param memo the removed memo
+     */
+    public void removeMemo(Memo memo) {
+        append(new String[] { REMOVE_MEMO, String.valueOf(memo.getTime()), memo.getClassName() });
+    }
+    
+    /**
+     * Appends a line of a change.
+     * The line is passed to the operating system immediately, and synchronized with the disk by <code>sync()</code>.
+     * @param fields the fields of the change
+     */
+    private synchronized void append(String[] fields) {
+        if (writer == null) {
+            return;
+        }
+        
+        lastSeq++;
+        StringBuffer buf = new StringBuffer();
+        buf.append(String.valueOf(lastSeq));
+        for (String field : fields) {
+            buf.append('\t');
+            escape(buf, field);
+        }
+        buf.append('\t');
+        buf.append(END_OF_RECORD);
+        buf.append('\n');
+        
+        try {
+            writer.write(buf.toString());
+            writer.flush();
+            size++;
+            dirty = true;
+        } catch (IOException e) {
+            System.err.println("Journal: Write error occurred: " + e.getMessage() + ".");
+        }
+    }
+    
+    /**
+     * Replays the changes recorded in the journal file onto lists of interaction records and memos.
+     * @param records the list of interaction records to be changed
+     * @param memos the list of memos to be changed
+     * @param fromSeq the sequence number of the last change already applied to the lists
+     * @param toSeq the sequence number of the last change to be applied, or <code>-1</code> for all the changes
+     * @return the sequence number of the last change recorded in the journal file
+     */
+    public long replay(List<InteractionRecord> records, List<Memo> memos, long fromSeq, long toSeq) {
+        long last = fromSeq;
+        if (!file.canRead()) {
+            return last;
+        }
+        
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = split(line);
+                if (fields.length < 3 || !fields[fields.length - 1].equals(END_OF_RECORD)) {
+                    continue;
+                }
+                
+                long seq;
+                try {
+                    seq = Long.parseLong(fields[0]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (seq > last) {
+                    last = seq;
+                }
+                if (seq <= fromSeq || (toSeq >= 0 && seq > toSeq)) {
+                    continue;
+                }
+                
+                try {
+                    apply(fields, records, memos);
+                } catch (NumberFormatException e) { /* empty */
+                } catch (ArrayIndexOutOfBoundsException e) { /* empty */ }
+            }
+            
+        } catch (IOException e) {
+            System.err.println("Journal: Read error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        return last;
+    }
+    
+    /**
+     * Applies a change onto lists of interaction records and memos.
+     * @param fields the fields of the change
+     * @param records the list of interaction records to be changed
+     * @param memos the list of memos to be changed
+     */
+    private void apply(String[] fields, List<InteractionRecord> records, List<Memo> memos) {
+        String kind = fields[1];
+        long time = Long.parseLong(fields[2]);
+        
+        if (kind.equals(ADD_INTERACTION)) {
+            SettingData data = new SettingData(fields[5], fields[6], fields[7], fields[8], fields[9], fields[10]);
+            records.add(new InteractionRecord(time, fields[4], Integer.parseInt(fields[3]), data));
+            
+        } else if (kind.equals(EDIT_INTERACTION)) {
+            for (int i = 0; i < records.size(); i++) {
+                InteractionRecord record = records.get(i);
+                if (record.getTime() == time) {
+                    SettingData data = new SettingData(record.getTrunkHeight(), record.getTrunkRadius(), record.getTrunkColor(),
+                                                       record.getFoliageHeight(), record.getFoliageRadius(), record.getFoliageColor());
+                    records.set(i, new InteractionRecord(time, fields[3], record.getType(), data));
+                    break;
+                }
+            }
+            
+        } else if (kind.equals(REMOVE_INTERACTION)) {
+            for (Iterator<InteractionRecord> it = records.iterator(); it.hasNext(); ) {
+                if (it.next().getTime() == time) {
+                    it.remove();
+                    break;
+                }
+            }
+            
+        } else if (kind.equals(ADD_MEMO)) {
+            memos.add(new Memo(time, fields[3], fields[4]));
+            
+        } else if (kind.equals(REMOVE_MEMO)) {
+            for (Iterator<Memo> it = memos.iterator(); it.hasNext(); ) {
+                Memo memo = it.next();
+                if (memo.getTime() == time && memo.getClassName().equals(fields[3])) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes the changes whose sequence numbers are not greater than a given one from the journal file.
+     * The remaining changes are copied into a temporary file, which replaces the journal file.
+     * @param seq the sequence number of the last change to be removed
+     */
+    public synchronized void truncate(long seq) {
+        File tmpfile = new File(file.getPath() + ".tmp");
+        boolean wasOpen = writer != null;
+        close();
+        
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = null;
+        Writer tmpwriter = null;
+        try {
+            if (file.canRead()) {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = split(line);
+                    if (!fields[fields.length - 1].equals(END_OF_RECORD)) {
+                        continue;
+                    }
+                    try {
+                        if (Long.parseLong(fields[0]) > seq) {
+                            lines.add(line);
+                        }
+                    } catch (NumberFormatException e) { /* empty */ }
+                }
+                reader.close();
+                reader = null;
+            }
+            
+            FileOutputStream tmpout = new FileOutputStream(tmpfile);
+            tmpwriter = new BufferedWriter(new OutputStreamWriter(tmpout, ENCODING));
+            for (String line : lines) {
+                tmpwriter.write(line);
+                tmpwriter.write('\n');
+            }
+            tmpwriter.flush();
+            tmpout.getFD().sync();
+            tmpwriter.close();
+            tmpwriter = null;
+            
+            if (!tmpfile.renameTo(file)) {
+                file.delete();
+                tmpfile.renameTo(file);
+            }
+            size = lines.size();
+            
+        } catch (IOException e) {
+            System.err.println("Journal: Truncate error occurred: " + e.getMessage() + ".");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) { /* empty */ }
+            }
+            if (tmpwriter != null) {
+                try {
+                    tmpwriter.close();
+                } catch (IOException e) { /* empty */ }
+            }
+        }
+        
+        if (wasOpen) {
+            open(lastSeq);
+        }
+    }
+    
+    /**
+     * Appends a field escaping tabs, line breaks, and backslashes.
+     * @param buf the buffer of the line
+     * @param str the string of the field
+     */
+    private static void escape(StringBuffer buf, String str) {
+        if (str == null) {
+            return;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '\\') {
+                buf.append("\\\\");
+            } else if (ch == '\t') {
+                buf.append("\\t");
+            } else if (ch == '\n') {
+                buf.append("\\n");
+            } else if (ch == '\r') {
+                buf.append("\\r");
+            } else {
+                buf.append(ch);
+            }
+        }
+    }
+    
+    /**
+     * Splits a line into unescaped fields.
+     * @param line the line
+     * @return the fields
+     */
+    private static String[] split(String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '\t') {
+                fields.add(buf.toString());
+                buf.setLength(0);
+            } else if (ch == '\\' && i + 1 < line.length()) {
+                i++;
+                char next = line.charAt(i);
+                if (next == 't') {
+                    buf.append('\t');
+                } else if (next == 'n') {
+                    buf.append('\n');
+                } else if (next == 'r') {
+                    buf.append('\r');
+                } else {
+                    buf.append(next);
+                }
+            } else {
+                buf.append(ch);
+            }
+        }
+        fields.add(buf.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+}
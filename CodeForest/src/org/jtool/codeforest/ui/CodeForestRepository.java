@@ -12,16 +12,24 @@ import org.jtool.codeforest.ui.view.control.Memo;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.util.Time;
 import org.jtool.codeforest.util.XMLWriter;
-import org.jtool.codeforest.util.XMLReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Text;
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Stores setting data as a working set of metrics.
@@ -37,6 +45,7 @@ public class CodeForestRepository {
     private static final String NameAttr          = "name";
     private static final String DateAttr          = "date";
     private static final String TimeAttr          = "time";
+    private static final String SeqAttr           = "seq";
     
     private static final String InteractionElem   = "interactionRecord";
     private static final String DescriptionAttr   = "desc";
@@ -66,6 +75,36 @@ public class CodeForestRepository {
      */
     private MemoView memoView;
     
+    /**
+     * The interval of synchronizing the journal with the disk in milliseconds.
+     */
+    private static final long SYNC_INTERVAL = 1000;
+    
+    /**
+     * The number of changes in the journal that triggers compaction.
+     */
+    private static final int COMPACTION_THRESHOLD = 256;
+    
+    /**
+     * The journal that records changes since the XML file was written.
+     */
+    private CodeForestJournal journal;
+    
+    /**
+     * The executor that synchronizes the journal and compacts it into the XML file in the background.
+     */
+    private ScheduledExecutorService executor;
+    
+    /**
+     * A flag indicating if compaction has been requested but not finished yet.
+     */
+    private boolean compactionPending = false;
+    
+    /**
+     * The XML file storing interaction records and memos.
+     */
+    private File file;
+    
     /**
      * Creates a repository that stores information on a forest.
      * @param frame the main frame
@@ -74,6 +113,9 @@ public class CodeForestRepository {
         projectMetrics = frame.getProjectMetrics();
         interactionView = frame.getInteractionView();
         memoView = frame.getMemoView();
+        
+        file = new File(getXMLFileName(projectMetrics));
+        journal = new CodeForestJournal(new File(getJournalFileName(projectMetrics)));
     }
     
     /**
@@ -97,18 +139,187 @@ public class CodeForestRepository {
         return topdir + File.separator + filename;
     }
     
+    /**
+     * The extension of the name of a journal file. 
+     */
+    private static final String JOURNAL_FILENAME_EXT = ".journal";
+    
+    /**
+     * The extension appended to the name of an XML file that cannot be read.
+     */
+    private static final String BROKEN_FILENAME_EXT = ".broken";
+    
+    /**
+     * Obtains the name of a journal file.
+     * @param mproject the project metrics
+     * @return the name
+     */
+    private String getJournalFileName(ProjectMetrics mproject) {
+        String topdir = mproject.getJavaProject().getTopDir();
+        String filename = XML_FILENAME + String.valueOf(mproject.getTime()) + JOURNAL_FILENAME_EXT;
+        return topdir + File.separator + filename;
+    }
+    
+    /**
+     * Records the addition of an interaction record into the journal.
+     * @param record the added interaction record
+     */
+    public void addInteractionRecord(InteractionRecord record) {
+        journal.addInteractionRecord(record);
+        requestCompaction();
+    }
+    
+    /**
+     * Records the change of the description of an interaction record into the journal.
+     * @param record the changed interaction record
+     */
+    public void editInteractionRecord(InteractionRecord record) {
+        journal.editInteractionRecord(record);
+        requestCompaction();
+    }
+    
+    /**
+     * Records the removal of an interaction record into the journal.
+     * @param record the removed interaction record
+     */
+    public void removeInteractionRecord(InteractionRecord record) {
+        journal.removeInteractionRecord(record);
+        requestCompaction();
+    }
+    
+    /**
+     * Records the addition of a memo into the journal.
+     * @param memo the added memo
+     */
+    public void addMemo(Memo memo) {
+        journal.addMemo(memo);
+        requestCompaction();
+    }
+    
+    /**
+     * Records the removal of a memo into the journal.
+     * @param memo the removed memo
+     */
+    public void removeMemo(Memo memo) {
+        journal.removeMemo(memo);
+        requestCompaction();
+    }
+    
+    /**
+     * Requests compaction in the background if the journal has grown enough.
+     */
+    private synchronized void requestCompaction() {
+        if (executor == null || compactionPending || journal.size() < COMPACTION_THRESHOLD) {
+            return;
+        }
+        
+        compactionPending = true;
+        executor.execute(new Runnable() {
+            
+            /**
+             * Compacts the journal.
+             */
+            public void run() {
+                compact();
+                synchronized (CodeForestRepository.this) {
+                    compactionPending = false;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Starts the executor that synchronizes the journal and compacts it in the background.
+     */
+    private synchronized void startExecutor() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            
+            /**
+             * Creates a daemon thread.
+             * @param r the task to be run by the thread
+             * @return the created thread
+             */
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CodeForest Journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        executor.scheduleWithFixedDelay(new Runnable() {
+            
+            /**
+             * Synchronizes the journal with the disk.
+             */
+            public void run() {
+                journal.sync();
+            }
+        }, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
     /**
      * Writes information on a project into an XML document.
+     * The journal is closed immediately and compacted into the XML document in the background.
      */
     public void writeXML() {
-        File file = new File(getXMLFileName(projectMetrics));
-        if (file.exists()) {
-            file.delete();
+        journal.close();
+        
+        ExecutorService service;
+        synchronized (this) {
+            service = executor;
+            executor = null;
+        }
+        
+        if (service == null) {
+            compact();
+            return;
+        }
+        
+        service.execute(new Runnable() {
+            
+            /**
+             * Compacts the journal.
+             */
+            public void run() {
+                compact();
+            }
+        });
+        service.shutdown();
+    }
+    
+    /**
+     * Compacts the changes recorded in the journal into the XML file.
+     * The XML file is written atomically, and the compacted changes are removed from the journal only if it has been written.
+     * An XML file that cannot be read is moved aside, so that the journal is compacted into a new XML file.
+     */
+    private void compact() {
+        journal.sync();
+        long seq = journal.getLastSeq();
+        
+        List<InteractionRecord> records = new ArrayList<InteractionRecord>();
+        List<Memo> memos = new ArrayList<Memo>();
+        long xmlSeq = read(records, memos);
+        if (xmlSeq < 0) {
+            setAside();
+            xmlSeq = read(records, memos);
+        }
+        if (xmlSeq < 0 || seq <= xmlSeq) {
+            return;
+        }
+        
+        journal.replay(records, memos, xmlSeq, seq);
+        
+        Document doc = getDocument(projectMetrics.getName(), records, memos, seq);
+        if (doc == null) {
+            return;
         }
         
-        Document doc = getDocument(projectMetrics);
-        XMLWriter.write(file, doc);
+        if (!XMLWriter.writeAtomically(file, doc)) {
+            return;
+        }
         System.out.println("- Export: " + file.getAbsolutePath());
+        
+        journal.truncate(seq);
     }
     
     /**
@@ -117,10 +328,22 @@ public class CodeForestRepository {
      * @return the XML document object
      */
     public Document getDocument(ProjectMetrics mproject) {
+        return getDocument(mproject.getName(), interactionView.getInteractionRecordList(), memoView.getMemoList(), journal.getLastSeq());
+    }
+    
+    /**
+     * Obtains the XML document object storing interaction records and memos.
+     * @param name the name of the project
+     * @param records the interaction records
+     * @param memos the memos
+     * @param seq the sequence number of the last change of the journal reflected in the document
+     * @return the XML document object
+     */
+    private Document getDocument(String name, List<InteractionRecord> records, List<Memo> memos, long seq) {
         try {
             DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
             Document doc = builder.newDocument();
-            export(doc, mproject);
+            export(doc, name, records, memos, seq);
             return doc;
             
         } catch (ParserConfigurationException e) {
@@ -132,19 +355,23 @@ public class CodeForestRepository {
     /**
      * Exports information on a project to an XML document object.
      * @param doc the XML document object
-     * @param mproject the project metrics
+     * @param name the name of the project
+     * @param records the interaction records
+     * @param memos the memos
+     * @param seq the sequence number of the last change of the journal reflected in the document
      */
-    private void export(Document doc, ProjectMetrics mproject) {
+    private void export(Document doc, String name, List<InteractionRecord> records, List<Memo> memos, long seq) {
         Element rootElem = doc.createElement(CodeForestRepository.TopElem);
-        rootElem.setAttribute(CodeForestRepository.NameAttr, mproject.getName());
+        rootElem.setAttribute(CodeForestRepository.NameAttr, name);
         rootElem.setAttribute(CodeForestRepository.DateAttr, Time.toString(Time.getCurrentTime()));
+        rootElem.setAttribute(CodeForestRepository.SeqAttr, String.valueOf(seq));
         doc.appendChild(rootElem);
         
-        for (InteractionRecord record : interactionView.getInteractionRecordList()) {
+        for (InteractionRecord record : records) {
             exportInteractionRecord(doc, rootElem, record);
         }
         
-        for (Memo memo : memoView.getMemoList()) {
+        for (Memo memo : memos) {
             exportMemo(doc, rootElem, memo);
         }
     }
@@ -187,79 +414,150 @@ public class CodeForestRepository {
     }
     
     /**
-     * Reads the XML document and stores information on interaction records and memos.
+     * Reads the XML document and the journal, and stores information on interaction records and memos.
+     * The lists of the views are replaced only after both have been read, and an XML file that cannot be read is moved aside.
      */
     public void readXML() {
-        File file = new File(getXMLFileName(projectMetrics));
-        if (file.canRead()) {
-            Document doc = XMLReader.read(file);
-            
-            NodeList list = doc.getElementsByTagName(CodeForestRepository.TopElem);
-            if (list.getLength() > 0) {
-                Element rootElem = (Element)list.item(0);
-                
-                readInteractionRecord(rootElem);
-                readMemo(rootElem);
-                
-                interactionView.sort();
-                memoView.sort();
-            }
+        List<InteractionRecord> records = new ArrayList<InteractionRecord>();
+        List<Memo> memos = new ArrayList<Memo>();
+        
+        long seq = read(records, memos);
+        if (seq < 0) {
+            setAside();
+            seq = 0;
         }
+        seq = journal.replay(records, memos, seq, -1);
+        
+        List<InteractionRecord> recordList = interactionView.getInteractionRecordList();
+        recordList.clear();
+        recordList.addAll(records);
+        List<Memo> memoList = memoView.getMemoList();
+        memoList.clear();
+        memoList.addAll(memos);
+        
+        interactionView.sort();
+        memoView.sort();
+        
+        journal.open(seq);
+        startExecutor();
+        requestCompaction();
     }
     
     /**
-     * Reads information on interaction records.
-     * @param rootElem the XML element that stores the interaction records
+     * Moves the XML file that cannot be read aside, where it is kept so that its contents can be recovered by hand.
      */
-    private void readInteractionRecord(Element rootElem) {
-        NodeList interactionRecordNodes = rootElem.getElementsByTagName(CodeForestRepository.InteractionElem);
-        for (int i = 0; i < interactionRecordNodes.getLength(); i++) {
-            Node node = interactionRecordNodes.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element elem = (Element)node;
-                
-                long time = getLong(elem.getAttribute(CodeForestRepository.TimeAttr));
-                String description = elem.getAttribute(CodeForestRepository.DescriptionAttr);
-                int type = getInteger(elem.getAttribute(CodeForestRepository.TypeAttr));
-                String th = elem.getAttribute(CodeForestRepository.TrunkHeightAttr);
-                String tr = elem.getAttribute(CodeForestRepository.TrunkRadiusAttr);
-                String tc = elem.getAttribute(CodeForestRepository.TrunkColorAttr);
-                String fh = elem.getAttribute(CodeForestRepository.FoliageHeightAttr);
-                String fr = elem.getAttribute(CodeForestRepository.FoliageRadiusAttr);
-                String fc = elem.getAttribute(CodeForestRepository.FoliageColorAttr);
-                
-                SettingData data = new SettingData(th, tr, tc, fh, fr, fc);
-                InteractionRecord record = new InteractionRecord(time, description, type, data);
-                interactionView.add(record);
-            }
+    private void setAside() {
+        File broken = new File(file.getPath() + BROKEN_FILENAME_EXT);
+        broken.delete();
+        if (file.renameTo(broken)) {
+            System.err.println("! Move unreadable repository aside: " + broken.getAbsolutePath());
         }
     }
     
     /**
-     * Reads information on memos.
-     * @param rootElem the XML element that stores the memos
+     * Reads interaction records and memos from the XML file as a stream.
+     * The lists are changed only if the whole XML file has been read.
+     * @param records the list that stores the read interaction records
+     * @param memos the list that stores the read memos
+     * @return the sequence number of the last change of the journal reflected in the XML file,
+     *         or <code>-1</code> if the XML file cannot be read
      */
-    private void readMemo(Element rootElem) {
-        NodeList memoNodes = rootElem.getElementsByTagName(CodeForestRepository.MemoElem);
-        for (int i = 0; i < memoNodes.getLength(); i++) {
-            Node node = memoNodes.item(i);
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element elem = (Element)node;
+    private long read(List<InteractionRecord> records, List<Memo> memos) {
+        if (!file.exists()) {
+            return 0;
+        }
+        
+        final List<InteractionRecord> readRecords = new ArrayList<InteractionRecord>();
+        final List<Memo> readMemos = new ArrayList<Memo>();
+        final long[] seq = new long[1];
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(file, new DefaultHandler() {
                 
-                long time = getLong(elem.getAttribute(CodeForestRepository.TimeAttr));
-                String className = elem.getAttribute(CodeForestRepository.ClassNameAttr);
-                String comments = "";
+                /**
+                 * The attributes of the memo being read.
+                 */
+                private long memoTime;
+                private String memoClassName;
                 
-                NodeList nodes = elem.getChildNodes();
-                Node text = nodes.item(0);
-                if (text.getNodeType() == Node.TEXT_NODE) {
-                    comments = ((Text)text).getNodeValue();
+                /**
+                 * The comments of the memo being read, or <code>null</code> if no memo is being read.
+                 */
+                private StringBuffer comments;
+                
+                /**
+                 * Receives notification of the start of an element.
+                 * @param uri the namespace URI
+                 * @param localName the local name
+                 * @param qName the qualified name
+                 * @param attrs the attributes attached to the element
+                 */
+                public void startElement(String uri, String localName, String qName, Attributes attrs) {
+                    if (qName.equals(CodeForestRepository.TopElem)) {
+                        String str = attrs.getValue(CodeForestRepository.SeqAttr);
+                        if (str != null) {
+                            seq[0] = getLong(str);
+                        }
+                        
+                    } else if (qName.equals(CodeForestRepository.InteractionElem)) {
+                        long time = getLong(attrs.getValue(CodeForestRepository.TimeAttr));
+                        String description = attrs.getValue(CodeForestRepository.DescriptionAttr);
+                        int type = getInteger(attrs.getValue(CodeForestRepository.TypeAttr));
+                        String th = attrs.getValue(CodeForestRepository.TrunkHeightAttr);
+                        String tr = attrs.getValue(CodeForestRepository.TrunkRadiusAttr);
+                        String tc = attrs.getValue(CodeForestRepository.TrunkColorAttr);
+                        String fh = attrs.getValue(CodeForestRepository.FoliageHeightAttr);
+                        String fr = attrs.getValue(CodeForestRepository.FoliageRadiusAttr);
+                        String fc = attrs.getValue(CodeForestRepository.FoliageColorAttr);
+                        
+                        SettingData data = new SettingData(th, tr, tc, fh, fr, fc);
+                        readRecords.add(new InteractionRecord(time, description, type, data));
+                        
+                    } else if (qName.equals(CodeForestRepository.MemoElem)) {
+                        memoTime = getLong(attrs.getValue(CodeForestRepository.TimeAttr));
+                        memoClassName = attrs.getValue(CodeForestRepository.ClassNameAttr);
+                        comments = new StringBuffer();
+                    }
                 }
                 
-                Memo memo = new Memo(time, className, comments);
-                memoView.add(memo);
-            }
+                /**
+                 * Receives notification of character data inside an element.
+                 * @param ch the characters
+                 * @param start the start position in the character array
+                 * @param length the number of characters to use from the character array
+                 */
+                public void characters(char[] ch, int start, int length) {
+                    if (comments != null) {
+                        comments.append(ch, start, length);
+                    }
+                }
+                
+                /**
+                 * Receives notification of the end of an element.
+                 * @param uri the namespace URI
+                 * @param localName the local name
+                 * @param qName the qualified name
+                 */
+                public void endElement(String uri, String localName, String qName) {
+                    if (qName.equals(CodeForestRepository.MemoElem) && comments != null) {
+                        readMemos.add(new Memo(memoTime, memoClassName, comments.toString()));
+                        comments = null;
+                    }
+                }
+            });
+            records.addAll(readRecords);
+            memos.addAll(readMemos);
+            return seq[0];
+            
+        } catch (ParserConfigurationException e) {
+            e.printStackTrace();
+        } catch (SAXException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
         }
+        return -1;
     }
     
     /**
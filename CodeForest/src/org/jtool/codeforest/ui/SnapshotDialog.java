@@ -0,0 +1,357 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui;
+
+import org.jtool.codeforest.metrics.java.MetricsManager;
+import org.jtool.codeforest.metrics.java.SnapshotCatalog;
+import org.jtool.codeforest.util.Time;
+import org.eclipse.jface.viewers.DoubleClickEvent;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.TitleAreaDialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.SelectionListener;
+import java.io.File;
+
+/**
+ * Lists snapshots of metric values stored in a project and selects one of them to be opened.
+ * @author Katsuhisa Maruyama
+ */
+public class SnapshotDialog extends TitleAreaDialog {
+    
+    /**
+     * The manager of metric values.
+     */
+    private MetricsManager manager;
+    
+    /**
+     * The path of the top directory of the project.
+     */
+    private String topdir;
+    
+    /**
+     * The catalog of the snapshots.
+     */
+    private SnapshotCatalog catalog;
+    
+    /**
+     * The table viewer.
+     */
+    private TableViewer tableViewer;
+    
+    /**
+     * The ok button of this dialog.
+     */
+    private Button okButton;
+    
+    /**
+     * The selected snapshot, or <code>null</code> if none.
+     */
+    private SnapshotCatalog.Entry selectedEntry;
+    
+    /**
+     * The path of the file chosen by browsing, or <code>null</code> if none.
+     */
+    private String browsedPath;
+    
+    /**
+     * Creates a snapshot dialog.
+     * @param shell the shell
+     * @param manager the manager of metric values
+     * @param topdir the path of the top directory of the project
+     */
+    public SnapshotDialog(Shell shell, MetricsManager manager, String topdir) {
+        super(shell);
+        
+        this.manager = manager;
+        this.topdir = topdir;
+    }
+    
+    /**
+     * Configures a given shell.
+     * @param shell the shell
+     */
+    protected void configureShell(Shell shell) {
+        super.configureShell(shell);
+        shell.setText("Open Snapshot");
+    }
+    
+    /**
+     * Returns the initial size of this dialog.
+     * @return the initial size of the dialog
+     */
+    protected Point getInitialSize() {
+        return new Point(600, 500);
+    }
+    
+    /**
+     * Creates this dialog.
+     */
+    public void create() {
+        setHelpAvailable(false);
+        setDialogHelpAvailable(false);
+        
+        super.create();
+        setTitle("Open a snapshot of metric values");
+        setMessage("Select a snapshot stored in " + topdir + ".");
+    }
+    
+    /**
+     *  Creates the area for this dialog.
+     *  @param parent the parent of this dialog
+     */
+    protected Control createDialogArea(Composite parent) {
+        Composite container = (Composite)super.createDialogArea(parent);
+        
+        Composite base = new Composite(container, SWT.NONE);
+        base.setLayoutData(new GridData(GridData.FILL_BOTH));
+        GridLayout layout = new GridLayout(2, false);
+        base.setLayout(layout);
+        
+        tableViewer = new TableViewer(base, SWT.BORDER | SWT.SINGLE | SWT.FULL_SELECTION | SWT.V_SCROLL);
+        tableViewer.setContentProvider(new ArrayContentProvider());
+        tableViewer.setLabelProvider(new SnapshotLabelProvider());
+        tableViewer.getTable().setLayoutData(new GridData(GridData.FILL_BOTH));
+        tableViewer.getTable().setLinesVisible(true);
+        tableViewer.getTable().setHeaderVisible(true);
+        
+        createColumn("Time", SWT.LEFT, 150);
+        createColumn("Format", SWT.LEFT, 70);
+        createColumn("Classes", SWT.RIGHT, 70);
+        createColumn("LOC", SWT.RIGHT, 80);
+        createColumn("Size", SWT.RIGHT, 80);
+        
+        tableViewer.addSelectionChangedListener(new ISelectionChangedListener() {
+            
+            /**
+             * Invoked when the selection has changed.
+             * @param event event object describing the change
+             */
+            public void selectionChanged(SelectionChangedEvent event) {
+                IStructuredSelection selection = (IStructuredSelection)tableViewer.getSelection();
+                Object obj = selection.getFirstElement();
+                if (obj instanceof SnapshotCatalog.Entry) {
+                    selectedEntry = (SnapshotCatalog.Entry)obj;
+                } else {
+                    selectedEntry = null;
+                }
+                if (okButton != null) {
+                    okButton.setEnabled(selectedEntry != null);
+                }
+            }
+        });
+        
+        tableViewer.addDoubleClickListener(new IDoubleClickListener() {
+            
+            /**
+             * Invoked when a mouse double click occurs.
+             * @param event event object describing the double-click
+             */
+            public void doubleClick(DoubleClickEvent event) {
+                if (selectedEntry != null) {
+                    okPressed();
+                }
+            }
+        });
+        
+        Composite buttons = new Composite(base, SWT.NONE);
+        buttons.setLayoutData(new GridData(GridData.FILL_VERTICAL));
+        buttons.setLayout(new GridLayout(1, false));
+        
+        Button browseButton = new Button(buttons, SWT.FLAT);
+        browseButton.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        browseButton.setText("Browse...");
+        
+        browseButton.addSelectionListener(new SelectionListener() {
+            
+            /**
+             * Invoked when selection occurs in the control.
+             * @param e an event containing information about the selection
+             */
+            public void widgetSelected(SelectionEvent e) {
+                FileDialog dialog = new FileDialog(getShell(), SWT.NULL);
+                dialog.setFilterPath(topdir);
+                String path = dialog.open();
+                if (path != null && new File(path).isFile()) {
+                    browsedPath = path;
+                    selectedEntry = null;
+                    SnapshotDialog.super.okPressed();
+                }
+            }
+            
+            /**
+             * Invoked when default selection occurs in the control.
+             * @param e an event containing information about the default selection
+             */
+            public void widgetDefaultSelected(SelectionEvent e) {
+            }
+        });
+        
+        Button removeButton = new Button(buttons, SWT.FLAT);
+        removeButton.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        removeButton.setText("Remove");
+        
+        removeButton.addSelectionListener(new SelectionListener() {
+            
+            /**
+             * Invoked when selection occurs in the control.
+             * @param e an event containing information about the selection
+             */
+            public void widgetSelected(SelectionEvent e) {
+                if (selectedEntry == null) {
+                    return;
+                }
+                
+                if (selectedEntry.isHistory()) {
+                    MessageDialog.openInformation(getShell(), "Open Snapshot", "Versions recorded in the history cannot be removed.");
+                } else if (MessageDialog.openConfirm(getShell(), "Open Snapshot", "Remove the snapshot at " + Time.toString(selectedEntry.getTime()) + "?")) {
+                    if (!catalog.remove(selectedEntry)) {
+                        MessageDialog.openInformation(getShell(), "Open Snapshot", "The snapshot is still open in a forest and cannot be removed.");
+                    }
+                    catalog.refresh();
+                    refresh();
+                }
+            }
+            
+            /**
+             * Invoked when default selection occurs in the control.
+             * @param e an event containing information about the default selection
+             */
+            public void widgetDefaultSelected(SelectionEvent e) {
+            }
+        });
+        
+        parent.pack();
+        
+        catalog = manager.updateCatalog(topdir);
+        refresh();
+        return container;
+    }
+    
+    /**
+     * Creates a column of the table.
+     * @param name the name of the column
+     * @param style the style of the column
+     * @param width the width of the column
+     */
+    private void createColumn(String name, int style, int width) {
+        TableColumn column = new TableColumn(tableViewer.getTable(), style);
+        column.setText(name);
+        column.setWidth(width);
+        column.setResizable(true);
+    }
+    
+    /**
+     * Refreshes this dialog.
+     */
+    void refresh() {
+        selectedEntry = null;
+        tableViewer.setInput(catalog.getEntries());
+        tableViewer.refresh(true, true);
+        if (okButton != null) {
+            okButton.setEnabled(false);
+        }
+    }
+    
+    /**
+     * Adds buttons to this dialog's button bar.
+     * @param the parent of this dialog
+     */
+    protected void createButtonsForButtonBar(Composite parent) {
+        createButton(parent, IDialogConstants.CANCEL_ID, IDialogConstants.CANCEL_LABEL, false);
+        okButton = createButton(parent, IDialogConstants.OK_ID, IDialogConstants.OPEN_LABEL, true);
+        okButton.setEnabled(selectedEntry != null);
+    }
+    
+    /**
+     * Returns the selected snapshot.
+     * @return the entry of the selected snapshot, or <code>null</code> if a file was chosen by browsing
+     */
+    public SnapshotCatalog.Entry getSelectedEntry() {
+        return selectedEntry;
+    }
+    
+    /**
+     * Returns the path of the file chosen by browsing.
+     * @return the path of the file, or <code>null</code> if a snapshot was selected from the list
+     */
+    public String getBrowsedPath() {
+        return browsedPath;
+    }
+    
+    /**
+     * Converts a size in bytes into its readable string.
+     * @param size the size in bytes
+     * @return the string representing the size
+     */
+    private static String toSizeString(long size) {
+        if (size < 1024) {
+            return String.valueOf(size) + " B";
+        } else if (size < 1024 * 1024) {
+            return String.valueOf(size / 1024) + " KB";
+        }
+        return String.format("%.1f MB", new Double(size / (1024.0 * 1024.0)));
+    }
+    
+    /**
+     * A label provider that provides label texts of a table.
+     * @author Katsuhisa Maruyama
+     */
+    private class SnapshotLabelProvider extends LabelProvider implements ITableLabelProvider {
+        
+        /**
+         * Returns the label text for the given column of the given element.
+         * @param obj the object representing the entire row
+         * @param columnIndex the zero-based index of the column in which the label appears
+         * @return the label text or or <code>null</code> if there is no label text
+         */
+        public String getColumnText(Object obj, int columnIndex) {
+            if (obj instanceof SnapshotCatalog.Entry) {
+                SnapshotCatalog.Entry entry = (SnapshotCatalog.Entry)obj;
+                if (columnIndex == 0) {
+                    return Time.toString(entry.getTime());
+                } else if (columnIndex == 1) {
+                    return entry.getFormat();
+                } else if (columnIndex == 2) {
+                    return entry.getNumberOfClasses() >= 0 ? String.valueOf(entry.getNumberOfClasses()) : "";
+                } else if (columnIndex == 3) {
+                    return entry.getLinesOfCode() >= 0 ? String.valueOf(entry.getLinesOfCode()) : "";
+                } else if (columnIndex == 4) {
+                    return toSizeString(entry.getSize());
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Returns the label image for the given column of the given element.
+         * @param obj the object representing the entire row
+         * @param columnIndex the zero-based index of the column in which the label appears
+         * @return the image or <code>null</code> if there is no image
+         */
+        public Image getColumnImage(Object obj, int columnIndex) {
+            return null;
+        }
+    }
+}
@@ -125,6 +125,18 @@ public class ForestTree extends MetricsTree {
      */
     private static final Color3f SETECTED_COLOR = new Color3f(0.5f, 0.0f, 0.5f);
     
+    /**
+     * The color of the trunk of a tree in a highlighted hierarchy.
+     */
+    private static final Color3f HIGHLIGHTED_COLOR = new Color3f(0.0f, 0.4f, 1.0f);
+    
+    /**
+     * The colors of the trunks of trees affected by a change, indexed by the distance from the changed tree minus one.
+     */
+    private static final Color3f[] IMPACTED_COLORS = {
+        new Color3f(1.0f, 0.0f, 0.0f), new Color3f(1.0f, 0.5f, 0.0f), new Color3f(1.0f, 1.0f, 0.0f)
+    };
+    
     /**
      * Creates a tree in a forest view.
      * @param mclass a class represented by the tree
@@ -309,37 +321,37 @@ public class ForestTree extends MetricsTree {
         metric = data.getTrunkHeight();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK HEIGHT = " + metric.getName() + " : " + getMetricValuePerAverage(metric, classMetrics));
-            setTrunkHeight(adjust(getMetricValuePerAverage(metric) / 2));
+            setTrunkHeight(adjust(getNormalizedValue(metric, data) / 2));
         }
         
         metric = data.getTrunkRadius();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK RADIUS = " + metric.getName() + " : " + getMetricValue(metric, classMetrics));
-            setTrunkRadius(adjust(getMetricValuePerAverage(metric) / 3));
+            setTrunkRadius(adjust(getNormalizedValue(metric, data) / 3));
         }
         
         metric = data.getTrunkColor();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK COLOR = " + metric.getName() + " : " + getMetricValuePerMax(metric, classMetrics));
-            setTrunkColorRate(getMetricValuePerMax(metric));
+            setTrunkColorRate(getNormalizedRate(metric, data));
         }
         
         metric = data.getFoliageHeight();
         if (metric.isClassMetric()) {
             // System.out.println("FOLIAGE HEIGHT = " + metric.getName() + " : " + getMetricValuePerMax(metric, classMetrics));
-            setFoliageHeightRate(getMetricValuePerMax(metric));
+            setFoliageHeightRate(getNormalizedRate(metric, data));
         }
         
         metric = data.getFoliageRadius();
         if (metric.isClassMetric()) {
             // System.out.println("FOLIAGE RADIUS = " + metric.getName() + " " + getMetricValuePerMax(metric, classMetrics));
-            setFoliageRadiusRate(getMetricValuePerMax(metric));
+            setFoliageRadiusRate(getNormalizedRate(metric, data));
         }
         
         metric = data.getFoliageColor();
         if (metric.isClassMetric()) {
             // System.out.println("FOLIAGE COLOR = " + metric.getName() + " : " + getMetricValuePerMax(metric, classMetrics));
-            setFoliageColorRate(getMetricValuePerMax(metric));
+            setFoliageColorRate(getNormalizedRate(metric, data));
         }
     }
     
@@ -474,4 +486,28 @@ public class ForestTree extends MetricsTree {
             material.setSpecularColor(foliageColor);
         }
     }
+    
+    /**
+     * Highlights the trunk of a tree.
+     * @param isHighlighted <code>true</code> this tree is highlighted, otherwise <code>false</code>
+     */
+    public void changedHighlighted(boolean isHighlighted) {
+        changedHighlighted(isHighlighted ? 0 : -1);
+    }
+    
+    /**
+     * Highlights the trunk of a tree with the color of a level.
+     * Level <code>0</code> is the color of a highlighted hierarchy, and the colors of higher levels fade from red to yellow.
+     * @param level the level of the highlighting, or a negative value if this tree is not highlighted
+     */
+    public void changedHighlighted(int level) {
+        Material material = trunkAppearance.getMaterial();
+        if (level < 0) {
+            material.setSpecularColor(trunkColor);
+        } else if (level == 0) {
+            material.setSpecularColor(HIGHLIGHTED_COLOR);
+        } else {
+            material.setSpecularColor(IMPACTED_COLORS[Math.min(level, IMPACTED_COLORS.length) - 1]);
+        }
+    }
 }
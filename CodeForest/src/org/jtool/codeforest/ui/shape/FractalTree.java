@@ -327,20 +327,20 @@ public class FractalTree extends MetricsTree {
         metric = data.getTrunkHeight();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK HEIGHT = " + metric.getName() + " : " + getMetricValuePerAverage(metric, classMetrics));
-            setTrunkHeight(adjust(getMetricValuePerAverage(metric) / 2));
+            setTrunkHeight(adjust(getNormalizedValue(metric, data) / 2));
         }
         
         metric = data.getTrunkRadius();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK RADIUS = " + metric.getName() + " : " + getMetricValue(metric, classMetrics));
             // setTrunkRadius(adjust(getMetricValue(metric, classMetrics) / 2));
-            setTrunkRadius(adjust(getMetricValuePerAverage(metric) / 3));
+            setTrunkRadius(adjust(getNormalizedValue(metric, data) / 3));
         }
         
         metric = data.getTrunkColor();
         if (metric.isClassMetric()) {
             // System.out.println("TRUNK COLOR = " + metric.getName() + " : " + getMetricValuePerMax(metric, classMetrics));
-            setTrunkColorRate(getMetricValuePerMax(metric));
+            setTrunkColorRate(getNormalizedRate(metric, data));
         }
     }
     
@@ -54,6 +54,21 @@ public class Ground extends AbstractShape {
      */
     private double height;
     
+    /**
+     * The default color of a ground.
+     */
+    private static final Color3f DEFAULT_COLOR = new Color3f(0.3f, 0.4f, 0.2f);
+    
+    /**
+     * The color of this ground.
+     */
+    private final Color3f groundColor = new Color3f(DEFAULT_COLOR);
+    
+    /**
+     * A flag indicating that this ground is colored by a metric or not.
+     */
+    private boolean colored = false;
+    
     /**
      * Creates a ground.
      * @param width the width of the ground
@@ -79,6 +94,21 @@ public class Ground extends AbstractShape {
         hasRiver = bool;
     }
     
+    /**
+     * Sets the color rate of this ground, which changes from the default color to red as the rate increases.
+     * @param percentage the percentage of the color of the ground, or a negative value for the default color
+     */
+    public void setColorRate(double percentage) {
+        if (percentage >= 0) {
+            float rate = (float)Math.min(1.0, percentage);
+            groundColor.set(0.3f + 0.7f * rate, 0.4f * (1.0f - rate), 0.2f * (1.0f - rate));
+            colored = true;
+        } else {
+            groundColor.set(DEFAULT_COLOR);
+            colored = false;
+        }
+    }
+    
     /**
      * Sets the appearance of this ground.
      */
@@ -96,9 +126,11 @@ public class Ground extends AbstractShape {
                     new Vector4f(0.0f, 0.0f, 1.0f, 0.0f));
         appearance.setTexCoordGeneration(texgen);
         
-        Color3f groundColor = new Color3f(0.3f, 0.4f, 0.2f);
         Material groundMt = new Material();
         groundMt.setSpecularColor(groundColor);
+        if (colored) {
+            groundMt.setDiffuseColor(groundColor);
+        }
         groundMt.setShininess(0.7f);
         groundMt.setCapability(Material.ALLOW_COMPONENT_READ);
         groundMt.setCapability(Material.ALLOW_COMPONENT_WRITE);
@@ -74,7 +74,7 @@ public class Leaves extends MetricsLeaf {
      * @param mmethod the method represented by the tree
      */
     public Leaves(FractalTree tree, MethodMetrics mmethod) {
-        super(mmethod);
+        super(tree.classMetrics, mmethod);
         
         leafNumber = leaf_DEFAULT_NUMBER;
         leafSize = leaf_DEFAULT_SIZE;
@@ -182,13 +182,13 @@ public class Leaves extends MetricsLeaf {
         metric = data.getLeafNumber();
         if (metric.isClassMetric()) {
             // System.out.println("LEAF NUMBER = " + metric.getName() + " " + getMetricValuePerMax(metric, classMetrics));
-            setLeafNumberRate(getMetricValuePerMax(metric));
+            setLeafNumberRate(getNormalizedRate(metric, data));
         }
         
         metric = data.getLeafColor();
         if (metric.isClassMetric()) {
             // System.out.println("LEAF COLOR = " + metric.getName() + " : " + getMetricValuePerMax(metric, classMetrics));
-            setLeafColorRate(getMetricValuePerMax(metric));
+            setLeafColorRate(getNormalizedRate(metric, data));
         }
     }
     
@@ -5,9 +5,10 @@
 package org.jtool.codeforest.ui.shape;
 
 import org.jtool.codeforest.metrics.IMetric;
-import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import org.jtool.codeforest.metrics.java.ClassMetrics;
 import org.jtool.codeforest.metrics.java.MethodMetrics;
+import org.jtool.codeforest.ui.view.SettingData;
 
 /**
  * Represents a leaf with metrics values.
@@ -20,11 +21,18 @@ public abstract class MetricsLeaf {
      */
     protected final MethodMetrics methodMetrics;
     
+    /**
+     * The metrics of a class represented by the tree having this leaf, which belongs to the version of the project being displayed.
+     */
+    protected final ClassMetrics classMetrics;
+    
     /**
      * Creates a leaf with metric values.
-     * @param mclass the metrics of a method represented by this leaf
+     * @param mclass the metrics of a class represented by the tree having this leaf
+     * @param mmethod the metrics of a method represented by this leaf
      */
-    protected MetricsLeaf(MethodMetrics mmethod) {
+    protected MetricsLeaf(ClassMetrics mclass, MethodMetrics mmethod) {
+        classMetrics = mclass;
         methodMetrics = mmethod;
     }
     
@@ -58,60 +66,25 @@ public abstract class MetricsLeaf {
     }
     
     /**
-     * Obtains the value of a specified metric.
+     * Obtains the value of a specified metric relative to the typical value, which is normalized as the setting data specifies.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the average of all the values
+     * @param data the setting data that selects the normalization
+     * @return the metric value per the median of all the values in percentile normalization, otherwise per the average
      */
-    protected double getMetricValuePerAverage(IMetric metric) {
-        try {
-            double value = metric.getValue(methodMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
-            double cnum = methodMetrics.getClassMetrics().getMetricValue(MetricSort.NUMBER_OF_CLASSES);
-            double average = metric.getTotalValue(methodMetrics) / cnum;
-            if (average != 0) {
-                value = value / average / 1;
-            } else {
-                value = 0;
-            }
-            
-            return value;
-            
-        } catch (UnsupportedMetricsException e) {
-            System.out.println(e.getMessage());
-        }
-        
-        return -1;
+    protected double getNormalizedValue(IMetric metric, SettingData data) {
+        NormalizationFactors factors = NormalizationFactors.get(classMetrics.getPackageMetrics().getProjectMetrics(), data);
+        return factors.normalizeValue(metric, classMetrics, methodMetrics, getMetricValue(metric));
     }
     
     /**
-     * Obtains the value of a specified metric.
+     * Obtains the rate of the value of a specified metric, which is normalized as the setting data specifies.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the maximum of all the values
+     * @param data the setting data that selects the normalization
+     * @return the metric value per the 95th percentile of all the values in percentile normalization, otherwise per the maximum
      */
-    protected double getMetricValuePerMax(IMetric metric) {
-        try {
-            double value = metric.getValue(methodMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
-            double max = metric.getMaximumValue(methodMetrics);
-            if (max != 0) {
-                value = value / max;
-            } else {
-                value = 0;
-            }
-            
-            return value;
-            
-        } catch (UnsupportedMetricsException e) {
-            System.out.println(e.getMessage());
-        }
-        
-        return -1;
+    protected double getNormalizedRate(IMetric metric, SettingData data) {
+        NormalizationFactors factors = NormalizationFactors.get(classMetrics.getPackageMetrics().getProjectMetrics(), data);
+        return factors.normalizeRate(metric, classMetrics, methodMetrics, getMetricValue(metric));
     }
     
     /**
@@ -5,10 +5,9 @@
 package org.jtool.codeforest.ui.shape;
 
 import org.jtool.codeforest.metrics.IMetric;
-import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.codeforest.metrics.java.ClassMetrics;
-import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.ui.view.SettingData;
 
 /**
  * Represents a tree with metrics values.
@@ -69,61 +68,25 @@ public abstract class MetricsTree extends AbstractShape {
     }
     
     /**
-     * Obtains the value of a specified metric.
+     * Obtains the value of a specified metric relative to the typical value, which is normalized as the setting data specifies.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the average of all the values
+     * @param data the setting data that selects the normalization
+     * @return the metric value per the median of all the values in percentile normalization, otherwise per the average
      */
-    protected double getMetricValuePerAverage(IMetric metric) {
-        try {
-            double value = metric.getValue(classMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
-            ProjectMetrics mproject = classMetrics.getPackageMetrics().getProjectMetrics();
-            double cnum = mproject.getMetricValue(MetricSort.NUMBER_OF_CLASSES);
-            double average = metric.getTotalValue(classMetrics) / cnum;
-            if (average != 0) {
-                value = value / average / 1;
-            } else {
-                value = 0;
-            }
-            
-            return value;
-            
-        } catch (UnsupportedMetricsException e) {
-            System.out.println(e.getMessage());
-        }
-        
-        return -1;
+    protected double getNormalizedValue(IMetric metric, SettingData data) {
+        NormalizationFactors factors = NormalizationFactors.get(classMetrics.getPackageMetrics().getProjectMetrics(), data);
+        return factors.normalizeValue(metric, classMetrics, getMetricValue(metric));
     }
     
     /**
-     * Obtains the value of a specified metric.
+     * Obtains the rate of the value of a specified metric, which is normalized as the setting data specifies.
      * @param metric the metric whose value will be obtained
-     * @return the metric value per the maximum of all the values
+     * @param data the setting data that selects the normalization
+     * @return the metric value per the 95th percentile of all the values in percentile normalization, otherwise per the maximum
      */
-    protected double getMetricValuePerMax(IMetric metric) {
-        try {
-            double value = metric.getValue(classMetrics);
-            if (value < 0) {
-                return -1;
-            }
-            
-            double max = metric.getMaximumValue(classMetrics);
-            if (max != 0) {
-                value = value / max;
-            } else {
-                value = 0;
-            }
-            
-            return value;
-            
-        } catch (UnsupportedMetricsException e) {
-            System.out.println(e.getMessage());
-        }
-        
-        return -1;
+    protected double getNormalizedRate(IMetric metric, SettingData data) {
+        NormalizationFactors factors = NormalizationFactors.get(classMetrics.getPackageMetrics().getProjectMetrics(), data);
+        return factors.normalizeRate(metric, classMetrics, getMetricValue(metric));
     }
     
     /**
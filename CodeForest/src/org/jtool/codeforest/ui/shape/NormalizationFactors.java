@@ -0,0 +1,285 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui.shape;
+
+import org.jtool.codeforest.metrics.IMetric;
+import org.jtool.codeforest.metrics.MetricSort;
+import org.jtool.codeforest.metrics.UnsupportedMetricsException;
+import org.jtool.codeforest.metrics.java.ClassMetrics;
+import org.jtool.codeforest.metrics.java.MethodMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.QuantileSketch;
+import org.jtool.codeforest.ui.view.SettingData;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the factors that normalize metric values of trees and leaves, which are shared by all the shapes of a project.
+ * A factor depends only on a metric, the version of the project, and the normalization selected by the setting data,
+ * so that it is calculated once when the first shape needs it and each shape only divides its own value.
+ * The factors are kept for each version of a project, so frames showing different versions do not evict each other,
+ * and are released when the version is no longer referenced.
+ * @author Katsuhisa Maruyama
+ */
+public class NormalizationFactors {
+    
+    /**
+     * The quantile that replaces the average of the values in percentile normalization.
+     */
+    private static final double MEDIAN = 0.5;
+    
+    /**
+     * The quantile that replaces the maximum of the values in percentile normalization, above which values are saturated.
+     */
+    private static final double UPPER_PERCENTILE = 0.95;
+    
+    /**
+     * The factors of each version of a project, indexed by whether percentile normalization is selected.
+     * A version is weakly referenced, so the factors never keep the version alive.
+     */
+    private static Map<ProjectMetrics, NormalizationFactors[]> cache = new WeakHashMap<ProjectMetrics, NormalizationFactors[]>();
+    
+    /**
+     * <code>true</code> if values are normalized by their percentiles, or <code>false</code> by their maximum or average.
+     */
+    private final boolean percentile;
+    
+    /**
+     * The factors of class metrics relative to the typical value, keyed by the names of the metrics.
+     */
+    private Map<String, Factor> classValueFactors = new HashMap<String, Factor>();
+    
+    /**
+     * The factors of class metrics that give rates, keyed by the names of the metrics.
+     */
+    private Map<String, Factor> classRateFactors = new HashMap<String, Factor>();
+    
+    /**
+     * The factors of method metrics relative to the typical value over the project, keyed by the names of the metrics.
+     */
+    private Map<String, Factor> methodValueFactors = new HashMap<String, Factor>();
+    
+    /**
+     * The factors of method metrics that give rates over the project, keyed by the names of the metrics.
+     */
+    private Map<String, Factor> methodRateFactors = new HashMap<String, Factor>();
+    
+    /**
+     * The factors of method metrics within each class, which are used if no factor over the project is available.
+     */
+    private Map<ClassMetrics, Map<String, Factor>> methodFactorsInClass = new WeakHashMap<ClassMetrics, Map<String, Factor>>();
+    
+    /**
+     * Creates an empty cache of the factors.
+     * @param percentile <code>true</code> if values are normalized by their percentiles, otherwise <code>false</code>
+     */
+    private NormalizationFactors(boolean percentile) {
+        this.percentile = percentile;
+    }
+    
+    /**
+     * Obtains the factors for a version of a project and the normalization selected by setting data, which are created on the first request.
+     * @param mproject the project whose values are normalized
+     * @param data the setting data that selects the normalization
+     * @return the factors
+     */
+    public static synchronized NormalizationFactors get(ProjectMetrics mproject, SettingData data) {
+        NormalizationFactors[] factors = cache.get(mproject);
+        if (factors == null) {
+            factors = new NormalizationFactors[2];
+            cache.put(mproject, factors);
+        }
+        
+        int index = data.isPercentileNormalization() ? 1 : 0;
+        if (factors[index] == null) {
+            factors[index] = new NormalizationFactors(data.isPercentileNormalization());
+        }
+        return factors[index];
+    }
+    
+    /**
+     * Normalizes the value of a class metric relative to the typical value.
+     * @param metric the metric
+     * @param mclass the class having the value
+     * @param value the value of the metric
+     * @return the value per the median in percentile normalization, otherwise per the average, or <code>-1</code> if the value is invalid
+     */
+    public double normalizeValue(IMetric metric, ClassMetrics mclass, double value) {
+        return getClassFactor(metric, mclass, false).apply(value);
+    }
+    
+    /**
+     * Normalizes the value of a class metric into a rate.
+     * @param metric the metric
+     * @param mclass the class having the value
+     * @param value the value of the metric
+     * @return the value per the 95th percentile in percentile normalization, otherwise per the maximum, or <code>-1</code> if the value is invalid
+     */
+    public double normalizeRate(IMetric metric, ClassMetrics mclass, double value) {
+        return getClassFactor(metric, mclass, true).apply(value);
+    }
+    
+    /**
+     * Normalizes the value of a method metric relative to the typical value.
+     * @param metric the metric
+     * @param mclass the class containing the method in the version of the project being displayed
+     * @param mmethod the method having the value
+     * @param value the value of the metric
+     * @return the value per the median in percentile normalization, otherwise per the average, or <code>-1</code> if the value is invalid
+     */
+    public double normalizeValue(IMetric metric, ClassMetrics mclass, MethodMetrics mmethod, double value) {
+        return getMethodFactor(metric, mclass, mmethod, false).apply(value);
+    }
+    
+    /**
+     * Normalizes the value of a method metric into a rate.
+     * @param metric the metric
+     * @param mclass the class containing the method in the version of the project being displayed
+     * @param mmethod the method having the value
+     * @param value the value of the metric
+     * @return the value per the 95th percentile in percentile normalization, otherwise per the maximum, or <code>-1</code> if the value is invalid
+     */
+    public double normalizeRate(IMetric metric, ClassMetrics mclass, MethodMetrics mmethod, double value) {
+        return getMethodFactor(metric, mclass, mmethod, true).apply(value);
+    }
+    
+    /**
+     * Obtains the factor of a class metric, which is calculated on the first request.
+     * @param metric the metric
+     * @param mclass a class of the project
+     * @param rate <code>true</code> if the factor gives rates, or <code>false</code> if it gives values relative to the typical value
+     * @return the factor
+     */
+    private synchronized Factor getClassFactor(IMetric metric, ClassMetrics mclass, boolean rate) {
+        Map<String, Factor> factors = rate ? classRateFactors : classValueFactors;
+        Factor factor = factors.get(metric.getName());
+        if (factor == null) {
+            ProjectMetrics projectMetrics = mclass.getPackageMetrics().getProjectMetrics();
+            factor = percentile ? getPercentileFactor(projectMetrics.getClassQuantiles(metric.getName()), rate) : null;
+            if (factor == null) {
+                try {
+                    if (rate) {
+                        factor = new Factor(metric.getMaximumValue(mclass), false);
+                    } else {
+                        double cnum = projectMetrics.getMetricValue(MetricSort.NUMBER_OF_CLASSES);
+                        factor = new Factor(metric.getTotalValue(mclass) / cnum, false);
+                    }
+                } catch (UnsupportedMetricsException e) {
+                    System.out.println(e.getMessage());
+                    factor = new Factor(Double.NaN, false);
+                }
+            }
+            factors.put(metric.getName(), factor);
+        }
+        return factor;
+    }
+    
+    /**
+     * Obtains the factor of a method metric, which is calculated on the first request.
+     * The factor within the class of the method is used unless percentile normalization gives one over the project.
+     * @param metric the metric
+     * @param mclass the class containing the method in the version of the project being displayed
+     * @param mmethod the method
+     * @param rate <code>true</code> if the factor gives rates, or <code>false</code> if it gives values relative to the typical value
+     * @return the factor
+     */
+    private synchronized Factor getMethodFactor(IMetric metric, ClassMetrics mclass, MethodMetrics mmethod, boolean rate) {
+        Map<String, Factor> factors = rate ? methodRateFactors : methodValueFactors;
+        if (!factors.containsKey(metric.getName())) {
+            ProjectMetrics projectMetrics = mclass.getPackageMetrics().getProjectMetrics();
+            factors.put(metric.getName(), percentile ? getPercentileFactor(projectMetrics.getMethodQuantiles(metric.getName()), rate) : null);
+        }
+        Factor factor = factors.get(metric.getName());
+        if (factor != null) {
+            return factor;
+        }
+        
+        Map<String, Factor> inClass = methodFactorsInClass.get(mclass);
+        if (inClass == null) {
+            inClass = new HashMap<String, Factor>();
+            methodFactorsInClass.put(mclass, inClass);
+        }
+        String key = (rate ? "rate:" : "value:") + metric.getName();
+        factor = inClass.get(key);
+        if (factor == null) {
+            try {
+                if (rate) {
+                    factor = new Factor(metric.getMaximumValue(mmethod), false);
+                } else {
+                    double cnum = mclass.getMetricValue(MetricSort.NUMBER_OF_CLASSES);
+                    factor = new Factor(metric.getTotalValue(mmethod) / cnum, false);
+                }
+            } catch (UnsupportedMetricsException e) {
+                System.out.println(e.getMessage());
+                factor = new Factor(Double.NaN, false);
+            }
+            inClass.put(key, factor);
+        }
+        return factor;
+    }
+    
+    /**
+     * Creates the factor of percentile normalization.
+     * @param sketch the quantile sketch of the values, or <code>null</code> if none
+     * @param rate <code>true</code> if the factor gives rates, or <code>false</code> if it gives values relative to the median
+     * @return the factor, or <code>null</code> if there is no sketch or the percentile is not positive
+     */
+    private Factor getPercentileFactor(QuantileSketch sketch, boolean rate) {
+        if (sketch == null) {
+            return null;
+        }
+        
+        double divisor = sketch.getQuantile(rate ? UPPER_PERCENTILE : MEDIAN);
+        if (!(divisor > 0)) {
+            return null;
+        }
+        return new Factor(divisor, rate);
+    }
+    
+    /**
+     * A divisor that normalizes metric values.
+     * @author Katsuhisa Maruyama
+     */
+    private static class Factor {
+        
+        /**
+         * The divisor, which is <code>NaN</code> if it could not be obtained.
+         */
+        private final double divisor;
+        
+        /**
+         * <code>true</code> if normalized values are saturated at <code>1</code>, otherwise <code>false</code>.
+         */
+        private final boolean saturated;
+        
+        /**
+         * Creates a factor.
+         * @param divisor the divisor, which is <code>NaN</code> if it could not be obtained
+         * @param saturated <code>true</code> if normalized values are saturated at <code>1</code>, otherwise <code>false</code>
+         */
+        Factor(double divisor, boolean saturated) {
+            this.divisor = divisor;
+            this.saturated = saturated;
+        }
+        
+        /**
+         * Normalizes a metric value.
+         * @param value the metric value, which is negative if it is invalid
+         * @return the normalized value, which is <code>0</code> if the divisor is zero, or <code>-1</code> if the value or the divisor is invalid
+         */
+        double apply(double value) {
+            if (value < 0 || Double.isNaN(divisor)) {
+                return -1;
+            }
+            if (divisor == 0) {
+                return 0;
+            }
+            
+            double result = value / divisor;
+            return saturated ? Math.min(result, 1) : result;
+        }
+    }
+}
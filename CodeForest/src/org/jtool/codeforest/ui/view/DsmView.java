@@ -0,0 +1,300 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui.view;
+
+import org.jtool.codeforest.metrics.java.PackageCycles;
+import org.jtool.codeforest.metrics.java.PackageDependencies;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.events.MouseEvent;
+import org.eclipse.swt.events.MouseMoveListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.ScrollBar;
+
+/**
+ * Provides a view that displays the dependency structure matrix among packages.
+ * A row depends on a column if their cell is marked, and the packages are partitioned so that cycles form blocks on the diagonal.
+ * Only the cells in the visible window of the matrix are drawn.
+ * @author Katsuhisa Maruyama
+ */
+public class DsmView {
+    
+    /**
+     * The size of a cell in pixels.
+     */
+    private static final int CELL_SIZE = 12;
+    
+    /**
+     * Information on the font
+     */
+    private Font font11;
+    
+    /**
+     * A label that displays the summary of the matrix or the packages of the pointed cell.
+     */
+    private Label label;
+    
+    /**
+     * A canvas on which the matrix is drawn.
+     */
+    private Canvas canvas;
+    
+    /**
+     * The color of a cycle block.
+     */
+    private Color cycleColor;
+    
+    /**
+     * The color of a dependency within a cycle.
+     */
+    private Color cyclicDependencyColor;
+    
+    /**
+     * The partitioned packages of the displayed project, or <code>null</code> if none.
+     */
+    private PackageCycles cycles = null;
+    
+    /**
+     * Creates a view of the dependency structure matrix.
+     * @param parent the parent of the view
+     * @param mproject the metrics of a project
+     */
+    public DsmView(Composite parent, ProjectMetrics mproject) {
+        createPane(parent);
+        setProjectMetrics(mproject);
+    }
+    
+    /**
+     * Creates the pane of this view.
+     * @param parent the parent of the view
+     */
+    private void createPane(Composite parent) {
+        font11 = new Font(parent.getDisplay(), "", 11, SWT.NORMAL);
+        cycleColor = new Color(parent.getDisplay(), 255, 220, 220);
+        cyclicDependencyColor = new Color(parent.getDisplay(), 220, 0, 0);
+        
+        parent.setLayout(new GridLayout(1, false));
+        
+        label = new Label(parent, SWT.NONE);
+        label.setFont(font11);
+        label.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        
+        canvas = new Canvas(parent, SWT.BORDER | SWT.H_SCROLL | SWT.V_SCROLL | SWT.DOUBLE_BUFFERED);
+        canvas.setLayoutData(new GridData(GridData.FILL_BOTH));
+        canvas.setBackground(parent.getDisplay().getSystemColor(SWT.COLOR_WHITE));
+        
+        canvas.addPaintListener(new PaintListener() {
+            
+            /**
+             * Draws the visible window of the matrix.
+             * @param evt the paint event
+             */
+            public void paintControl(PaintEvent evt) {
+                paint(evt.gc);
+            }
+        });
+        
+        canvas.addListener(SWT.Resize, new Listener() {
+            
+            /**
+             * Adjusts the scroll bars to the size of the canvas.
+             * @param evt the resize event
+             */
+            public void handleEvent(Event evt) {
+                updateScrollBars();
+            }
+        });
+        
+        canvas.addMouseMoveListener(new MouseMoveListener() {
+            
+            /**
+             * Displays the packages of the pointed cell.
+             * @param evt the mouse event
+             */
+            public void mouseMove(MouseEvent evt) {
+                showCell(evt.x, evt.y);
+            }
+        });
+        
+        SelectionAdapter scroller = new SelectionAdapter() {
+            
+            /**
+             * Redraws the matrix when it is scrolled.
+             * @param evt the selection event
+             */
+            public void widgetSelected(SelectionEvent evt) {
+                canvas.redraw();
+            }
+        };
+        canvas.getHorizontalBar().addSelectionListener(scroller);
+        canvas.getVerticalBar().addSelectionListener(scroller);
+    }
+    
+    /**
+     * Replaces the displayed project with another version of it.
+     * The cycles are recalculated incrementally from those of the previously displayed version.
+     * @param mproject the metrics of the project
+     */
+    public void setProjectMetrics(ProjectMetrics mproject) {
+        if (mproject == null) {
+            return;
+        }
+        
+        cycles = PackageCycles.update(cycles, mproject.getPackageDependencies());
+        
+        if (canvas != null && !canvas.isDisposed()) {
+            label.setText(getSummary());
+            updateScrollBars();
+            canvas.redraw();
+        }
+    }
+    
+    /**
+     * Returns the summary of the matrix.
+     * @return the summary string
+     */
+    private String getSummary() {
+        if (cycles == null) {
+            return "";
+        }
+        return cycles.size() + " packages, " + cycles.getCycleCount() + " cycles (" + cycles.getPackageCountInCycles() + " packages)";
+    }
+    
+    /**
+     * Adjusts the ranges of the scroll bars to the size of the matrix and the canvas.
+     */
+    private void updateScrollBars() {
+        Rectangle area = canvas.getClientArea();
+        int extent = cycles != null ? cycles.size() * CELL_SIZE : 0;
+        setScrollBar(canvas.getHorizontalBar(), extent, area.width);
+        setScrollBar(canvas.getVerticalBar(), extent, area.height);
+    }
+    
+    /**
+     * Sets the range of a scroll bar.
+     * @param bar the scroll bar
+     * @param extent the size of the matrix in pixels
+     * @param visible the size of the visible area in pixels
+     */
+    private void setScrollBar(ScrollBar bar, int extent, int visible) {
+        bar.setMaximum(Math.max(extent, 1));
+        bar.setThumb(Math.max(Math.min(visible, extent), 1));
+        bar.setPageIncrement(Math.max(visible, 1));
+        bar.setIncrement(CELL_SIZE);
+        bar.setSelection(Math.min(bar.getSelection(), Math.max(extent - visible, 0)));
+    }
+    
+    /**
+     * Draws the cells of the matrix within the visible window.
+     * @param gc the graphics context
+     */
+    private void paint(GC gc) {
+        if (cycles == null || cycles.size() == 0) {
+            return;
+        }
+        
+        PackageDependencies dependencies = cycles.getDependencies();
+        Rectangle area = canvas.getClientArea();
+        int x0 = canvas.getHorizontalBar().getSelection();
+        int y0 = canvas.getVerticalBar().getSelection();
+        int size = cycles.size();
+        int firstColumn = x0 / CELL_SIZE;
+        int lastColumn = Math.min(size, (x0 + area.width) / CELL_SIZE + 1);
+        int firstRow = y0 / CELL_SIZE;
+        int lastRow = Math.min(size, (y0 + area.height) / CELL_SIZE + 1);
+        
+        int first = Math.max(firstRow, firstColumn);
+        int last = Math.min(lastRow, lastColumn);
+        if (first < last) {
+            gc.setBackground(cycleColor);
+            for (int c = cycles.getComponent(cycles.getPackageAt(first)); c < cycles.getComponentCount() && cycles.getBlockStart(c) < last; c++) {
+                int start = cycles.getBlockStart(c);
+                int end = cycles.getBlockEnd(c);
+                if (end - start > 1) {
+                    gc.fillRectangle(start * CELL_SIZE - x0, start * CELL_SIZE - y0, (end - start) * CELL_SIZE, (end - start) * CELL_SIZE);
+                }
+            }
+            
+            gc.setBackground(canvas.getDisplay().getSystemColor(SWT.COLOR_GRAY));
+            for (int pos = first; pos < last; pos++) {
+                gc.fillRectangle(pos * CELL_SIZE - x0 + 1, pos * CELL_SIZE - y0 + 1, CELL_SIZE - 1, CELL_SIZE - 1);
+            }
+        }
+        
+        Color dependencyColor = canvas.getDisplay().getSystemColor(SWT.COLOR_DARK_BLUE);
+        for (int row = firstRow; row < lastRow; row++) {
+            int i = cycles.getPackageAt(row);
+            for (int column = firstColumn; column < lastColumn; column++) {
+                int j = cycles.getPackageAt(column);
+                if (dependencies.dependsOn(i, j)) {
+                    gc.setBackground(cycles.getComponent(i) == cycles.getComponent(j) ? cyclicDependencyColor : dependencyColor);
+                    gc.fillRectangle(column * CELL_SIZE - x0 + 2, row * CELL_SIZE - y0 + 2, CELL_SIZE - 3, CELL_SIZE - 3);
+                }
+            }
+        }
+        
+        gc.setForeground(canvas.getDisplay().getSystemColor(SWT.COLOR_WIDGET_LIGHT_SHADOW));
+        for (int row = firstRow; row <= lastRow; row++) {
+            gc.drawLine(0, row * CELL_SIZE - y0, area.width, row * CELL_SIZE - y0);
+        }
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            gc.drawLine(column * CELL_SIZE - x0, 0, column * CELL_SIZE - x0, area.height);
+        }
+    }
+    
+    /**
+     * Displays the packages of a cell on the label.
+     * @param x the x-coordinate of the mouse pointer on the canvas
+     * @param y the y-coordinate of the mouse pointer on the canvas
+     */
+    private void showCell(int x, int y) {
+        if (cycles == null) {
+            return;
+        }
+        
+        int row = (y + canvas.getVerticalBar().getSelection()) / CELL_SIZE;
+        int column = (x + canvas.getHorizontalBar().getSelection()) / CELL_SIZE;
+        if (row < 0 || row >= cycles.size() || column < 0 || column >= cycles.size()) {
+            label.setText(getSummary());
+            return;
+        }
+        
+        PackageDependencies dependencies = cycles.getDependencies();
+        int i = cycles.getPackageAt(row);
+        int j = cycles.getPackageAt(column);
+        String mark = dependencies.dependsOn(i, j) ? " -> " : " / ";
+        String text = dependencies.getName(i) + mark + dependencies.getName(j);
+        if (cycles.isInCycle(i) && cycles.getComponent(i) == cycles.getComponent(j)) {
+            text = text + " (cycle)";
+        }
+        label.setText(text);
+    }
+    
+    /**
+     * Disposes this view.
+     */
+    public void dispose() {
+        font11.dispose();
+        cycleColor.dispose();
+        cyclicDependencyColor.dispose();
+        
+        canvas = null;
+        cycles = null;
+    }
+}
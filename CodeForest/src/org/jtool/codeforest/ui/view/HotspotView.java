@@ -0,0 +1,444 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.ui.view;
+
+import org.jtool.codeforest.metrics.java.Hotspots;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.SimilarClasses;
+import org.jtool.codeforest.ui.CodeForestFrame;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * Provides a view that lists the worst classes or methods by a metric or a weighted combination of metrics.
+ * Weights are written like <code>WMC=1 CBO=0.5 LCOV=-1</code>, and the robust distance ranks them if no weight is written.
+ * Selecting a class or method flies the camera to the tree of its class.
+ * The hotspots are built in the background when the view is first shown, and only for complete versions of a project.
+ * The view also lists the classes similar to a class, which are found in the forest view.
+ * @author Katsuhisa Maruyama
+ */
+public class HotspotView {
+    
+    /**
+     * The item of the combo box that lists classes.
+     */
+    private static final String CLASSES = "Classes";
+    
+    /**
+     * The item of the combo box that lists methods.
+     */
+    private static final String METHODS = "Methods";
+    
+    /**
+     * Information on the font
+     */
+    private Font font11;
+    
+    /**
+     * The combo box that selects classes or methods.
+     */
+    private Combo kindSel;
+    
+    /**
+     * The text that holds the weights of the metrics.
+     */
+    private Text weightText;
+    
+    /**
+     * The check box that lists only outliers.
+     */
+    private Button outlierCheck;
+    
+    /**
+     * A label that displays the summary of the found classes or methods.
+     */
+    private Label label;
+    
+    /**
+     * The table that lists the found classes or methods.
+     */
+    private Table table;
+    
+    /**
+     * The main frame.
+     */
+    private CodeForestFrame frame;
+    
+    /**
+     * The metrics of the displayed project, or <code>null</code> if no complete version has been given.
+     */
+    private ProjectMetrics projectMetrics = null;
+    
+    /**
+     * The hotspots of the displayed project, or <code>null</code> if they have not been built yet.
+     */
+    private Hotspots hotspots = null;
+    
+    /**
+     * <code>true</code> if this view has been shown, otherwise <code>false</code>.
+     */
+    private boolean shown = false;
+    
+    /**
+     * <code>true</code> while the hotspots are built in the background, otherwise <code>false</code>.
+     */
+    private boolean building = false;
+    
+    /**
+     * The classes or methods listed in the table.
+     */
+    private List<Hotspots.Entry> entries = new ArrayList<Hotspots.Entry>();
+    
+    /**
+     * The fully-qualified names of the classes of the rows in the table.
+     */
+    private List<String> listedClasses = new ArrayList<String>();
+    
+    /**
+     * The class whose similar classes are listed, or <code>null</code> if the hotspots are listed.
+     */
+    private String similarClass = null;
+    
+    /**
+     * Creates a view of hotspots.
+     * @param parent the parent of the view
+     * @param frame the main frame
+     * @param mproject the metrics of a project
+     */
+    public HotspotView(Composite parent, CodeForestFrame frame, ProjectMetrics mproject) {
+        this.frame = frame;
+        createPane(parent);
+        setProjectMetrics(mproject);
+    }
+    
+    /**
+     * Creates the pane of this view.
+     * @param parent the parent of the view
+     */
+    private void createPane(Composite parent) {
+        font11 = new Font(parent.getDisplay(), "", 11, SWT.NORMAL);
+        
+        parent.setLayout(new GridLayout(5, false));
+        
+        kindSel = new Combo(parent, SWT.READ_ONLY);
+        kindSel.setFont(font11);
+        kindSel.setItems(new String[] { CLASSES, METHODS });
+        kindSel.select(0);
+        
+        weightText = new Text(parent, SWT.BORDER | SWT.SINGLE);
+        weightText.setFont(font11);
+        weightText.setToolTipText("Weights of metrics such as WMC=1 CBO=0.5 LCOV=-1, or empty for the robust distance");
+        weightText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        
+        outlierCheck = new Button(parent, SWT.CHECK);
+        outlierCheck.setFont(font11);
+        outlierCheck.setText("Outliers only");
+        
+        Button findButton = new Button(parent, SWT.FLAT);
+        findButton.setText("Find");
+        
+        label = new Label(parent, SWT.NONE);
+        label.setFont(font11);
+        label.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        
+        SelectionAdapter finder = new SelectionAdapter() {
+            
+            /**
+             * Finds the hotspots again when the conditions are changed.
+             * @param evt the selection event
+             */
+            public void widgetSelected(SelectionEvent evt) {
+                refresh();
+            }
+            
+            /**
+             * Finds the hotspots again when the weights are entered.
+             * @param evt the selection event
+             */
+            public void widgetDefaultSelected(SelectionEvent evt) {
+                refresh();
+            }
+        };
+        kindSel.addSelectionListener(finder);
+        weightText.addSelectionListener(finder);
+        outlierCheck.addSelectionListener(finder);
+        findButton.addSelectionListener(finder);
+        
+        table = new Table(parent, SWT.BORDER | SWT.SINGLE | SWT.FULL_SELECTION | SWT.V_SCROLL);
+        table.setFont(font11);
+        table.setLinesVisible(true);
+        table.setHeaderVisible(true);
+        GridData tableData = new GridData(GridData.FILL_BOTH);
+        tableData.horizontalSpan = 5;
+        table.setLayoutData(tableData);
+        
+        createColumn("rank", 50);
+        createColumn("name", 500);
+        createColumn("score", 80);
+        createColumn("distance", 80);
+        createColumn("outlier", 60);
+        
+        table.addSelectionListener(new SelectionAdapter() {
+            
+            /**
+             * Flies the camera to the tree of the selected class or method.
+             * @param evt the selection event
+             */
+            public void widgetSelected(SelectionEvent evt) {
+                int index = table.getSelectionIndex();
+                if (index >= 0 && index < listedClasses.size()) {
+                    String fqn = listedClasses.get(index);
+                    if (!frame.getForestView().flyTo(fqn)) {
+                        System.out.println("- No tree of " + fqn + " in the forest");
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Creates a column of the table.
+     * @param title the title of the column
+     * @param width the width of the column
+     */
+    private void createColumn(String title, int width) {
+        TableColumn column = new TableColumn(table, SWT.LEFT);
+        column.setText(title);
+        column.setWidth(width);
+        column.setResizable(true);
+    }
+    
+    /**
+     * Replaces the displayed project with another version of it.
+     * Partial versions are ignored, and the hotspots are rebuilt only if this view has been shown.
+     * @param mproject the metrics of the project
+     */
+    public void setProjectMetrics(ProjectMetrics mproject) {
+        if (mproject == null || !mproject.isComplete() || mproject == projectMetrics) {
+            return;
+        }
+        
+        projectMetrics = mproject;
+        hotspots = null;
+        if (shown) {
+            build();
+        }
+    }
+    
+    /**
+     * Builds the hotspots when this view is shown for the first time.
+     */
+    public void show() {
+        if (!shown) {
+            shown = true;
+            build();
+        }
+    }
+    
+    /**
+     * Builds the hotspots of the displayed project in the background, and lists them when they are built.
+     */
+    private void build() {
+        if (table == null || table.isDisposed()) {
+            return;
+        }
+        if (projectMetrics == null) {
+            if (similarClass == null) {
+                label.setText("Waiting for the calculation of all the packages ...");
+            }
+            return;
+        }
+        if (building) {
+            return;
+        }
+        
+        building = true;
+        if (similarClass == null) {
+            label.setText("Building hotspots ...");
+        }
+        final ProjectMetrics mproject = projectMetrics;
+        final Display display = table.getDisplay();
+        Thread thread = new Thread(new Runnable() {
+            
+            /**
+             * Builds the hotspots and hands them to the user interface thread.
+             */
+            public void run() {
+                final Hotspots built = mproject.getHotspots();
+                if (display.isDisposed()) {
+                    return;
+                }
+                
+                display.asyncExec(new Runnable() {
+                    
+                    /**
+                     * Lists the built hotspots.
+                     */
+                    public void run() {
+                        built(mproject, built);
+                    }
+                });
+            }
+        }, "CodeForest Hotspots");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Receives hotspots built in the background, which are built again if the project has been replaced meanwhile.
+     * @param mproject the metrics of the project whose hotspots were built
+     * @param built the built hotspots
+     */
+    private void built(ProjectMetrics mproject, Hotspots built) {
+        building = false;
+        if (table == null || table.isDisposed()) {
+            return;
+        }
+        
+        if (mproject != projectMetrics) {
+            build();
+            return;
+        }
+        hotspots = built;
+        if (similarClass == null) {
+            refresh();
+        }
+    }
+    
+    /**
+     * Finds the hotspots under the current conditions and lists them.
+     */
+    private void refresh() {
+        if (hotspots == null || table == null || table.isDisposed()) {
+            return;
+        }
+        
+        similarClass = null;
+        boolean method = METHODS.equals(kindSel.getText());
+        List<String> unknown = new ArrayList<String>();
+        Map<String, Double> weights = parseWeights(weightText.getText(), hotspots, method, unknown);
+        entries = hotspots.find(method, weights, Hotspots.DEFAULT_COUNT, outlierCheck.getSelection());
+        
+        table.removeAll();
+        listedClasses.clear();
+        for (int i = 0; i < entries.size(); i++) {
+            Hotspots.Entry entry = entries.get(i);
+            listedClasses.add(entry.getClassName());
+            TableItem item = new TableItem(table, SWT.NONE);
+            item.setText(0, String.valueOf(i + 1));
+            item.setText(1, entry.getName());
+            item.setText(2, String.format("%.2f", entry.getScore()));
+            item.setText(3, String.format("%.2f", entry.getDistance()));
+            item.setText(4, entry.isOutlier() ? "*" : "");
+        }
+        
+        String kind = method ? "methods" : "classes";
+        String summary = hotspots.size(method) + " " + kind + ", " + hotspots.getOutlierCount(method) + " outliers";
+        if (!unknown.isEmpty()) {
+            summary = summary + " (ignored: " + unknown + ")";
+        }
+        label.setText(summary);
+    }
+    
+    /**
+     * Lists the classes similar to a class instead of the hotspots, where the score of each class is its similarity.
+     * This method can be called from any thread.
+     * @param fqn the fully-qualified name of the class
+     * @param similar the index of similar classes
+     * @param names the fully-qualified names of the similar classes in descending order of the similarity
+     */
+    public void showSimilarClasses(final String fqn, final SimilarClasses similar, final List<String> names) {
+        if (table == null || table.isDisposed()) {
+            return;
+        }
+        
+        table.getDisplay().asyncExec(new Runnable() {
+            
+            /**
+             * Lists the similar classes.
+             */
+            public void run() {
+                if (table == null || table.isDisposed()) {
+                    return;
+                }
+                
+                similarClass = fqn;
+                table.removeAll();
+                listedClasses.clear();
+                for (int i = 0; i < names.size(); i++) {
+                    String name = names.get(i);
+                    listedClasses.add(name);
+                    TableItem item = new TableItem(table, SWT.NONE);
+                    item.setText(0, String.valueOf(i + 1));
+                    item.setText(1, name);
+                    item.setText(2, String.format("%.2f", similar.getSimilarity(fqn, name)));
+                }
+                label.setText(names.size() + " classes similar to " + fqn);
+                frame.focusHotspotView();
+            }
+        });
+    }
+    
+    /**
+     * Parses the weights of metrics, where a metric without a weight has the weight <code>1</code>.
+     * @param text the text of the weights
+     * @param hotspots the hotspot finder
+     * @param method <code>true</code> if methods are found, or <code>false</code> if classes are found
+     * @param unknown the collection that receives the ignored words
+     * @return the weights keyed by the names of the metrics
+     */
+    private Map<String, Double> parseWeights(String text, Hotspots hotspots, boolean method, List<String> unknown) {
+        Map<String, Double> weights = new HashMap<String, Double>();
+        for (String word : text.trim().split("[\\s,]+")) {
+            if (word.length() == 0) {
+                continue;
+            }
+            
+            int index = word.indexOf('=');
+            String name = (index < 0 ? word : word.substring(0, index)).toUpperCase();
+            if (!hotspots.hasMetric(method, name)) {
+                unknown.add(word);
+                continue;
+            }
+            
+            try {
+                weights.put(name, new Double(index < 0 ? 1.0 : Double.parseDouble(word.substring(index + 1))));
+            } catch (NumberFormatException e) {
+                unknown.add(word);
+            }
+        }
+        return weights;
+    }
+    
+    /**
+     * Disposes this view.
+     */
+    public void dispose() {
+        font11.dispose();
+        
+        table = null;
+        entries.clear();
+        listedClasses.clear();
+        projectMetrics = null;
+        hotspots = null;
+    }
+}
@@ -4,8 +4,11 @@
 
 package org.jtool.codeforest.ui.view;
 
+import org.jtool.codeforest.metrics.java.ChangeImpact;
 import org.jtool.codeforest.metrics.java.ClassMetrics;
 import org.jtool.codeforest.metrics.java.CommonMetrics;
+import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.SimilarClasses;
 import org.jtool.codeforest.ui.CodeForestFrame;
 import org.jtool.codeforest.ui.view.forest.ForestView;
 import org.jtool.codeforest.ui.view.forest.ForestNode;
@@ -23,6 +26,7 @@ import com.sun.j3d.utils.behaviors.mouse.MouseBehaviorCallback;
 import com.sun.j3d.utils.picking.PickResult;
 import com.sun.j3d.utils.picking.behaviors.PickMouseBehavior;
 import java.awt.event.MouseEvent;
+import java.util.List;
 
 /**
  * Picks a mouse event on a view.
@@ -86,6 +90,14 @@ public class MousePicker extends PickMouseBehavior implements MouseBehaviorCallb
         return frame.getPropertyView();
     }
     
+    /**
+     * Returns the hotspot view.
+     * @return the hotspot view
+     */
+    public HotspotView getHotspotView() {
+        return frame.getHotspotView();
+    }
+    
     /**
      * Returns the interaction view.
      * @return the interaction view
@@ -137,8 +149,16 @@ public class MousePicker extends PickMouseBehavior implements MouseBehaviorCallb
         
         ForestNode node = (ForestNode)pickedShape.getUserData();
         
-        if (mevent.getButton() == MouseEvent.BUTTON1) {
+        if (mevent.getButton() == MouseEvent.BUTTON1 && mevent.isAltDown()) {
+            pressButtonWithAlt(node, ChangeImpact.UNLIMITED);
+        } else if (mevent.getButton() == MouseEvent.BUTTON3 && mevent.isAltDown()) {
+            pressButtonWithAlt(node, 1);
+        } else if (mevent.getButton() == MouseEvent.BUTTON1 && mevent.isControlDown()) {
+            pressLeftButtonWithControl(node);
+        } else if (mevent.getButton() == MouseEvent.BUTTON1) {
             pressLeftButton(node);
+        } else if (mevent.getButton() == MouseEvent.BUTTON3 && mevent.isControlDown()) {
+            pressRightButtonWithControl(node);
         } else if (mevent.getButton() == MouseEvent.BUTTON3) {
             pressRightButton(node);
         }
@@ -177,6 +197,57 @@ public class MousePicker extends PickMouseBehavior implements MouseBehaviorCallb
         }
     }
     
+    /**
+     * Invoked when left button of the mouse is pressed with the control key, which highlights the inheritance hierarchy of a class.
+     * A hierarchy that consists only of the class clears the highlighting.
+     * @param node the visual node in the scene graph
+     */
+    private void pressLeftButtonWithControl(ForestNode node) {
+        CommonMetrics metrics = node.getMetrics();
+        if (metrics instanceof ClassMetrics) {
+            ClassMetrics mclass = (ClassMetrics)metrics;
+            ProjectMetrics mproject = node.getProjectMetrics();
+            if (mproject.getClassHierarchy().getHierarchy(mclass.getQualifiedName()).size() > 1) {
+                getForestView().highlightHierarchy(mclass.getQualifiedName());
+            } else {
+                getForestView().highlightHierarchy(null);
+            }
+        }
+    }
+    
+    /**
+     * Invoked when right button of the mouse is pressed with the control key, which finds the trees similar to a tree.
+     * The classes whose accessed members are similar to those of the class are highlighted and listed with their similarity.
+     * @param node the visual node in the scene graph
+     */
+    private void pressRightButtonWithControl(ForestNode node) {
+        CommonMetrics metrics = node.getMetrics();
+        if (metrics instanceof ClassMetrics) {
+            ClassMetrics mclass = (ClassMetrics)metrics;
+            SimilarClasses similar = node.getProjectMetrics().getSimilarClasses();
+            String fqn = mclass.getQualifiedName();
+            
+            List<String> names = similar.findSimilar(fqn, SimilarClasses.DEFAULT_THRESHOLD, ForestView.MAX_SIMILAR_CLASSES);
+            getForestView().highlightSimilarClasses(fqn);
+            getHotspotView().showSimilarClasses(fqn, similar, names);
+        }
+    }
+    
+    /**
+     * Invoked when a button of the mouse is pressed with the alt key, which finds the trees that could be affected by a change of a tree.
+     * The left button follows all the indirect dependencies and the right button only the direct ones.
+     * The affected classes are highlighted by their distances from the class.
+     * @param node the visual node in the scene graph
+     * @param maxDepth the maximum distance of the affected classes, or <code>ChangeImpact.UNLIMITED</code>
+     */
+    private void pressButtonWithAlt(ForestNode node, int maxDepth) {
+        CommonMetrics metrics = node.getMetrics();
+        if (metrics instanceof ClassMetrics) {
+            ClassMetrics mclass = (ClassMetrics)metrics;
+            getForestView().highlightImpact(mclass.getQualifiedName(), maxDepth);
+        }
+    }
+    
     /**
      * Invoked when right button of the mouse is pressed.
      * @param node the visual node in the scene graph
@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.HashMap;
 
 /**
  * Provides a property view that lists a metric values.
@@ -50,6 +51,11 @@ public class PropertyView {
      */
     private List<PropertyData> propertyList = new ArrayList<PropertyData>();
     
+    /**
+     * The classes whose property data of methods and fields have not been created yet.
+     */
+    private Map<String, ClassMetrics> unloadedClasses = new HashMap<String, ClassMetrics>();
+    
     /**
      * Creates a property view.
      * @param parent the parent of the property view
@@ -100,6 +106,20 @@ public class PropertyView {
         parent.pack();
     }
     
+    /**
+     * Replaces the displayed project with another version of it.
+     * @param mproject the metrics of the project
+     */
+    public void setProjectMetrics(ProjectMetrics mproject) {
+        propertyList.clear();
+        unloadedClasses.clear();
+        createPropertyData(mproject);
+        
+        if (tableViewer != null && !tableViewer.getTable().isDisposed()) {
+            tableViewer.refresh();
+        }
+    }
+    
     /**
      * Disposes this property view.
      */
@@ -109,6 +129,7 @@ public class PropertyView {
         tableViewer = null;
         
         propertyList.clear();
+        unloadedClasses.clear();
     }
     
     /**
@@ -231,13 +252,28 @@ public class PropertyView {
         sort(properties);
         propertyList.addAll(properties);
         
+        if (mclass.isMembersLoaded()) {
+            propertyList.addAll(createMemberPropertyData(mclass));
+        } else {
+            unloadedClasses.put(mclass.getQualifiedName(), mclass);
+        }
+    }
+    
+    /**
+     * Creates the property data of fields and methods of a given class.
+     * @param mclass the metrics of the class
+     * @return the collection of the property data
+     */
+    private List<PropertyData> createMemberPropertyData(ClassMetrics mclass) {
+        List<PropertyData> properties = new ArrayList<PropertyData>();
         for (FieldMetrics mfield : mclass.getFieldMetrics()) {
-            createFieldPropertyData(mfield);
+            createFieldPropertyData(mfield, properties);
         }
         
         for (MethodMetrics mmethod : mclass.getMethodMetrics()) {
-            createMethodPropertyData(mmethod);
+            createMethodPropertyData(mmethod, properties);
         }
+        return properties;
     }
     
     /**
@@ -261,19 +297,20 @@ public class PropertyView {
     /**
      * Creates the property data of a given field.
      * @param mfield the metrics of the field
+     * @param dataList the collection that stores the created property data
      */
-    private void createFieldPropertyData(FieldMetrics mfield) {
+    private void createFieldPropertyData(FieldMetrics mfield, List<PropertyData> dataList) {
         String sig = mfield.getName() + " : " + mfield.getType();
         if (mfield.isEnumConstant()) {
             Image image = Activator.getImage("field_pri");
-            propertyList.add(new PropertyData(sig, "", false, image));
+            dataList.add(new PropertyData(sig, "", false, image));
         } else {
             Image image = Activator.getImage("field_pub");
-            propertyList.add(new PropertyData(sig, "", false, image));
+            dataList.add(new PropertyData(sig, "", false, image));
         }
         
-        propertyList.add(new PropertyData("Final", getBoolean(mfield.getJavaField().isFinal()), false, null));
-        propertyList.add(new PropertyData("Visibility", getVivibility(mfield.getJavaField()), false, null));
+        dataList.add(new PropertyData("Final", getBoolean(mfield.getJavaField().isFinal()), false, null));
+        dataList.add(new PropertyData("Visibility", getVivibility(mfield.getJavaField()), false, null));
         
         List<PropertyData> properties = new ArrayList<PropertyData>();
         Map<String, Double> metrics = mfield.getMetricValues();
@@ -283,7 +320,7 @@ public class PropertyView {
         }
         
         sort(properties);
-        propertyList.addAll(properties);
+        dataList.addAll(properties);
     }
     
     /**
@@ -307,20 +344,21 @@ public class PropertyView {
     /**
      * Creates the property data of a given method.
      * @param mmethod the metrics of the method
+     * @param dataList the collection that stores the created property data
      */
-    private void createMethodPropertyData(MethodMetrics mmethod) {
+    private void createMethodPropertyData(MethodMetrics mmethod, List<PropertyData> dataList) {
         String sig = mmethod.getSignature() + " : " + mmethod.getReturnType();
         if (mmethod.isConstructor()) {
             Image image = Activator.getImage("method_pri");
-            propertyList.add(new PropertyData(sig, "", false, image));
+            dataList.add(new PropertyData(sig, "", false, image));
         } else {
             Image image = Activator.getImage("method_pub");
-            propertyList.add(new PropertyData(sig, "", false, image));
+            dataList.add(new PropertyData(sig, "", false, image));
         }
         
-        propertyList.add(new PropertyData("Abstract", getBoolean(mmethod.getJavaMethod().isAbstract()), false, null));
-        propertyList.add(new PropertyData("Static", getBoolean(mmethod.getJavaMethod().isStatic()), false, null));
-        propertyList.add(new PropertyData("Visibility", getVisibility(mmethod.getJavaMethod()), false, null));
+        dataList.add(new PropertyData("Abstract", getBoolean(mmethod.getJavaMethod().isAbstract()), false, null));
+        dataList.add(new PropertyData("Static", getBoolean(mmethod.getJavaMethod().isStatic()), false, null));
+        dataList.add(new PropertyData("Visibility", getVisibility(mmethod.getJavaMethod()), false, null));
         
         List<PropertyData> properties = new ArrayList<PropertyData>();
         Map<String, Double> metrics = mmethod.getMetricValues();
@@ -330,7 +368,7 @@ public class PropertyView {
         }
         
         sort(properties);
-        propertyList.addAll(properties);
+        dataList.addAll(properties);
     }
     
     /**
@@ -372,17 +410,39 @@ public class PropertyView {
         for (int i = 0; i < propertyList.size(); i++) {
             PropertyData data = propertyList.get(i);
             if (data.isClass() && data.getName().compareTo(className) == 0) {
-                changeSelection(i);
+                boolean loaded = loadMemberPropertyData(className, i);
+                changeSelection(i, loaded);
                 break;
             }
         }
     }
     
+    /**
+     * Inserts the property data of fields and methods of a class if they have not been created yet.
+     * @param className the name of the class
+     * @param index the index number of the property data for the class
+     * @return <code>true</code> if the property data were inserted, otherwise <code>false</code>
+     */
+    private boolean loadMemberPropertyData(String className, int index) {
+        ClassMetrics mclass = unloadedClasses.remove(className);
+        if (mclass == null) {
+            return false;
+        }
+        
+        int pos = index + 1;
+        while (pos < propertyList.size() && propertyList.get(pos).getImage() == null) {
+            pos++;
+        }
+        propertyList.addAll(pos, createMemberPropertyData(mclass));
+        return true;
+    }
+    
     /**
      * Displays property data of a selected class.
      * @param index the index number of the property data for the selected class
+     * @param refresh <code>true</code> if the table needs to be refreshed, otherwise <code>false</code>
      */
-    private void changeSelection(final int index) {
+    private void changeSelection(final int index, final boolean refresh) {
         if (tableViewer.getTable() != null && !(tableViewer.getTable().isDisposed())) {
             tableViewer.getTable().getDisplay().syncExec(new Runnable() {
                 
@@ -391,6 +451,9 @@ public class PropertyView {
                  */
                 public void run() {
                     try {
+                        if (refresh) {
+                            tableViewer.refresh();
+                        }
                         tableViewer.getTable().select(index);
                         tableViewer.getTable().setTopIndex(index);
                     } catch (Exception e) { /* empty */ }
@@ -55,6 +55,26 @@ public class SettingData {
      */
     public static final String LEAF_COLOR = "Leaf color";
     
+    /**
+     * The label representing the ground color.
+     */
+    public static final String GROUND_COLOR = "Ground color";
+    
+    /**
+     * The label representing the normalization of metric values.
+     */
+    public static final String NORMALIZATION = "Normalization";
+    
+    /**
+     * The normalization that divides metric values by their maximum or average.
+     */
+    public static final String MAX_AVERAGE_NORMALIZATION = "Max / Average";
+    
+    /**
+     * The normalization that divides metric values by their 95th percentile or median, which is robust against a few huge values.
+     */
+    public static final String PERCENTILE_NORMALIZATION = "Percentile";
+    
     /**
      * The metric of the trunk height.
      */
@@ -95,6 +115,16 @@ public class SettingData {
      */
     private IMetric leafColor = null;
     
+    /**
+     * The metric of the ground color, which is not colored by default.
+     */
+    private IMetric groundColor = MetricSort.DEFAULT_METRIC;
+    
+    /**
+     * <code>true</code> if metric values are normalized by their percentiles, or <code>false</code> by their maximum or average.
+     */
+    private boolean percentileNormalization = false;
+    
     /**
      * A flag indicating if the update of a forest view is needed or not.
      */
@@ -187,7 +217,10 @@ public class SettingData {
      * @return the copy of the setting data
      */
     public SettingData cloneSettingData() {
-        return new SettingData(trunkHeight, trunkRadius, trunkColor, foliageHeight, foliageRadius, foliageColor, leafNumber, leafColor);
+        SettingData data = new SettingData(trunkHeight, trunkRadius, trunkColor, foliageHeight, foliageRadius, foliageColor, leafNumber, leafColor);
+        data.groundColor = groundColor;
+        data.percentileNormalization = percentileNormalization;
+        return data;
     }
     
     /**
@@ -302,6 +335,57 @@ public class SettingData {
         needsUpdateForestView = false;
     }
     
+    /**
+     * Sets the metric on the ground color.
+     * @param name the name of the metric
+     */
+    public void setGroundColor(String name) {
+        boolean update = !isSame(groundColor, name);
+        if (update) {
+            groundColor = getMetric(name);
+        }
+        
+        needsUpdateForestView = needsUpdateForestView | update;
+        needsUpdateTreeView = false;
+    }
+    
+    /**
+     * Sets the normalization of metric values.
+     * @param name the name of the normalization
+     */
+    public void setNormalization(String name) {
+        boolean percentile = PERCENTILE_NORMALIZATION.equals(name);
+        boolean update = percentile != percentileNormalization;
+        percentileNormalization = percentile;
+        
+        needsUpdateForestView = needsUpdateForestView | update;
+        needsUpdateTreeView = needsUpdateForestView;
+    }
+    
+    /**
+     * Returns the name of the normalization of metric values.
+     * @return the name of the normalization
+     */
+    public String getNormalization() {
+        return percentileNormalization ? PERCENTILE_NORMALIZATION : MAX_AVERAGE_NORMALIZATION;
+    }
+    
+    /**
+     * Tests if metric values are normalized by their percentiles.
+     * @return <code>true</code> if the percentiles are used, or <code>false</code> if the maximum or average is used
+     */
+    public boolean isPercentileNormalization() {
+        return percentileNormalization;
+    }
+    
+    /**
+     * Obtains all the items of the normalization of metric values.
+     * @return the array of the normalization items
+     */
+    public String[] getNormalizationItems() {
+        return new String[] { MAX_AVERAGE_NORMALIZATION, PERCENTILE_NORMALIZATION };
+    }
+    
     /**
      * Returns the metric of the trunk height.
      * @return the metric of the trunk height
@@ -366,6 +450,14 @@ public class SettingData {
         return leafColor;
     }
     
+    /**
+     * Returns the metric of the ground color.
+     * @return the metric of the ground color
+     */
+    public IMetric getGroundColor() {
+        return groundColor;
+    }
+    
     /**
      * Checks if the update of a forest view is needed or not.
      * @return <code>true</code> if the update is needed, otherwise <code>false</code>
@@ -479,6 +571,24 @@ public class SettingData {
         return (String[])items.toArray(new String[0]);
     }
     
+    /**
+     * Obtains all the items related to a package, the first of which does not color anything.
+     * @return the array of the package items
+     */
+    public String[] getPackageItems() {
+        IMetric[] metrics = MetricSort.ALL_SELECTABLE;
+        List<String> items = new ArrayList<String>();
+        items.add(MetricSort.DEFAULT_METRIC.getName());
+        
+        for (int i = 0; i < metrics.length; i++) {
+            if (metrics[i].isPackageMetric()) {
+                items.add(metrics[i].getName());
+            }
+        }
+        
+        return (String[])items.toArray(new String[0]);
+    }
+    
     /**
      * Obtains the index number of a specified item related to the height.
      * @param name the name of the item
@@ -539,6 +649,21 @@ public class SettingData {
         return 0;
     }
     
+    /**
+     * Obtains the index number of a specified item related to a package.
+     * @param name the name of the package item
+     * @return the index number of the package item
+     */
+    public int getPackageItemIndex(String name) {
+        String[] items = getPackageItems();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].compareTo(name) == 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
     /**
      * Displays information on the setting data.
      */
@@ -552,6 +677,7 @@ public class SettingData {
         
         System.out.println("Leaf number        = " + leafNumber.getName());
         System.out.println("Leaf color         = " + leafColor.getName());
+        System.out.println("Ground color       = " + groundColor.getName());
         
         System.out.println("Update forest view = " + needsUpdateForestView);
         System.out.println("Update tree view   = " + needsUpdateTreeView);
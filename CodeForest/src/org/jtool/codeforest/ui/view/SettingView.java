@@ -80,6 +80,16 @@ public class SettingView {
      */
     private Combo fcolorSel;
     
+    /**
+     * A combo that selects a metric for the ground color.
+     */
+    private Combo gcolorSel;
+    
+    /**
+     * A combo that selects the normalization of metric values.
+     */
+    private Combo normalizationSel;
+    
     /**
      * A button for undoing.
      */
@@ -218,6 +228,12 @@ public class SettingView {
         
         fcolorSel = createMetricSelection(settings, SettingData.FOLIAGE_COLOR, settingData.getClassItems());
         fcolorSel.addSelectionListener(new FoliageColorSelectionListener());
+        
+        gcolorSel = createMetricSelection(settings, SettingData.GROUND_COLOR, settingData.getPackageItems());
+        gcolorSel.addSelectionListener(new GroundColorSelectionListener());
+        
+        normalizationSel = createMetricSelection(settings, SettingData.NORMALIZATION, settingData.getNormalizationItems());
+        normalizationSel.addSelectionListener(new NormalizationSelectionListener());
     }
     
     /**
@@ -299,6 +315,7 @@ public class SettingView {
                     fheightSel.setEnabled(false);
                     fradiusSel.setEnabled(false);
                     fcolorSel.setEnabled(false);
+                    gcolorSel.setEnabled(false);
                 } else {
                     theightSel.setEnabled(true);
                     tradiusSel.setEnabled(true);
@@ -306,6 +323,7 @@ public class SettingView {
                     fheightSel.setEnabled(true);
                     fradiusSel.setEnabled(true);
                     fcolorSel.setEnabled(true);
+                    gcolorSel.setEnabled(true);
                 }
             }
             
@@ -437,6 +455,8 @@ public class SettingView {
         settingData.setData(data.getTrunkHeight(), data.getTrunkRadius(), data.getTrunkColor(),
           data.getFoliageHeight(), data.getFoliageRadius(), data.getFoliageColor(), 
           data.getLeafNumber(), data.getLeafColor());
+        settingData.setGroundColor(data.getGroundColor().getName());
+        settingData.setNormalization(data.getNormalization());
         
         update();
         updateForest();
@@ -452,6 +472,8 @@ public class SettingView {
         fheightSel.select(settingData.getClassItemIndex(settingData.getFoliageHeight().getName()));
         fradiusSel.select(settingData.getClassItemIndex(settingData.getFoliageRadius().getName()));
         fcolorSel.select(settingData.getClassItemIndex(settingData.getFoliageColor().getName()));
+        gcolorSel.select(settingData.getPackageItemIndex(settingData.getGroundColor().getName()));
+        normalizationSel.select(settingData.isPercentileNormalization() ? 1 : 0);
     }
     
     /**
@@ -714,4 +736,60 @@ public class SettingView {
         public void widgetDefaultSelected(SelectionEvent e) {
         }
     }
+    
+    /**
+     * A listener for the selection of the ground color.
+     * @author Katsuhisa Maruyama
+     */
+    class GroundColorSelectionListener implements SelectionListener {
+        
+        /**
+         * Invoked when selection occurs in the control.
+         * @param e an event containing information about the selection
+         */
+        public void widgetSelected(SelectionEvent e) {
+            Combo combo = (Combo)e.getSource();
+            String name = combo.getItem(combo.getSelectionIndex());
+            settingData.setGroundColor(name);
+            storeSettingData();
+            
+            recordSettingAction("Ground Color", name);
+            updateForest();
+        }
+        
+        /**
+         * Invoked when default selection occurs in the control.
+         * @param e an event containing information about the default selection
+         */
+        public void widgetDefaultSelected(SelectionEvent e) {
+        }
+    }
+    
+    /**
+     * A listener for the selection of the normalization.
+     * @author Katsuhisa Maruyama
+     */
+    class NormalizationSelectionListener implements SelectionListener {
+        
+        /**
+         * Invoked when selection occurs in the control.
+         * @param e an event containing information about the selection
+         */
+        public void widgetSelected(SelectionEvent e) {
+            Combo combo = (Combo)e.getSource();
+            String name = combo.getItem(combo.getSelectionIndex());
+            settingData.setNormalization(name);
+            storeSettingData();
+            
+            recordSettingAction("Normalization", name);
+            updateForest();
+        }
+        
+        /**
+         * Invoked when default selection occurs in the control.
+         * @param e an event containing information about the default selection
+         */
+        public void widgetDefaultSelected(SelectionEvent e) {
+        }
+    }
 }
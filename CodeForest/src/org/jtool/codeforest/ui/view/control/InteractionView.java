@@ -5,6 +5,7 @@
 package org.jtool.codeforest.ui.view.control;
 
 import org.jtool.codeforest.ui.CodeForestFrame;
+import org.jtool.codeforest.ui.CodeForestRepository;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.util.Time;
 import org.eclipse.jface.viewers.ArrayContentProvider;
@@ -224,6 +225,10 @@ public class InteractionView {
                     dialog.open();
                     
                     record.setDescription(dialog.getDescription());
+                    CodeForestRepository repository = frame.getCodeForestRepository();
+                    if (repository != null) {
+                        repository.editInteractionRecord(record);
+                    }
                     tableViewer.setInput(interactionList);
                 }
             }
@@ -249,6 +254,10 @@ public class InteractionView {
                 InteractionRecord record = getInteractionRecord();
                 if (record != null) {
                     interactionList.remove(record);
+                    CodeForestRepository repository = frame.getCodeForestRepository();
+                    if (repository != null) {
+                        repository.removeInteractionRecord(record);
+                    }
                     
                     tableViewer.setInput(interactionList);
                 }
@@ -384,7 +393,7 @@ public class InteractionView {
         String description = String.format(SETTING_ACTION, sort, value);
         InteractionRecord record = new InteractionRecord(time, description, InteractionRecord.SETTING, data);
         
-        interactionList.add(record);
+        record(record);
         
         refreshInteractionList();
     }
@@ -400,7 +409,7 @@ public class InteractionView {
         String description = String.format(WORKING_SET_ACTION, type, name);
         InteractionRecord record = new InteractionRecord(time, description, InteractionRecord.WORKING_SET, data);
         
-        interactionList.add(record);
+        record(record);
         
         refreshInteractionList();
     }
@@ -415,7 +424,7 @@ public class InteractionView {
         String description = String.format(FOCUS_CLASS_ACTION, className);
         InteractionRecord record = new InteractionRecord(time, description, InteractionRecord.FOCUS_CLASS, data);
         
-        interactionList.add(record);
+        record(record);
         refreshInteractionList();
     }
     
@@ -430,7 +439,7 @@ public class InteractionView {
         String description = String.format(MEMO_ACTION, type, className);
         InteractionRecord record = new InteractionRecord(time, description, InteractionRecord.MEMO, data);
         
-        interactionList.add(record);
+        record(record);
         refreshInteractionList();
     }
     
@@ -443,10 +452,23 @@ public class InteractionView {
         long time = Time.getCurrentTime();
         InteractionRecord record = new InteractionRecord(time, description, InteractionRecord.OTHERS, data);
         
-        interactionList.add(record);
+        record(record);
         refreshInteractionList();
     }
     
+    /**
+     * Adds an interaction record of an action and records it into the journal of the repository.
+     * @param record the interaction record to be added
+     */
+    private void record(InteractionRecord record) {
+        interactionList.add(record);
+        
+        CodeForestRepository repository = frame.getCodeForestRepository();
+        if (repository != null) {
+            repository.addInteractionRecord(record);
+        }
+    }
+    
     /**
      * Refreshes the interaction list of this interaction view.
      */
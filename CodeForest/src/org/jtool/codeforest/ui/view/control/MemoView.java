@@ -6,6 +6,7 @@ package org.jtool.codeforest.ui.view.control;
 
 import org.jtool.codeforest.Activator;
 import org.jtool.codeforest.ui.CodeForestFrame;
+import org.jtool.codeforest.ui.CodeForestRepository;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.util.Time;
 import org.eclipse.swt.SWT;
@@ -219,6 +220,10 @@ public class MemoView {
                         if (comments != null) {
                             Memo memo = new Memo(Time.getCurrentTime(), className, comments);
                             add(memo);
+                            CodeForestRepository repository = frame.getCodeForestRepository();
+                            if (repository != null) {
+                                repository.addMemo(memo);
+                            }
                             recordMemoAction("add", memo.getClassName());
                             showMemoList(className);
                         }
@@ -326,6 +331,10 @@ public class MemoView {
             
             public void widgetSelected(SelectionEvent e) {
                 memoList.remove(memo);
+                CodeForestRepository repository = frame.getCodeForestRepository();
+                if (repository != null) {
+                    repository.removeMemo(memo);
+                }
                 viewForm.dispose();
                 showMemoList(memo.getClassName());
             }
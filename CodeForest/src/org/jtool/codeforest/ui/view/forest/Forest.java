@@ -7,6 +7,7 @@ package org.jtool.codeforest.ui.view.forest;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.jtool.codeforest.metrics.MetricSort;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.ui.shape.ForestTree;
 import javax.media.j3d.Background;
 import javax.media.j3d.BoundingSphere;
 import javax.media.j3d.BranchGroup;
@@ -15,6 +16,9 @@ import javax.media.j3d.TransformGroup;
 import javax.vecmath.Color3f;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
+import java.util.Collection;
+import java.util.Map;
+import java.util.HashMap;
 
 /**
  * Represents a forest displaying on the screen.
@@ -28,6 +32,16 @@ public class Forest extends ForestNodeGroup {
      */
     public double layoutSize;
     
+    /**
+     * The trees in the scene graph, keyed by the fully-qualified names of their classes.
+     */
+    private Map<String, ForestTree> trees = new HashMap<String, ForestTree>();
+    
+    /**
+     * The highlighting levels of the trees, keyed by the fully-qualified names of their classes.
+     */
+    private Map<String, Integer> highlighted = new HashMap<String, Integer>();
+    
     /**
      * Creates a forest with the setting data.
      * @param data the setting data that forms the forest
@@ -66,6 +80,7 @@ public class Forest extends ForestNodeGroup {
      */
     public void createSceneGraph(final BranchGroup forest) {
         setCapability(forest);
+        trees.clear();
         
         TransformGroup background = new TransformGroup();
         forest.addChild(background);
@@ -79,6 +94,69 @@ public class Forest extends ForestNodeGroup {
         transG.addChild(createSceneGraph());
     }
     
+    /**
+     * Registers a tree created in the scene graph, which is highlighted if its class is highlighted.
+     * @param fqn the fully-qualified name of the class represented by the tree
+     * @param tree the tree
+     */
+    void addTree(String fqn, ForestTree tree) {
+        trees.put(fqn, tree);
+        Integer level = highlighted.get(fqn);
+        if (level != null) {
+            tree.changedHighlighted(level.intValue());
+        }
+    }
+    
+    /**
+     * Obtains the location of the tree of a class in the coordinates of the scene graph, where the forest is centered on the origin.
+     * @param fqn the fully-qualified name of the class
+     * @return the location of the root of the tree, or <code>null</code> if the class has no tree in the forest
+     */
+    public Point3d getTreeLocation(String fqn) {
+        ForestTree tree = trees.get(fqn);
+        if (tree == null) {
+            return null;
+        }
+        
+        Vector3d location = tree.getLocation();
+        return new Point3d(location.x - layoutSize / 2, location.y, location.z - layoutSize / 2);
+    }
+    
+    /**
+     * Highlights the trees of classes instead of the currently highlighted ones.
+     * Only the trees whose highlighting changes are updated, without rebuilding the scene graph.
+     * @param names the fully-qualified names of the classes
+     */
+    public void highlight(Collection<String> names) {
+        Map<String, Integer> levels = new HashMap<String, Integer>();
+        for (String fqn : names) {
+            levels.put(fqn, new Integer(0));
+        }
+        highlight(levels);
+    }
+    
+    /**
+     * Highlights the trees of classes with their levels instead of the currently highlighted ones.
+     * Only the trees whose highlighting changes are updated, without rebuilding the scene graph.
+     * @param levels the highlighting levels, keyed by the fully-qualified names of the classes
+     */
+    public void highlight(Map<String, Integer> levels) {
+        Map<String, Integer> next = new HashMap<String, Integer>(levels);
+        for (String fqn : highlighted.keySet()) {
+            ForestTree tree = trees.get(fqn);
+            if (tree != null && !next.containsKey(fqn)) {
+                tree.changedHighlighted(-1);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : next.entrySet()) {
+            ForestTree tree = trees.get(entry.getKey());
+            if (tree != null && !entry.getValue().equals(highlighted.get(entry.getKey()))) {
+                tree.changedHighlighted(entry.getValue().intValue());
+            }
+        }
+        highlighted = next;
+    }
+    
     /**
      * Creates the background of a tree view.
      * @param group the transform group of the scene graph
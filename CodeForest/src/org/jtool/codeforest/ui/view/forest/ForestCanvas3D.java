@@ -6,6 +6,8 @@ package org.jtool.codeforest.ui.view.forest;
 
 import org.jtool.codeforest.ui.CodeForestFrame;
 import java.awt.GraphicsConfiguration;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
@@ -13,6 +15,9 @@ import javax.media.j3d.Canvas3D;
 import javax.media.j3d.TransformGroup;
 import javax.media.j3d.Transform3D;
 import javax.media.j3d.View;
+import javax.swing.Timer;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
 import javax.vecmath.Vector3f;
 
 /**
@@ -23,11 +28,36 @@ public class ForestCanvas3D extends Canvas3D implements MouseListener, MouseMoti
     
     private static final long serialVersionUID = -5518735816058831747L;
     
+    /**
+     * The number of frames of a flight of the camera.
+     */
+    private static final int FLIGHT_FRAMES = 30;
+    
+    /**
+     * The interval between frames of a flight of the camera in milliseconds.
+     */
+    private static final int FLIGHT_INTERVAL = 20;
+    
+    /**
+     * The offset of the camera from a tree it flies to.
+     */
+    private static final Vector3d FLIGHT_EYE_OFFSET = new Vector3d(0.0, 2.0, 4.0);
+    
+    /**
+     * The height of the point on a tree the camera looks at.
+     */
+    private static final double FLIGHT_LOOK_HEIGHT = 0.5;
+    
     /**
      * A virtual environment for Java3D.
      */
     private ForestUniverse universe;
     
+    /**
+     * The timer that moves the camera during a flight, or <code>null</code> if the camera is not flying.
+     */
+    private Timer flight = null;
+    
     /**
      * Creates a drawing canvas that displays a forest.
      * @param configuration the graphics configuration
@@ -59,10 +89,69 @@ public class ForestCanvas3D extends Canvas3D implements MouseListener, MouseMoti
         universe.repaint();
     }
     
+    /**
+     * Flies the camera smoothly to a point, looking at it from slightly above and in front of it.
+     * @param target the point in the coordinates of the scene graph
+     */
+    public void flyTo(Point3d target) {
+        final TransformGroup camera = universe.getViewingPlatform().getViewPlatformTransform();
+        Transform3D current = new Transform3D();
+        camera.getTransform(current);
+        
+        final Point3d fromEye = new Point3d();
+        current.transform(fromEye);
+        final Point3d fromCenter = new Point3d(0.0, 0.0, -FLIGHT_EYE_OFFSET.length());
+        current.transform(fromCenter);
+        
+        final Point3d toCenter = new Point3d(target.x, target.y + FLIGHT_LOOK_HEIGHT, target.z);
+        final Point3d toEye = new Point3d(target);
+        toEye.add(FLIGHT_EYE_OFFSET);
+        
+        if (flight != null) {
+            flight.stop();
+        }
+        flight = new Timer(FLIGHT_INTERVAL, new ActionListener() {
+            
+            /**
+             * The number of the frames already shown.
+             */
+            private int frame = 0;
+            
+            /**
+             * Moves the camera to the position of the next frame.
+             * @param evt the event of the timer
+             */
+            public void actionPerformed(ActionEvent evt) {
+                frame++;
+                double t = (double)frame / FLIGHT_FRAMES;
+                double s = t * t * (3 - 2 * t);
+                
+                Point3d eye = new Point3d();
+                eye.interpolate(fromEye, toEye, s);
+                Point3d center = new Point3d();
+                center.interpolate(fromCenter, toCenter, s);
+                
+                Transform3D view = new Transform3D();
+                view.lookAt(eye, center, new Vector3d(0.0, 1.0, 0.0));
+                view.invert();
+                camera.setTransform(view);
+                
+                if (frame >= FLIGHT_FRAMES) {
+                    ((Timer)evt.getSource()).stop();
+                }
+            }
+        });
+        flight.start();
+    }
+    
     /**
      * Disposes this drawing canvas.
      */
     public void dispose() {
+        if (flight != null) {
+            flight.stop();
+            flight = null;
+        }
         universe.cleanup();
     }
     
@@ -72,6 +161,9 @@ public class ForestCanvas3D extends Canvas3D implements MouseListener, MouseMoti
      */
     public void mouseClicked(MouseEvent evt) {
         if (evt.isShiftDown()) {
+            if (flight != null) {
+                flight.stop();
+            }
             TransformGroup camera = universe.getViewingPlatform().getViewPlatformTransform();
             
             Transform3D view_pos = new Transform3D();
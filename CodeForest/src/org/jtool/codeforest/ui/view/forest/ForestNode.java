@@ -78,9 +78,28 @@ public class ForestNode extends LayoutableNode {
         tree.setLocation(getX(), 0, getZ());
         tree.createSceneGraph();
         
+        Forest forest = getForest();
+        if (forest != null) {
+            forest.addTree(mclass.getQualifiedName(), tree);
+        }
         return tree;
     }
     
+    /**
+     * Obtains the forest containing this visual object.
+     * @return the forest, or <code>null</code> if this object is not placed on a forest
+     */
+    protected Forest getForest() {
+        ForestNode node = this;
+        while (node.parent != null) {
+            node = node.parent;
+        }
+        if (node instanceof Forest) {
+            return (Forest)node;
+        }
+        return null;
+    }
+    
     /**
      * Creates the scene graph for a fractal object and returns its object.
      * @return the visual object representing a tree.
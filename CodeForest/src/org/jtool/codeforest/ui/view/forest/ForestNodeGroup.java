@@ -8,6 +8,8 @@ import org.jtool.codeforest.ui.layout.IMapModel;
 import org.jtool.codeforest.ui.layout.IMappableNode;
 import org.jtool.codeforest.ui.shape.Ground;
 import org.jtool.codeforest.ui.view.SettingData;
+import org.jtool.codeforest.metrics.IMetric;
+import org.jtool.codeforest.metrics.UnsupportedMetricsException;
 import org.jtool.codeforest.metrics.java.PackageMetrics;
 
 import javax.media.j3d.TransformGroup;
@@ -112,6 +114,7 @@ public class ForestNodeGroup extends ForestNode implements IMapModel {
         
         Ground shape = new Ground(getWidth(), getLength(), 0.01d);
         shape.setRiver(true);
+        shape.setColorRate(getGroundColorRate());
         shape.setLocation(getX(), 0, getZ());
         shape.createSceneGraph();
         
@@ -128,6 +131,30 @@ public class ForestNodeGroup extends ForestNode implements IMapModel {
         return trans;
     }
     
+    /**
+     * Obtains the color rate of the ground of this group from the metric selected for the ground color.
+     * The value of the package includes its subpackages because their grounds are placed on the ground of this group.
+     * @return the color rate, or <code>-1</code> if the ground is not colored
+     */
+    private double getGroundColorRate() {
+        IMetric metric = settingData.getGroundColor();
+        if (metric == null || !metric.isPackageMetric() || !(commonMetrics instanceof PackageMetrics)) {
+            return -1;
+        }
+        
+        PackageMetrics pm = (PackageMetrics)commonMetrics;
+        try {
+            double value = metric.getValueWithSubpackages(pm);
+            double max = metric.getMaximumValue(pm);
+            if (value < 0 || max <= 0) {
+                return -1;
+            }
+            return value / max;
+        } catch (UnsupportedMetricsException e) {
+            return -1;
+        }
+    }
+    
     /**
      * Adds a visual object into this group.
      * @param shape
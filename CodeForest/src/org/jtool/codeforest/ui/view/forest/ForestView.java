@@ -4,7 +4,9 @@
 
 package org.jtool.codeforest.ui.view.forest;
 
+import org.jtool.codeforest.metrics.java.ChangeImpact;
 import org.jtool.codeforest.metrics.java.ProjectMetrics;
+import org.jtool.codeforest.metrics.java.SimilarClasses;
 import org.jtool.codeforest.ui.CodeForestFrame;
 import org.jtool.codeforest.ui.view.SettingData;
 import org.eclipse.swt.awt.SWT_AWT;
@@ -14,6 +16,10 @@ import org.eclipse.swt.widgets.Composite;
 import java.awt.BorderLayout;
 import java.awt.Frame;
 import java.awt.GraphicsConfiguration;
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Collections;
 
 /**
  * Displays a forest on the screen.
@@ -21,6 +27,31 @@ import java.awt.GraphicsConfiguration;
  */
 public class ForestView {
     
+    /**
+     * The maximum number of similar classes whose trees are highlighted.
+     */
+    public static final int MAX_SIMILAR_CLASSES = 20;
+    
+    /**
+     * The kind of highlighting that shows the inheritance hierarchy of a class.
+     */
+    private static final int HIERARCHY = 0;
+    
+    /**
+     * The kind of highlighting that shows the classes similar to a class.
+     */
+    private static final int SIMILAR = 1;
+    
+    /**
+     * The kind of highlighting that shows the classes affected by a change of a class.
+     */
+    private static final int IMPACT = 2;
+    
+    /**
+     * The kind of highlighting that shows only the class itself.
+     */
+    private static final int SELECTED = 3;
+    
     /**
      * A drawing canvas for this forest view.
      */
@@ -31,6 +62,31 @@ public class ForestView {
      */
     private ForestBuilder builder;
     
+    /**
+     * The forest currently displayed.
+     */
+    private Forest forest;
+    
+    /**
+     * The metrics of the project related to the forest.
+     */
+    private ProjectMetrics projectMetrics;
+    
+    /**
+     * The fully-qualified name of the class whose related classes are highlighted, or <code>null</code> if none.
+     */
+    private String highlightedClass = null;
+    
+    /**
+     * The kind of the highlighting of the classes related to the highlighted class.
+     */
+    private int highlightKind = HIERARCHY;
+    
+    /**
+     * The maximum distance of the classes affected by a change of the highlighted class.
+     */
+    private int impactDepth = ChangeImpact.UNLIMITED;
+    
     /**
      * Creates a forest view.
      * @param parent the parent of the forest view
@@ -67,8 +123,100 @@ public class ForestView {
      * @param data the setting data that forms the forest
      */
     public void build(ProjectMetrics projectMetrics, SettingData data) {
+        this.projectMetrics = projectMetrics;
         builder = new ForestBuilder(projectMetrics);
-        canvas.setForest(builder.build(data));
+        setForest(builder.build(data));
+    }
+    
+    /**
+     * Displays a forest, keeping the highlighted trees.
+     * @param forest the forest
+     */
+    private void setForest(Forest forest) {
+        this.forest = forest;
+        highlight();
+        canvas.setForest(forest);
+    }
+    
+    /**
+     * Highlights the trees of all the classes in the inheritance hierarchy containing a class.
+     * @param fqn the fully-qualified name of the class, or <code>null</code> if the highlighting is cleared
+     */
+    public void highlightHierarchy(String fqn) {
+        highlightedClass = fqn;
+        highlightKind = HIERARCHY;
+        highlight();
+    }
+    
+    /**
+     * Highlights the trees of a class and the classes accessing members similar to those accessed by the class.
+     * @param fqn the fully-qualified name of the class, or <code>null</code> if the highlighting is cleared
+     */
+    public void highlightSimilarClasses(String fqn) {
+        highlightedClass = fqn;
+        highlightKind = SIMILAR;
+        highlight();
+    }
+    
+    /**
+     * Highlights the trees of a class and the classes that could be affected by a change of the class, whose colors depend on the distances from the class.
+     * @param fqn the fully-qualified name of the class, or <code>null</code> if the highlighting is cleared
+     * @param maxDepth the maximum distance of the affected classes, or <code>ChangeImpact.UNLIMITED</code>
+     */
+    public void highlightImpact(String fqn, int maxDepth) {
+        highlightedClass = fqn;
+        highlightKind = IMPACT;
+        impactDepth = maxDepth;
+        highlight();
+    }
+    
+    /**
+     * Highlights the tree of a class and flies the camera to it.
+     * @param fqn the fully-qualified name of the class
+     * @return <code>true</code> if the class has a tree in the forest, otherwise <code>false</code>
+     */
+    public boolean flyTo(String fqn) {
+        if (forest == null) {
+            return false;
+        }
+        
+        Point3d location = forest.getTreeLocation(fqn);
+        if (location == null) {
+            return false;
+        }
+        
+        highlightedClass = fqn;
+        highlightKind = SELECTED;
+        highlight();
+        canvas.flyTo(location);
+        return true;
+    }
+    
+    /**
+     * Highlights the trees related to the highlighted class.
+     */
+    private void highlight() {
+        if (forest == null) {
+            return;
+        }
+        
+        if (highlightedClass != null && projectMetrics != null && highlightKind == IMPACT) {
+            forest.highlight(projectMetrics.getChangeImpact().analyze(Collections.singleton(highlightedClass), impactDepth));
+            return;
+        }
+        
+        List<String> names = new ArrayList<String>();
+        if (highlightedClass != null && projectMetrics != null) {
+            if (highlightKind == SELECTED) {
+                names.add(highlightedClass);
+            } else if (highlightKind == SIMILAR) {
+                names.add(highlightedClass);
+                names.addAll(projectMetrics.getSimilarClasses().findSimilar(highlightedClass, SimilarClasses.DEFAULT_THRESHOLD, MAX_SIMILAR_CLASSES));
+            } else {
+                names.addAll(projectMetrics.getClassHierarchy().getHierarchy(highlightedClass));
+            }
+        }
+        forest.highlight(names);
     }
     
     /**
@@ -83,7 +231,7 @@ public class ForestView {
      * @param data the setting data that forms a forest
      */
     public void update(SettingData data) {
-        canvas.setForest(builder.build(data));
+        setForest(builder.build(data));
     }
     
     /**
@@ -93,5 +241,7 @@ public class ForestView {
         canvas.dispose();
         canvas = null;
         builder = null;
+        forest = null;
+        projectMetrics = null;
     }
 }
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.util;
+
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Runs the git command line interface on a local repository.
+ * The output of the command is read line by line, so that a long output is processed without being stored.
+ * @author Katsuhisa Maruyama
+ */
+public class GitCommand {
+    
+    /**
+     * The name of the git executable.
+     */
+    private static final String GIT = "git";
+    
+    /**
+     * The directory in which the command runs.
+     */
+    private File dir;
+    
+    /**
+     * Creates an object that runs git commands in a directory.
+     * @param dir the directory within a working tree of a repository
+     */
+    public GitCommand(File dir) {
+        this.dir = dir;
+    }
+    
+    /**
+     * Returns the directory in which the command runs.
+     * @return the directory
+     */
+    public File getDirectory() {
+        return dir;
+    }
+    
+    /**
+     * Runs a git command and returns its output.
+     * @param args the arguments of the command
+     * @return the lines of the output
+     * @throws IOException if the command cannot be run or fails
+     */
+    public List<String> run(String... args) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        stream(new LineHandler() {
+            
+            /**
+             * Receives a line of the output.
+             * @param line the line
+             */
+            public void line(String line) {
+                lines.add(line);
+            }
+        }, args);
+        return lines;
+    }
+    
+    /**
+     * Runs a git command and passes each line of its output to a handler as soon as it is read.
+     * @param handler the handler of the lines
+     * @param args the arguments of the command
+     * @throws IOException if the command cannot be run or fails
+     */
+    public void stream(LineHandler handler, String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(GIT);
+        for (String arg : args) {
+            command.add(arg);
+        }
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(dir);
+        Process process = builder.start();
+        
+        StringBuilder error = new StringBuilder();
+        Thread drainer = drain(process.getErrorStream(), error);
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handler.line(line);
+            }
+        } finally {
+            reader.close();
+        }
+        
+        try {
+            int status = process.waitFor();
+            drainer.join();
+            if (status != 0) {
+                throw new IOException("git " + args[0] + " failed with exit status " + status + ": " + error.toString().trim());
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("git " + args[0] + " was interrupted");
+        }
+    }
+    
+    /**
+     * Reads the error output of a process in the background, so that the process is not blocked.
+     * @param in the error output of the process
+     * @param error the buffer that stores the error output
+     * @return the thread reading the error output
+     */
+    private static Thread drain(final InputStream in, final StringBuilder error) {
+        Thread thread = new Thread(new Runnable() {
+            
+            /**
+             * Runs a new thread.
+             */
+            public void run() {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        synchronized (error) {
+                            error.append(line).append('\n');
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * A handler that receives lines of the output of a git command.
+     */
+    public interface LineHandler {
+        
+        /**
+         * Receives a line of the output.
+         * @param line the line
+         */
+        public void line(String line);
+    }
+}
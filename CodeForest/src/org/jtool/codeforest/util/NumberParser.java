@@ -0,0 +1,220 @@
+/*
+ *  Copyright 2014, Katsuhisa Maruyama (maru@jtool.org)
+ */
+
+package org.jtool.codeforest.util;
+
+/**
+ * Parses number strings written in XML files without creating intermediate objects.
+ * @author Katsuhisa Maruyama
+ */
+public class NumberParser {
+    
+    /**
+     * The maximum number of digits that are exactly held in a <code>long</code> mantissa.
+     */
+    private static final int MAX_DIGITS = 18;
+    
+    /**
+     * The largest mantissa that is exactly representable as a <code>double</code>.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    
+    /**
+     * The powers of ten that are exactly representable as a <code>double</code>.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    /**
+     * The number of boxed values cached for small non-negative integers.
+     */
+    private static final int CACHE_SIZE = 4096;
+    
+    /**
+     * The boxed values of small non-negative integers.
+     */
+    private static final Double[] VALUE_CACHE = new Double[CACHE_SIZE];
+    
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            VALUE_CACHE[i] = new Double(i);
+        }
+    }
+    
+    /**
+     * Converts a decimal string into a double value.
+     * Strings such as "12.0", "-3.25", or "1.5E7" are parsed directly; the others fall back to <code>Double.parseDouble</code>.
+     * @param str the decimal string
+     * @return the double value
+     * @throws NumberFormatException if the string does not represent a number
+     */
+    public static double parseDouble(String str) {
+        int len = str.length();
+        int pos = 0;
+        boolean negative = false;
+        
+        if (len > 0 && (str.charAt(0) == '-' || str.charAt(0) == '+')) {
+            negative = str.charAt(0) == '-';
+            pos++;
+        }
+        
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigit = false;
+        
+        while (pos < len && isDigit(str.charAt(pos))) {
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (str.charAt(pos) - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                return Double.parseDouble(str);
+            }
+            hasDigit = true;
+            pos++;
+        }
+        
+        if (pos < len && str.charAt(pos) == '.') {
+            pos++;
+            while (pos < len && isDigit(str.charAt(pos))) {
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (str.charAt(pos) - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else if (str.charAt(pos) != '0') {
+                    return Double.parseDouble(str);
+                }
+                hasDigit = true;
+                pos++;
+            }
+        }
+        
+        if (!hasDigit) {
+            return Double.parseDouble(str);
+        }
+        
+        if (pos < len && (str.charAt(pos) == 'E' || str.charAt(pos) == 'e')) {
+            pos++;
+            boolean negativeExp = false;
+            if (pos < len && (str.charAt(pos) == '-' || str.charAt(pos) == '+')) {
+                negativeExp = str.charAt(pos) == '-';
+                pos++;
+            }
+            
+            int exp = 0;
+            boolean hasExpDigit = false;
+            while (pos < len && isDigit(str.charAt(pos))) {
+                exp = exp * 10 + (str.charAt(pos) - '0');
+                if (exp > 1000) {
+                    return Double.parseDouble(str);
+                }
+                hasExpDigit = true;
+                pos++;
+            }
+            if (!hasExpDigit) {
+                return Double.parseDouble(str);
+            }
+            
+            if (negativeExp) {
+                exponent = exponent - exp;
+            } else {
+                exponent = exponent + exp;
+            }
+        }
+        
+        if (pos != len || mantissa > MAX_EXACT_MANTISSA ||
+            exponent < -(POWERS_OF_TEN.length - 1) || exponent > POWERS_OF_TEN.length - 1) {
+            return Double.parseDouble(str);
+        }
+        
+        double value = (double)mantissa;
+        if (exponent < 0) {
+            value = value / POWERS_OF_TEN[-exponent];
+        } else if (exponent > 0) {
+            value = value * POWERS_OF_TEN[exponent];
+        }
+        
+        if (negative) {
+            return -value;
+        }
+        return value;
+    }
+    
+    /**
+     * Converts a decimal string into a boxed double value.
+     * Small non-negative integral values share cached objects.
+     * @param str the decimal string
+     * @return the boxed double value
+     * @throws NumberFormatException if the string does not represent a number
+     */
+    public static Double parseBoxedDouble(String str) {
+        return valueOf(parseDouble(str));
+    }
+    
+    /**
+     * Returns a boxed double value, which is shared for small non-negative integral values.
+     * @param value the double value
+     * @return the boxed double value
+     */
+    public static Double valueOf(double value) {
+        if (value >= 0 && value < CACHE_SIZE) {
+            int ivalue = (int)value;
+            if (ivalue == value && !(value == 0 && 1 / value < 0)) {
+                return VALUE_CACHE[ivalue];
+            }
+        }
+        return new Double(value);
+    }
+    
+    /**
+     * Converts a decimal string into an integer value.
+     * @param str the decimal string
+     * @return the integer value
+     * @throws NumberFormatException if the string does not represent an integer
+     */
+    public static int parseInt(String str) {
+        int len = str.length();
+        int pos = 0;
+        boolean negative = false;
+        
+        if (len > 0 && (str.charAt(0) == '-' || str.charAt(0) == '+')) {
+            negative = str.charAt(0) == '-';
+            pos++;
+        }
+        
+        if (pos == len || len - pos > 9) {
+            return Integer.parseInt(str);
+        }
+        
+        int value = 0;
+        while (pos < len) {
+            char ch = str.charAt(pos);
+            if (!isDigit(ch)) {
+                return Integer.parseInt(str);
+            }
+            value = value * 10 + (ch - '0');
+            pos++;
+        }
+        
+        if (negative) {
+            return -value;
+        }
+        return value;
+    }
+    
+    /**
+     * Tests if a given character is a decimal digit.
+     * @param ch the character
+     * @return <code>true</code> if the character is a decimal digit, otherwise <code>false</code>
+     */
+    private static boolean isDigit(char ch) {
+        return '0' <= ch && ch <= '9';
+    }
+}
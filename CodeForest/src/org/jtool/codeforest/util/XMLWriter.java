@@ -14,6 +14,8 @@ import org.w3c.dom.Document;
 import java.io.File;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 
@@ -23,6 +25,11 @@ import java.io.StringWriter;
  */
 public class XMLWriter {
     
+    /**
+     * The extension of the name of a temporary file.
+     */
+    public static final String TMP_FILENAME_EXT = ".tmp";
+    
     /**
      * Writes the contents of a DOM instance into an XML file.
      * @param file the XML file
@@ -50,4 +57,76 @@ public class XMLWriter {
             System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
         }
     }
+    
+    /**
+     * Writes the contents of a DOM instance into an XML file atomically.
+     * The contents are written into a temporary file in the same directory, which is synchronized with the disk
+     * and renamed into the XML file, so that the XML file is never left truncated.
+     * @param file the XML file
+     * @param doc the DOM instance
+     * @return <code>true</code> if the XML file was written, otherwise <code>false</code>
+     */
+    public static boolean writeAtomically(File file, Document doc) {
+        File tmpfile = new File(file.getPath() + TMP_FILENAME_EXT);
+        FileOutputStream out = null;
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            
+            out = new FileOutputStream(tmpfile);
+            BufferedWriter bwriter = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+            transformer.transform(new DOMSource(doc), new StreamResult(bwriter));
+            bwriter.flush();
+            out.getFD().sync();
+            bwriter.close();
+            out = null;
+            
+            return rename(tmpfile, file);
+            
+        } catch (IOException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+            
+        } catch (TransformerException e) {
+            System.err.println("DOM: Export error occurred: " + e.getMessage() + ".");
+            
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) { /* empty */ }
+                tmpfile.delete();
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Renames a file or a directory, replacing the existing one.
+     * The replacement is atomic on platforms that allow renaming onto an existing file.
+     * @param src the file or directory to be renamed
+     * @param dest the new file or directory
+     * @return <code>true</code> if the renaming succeeded, otherwise <code>false</code>
+     */
+    public static boolean rename(File src, File dest) {
+        if (src.renameTo(dest)) {
+            return true;
+        }
+        
+        if (dest.isDirectory()) {
+            File[] files = dest.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+        }
+        dest.delete();
+        
+        if (src.renameTo(dest)) {
+            return true;
+        }
+        System.err.println("DOM: Export error occurred: cannot rename " + src.getPath() + " to " + dest.getPath() + ".");
+        return false;
+    }
 }